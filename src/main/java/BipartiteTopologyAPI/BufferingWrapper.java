@@ -1,5 +1,6 @@
 package BipartiteTopologyAPI;
 
+import BipartiteTopologyAPI.data.ColumnarBatch;
 import BipartiteTopologyAPI.interfaces.Mergeable;
 import BipartiteTopologyAPI.interfaces.Network;
 import BipartiteTopologyAPI.interfaces.Node;
@@ -10,10 +11,17 @@ import java.io.Serializable;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 public class BufferingWrapper<D extends Serializable> extends GenericWrapper {
 
     private int maxBufferSize = 1000000;
+
+    /**
+     * The maximum number of buffered tuples processed per received message or tuple, so that a large buffer does not
+     * delay the messages that follow. The rest of the buffer is processed by later inputs or calls to {@link #drain()}.
+     */
+    private int drainQuantum = Integer.MAX_VALUE;
     private ArrayDeque<D> dataBuffer;
     private double meanBufferSize = 0;
     private long tuplesProcessed = 0;
@@ -24,13 +32,37 @@ public class BufferingWrapper<D extends Serializable> extends GenericWrapper {
     }
 
     public void toggle() {
-        processFromDataBuffer();
+        drain();
+    }
+
+    /**
+     * Processes the next quantum of the buffered tuples, if the node is not blocked.
+     */
+    public void drain() {
+        beginStep();
+        try {
+            processFromDataBuffer();
+        } finally {
+            endStep();
+        }
+    }
+
+    /**
+     * Returns true if there are buffered tuples that the node can process.
+     */
+    public boolean hasPendingData() {
+        return !isBlocked() && !dataBuffer.isEmpty();
     }
 
     @Override
     public void receiveMsg(NodeId source, RemoteCallIdentifier rpc, Serializable tuple) {
-        super.receiveMsg(source, rpc, tuple);
-        processFromDataBuffer();
+        beginStep();
+        try {
+            super.receiveMsg(source, rpc, tuple);
+            processFromDataBuffer();
+        } finally {
+            endStep();
+        }
     }
 
     @Override
@@ -42,12 +74,32 @@ public class BufferingWrapper<D extends Serializable> extends GenericWrapper {
                 super.receiveTuple(tuple);
             } else {
                 storePoint(tuple);
-                processFromDataBuffer();
+                drain();
             }
         }
         updateBufferStats();
     }
 
+    @Override
+    public void receiveTuples(List<? extends Serializable> tuples) {
+        for (Serializable tuple : tuples) {
+            storePoint(tuple);
+            updateBufferStats();
+        }
+        drain();
+    }
+
+    /**
+     * Puts the records of a batch from the given one on at the head of the data buffer, so that they are processed
+     * before the tuples buffered after the batch.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void deferRows(ColumnarBatch batch, int from) {
+        for (int i = batch.size() - 1; i >= from; i--)
+            dataBuffer.addFirst((D) new Object[]{batch.row(i)});
+    }
+
     private void storePoint(Serializable tuple) {
         dataBuffer.add((D) tuple);
         if (dataBuffer.size() == maxBufferSize + 1)
@@ -55,8 +107,20 @@ public class BufferingWrapper<D extends Serializable> extends GenericWrapper {
     }
 
     private void processFromDataBuffer() {
-        while (!isBlocked() && !dataBuffer.isEmpty())
+        if (nonEmpty() && getNodeClass().isBatchedProcess()) {
+            if (isBlocked() || dataBuffer.isEmpty())
+                return;
+            ArrayList<D> run = new ArrayList<>(Math.min(dataBuffer.size(), drainQuantum));
+            while (!dataBuffer.isEmpty() && run.size() < drainQuantum)
+                run.add(dataBuffer.pop());
+            super.receiveTuples(run);
+            return;
+        }
+        int processed = 0;
+        while (!isBlocked() && !dataBuffer.isEmpty() && processed < drainQuantum) {
             super.receiveTuple(dataBuffer.pop());
+            processed += 1;
+        }
     }
 
     private void updateBufferStats() {
@@ -102,6 +166,16 @@ public class BufferingWrapper<D extends Serializable> extends GenericWrapper {
         return meanBufferSize;
     }
 
+    public int getDrainQuantum() {
+        return drainQuantum;
+    }
+
+    public BufferingWrapper<D> setDrainQuantum(int drainQuantum) {
+        NodeClass.check(drainQuantum > 0, "The drain quantum must be positive.");
+        this.drainQuantum = drainQuantum;
+        return this;
+    }
+
     public void setDataBuffer(ArrayDeque<D> dataBuffer) {
         this.dataBuffer = dataBuffer;
     }
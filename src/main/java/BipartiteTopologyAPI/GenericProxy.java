@@ -1,12 +1,21 @@
 package BipartiteTopologyAPI;
 
+import BipartiteTopologyAPI.annotations.Cached;
+import BipartiteTopologyAPI.annotations.Chunked;
+import BipartiteTopologyAPI.annotations.Combiner;
 import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.VersionedPull;
+import BipartiteTopologyAPI.caching.CachedResponse;
+import BipartiteTopologyAPI.caching.CachingFutureResponse;
+import BipartiteTopologyAPI.caching.ResponseCache;
+import BipartiteTopologyAPI.encoding.VersionedPullFutureResponse;
 import BipartiteTopologyAPI.futures.FuturePool;
 import BipartiteTopologyAPI.futures.FutureResponse;
 import BipartiteTopologyAPI.futures.Response;
 import BipartiteTopologyAPI.interfaces.Network;
 import BipartiteTopologyAPI.operations.CallType;
 import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.BroadcastTargets;
 import BipartiteTopologyAPI.sites.NodeId;
 import BipartiteTopologyAPI.sites.NodeType;
 import com.fasterxml.uuid.Generators;
@@ -54,55 +63,122 @@ public class GenericProxy implements InvocationHandler, Serializable {
         rpc.setOperation(methodIds.get(method));
         boolean hasResponse = method.getReturnType().equals(Response.class);
 
+        // The number of the call whose futures have been registered, if any.
+        long registeredCall = -1L;
         try {
             if (target == null) {
-                network.send(nodeWrapper.nodeId, null, rpc, args);
+                if (nodeWrapper.getQueryServer() != null && SnapshotQueryServer.isServingThread())
+                    nodeWrapper.getQueryServer().enqueueAnswer(rpc, args);
+                else
+                    network.send(nodeWrapper.nodeId, null, rpc, args);
             } else if (target.getNodeId() == Integer.MAX_VALUE) {
+                nodeWrapper.flushCombinedCalls();
                 int targets = (isSpoke()) ? numberOfHubs() : numberOfSpokes();
+                VersionedPull pull = method.getAnnotation(VersionedPull.class);
                 if (hasResponse) {
                     Map<Integer, FutureResponse<Serializable>> newFutures = new HashMap<>();
                     for (int i = 0; i < targets; i++) {
-                        FutureResponse<Serializable> newFuture = new FutureResponse<>();
+                        FutureResponse<Serializable> newFuture = (pull != null)
+                                ? pullFuture(method, pull, rpc.getOperation(), disjointNode(i), args)
+                                : new FutureResponse<>();
                         newFutures.put(i, newFuture);
                         nodeWrapper.getNewFutures().add(newFuture);
                     }
                     assert !nodeWrapper.getFutures().containsKey(nodeWrapper.getFutureCounter());
                     nodeWrapper.getFutures().put(nodeWrapper.getFutureCounter(), newFutures);
                     response = new FuturePool<>(newFutures.values());
+                    registeredCall = nodeWrapper.getFutureCounter();
                     rpc.setCallType(CallType.TWO_WAY);
                     rpc.setCallNumber(nodeWrapper.getFutureCounter());
                     nodeWrapper.incrementFutureCounter();
                 } else {
                     rpc.setCallType(CallType.ONE_WAY);
                 }
-                Map<NodeId, RemoteCallIdentifier> rpcs = new HashMap<>();
-                for (int i = 0; i < targets; i++) {
-                    rpcs.put(new NodeId((isSpoke()) ? NodeType.HUB : NodeType.SPOKE, i), rpc);
-                }
-                network.broadcast(nodeWrapper.getNodeId(), rpcs, args);
+                if (!NodeClass.isReadOnly(method))
+                    for (int i = 0; i < targets; i++)
+                        nodeWrapper.getResponseCache().invalidate(i);
+                // The disjoint nodes hold different versions, so a broadcast pull fetches the full arrays.
+                Object[] payload =
+                        nodeWrapper.getPayloadEncoder().encode(method, rpc.getOperation(), target, true, args);
+                Object[] message = (pull != null) ? withVersion(payload, -1L) : payload;
+                Chunked chunked = method.getAnnotation(Chunked.class);
+                if (chunked != null)
+                    nodeWrapper.sendChunked(BroadcastTargets.allOf(disjointSide(), targets), rpc, chunked, message);
+                else
+                    network.broadcast(nodeWrapper.getNodeId(),
+                            BroadcastTargets.allOf(disjointSide(), targets),
+                            rpc,
+                            message);
+            } else if (!hasResponse && method.isAnnotationPresent(Combiner.class)) {
+                rpc.setCallType(CallType.ONE_WAY);
+                nodeWrapper.getResponseCache().invalidate(target.getNodeId());
+                nodeWrapper.combineCall(target, rpc, method, args);
             } else {
+                nodeWrapper.flushCombinedCalls(target);
+                Cached cached = method.getAnnotation(Cached.class);
+                ResponseCache.Key key = null;
+                if (cached != null) {
+                    key = ResponseCache.keyOf(rpc.getOperation(), target, args);
+                    Serializable value = nodeWrapper.getResponseCache().lookup(cached, key);
+                    if (value != null)
+                        return new CachedResponse<>(value);
+                } else if (!NodeClass.isReadOnly(method)) {
+                    nodeWrapper.getResponseCache().invalidate(target.getNodeId());
+                }
+                VersionedPull pull = method.getAnnotation(VersionedPull.class);
+                long pulledVersion = -1L;
                 if (hasResponse) {
-                    response = new FutureResponse<>();
+                    if (cached != null) {
+                        response = new CachingFutureResponse<>(nodeWrapper.getResponseCache(), key);
+                    } else if (pull != null) {
+                        VersionedPullFutureResponse<Serializable> future =
+                                pullFuture(method, pull, rpc.getOperation(), target, args);
+                        pulledVersion = future.getBaseVersion();
+                        response = future;
+                    } else {
+                        response = new FutureResponse<>();
+                    }
                     assert  !nodeWrapper.getFutures().containsKey(nodeWrapper.getFutureCounter());
                     Map<Integer, FutureResponse<Serializable>> newFuture = new HashMap<>();
                     newFuture.put(target.getNodeId(), (FutureResponse<Serializable>) response);
                     nodeWrapper.getFutures().put(nodeWrapper.getFutureCounter(), newFuture);
                     nodeWrapper.getNewFutures().add((FutureResponse<Serializable>) response);
+                    registeredCall = nodeWrapper.getFutureCounter();
                     rpc.setCallType(CallType.TWO_WAY);
                     rpc.setCallNumber(nodeWrapper.getFutureCounter());
                     nodeWrapper.incrementFutureCounter();
                 } else {
                     rpc.setCallType(CallType.ONE_WAY);
                 }
-                network.send(nodeWrapper.getNodeId(), target, rpc, args);
+                Object[] payload =
+                        nodeWrapper.getPayloadEncoder().encode(method, rpc.getOperation(), target, false, args);
+                Object[] message = (pull != null) ? withVersion(payload, pulledVersion) : payload;
+                Chunked chunked = method.getAnnotation(Chunked.class);
+                if (chunked != null)
+                    nodeWrapper.sendChunked(Collections.singletonList(target), rpc, chunked, message);
+                else
+                    network.send(nodeWrapper.getNodeId(), target, rpc, message);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+        } catch (RuntimeException e) {
+            // A call that could not be sent is never answered, so its futures must not block the caller.
+            if (registeredCall >= 0)
+                unregister(registeredCall);
+            throw new RuntimeException("Failed to send the call " + method.getName() + " to " +
+                    ((target == null) ? "the querier" : target), e);
         }
 
         return response;
     }
 
+    /**
+     * Removes the futures of a call from the futures of the wrapped node.
+     */
+    private void unregister(long callNumber) {
+        Map<Integer, FutureResponse<Serializable>> futures = nodeWrapper.getFutures().remove(callNumber);
+        if (futures != null)
+            nodeWrapper.getNewFutures().removeAll(futures.values());
+    }
+
     public GenericProxy(Class rmtIf, GenericWrapper node_wrapper, Network network, NodeId target) {
         this.nodeWrapper = node_wrapper;
         this.network = network;
@@ -116,13 +192,18 @@ public class GenericProxy implements InvocationHandler, Serializable {
                     "Method %s is not annotated with @RemoteOp", method);
             for (Parameter param : method.getParameters()) {
                 Class pcls = param.getType();
-                NodeClass.check(NodeClass.isSerializable(pcls),
-                        "Parameter type %s is not Serializable request method %s of remote proxy %s",
+                NodeClass.check(NodeClass.isParameterType(pcls),
+                        "Parameter type %s is neither Serializable nor a ByteBuffer request method %s of remote proxy %s",
                         pcls, method, rmtIf);
             }
             NodeClass.check(method.getReturnType() == void.class || method.getReturnType() == Response.class,
                     "Return type is not void request method %s of remote proxy %s",
                     method, rmtIf);
+            NodeClass.checkEncodings(method, rmtIf);
+            NodeClass.checkRouting(method, rmtIf);
+            NodeClass.checkCaching(method, rmtIf);
+            NodeClass.checkCombining(method, rmtIf);
+            NodeClass.checkChunking(method, rmtIf);
             String methodName = method.getName() + Arrays.toString(method.getParameterTypes());
             String methodId = Generators.nameBasedGenerator().generate(methodName).toString();
             methodIds.put(method, methodId);
@@ -131,6 +212,61 @@ public class GenericProxy implements InvocationHandler, Serializable {
     }
 
 
+    /**
+     * Creates the future of a pull, holding the array last pulled by the same call.
+     */
+    private VersionedPullFutureResponse<Serializable> pullFuture(Method method,
+                                                               VersionedPull pull,
+                                                               String operation,
+                                                               NodeId destination,
+                                                               Object[] args) {
+        ResponseCache.Key key = ResponseCache.keyOf(operation, destination, args);
+        VersionedPullFutureResponse<Serializable> future = new VersionedPullFutureResponse<>(
+                nodeWrapper.getPulledValues(),
+                key,
+                nodeWrapper.getPulledValues().get(pull, key));
+        future.onBaseMismatch(() -> fullPull(method, operation, destination, args, future));
+        return future;
+    }
+
+    /**
+     * Issues a pull again under a new call number, asking for the full array, e.g. as the called node sent a delta
+     * against an array that the caller does not hold. The future of the pull waits for the new call.
+     */
+    private void fullPull(Method method,
+                          String operation,
+                          NodeId destination,
+                          Object[] args,
+                          VersionedPullFutureResponse<Serializable> future) {
+        long callNumber = nodeWrapper.getFutureCounter();
+        Map<Integer, FutureResponse<Serializable>> newFuture = new HashMap<>();
+        newFuture.put(destination.getNodeId(), future);
+        nodeWrapper.getFutures().put(callNumber, newFuture);
+        nodeWrapper.incrementFutureCounter();
+        Object[] payload = nodeWrapper.getPayloadEncoder().encode(method, operation, destination, false, args);
+        network.send(nodeWrapper.getNodeId(),
+                destination,
+                new RemoteCallIdentifier(CallType.TWO_WAY, operation, callNumber),
+                withVersion(payload, -1L));
+    }
+
+    /**
+     * Appends the version of the array held by the caller to the arguments of a pull.
+     */
+    private static Object[] withVersion(Object[] payload, Long version) {
+        Object[] extended = Arrays.copyOf(payload, payload.length + 1);
+        extended[payload.length] = version;
+        return extended;
+    }
+
+    private NodeId disjointNode(int id) {
+        return NodeId.of(disjointSide(), id);
+    }
+
+    private NodeType disjointSide() {
+        return (isSpoke()) ? NodeType.HUB : NodeType.SPOKE;
+    }
+
     private boolean isSpoke() {
         return nodeWrapper.getNodeId().isSpoke();
     }
@@ -1,21 +1,53 @@
 package BipartiteTopologyAPI;
 
+import BipartiteTopologyAPI.annotations.Cached;
+import BipartiteTopologyAPI.annotations.Chunked;
+import BipartiteTopologyAPI.annotations.Coalesced;
 import BipartiteTopologyAPI.annotations.Inject;
+import BipartiteTopologyAPI.annotations.VersionedPull;
+import BipartiteTopologyAPI.caching.CachingFutureResponse;
+import BipartiteTopologyAPI.caching.ResponseCache;
+import BipartiteTopologyAPI.caching.ResponseCoalescer;
+import BipartiteTopologyAPI.caching.VersionedValue;
+import BipartiteTopologyAPI.chunking.ChunkAssembler;
+import BipartiteTopologyAPI.chunking.PayloadChunk;
+import BipartiteTopologyAPI.combining.CombinedCalls;
+import BipartiteTopologyAPI.data.ColumnarBatch;
+import BipartiteTopologyAPI.encoding.DeltaBaseMismatchException;
+import BipartiteTopologyAPI.encoding.DeltaResync;
+import BipartiteTopologyAPI.encoding.LazyValue;
+import BipartiteTopologyAPI.encoding.PayloadDecoder;
+import BipartiteTopologyAPI.encoding.PayloadEncoder;
+import BipartiteTopologyAPI.encoding.PullLog;
+import BipartiteTopologyAPI.encoding.PulledValues;
+import BipartiteTopologyAPI.encoding.VersionedPullFutureResponse;
 import BipartiteTopologyAPI.futures.*;
 import BipartiteTopologyAPI.interfaces.Mergeable;
 import BipartiteTopologyAPI.operations.CallType;
 import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.routing.ConsistentHashRing;
+import BipartiteTopologyAPI.routing.KeyMigration;
+import BipartiteTopologyAPI.routing.KeyRouter;
+import BipartiteTopologyAPI.routing.RoutingProxy;
 import BipartiteTopologyAPI.interfaces.Network;
+import BipartiteTopologyAPI.network.ByteBufferValue;
+import BipartiteTopologyAPI.network.EncodedPayload;
+import BipartiteTopologyAPI.network.MessageCodec;
 import BipartiteTopologyAPI.interfaces.Node;
+import BipartiteTopologyAPI.sites.NetworkDescriptor;
 import BipartiteTopologyAPI.sites.NodeId;
 import BipartiteTopologyAPI.sites.NodeType;
 
 import java.io.Serializable;
 import java.lang.reflect.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 public class GenericWrapper implements Node {
@@ -50,6 +82,33 @@ public class GenericWrapper implements Node {
      */
     protected long syncFutures;
 
+    /**
+     * The number of rounds the wrapped node may run ahead of its oldest round with outstanding synchronous futures.
+     * Zero makes the node wait for all the responses of a round before processing more data (bulk synchronous mode).
+     */
+    protected int staleness;
+
+    /**
+     * The logical clock of the wrapped node, advanced at every round that issues synchronous remote calls.
+     */
+    protected long clock;
+
+    /**
+     * The number of outstanding synchronous futures of every unfinished round.
+     */
+    protected HashMap<Long, Long> outstandingRounds;
+
+    /**
+     * The number of prefetches of the wrapped node waiting for their next value, holding the data stream.
+     */
+    protected int holds;
+
+    /**
+     * The records of a ColumnarBatch left unprocessed when one of its records blocked the wrapped node. They are
+     * processed once the node is unblocked.
+     */
+    protected ArrayDeque<Object[]> deferredRows;
+
     /**
      * The network where this wrapped node object is connected to.
      */
@@ -65,11 +124,31 @@ public class GenericWrapper implements Node {
      */
     protected Object broadcastProxy;
 
+    /**
+     * A proxy that routes calls to the disjoint nodes owning their keys.
+     */
+    protected Object routingProxy;
+
+    /**
+     * The keyed routing state of the wrapped node, assigning keys to the nodes of the Bipartite Graph.
+     */
+    protected KeyRouter keyRouter;
+
+    /**
+     * The number of virtual positions of every node on the routing rings.
+     */
+    protected int routingVirtualNodes = ConsistentHashRing.DEFAULT_VIRTUAL_NODES;
+
     /**
      * A proxy to answer queries.
      */
     protected Object querierProxy;
 
+    /**
+     * The network context injected into the wrapped node.
+     */
+    protected NetworkContext<?, ?> networkContext;
+
     /**
      * A flag determining if the wrapped node can process data.
      */
@@ -85,11 +164,102 @@ public class GenericWrapper implements Node {
      */
     protected RemoteCallIdentifier currentRPC;
 
+    /**
+     * The one-way remote operation being served by the wrapped node, or null.
+     */
+    protected transient Method currentOperation;
+
+    /**
+     * The arguments of the one-way remote operation being served, as they were received.
+     */
+    protected transient Object[] currentArgs;
+
     /**
      * A counter for identifying the responses of the remote nodes.
      */
     private long futureCounter;
 
+    /**
+     * The number of received calls dropped, as their delta encoded arguments could not be reconstructed.
+     */
+    private long droppedCalls;
+
+    /**
+     * Encodes the arguments of the remote calls of the wrapped node.
+     */
+    protected PayloadEncoder payloadEncoder;
+
+    /**
+     * Decodes the arguments of the remote calls to the wrapped node.
+     */
+    protected PayloadDecoder payloadDecoder;
+
+    /**
+     * The cached responses of the disjoint nodes to the @Cached operations of the wrapped node.
+     */
+    protected ResponseCache responseCache;
+
+    /**
+     * The responses of the @Coalesced operations of the wrapped node for the current state version.
+     */
+    protected ResponseCoalescer responseCoalescer;
+
+    /**
+     * The arrays pulled by the wrapped node through the @VersionedPull operations of the disjoint nodes.
+     */
+    protected PulledValues pulledValues;
+
+    /**
+     * The log of the arrays pulled from the wrapped node through its @VersionedPull operations.
+     */
+    protected PullLog pullLog;
+
+    /**
+     * The pending calls of the wrapped node to the @Combiner operations of the disjoint nodes.
+     */
+    protected CombinedCalls combinedCalls;
+
+    /**
+     * The transfers of the calls of the @Chunked operations received by the wrapped node.
+     */
+    protected ChunkAssembler chunkAssembler;
+
+    /**
+     * The id of the next transfer of a call of a @Chunked operation.
+     */
+    protected long transferCounter;
+
+    /**
+     * The chunk of a streamed transfer being consumed by the wrapped node, or null.
+     */
+    protected transient PayloadChunk currentChunk;
+
+    /**
+     * The depth of the processing steps in progress. The pending combined calls are flushed when a step completes.
+     */
+    protected int stepDepth;
+
+    /**
+     * The version of the state of the wrapped node, incremented on every tuple and every call of an operation that is
+     * not read-only.
+     */
+    protected long stateVersion;
+
+    /**
+     * The number of tuples processed by the wrapped node.
+     */
+    protected long processedTuples;
+
+    /**
+     * The server answering the queries from model snapshots, or null if queries are answered by the processing thread.
+     */
+    protected transient SnapshotQueryServer queryServer;
+
+    /**
+     * The executor running tasks on the processing thread of the node, or null if its host does not provide one.
+     */
+    protected transient volatile Executor processingExecutor;
+
     public GenericWrapper(NodeId nodeId, NodeInstance node, Network network) {
         this.nodeId = nodeId;
         this.node = node;
@@ -97,11 +267,28 @@ public class GenericWrapper implements Node {
         futures = new HashMap<>();
         newFutures = new ArrayList<>();
         syncFutures = 0L;
+        staleness = 0;
+        clock = 0L;
+        outstandingRounds = new HashMap<>();
+        holds = 0;
+        deferredRows = new ArrayDeque<>();
         this.network = network;
         broadcastProxy = null;
         proxyMap = new HashMap<>();
         processData = true;
         futureCounter = 0;
+        payloadEncoder = new PayloadEncoder();
+        payloadDecoder = new PayloadDecoder();
+        responseCache = new ResponseCache();
+        responseCoalescer = new ResponseCoalescer();
+        combinedCalls = new CombinedCalls();
+        chunkAssembler = new ChunkAssembler();
+        transferCounter = 0;
+        stepDepth = 0;
+        pulledValues = new PulledValues();
+        pullLog = new PullLog();
+        stateVersion = 0;
+        processedTuples = 0;
         Injections();
         init();
 
@@ -112,8 +299,48 @@ public class GenericWrapper implements Node {
      * queries to a querier.
      */
     private void Injections() {
+        ArrayList<Field> fields = injectedFields();
+
+        // Finding the interfaces of the proxies.
+        Class<?> proxyInterface = ExtractGenerics.findSubClassParameterType(node, NodeInstance.class, 0);
+        assert proxyInterface != null;
+        Class<?> querierInterface = ExtractGenerics.findSubClassParameterType(node, NodeInstance.class, 1);
+        assert querierInterface != null;
+
+        // Map proxy creation.
+        for (int i = 0; i < numberOfDisjointNodes(network.describe()); i++)
+            proxyMap.put(i, GenericProxy.forNode(proxyInterface, this, network, disjointNode(i)));
+
+        // Broadcast proxy creation.
+        broadcastProxy = GenericProxy.forNode(proxyInterface, this, network, disjointNode(Integer.MAX_VALUE));
+
+        // Routing proxy creation.
+        keyRouter = new KeyRouter(this, routingVirtualNodes);
+        routingProxy = RoutingProxy.forNode(proxyInterface, this);
+
+        // Querier proxy creation.
+        querierProxy = GenericProxy.forNode(querierInterface, this, network, null);
+
+        injectNetworkContext(fields.get(0), new HashMap<>(), new HashMap<>());
+        try {
+            Field wrapperField = fields.get(1);
+            wrapperField.setAccessible(true);
+            wrapperField.set(node, this);
+        } catch (SecurityException | IllegalAccessException e) {
+            throw new RuntimeException(
+                    String.format("Something went wrong while injecting the NetworkContext and the Generic Wrapper" +
+                                    " into the wrapped class %s",
+                            nodeClass.getWrappedClass()), e);
+        }
+        assert !proxyMap.isEmpty();
+    }
+
+    /**
+     * Acquires the fields of the wrapped node where the network components are injected.
+     */
+    private ArrayList<Field> injectedFields() {
 
-        // Acquire all the declared fields in the node's class hierarchy, along with the proxy Interface.
+        // Acquire all the declared fields in the node's class hierarchy.
         Class<?> current = nodeClass.getWrappedClass();
         ArrayList<Field> fields = new ArrayList<>(Arrays.asList(current.getDeclaredFields()));
         while (!current.getSuperclass().equals(Object.class)) {
@@ -137,54 +364,158 @@ public class GenericWrapper implements Node {
                         " inject additional fields in wrapped class %s.",
                 nodeClass.getWrappedClass());
 
-        // Finding the interfaces of the proxies.
-        Class<?> proxyInterface = ExtractGenerics.findSubClassParameterType(node, NodeInstance.class, 0);
-        assert proxyInterface != null;
-        Class<?> querierInterface = ExtractGenerics.findSubClassParameterType(node, NodeInstance.class, 1);
-        assert querierInterface != null;
-
-        // Map proxy creation.
-        int numberOfSpokes = network.describe().getNumberOfSpokes();
-        int numberOfHubs = network.describe().getNumberOfHubs();
-        for (int i = 0; i < ((nodeId.isHub()) ? numberOfSpokes : numberOfHubs); i++) {
-            NodeId proxyIP = new NodeId((nodeId.isHub()) ? NodeType.SPOKE : NodeType.HUB, i);
-            proxyMap.put(i, GenericProxy.forNode(proxyInterface, this, network, proxyIP));
-        }
+        return fields;
+    }
 
-        // Broadcast proxy creation.
-        broadcastProxy = GenericProxy.forNode(proxyInterface,
-                this,
-                network,
-                new NodeId((nodeId.isHub()) ? NodeType.SPOKE : NodeType.HUB, Integer.MAX_VALUE)
+    /**
+     * Injects a new NetworkContext describing the current size of the network into the wrapped node, keeping the given
+     * promises.
+     */
+    private void injectNetworkContext(Field networkContextField,
+                                      HashMap<Integer, HashMap<Long, PromiseResponse>> promises,
+                                      HashMap<Integer, HashMap<Long, PromiseResponse>> broadcastPromises) {
+        NetworkDescriptor descriptor = network.describe();
+        networkContext = NetworkContext.forNode(
+                descriptor.getNetworkId(),
+                descriptor.getNumberOfHubs(),
+                descriptor.getNumberOfSpokes(),
+                nodeId.getNodeId(),
+                querierProxy,
+                proxyMap,
+                broadcastProxy,
+                routingProxy,
+                promises,
+                broadcastPromises
         );
-
-        // Querier proxy creation.
-        querierProxy = GenericProxy.forNode(querierInterface, this, network, null);
-
         try {
-            Field networkContext = fields.get(0);
-            networkContext.setAccessible(true);
-            networkContext.set(node,
-                    NetworkContext.forNode(
-                            network.describe().getNetworkId(),
-                            network.describe().getNumberOfHubs(),
-                            network.describe().getNumberOfSpokes(),
-                            nodeId.getNodeId(),
-                            querierProxy,
-                            proxyMap,
-                            broadcastProxy
-                    )
-            );
-            Field wrapperField = fields.get(1);
-            wrapperField.setAccessible(true);
-            wrapperField.set(node, this);
+            networkContextField.setAccessible(true);
+            networkContextField.set(node, networkContext);
         } catch (SecurityException | IllegalAccessException e) {
             throw new RuntimeException(
-                    String.format("Something went wrong while injecting the NetworkContext and the Generic Wrapper" +
-                                    " into the wrapped class %s",
+                    String.format("Something went wrong while injecting the NetworkContext into the wrapped class %s",
                             nodeClass.getWrappedClass()), e);
         }
-        assert !proxyMap.isEmpty();
+    }
+
+    /**
+     * Re-wires the wrapped node to the current size of the Bipartite Network, as described by its network, without
+     * rebuilding it. Proxies are created for the disjoint nodes that joined the network and dropped for the ones that
+     * left it, while the broadcast proxy targets all the disjoint nodes of the current description and the routing ring
+     * is rebuilt over them, moving only the keys gained or lost by the changed nodes. The futures waiting
+     * for answers from the departed nodes are cancelled, unblocking the wrapped node if they were the last synchronous
+     * ones, and the promises made to them are dropped. All the other futures and promises are kept in flight.
+     * <p>
+     * This must be called from the processing thread of the node, between the messages and tuples it receives, after
+     * the network has started describing its new size. The node itself must remain a member of the network.
+     */
+    public void rescale() {
+        if (isEmpty())
+            return;
+        NetworkDescriptor descriptor = network.describe();
+        int ownSide = (nodeId.isHub()) ? descriptor.getNumberOfHubs() : descriptor.getNumberOfSpokes();
+        NodeClass.check(nodeId.getNodeId() < ownSide,
+                "%s cannot be re-wired, as it is not a member of the rescaled network %s",
+                nodeId, descriptor.getNetworkId());
+        int disjointNodes = numberOfDisjointNodes(descriptor);
+        boolean resized = disjointNodes != proxyMap.size();
+
+        // Drop the departed disjoint nodes, along with the futures and the promises that involve them.
+        ArrayList<Integer> departed = new ArrayList<>();
+        for (Integer id : proxyMap.keySet())
+            if (id >= disjointNodes)
+                departed.add(id);
+        for (Integer id : departed) {
+            proxyMap.remove(id);
+            cancelFutures(id);
+            networkContext.promises.remove(id);
+            networkContext.broadcastPromises.remove(id);
+            payloadEncoder.reset(disjointNode(id));
+            payloadDecoder.reset(disjointNode(id));
+            responseCache.reset(id);
+            pulledValues.reset(id);
+            combinedCalls.reset(id);
+            chunkAssembler.reset(id);
+        }
+
+        // Create proxies for the joined disjoint nodes.
+        if (disjointNodes > proxyMap.size()) {
+            Class<?> proxyInterface = ExtractGenerics.findSubClassParameterType(node, NodeInstance.class, 0);
+            assert proxyInterface != null;
+            for (int i = 0; i < disjointNodes; i++)
+                if (!proxyMap.containsKey(i))
+                    proxyMap.put(i, GenericProxy.forNode(proxyInterface, this, network, disjointNode(i)));
+        }
+
+        // The joined nodes do not hold the base of the delta encoded broadcasts.
+        if (resized)
+            payloadEncoder.reset(disjointNode(Integer.MAX_VALUE));
+        keyRouter.rescale();
+
+        injectNetworkContext(injectedFields().get(0), networkContext.promises, networkContext.broadcastPromises);
+    }
+
+    /**
+     * Cancels the futures waiting for an answer from a disjoint node, releasing the holds of the prefetches pulling
+     * from it.
+     */
+    private void cancelFutures(int disjointNodeId) {
+        ArrayList<Long> settled = new ArrayList<>();
+        for (Map.Entry<Long, Map<Integer, FutureResponse<Serializable>>> future : futures.entrySet()) {
+            FutureResponse<Serializable> f = future.getValue().remove(disjointNodeId);
+            if (f != null)
+                f.cancel();
+            if (f != null && f.isSync() && settleSyncFuture(f))
+                unblockIfCaughtUp();
+            if (future.getValue().isEmpty())
+                settled.add(future.getKey());
+        }
+        for (Long callNumber : settled)
+            futures.remove(callNumber);
+    }
+
+    /**
+     * Accounts for a synchronous future that has been answered or cancelled, publishing a snapshot of the wrapped node
+     * when its round is complete.
+     *
+     * @return True if the round of the future is complete.
+     */
+    private boolean settleSyncFuture(FutureResponse<Serializable> future) {
+        syncFutures -= 1;
+        Long remaining = outstandingRounds.get(future.getRound());
+        if (remaining == null)
+            return false;
+        if (remaining > 1) {
+            outstandingRounds.put(future.getRound(), remaining - 1);
+            return false;
+        }
+        outstandingRounds.remove(future.getRound());
+        if (queryServer != null)
+            queryServer.publish();
+        return true;
+    }
+
+    /**
+     * Blocks the wrapped node if it has run ahead of its oldest unfinished round by more than the staleness bound.
+     */
+    private void blockIfStale() {
+        if (outstandingRounds.size() > staleness && processData)
+            block();
+    }
+
+    /**
+     * Unblocks the wrapped node once it is back within the staleness bound.
+     */
+    private void unblockIfCaughtUp() {
+        if (outstandingRounds.size() <= staleness && !processData)
+            unblock();
+    }
+
+    private int numberOfDisjointNodes(NetworkDescriptor descriptor) {
+        return (nodeId.isHub()) ? descriptor.getNumberOfSpokes() : descriptor.getNumberOfHubs();
+    }
+
+    private NodeId disjointNode(int id) {
+        return NodeId.of((nodeId.isHub()) ? NodeType.SPOKE : NodeType.HUB, id);
     }
 
     @Override
@@ -194,6 +525,7 @@ public class GenericWrapper implements Node {
                 Method m = nodeClass.getInitMethod();
                 m.invoke(node);
                 checkNewFutures();
+                completeStep();
             } catch (Exception e) {
                 throw new RuntimeException("Failed wrapper.init", e);
             }
@@ -204,8 +536,22 @@ public class GenericWrapper implements Node {
     public void receiveQuery(long queryId, Serializable query) {
         if (nonEmpty()) {
             try {
+                if (queryServer != null) {
+                    queryServer.submit(queryId, network.describe().getNetworkId(), query);
+                    flushQueryAnswers();
+                    completeStep();
+                    return;
+                }
                 Method m = nodeClass.getQueryMethod();
-                m.invoke(node, queryId, network.describe().getNetworkId(), query);
+                if (nodeClass.isSnapshotQuery())
+                    m.invoke(node,
+                            queryId,
+                            network.describe().getNetworkId(),
+                            query,
+                            nodeClass.getSnapshotMethod().invoke(node));
+                else
+                    m.invoke(node, queryId, network.describe().getNetworkId(), query);
+                completeStep();
             } catch (IllegalAccessException | InvocationTargetException e) {
                 throw new RuntimeException("Failed wrapper.receiveQuery", e);
             } catch (IllegalArgumentException e) {
@@ -225,12 +571,20 @@ public class GenericWrapper implements Node {
                         Map<Integer, FutureResponse<Serializable>> future = futures.get(rpc.getCallNumber());
                         if (future.containsKey(source.getNodeId())) {
                             FutureResponse<Serializable> f = future.get(source.getNodeId());
-                            f.accept(tuple);
-                            if (f.isSync()) {
-                                syncFutures -= 1;
-                                if (syncFutures == 0)
-                                    unblock();
+                            if (tuple instanceof VersionedValue) {
+                                VersionedValue<?> versioned = (VersionedValue<?>) tuple;
+                                responseCache.observe(source.getNodeId(), versioned.getVersion());
+                                if (f instanceof CachingFutureResponse)
+                                    ((CachingFutureResponse<?>) f).setVersion(versioned.getVersion());
+                                tuple = versioned.getValue();
                             }
+                            f.accept(tuple);
+                            // The callbacks of the response may change the state of the node.
+                            advanceStateVersion();
+                            boolean reissued = f instanceof VersionedPullFutureResponse &&
+                                    ((VersionedPullFutureResponse<?>) f).isAwaitingFullPull();
+                            if (f.isSync() && !reissued && settleSyncFuture(f))
+                                unblockIfCaughtUp();
                             future.remove(source.getNodeId());
                             if (future.isEmpty())
                                 futures.remove(rpc.getCallNumber());
@@ -244,38 +598,38 @@ public class GenericWrapper implements Node {
                                 ") No futures for the responseCallNumber " + rpc.getCallNumber() + " from caller " +
                                 currentCaller);
                     }
+                } else if (rpc.getCallType().equals(CallType.CONTROL) && tuple instanceof DeltaResync) {
+                    resetPayloadEncoding(source);
+                } else if (rpc.getCallType().equals(CallType.CONTROL)) {
+                    for (KeyRouter.DeferredCall call : keyRouter.receive(source, (KeyMigration) tuple)) {
+                        currentCaller = call.getSource();
+                        currentRPC = call.getRpc();
+                        // A deferred call may span keys still owned by other nodes.
+                        if (keyRouter.route(call.getSource(), call.getRpc(), call.getMethod(), call.getArgs()))
+                            invokeRemoteOp(call.getSource(), call.getRpc(), call.getMethod(), call.getArgs());
+                        checkNewFutures();
+                    }
+                } else if (rpc.getCallType().equals(CallType.CHUNK)) {
+                    receiveChunk(source, (PayloadChunk) tuple);
                 } else {
                     Method m = nodeClass.getOperationTable().get(rpc.getOperation());
-                    if (rpc.getCallType().equals(CallType.ONE_WAY)) {
-                        if (m == null)
-                            nodeClass.getDefaultMethod().invoke(node, tuple);
-                        else
-                            m.invoke(node, (Object[]) tuple);
-                    } else if (rpc.getCallType().equals(CallType.TWO_WAY)) {
-                        Object ret = m.invoke(node, (Object[]) tuple);
-                        assert (ret instanceof ValueResponse ||
-                                ret instanceof PromiseResponse ||
-                                ret instanceof PromisedResponses ||
-                                ret instanceof BroadcastValuesResponses ||
-                                ret instanceof EmptyResponse);
-                        if (ret instanceof ValueResponse) {
-                            ValueResponse resp = (ValueResponse) ret;
-                            network.send(nodeId,
-                                    source,
-                                    new RemoteCallIdentifier(CallType.RESPONSE, null, rpc.getCallNumber()),
-                                    resp.getValue());
-                        } else if (ret instanceof PromisedResponses) {
-                            PromisedResponses resp = (PromisedResponses) ret;
-                            resp.sendAnswers();
-                        } else if (ret instanceof BroadcastValuesResponses) {
-                            BroadcastValuesResponses resp = (BroadcastValuesResponses) ret;
-                            resp.broadcastResponse();
-                        }
+                    if (rpc.getCallType().equals(CallType.ONE_WAY) && m == null) {
+                        advanceStateVersion();
+                        nodeClass.getDefaultMethod().invoke(node, tuple);
                     } else {
-                        throw new RuntimeException("Unknown RPC type");
+                        try {
+                            Object[] args = payloadDecoder.decode(source, rpc.getOperation(), (Object[]) tuple);
+                            if (keyRouter.admit(source, rpc, m, args))
+                                invokeRemoteOp(source, rpc, m, args);
+                        } catch (DeltaBaseMismatchException e) {
+                            requestResync(rpc, e);
+                        }
                     }
                 }
                 checkNewFutures();
+                processDeferredRows();
+                flushQueryAnswers();
+                completeStep();
             } catch (IllegalAccessException | InvocationTargetException | IllegalArgumentException e) {
                 e.printStackTrace();
                 throw new RuntimeException("Failed wrapper.receiveMsg", e);
@@ -283,13 +637,133 @@ public class GenericWrapper implements Node {
         }
     }
 
+    /**
+     * Drops a call whose delta encoded argument cannot be reconstructed, and asks the caller to send full arrays.
+     */
+    private void requestResync(RemoteCallIdentifier rpc, DeltaBaseMismatchException e) {
+        droppedCalls++;
+        if (e.isResyncRequired())
+            network.send(nodeId,
+                    e.getSource(),
+                    new RemoteCallIdentifier(CallType.CONTROL, null, -1),
+                    new DeltaResync(rpc.getOperation()));
+    }
+
+    /**
+     * Forgets the arrays sent to a disjoint node, along with the base of the delta encoded broadcasts, so that the next
+     * calls to the node send full arrays, which it accepts whatever it holds. This is called when the node asks for a
+     * {@link DeltaResync}, and by the hosts when the connection to the node has been re-established, as messages may
+     * have been lost. It must be called from the processing thread.
+     */
+    public void resetPayloadEncoding(NodeId peer) {
+        payloadEncoder.reset(peer);
+        payloadEncoder.reset(disjointNode(Integer.MAX_VALUE));
+    }
+
+    /**
+     * Invokes a remote operation of the wrapped node and sends back its response, if the caller waits for one.
+     */
+    private void invokeRemoteOp(NodeId source, RemoteCallIdentifier rpc, Method m, Object[] args)
+            throws IllegalAccessException, InvocationTargetException {
+        boolean cached = m.isAnnotationPresent(Cached.class);
+        Coalesced coalesced = m.getAnnotation(Coalesced.class);
+        VersionedPull pull = m.getAnnotation(VersionedPull.class);
+        long pulledVersion = -1;
+        if (pull != null) {
+            pulledVersion = (Long) args[args.length - 1];
+            args = Arrays.copyOf(args, args.length - 1);
+        }
+        if (!NodeClass.isReadOnly(m))
+            advanceStateVersion();
+        if (rpc.getCallType().equals(CallType.ONE_WAY)) {
+            currentOperation = m;
+            currentArgs = args;
+            try {
+                m.invoke(node, args);
+            } finally {
+                currentOperation = null;
+                currentArgs = null;
+            }
+        } else if (rpc.getCallType().equals(CallType.TWO_WAY)) {
+            Object ret;
+            ResponseCache.Key key = null;
+            if (coalesced != null) {
+                key = ResponseCache.keyOf(rpc.getOperation(), args);
+                Serializable value = responseCoalescer.lookup(key, stateVersion);
+                if (value != null) {
+                    ret = new ValueResponse<>(value);
+                } else {
+                    ret = m.invoke(node, args);
+                    if (ret instanceof ValueResponse)
+                        responseCoalescer.put(coalesced, key, stateVersion, ((ValueResponse<?>) ret).getValue());
+                }
+            } else {
+                ret = m.invoke(node, args);
+            }
+            assert (ret instanceof ValueResponse ||
+                    ret instanceof PromiseResponse ||
+                    ret instanceof PromisedResponses ||
+                    ret instanceof BroadcastValuesResponses ||
+                    ret instanceof EmptyResponse);
+            if (ret instanceof ValueResponse) {
+                ValueResponse resp = (ValueResponse) ret;
+                Serializable value = resp.getValue();
+                if (pull != null)
+                    value = pullLog.respond(pull,
+                            ResponseCache.keyOf(rpc.getOperation(), args),
+                            pulledVersion,
+                            value,
+                            stateVersion);
+                flushCombinedCalls(source);
+                RemoteCallIdentifier response = new RemoteCallIdentifier(CallType.RESPONSE, null, rpc.getCallNumber());
+                if (coalesced != null && pull == null && !cached) {
+                    // Encode a coalesced value once for all the callers.
+                    EncodedPayload encoded = responseCoalescer.encodedOf(key);
+                    if (encoded == null) {
+                        encoded = EncodedPayload.encode(value);
+                        responseCoalescer.putEncoded(key, encoded);
+                    }
+                    network.sendEncoded(nodeId, source, response, encoded);
+                } else
+                    network.send(nodeId,
+                            source,
+                            response,
+                            (cached) ? new VersionedValue<>(stateVersion, value) : value);
+            } else if (ret instanceof PromisedResponses) {
+                PromisedResponses resp = (PromisedResponses) ret;
+                resp.sendAnswers();
+            } else if (ret instanceof BroadcastValuesResponses) {
+                BroadcastValuesResponses resp = (BroadcastValuesResponses) ret;
+                resp.broadcastResponse();
+            }
+        } else {
+            throw new RuntimeException("Unknown RPC type");
+        }
+    }
+
     @Override
     public void receiveTuple(Serializable tuple) {
+        if (nonEmpty() && nodeClass.isBatchedProcess()) {
+            ArrayList<Serializable> tuples = new ArrayList<>(1);
+            tuples.add(tuple);
+            processBatch(tuples);
+            return;
+        }
         try {
             if (nonEmpty()) {
-                Object[] args = (Object[]) tuple;
-                nodeClass.getProcessMethod().invoke(node, args);
-                checkNewFutures();
+                if (tuple instanceof ColumnarBatch) {
+                    // Hand the records of the batch over one by one, stopping at a record that blocks the node.
+                    ColumnarBatch batch = (ColumnarBatch) tuple;
+                    for (int i = 0; i < batch.size(); i++) {
+                        processTuple(new Object[]{batch.row(i)});
+                        if (isBlocked() && i + 1 < batch.size()) {
+                            deferRows(batch, i + 1);
+                            break;
+                        }
+                    }
+                } else
+                    processTuple((Object[]) tuple);
+                completeStep();
             }
         } catch (InvocationTargetException | IllegalAccessException | IllegalArgumentException e) {
             e.printStackTrace();
@@ -297,15 +771,118 @@ public class GenericWrapper implements Node {
         }
     }
 
+    /**
+     * Keeps the records of a batch from the given one on, to be processed once the wrapped node is unblocked.
+     */
+    protected void deferRows(ColumnarBatch batch, int from) {
+        for (int i = from; i < batch.size(); i++)
+            deferredRows.add(new Object[]{batch.row(i)});
+    }
+
+    /**
+     * Processes the deferred records of a batch, until the wrapped node blocks again.
+     */
+    private void processDeferredRows() throws InvocationTargetException, IllegalAccessException {
+        while (!isBlocked() && !deferredRows.isEmpty())
+            processTuple(deferredRows.poll());
+    }
+
+    private void processTuple(Object[] args) throws InvocationTargetException, IllegalAccessException {
+        nodeClass.getProcessMethod().invoke(node, args);
+        stateVersion++;
+        processedTuples++;
+        checkNewFutures();
+        if (queryServer != null) {
+            queryServer.tupleProcessed();
+            flushQueryAnswers();
+        }
+    }
+
+    /**
+     * Processes a run of tuples. If the process method of the wrapped node is batched, the run is handed over in a
+     * single call, and the synchronous calls it makes form a single round. Otherwise the tuples are processed one by one.
+     *
+     * @param tuples The tuples of the data stream, in order.
+     */
+    public void receiveTuples(List<? extends Serializable> tuples) {
+        if (isEmpty() || tuples.isEmpty())
+            return;
+        if (!nodeClass.isBatchedProcess()) {
+            for (Serializable tuple : tuples)
+                receiveTuple(tuple);
+            return;
+        }
+        processBatch(tuples);
+    }
+
+    /**
+     * Hands a run of tuples over to the batched process method of the wrapped node. A method taking a ColumnarBatch is
+     * invoked once per batch of the run, and a method taking a List is invoked once, with the records of the columnar
+     * batches expanded into row views.
+     */
+    private void processBatch(List<? extends Serializable> tuples) {
+        try {
+            int records = 0;
+            if (nodeClass.isColumnarProcess()) {
+                for (Serializable tuple : tuples) {
+                    NodeClass.check(tuple instanceof ColumnarBatch,
+                            "The columnar process method of %s received a tuple that is not a ColumnarBatch",
+                            nodeClass.getWrappedClass());
+                    nodeClass.getProcessMethod().invoke(node, tuple);
+                    records += ((ColumnarBatch) tuple).size();
+                }
+            } else {
+                ArrayList<Object> batch = new ArrayList<>(tuples.size());
+                for (Serializable tuple : tuples) {
+                    if (tuple instanceof ColumnarBatch) {
+                        ColumnarBatch columnar = (ColumnarBatch) tuple;
+                        for (int i = 0; i < columnar.size(); i++)
+                            batch.add(columnar.row(i));
+                    } else {
+                        Object[] args = (Object[]) tuple;
+                        batch.add(args.length == 1 ? args[0] : args);
+                    }
+                }
+                nodeClass.getProcessMethod().invoke(node, batch);
+                records = batch.size();
+            }
+            stateVersion += records;
+            processedTuples += records;
+            checkNewFutures();
+            if (queryServer != null) {
+                queryServer.tuplesProcessed(records);
+                flushQueryAnswers();
+            }
+            completeStep();
+        } catch (InvocationTargetException | IllegalAccessException | IllegalArgumentException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed wrapper.receiveTuples", e);
+        }
+    }
+
     @Override
     public void merge(Mergeable[] nodes) {
         assert nodes instanceof GenericWrapper[];
         try {
             if (nonEmpty()) {
-                ArrayList<Object> mergeableNodes = new ArrayList<>();
-                for (Mergeable node : nodes) mergeableNodes.add(((GenericWrapper) node).getNode());
-                nodeClass.getMergeMethod().invoke(this.node, mergeableNodes.toArray());
-                if (syncFutures > 0) block();
+                Method mergeMethod = nodeClass.getMergeMethod();
+                Class<?> parameter = mergeMethod.getParameterTypes()[0];
+                if (parameter.isArray()) {
+                    // Hand the instances over as a single array of the type the merge method takes.
+                    Object mergeableNodes = Array.newInstance(parameter.getComponentType(), nodes.length);
+                    for (int i = 0; i < nodes.length; i++)
+                        Array.set(mergeableNodes, i, ((GenericWrapper) nodes[i]).getNode());
+                    mergeMethod.invoke(this.node, mergeableNodes);
+                } else {
+                    ArrayList<Object> mergeableNodes = new ArrayList<>();
+                    for (Mergeable node : nodes) mergeableNodes.add(((GenericWrapper) node).getNode());
+                    mergeMethod.invoke(this.node, mergeableNodes.toArray());
+                }
+                advanceStateVersion();
+                blockIfStale();
+                if (queryServer != null)
+                    queryServer.publish();
+                completeStep();
             }
         } catch (InvocationTargetException | IllegalAccessException e) {
             throw new RuntimeException("Failed wrapper.merge", e);
@@ -336,9 +913,138 @@ public class GenericWrapper implements Node {
         proxyMap.clear();
         futures.clear();
         syncFutures = 0L;
+        clock = 0L;
+        outstandingRounds.clear();
+        holds = 0;
+        deferredRows.clear();
+        payloadEncoder.clear();
+        payloadDecoder.clear();
+        responseCache.clear();
+        responseCoalescer.clear();
+        pulledValues.clear();
+        pullLog.clear();
+        combinedCalls.clear();
+        chunkAssembler.clear();
+        currentChunk = null;
+        stepDepth = 0;
         Injections();
     }
 
+    /**
+     * Answers the queries of the wrapped node from immutable snapshots of its model on separate threads, instead of
+     * invoking the query method on the processing thread. The query method of the wrapped node must take the snapshot
+     * produced by its @SnapshotOp method as a fourth argument, and it must only read from it.
+     *
+     * @param threads         The number of threads answering queries.
+     * @param publishInterval The number of processed tuples after which a new snapshot is published. Snapshots are also
+     *                        published at every merge and synchronization point. Zero disables the cadence.
+     */
+    public GenericWrapper enableSnapshotServing(int threads, long publishInterval) {
+        disableSnapshotServing();
+        queryServer = new SnapshotQueryServer(this, threads, publishInterval);
+        return this;
+    }
+
+    /**
+     * Stops serving queries from snapshots. Subsequent queries are answered by the processing thread.
+     */
+    public void disableSnapshotServing() {
+        if (queryServer != null) {
+            queryServer.shutdown();
+            queryServer = null;
+        }
+    }
+
+    /**
+     * Sends the answers produced by the query serving threads to the querier. The wrapper flushes the answers after
+     * every tuple, message and query it receives, and on its processing executor when one is set, so hosts without a
+     * processing executor only need to call this when the node may stay idle.
+     */
+    public void flushQueryAnswers() {
+        if (queryServer != null)
+            queryServer.flush();
+    }
+
+    public SnapshotQueryServer getQueryServer() {
+        return queryServer;
+    }
+
+    /**
+     * Sets the executor running tasks on the processing thread of the node, through which the query serving threads
+     * have their answers flushed while the node is idle.
+     */
+    public GenericWrapper setProcessingExecutor(Executor processingExecutor) {
+        this.processingExecutor = processingExecutor;
+        return this;
+    }
+
+    public Executor getProcessingExecutor() {
+        return processingExecutor;
+    }
+
+    /**
+     * Sets the number of virtual positions of every disjoint node on the routing ring. More positions spread the keys
+     * more evenly across the disjoint nodes, at the cost of a larger ring.
+     */
+    public GenericWrapper setRoutingVirtualNodes(int routingVirtualNodes) {
+        this.routingVirtualNodes = routingVirtualNodes;
+        if (keyRouter != null)
+            keyRouter.setVirtualNodes(routingVirtualNodes);
+        return this;
+    }
+
+    /**
+     * Samples the keys of the remote calls received by the wrapped node, in order to detect the hot keys that should be
+     * migrated to other nodes.
+     *
+     * @param capacity       The maximum number of counted keys.
+     * @param sampleInterval The average number of received keys per sampled key.
+     * @param window         The number of samples after which the counts are halved. Zero disables the decay.
+     */
+    public GenericWrapper enableHotKeyTracking(int capacity, int sampleInterval, long window) {
+        keyRouter.enableHotKeyTracking(capacity, sampleInterval, window);
+        return this;
+    }
+
+    public ConsistentHashRing getRoutingRing() {
+        return keyRouter.getRoutingTable().getRing();
+    }
+
+    public KeyRouter getKeyRouter() {
+        return keyRouter;
+    }
+
+    public Object getRoutingProxy() {
+        return routingProxy;
+    }
+
+    /**
+     * Sets the number of rounds the wrapped node may run ahead while synchronous responses are outstanding (stale
+     * synchronous parallel mode). The node blocks only when it would exceed the bound. Zero, the default, makes the node
+     * wait for every round to finish before processing more data.
+     */
+    public GenericWrapper setStaleness(int staleness) {
+        NodeClass.check(staleness >= 0, "The staleness bound cannot be negative.");
+        this.staleness = staleness;
+        if (!outstandingRounds.isEmpty()) {
+            blockIfStale();
+            unblockIfCaughtUp();
+        }
+        return this;
+    }
+
+    public int getStaleness() {
+        return staleness;
+    }
+
+    public long getClock() {
+        return clock;
+    }
+
+    public int getUnfinishedRounds() {
+        return outstandingRounds.size();
+    }
+
     public boolean isEmpty() {
         return node == null;
     }
@@ -348,23 +1054,40 @@ public class GenericWrapper implements Node {
     }
 
     public boolean isBlocked() {
-        return !processData;
+        return !processData || holds > 0;
     }
 
     protected void block() {
-        if (!isBlocked())
+        if (processData)
             processData = false;
         else
             throw new RuntimeException("Node is already blocked.");
     }
 
     protected void unblock() {
-        if (isBlocked())
+        if (!processData)
             processData = true;
         else
             throw new RuntimeException("Node is already unblocked.");
     }
 
+    /**
+     * Holds the data stream of the wrapped node until a prefetched value arrives.
+     */
+    protected void hold() {
+        holds += 1;
+    }
+
+    /**
+     * Releases a hold of a prefetch on the data stream of the wrapped node.
+     */
+    protected void release() {
+        if (holds > 0)
+            holds -= 1;
+        else
+            throw new RuntimeException("The data stream of the node is not held.");
+    }
+
     public NodeInstance getNode() {
         return node;
     }
@@ -398,6 +1121,60 @@ public class GenericWrapper implements Node {
         return nodeId;
     }
 
+    public PayloadEncoder getPayloadEncoder() {
+        return payloadEncoder;
+    }
+
+    public PayloadDecoder getPayloadDecoder() {
+        return payloadDecoder;
+    }
+
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    public PulledValues getPulledValues() {
+        return pulledValues;
+    }
+
+    public PullLog getPullLog() {
+        return pullLog;
+    }
+
+    public CombinedCalls getCombinedCalls() {
+        return combinedCalls;
+    }
+
+    public ResponseCoalescer getResponseCoalescer() {
+        return responseCoalescer;
+    }
+
+    /**
+     * Records a change of the state of the wrapped node, so that the values computed at its previous state version are
+     * not reused: the responses of its @Cached operations cached by the callers, the responses kept by its
+     * {@link ResponseCoalescer} and the bases logged by its {@link PullLog}. It is called by every entry point that may
+     * change the state of the node, and must be called from the processing thread.
+     */
+    public void advanceStateVersion() {
+        stateVersion++;
+    }
+
+    public long getStateVersion() {
+        return stateVersion;
+    }
+
+    /**
+     * Returns the number of received calls dropped, as their delta encoded arguments could not be reconstructed. The
+     * callers send them again in full after a {@link DeltaResync}.
+     */
+    public long getNumberOfDroppedCalls() {
+        return droppedCalls;
+    }
+
+    public long getProcessedTuples() {
+        return processedTuples;
+    }
+
     public void setNodeId(NodeId nodeId) {
         this.nodeId = nodeId;
     }
@@ -434,13 +1211,183 @@ public class GenericWrapper implements Node {
             futureCounter++;
     }
 
+    // ============================================= Combined calls ===================================================
+
+    /**
+     * Folds a call of a @Combiner operation into the pending call of the operation to the same destination. If the
+     * calls cannot be folded, the pending calls to the destination are sent first.
+     */
+    public void combineCall(NodeId destination, RemoteCallIdentifier rpc, Method method, Object[] args) {
+        if (!combinedCalls.add(destination, rpc, method, args)) {
+            flushCombinedCalls(destination);
+            combinedCalls.add(destination, rpc, method, args);
+        }
+    }
+
+    /**
+     * Sends all the pending combined calls of the wrapped node.
+     */
+    public void flushCombinedCalls() {
+        if (!combinedCalls.isEmpty())
+            for (CombinedCalls.PendingCall call : combinedCalls.drain())
+                sendCombined(call);
+    }
+
+    /**
+     * Sends the pending combined calls of the wrapped node to a destination, so that they precede any other message the
+     * node sends to it.
+     */
+    public void flushCombinedCalls(NodeId destination) {
+        if (!combinedCalls.isEmpty() && destination != null)
+            for (CombinedCalls.PendingCall call : combinedCalls.drain(destination.getNodeId()))
+                sendCombined(call);
+    }
+
+    private void sendCombined(CombinedCalls.PendingCall call) {
+        Object[] payload = payloadEncoder.encode(call.getMethod(),
+                call.getRpc().getOperation(),
+                call.getDestination(),
+                false,
+                call.getArgs());
+        network.send(nodeId, call.getDestination(), call.getRpc(), payload);
+    }
+
+    // ================================================ Relaying ======================================================
+
+    /**
+     * Sends the one-way call being served by the wrapped node to another node serving the same remote operation. The
+     * {@link LazyValue} arguments of the call are sent as they were received, without decoding or encoding them again.
+     */
+    public void forward(NodeId destination) {
+        NodeClass.check(currentOperation != null && currentChunk == null,
+                "Only a one-way remote operation being served by %s can be forwarded", nodeId);
+        relay(destination, currentCaller, currentRPC, currentOperation, currentArgs);
+    }
+
+    /**
+     * Relays a call received by the wrapped node to another node serving the same remote operation, e.g. the node of
+     * its side owning the routing key of the call. The response of a two-way call is relayed back to the caller, under
+     * the number of its call. A relayed versioned pull asks for the full value, as the destination does not hold the
+     * base of the caller.
+     *
+     * @param destination The node serving the relayed call.
+     * @param caller      The node that made the call.
+     * @param rpc         The identifier of the call, as it was received.
+     * @param m           The remote method of the call.
+     * @param args        The decoded arguments of the call.
+     */
+    public void relay(NodeId destination, NodeId caller, RemoteCallIdentifier rpc, Method m, Object[] args) {
+        flushCombinedCalls(destination);
+        VersionedPull pull = m.getAnnotation(VersionedPull.class);
+        Object[] callArgs = (pull != null) ? Arrays.copyOf(args, args.length - 1) : args;
+        Object[] payload = payloadEncoder.encode(m, rpc.getOperation(), destination, false, callArgs);
+        if (pull != null) {
+            payload = Arrays.copyOf(payload, payload.length + 1);
+            payload[payload.length - 1] = -1L;
+        }
+        if (rpc.getCallType().equals(CallType.TWO_WAY)) {
+            RemoteCallIdentifier response = new RemoteCallIdentifier(CallType.RESPONSE, null, rpc.getCallNumber());
+            FutureResponse<Serializable> relayed = new FutureResponse<>();
+            relayed.to(value -> network.send(nodeId, caller, response, value));
+            Map<Integer, FutureResponse<Serializable>> future = new HashMap<>();
+            future.put(destination.getNodeId(), relayed);
+            futures.put(futureCounter, future);
+            network.send(nodeId,
+                    destination,
+                    new RemoteCallIdentifier(CallType.TWO_WAY, rpc.getOperation(), futureCounter),
+                    payload);
+            incrementFutureCounter();
+        } else {
+            network.send(nodeId,
+                    destination,
+                    new RemoteCallIdentifier(CallType.ONE_WAY, rpc.getOperation(), rpc.getCallNumber()),
+                    payload);
+        }
+    }
+
+    // ============================================ Chunked transfers =================================================
+
+    /**
+     * Sends a call of a @Chunked operation to the given destinations, splitting its payload into chunks if it exceeds
+     * the chunk size of the operation. The payload is encoded once, and all the destinations get the same chunks.
+     */
+    public void sendChunked(Iterable<NodeId> destinations, RemoteCallIdentifier rpc, Chunked chunked, Object[] payload) {
+        ByteBuffer bytes = (chunked.streamed())
+                ? ((ByteBufferValue) payload[0]).getBuffer()
+                : ByteBuffer.wrap(MessageCodec.encodePayload(payload));
+        if (!chunked.streamed() && bytes.remaining() <= chunked.chunkSize()) {
+            network.broadcastEncoded(nodeId, destinations, rpc, EncodedPayload.wrap(bytes.array()));
+            return;
+        }
+        RemoteCallIdentifier chunkRpc = new RemoteCallIdentifier(CallType.CHUNK, rpc.getOperation(), rpc.getCallNumber());
+        List<PayloadChunk> chunks = PayloadChunk.split(transferCounter++, rpc, chunked.streamed(), bytes,
+                chunked.chunkSize());
+        for (NodeId destination : destinations)
+            for (PayloadChunk chunk : chunks)
+                network.send(nodeId, destination, chunkRpc, chunk);
+    }
+
+    /**
+     * Reassembles the call of a chunked transfer once all its chunks have arrived, or hands over the chunks of a streamed
+     * transfer to the wrapped node in order.
+     */
+    private void receiveChunk(NodeId source, PayloadChunk chunk) {
+        if (!chunk.isStreamed()) {
+            byte[] payload = chunkAssembler.assemble(source, chunk);
+            if (payload != null)
+                receiveMsg(source, chunk.getRpc(), MessageCodec.decodePayload(payload));
+            return;
+        }
+        for (PayloadChunk next : chunkAssembler.sequence(source, chunk)) {
+            currentChunk = next;
+            try {
+                receiveMsg(source, next.getRpc(), new Object[]{next.getData()});
+            } finally {
+                currentChunk = null;
+            }
+        }
+    }
+
+    public ChunkAssembler getChunkAssembler() {
+        return chunkAssembler;
+    }
+
+    public PayloadChunk getCurrentChunk() {
+        return currentChunk;
+    }
+
+    /**
+     * Starts a processing step spanning several inputs, e.g. a run of buffered tuples. The calls combined during the
+     * step are flushed when it ends.
+     */
+    protected void beginStep() {
+        stepDepth += 1;
+    }
+
+    protected void endStep() {
+        stepDepth -= 1;
+        completeStep();
+    }
+
+    private void completeStep() {
+        if (stepDepth == 0)
+            flushCombinedCalls();
+    }
+
     private void checkNewFutures() {
         if (!newFutures.isEmpty()) {
+            long roundFutures = 0L;
             for (FutureResponse<Serializable> newFuture : newFutures)
-                if (newFuture.isSync())
-                    syncFutures += 1;
-            if (syncFutures > 0 && !isBlocked())
-                block();
+                if (newFuture.isSync()) {
+                    newFuture.setRound(clock);
+                    roundFutures += 1;
+                }
+            if (roundFutures > 0) {
+                syncFutures += roundFutures;
+                outstandingRounds.put(clock, roundFutures);
+                clock += 1;
+            }
+            blockIfStale();
             newFutures.clear();
         }
     }
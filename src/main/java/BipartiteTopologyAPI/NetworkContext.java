@@ -50,6 +50,11 @@ public final class NetworkContext<ProxyIfc, QueryIfc> implements Serializable {
      */
     public final ProxyIfc broadcastProxy;
 
+    /**
+     * A proxy that routes every call to the disjoint node owning its routing key.
+     */
+    public final ProxyIfc routingProxy;
+
     /**
      * A map of promises that this node has made to the disjoint nodes of the Bipartite Graph.
      */
@@ -67,6 +72,7 @@ public final class NetworkContext<ProxyIfc, QueryIfc> implements Serializable {
                            QueryIfc querier,
                            Map<Integer, ProxyIfc> proxies,
                            ProxyIfc broadcastProxy,
+                           ProxyIfc routingProxy,
                            HashMap<Integer, HashMap<Long, PromiseResponse>> promises,
                            HashMap<Integer, HashMap<Long, PromiseResponse>> broadcastPromises) {
         this.networkId = networkId;
@@ -76,6 +82,7 @@ public final class NetworkContext<ProxyIfc, QueryIfc> implements Serializable {
         this.querier = querier;
         this.proxies = proxies;
         this.broadcastProxy = broadcastProxy;
+        this.routingProxy = routingProxy;
         this.promises = promises;
         this.broadcastPromises = broadcastPromises;
     }
@@ -87,7 +94,7 @@ public final class NetworkContext<ProxyIfc, QueryIfc> implements Serializable {
                                                                       QuIfc querier,
                                                                       Map<Integer, PrIfc> proxies,
                                                                       PrIfc broadcastProxy) {
-        return new NetworkContext<>(networkId,
+        return forNode(networkId,
                 numberOfHubs,
                 numberOfSpokes,
                 nodeId,
@@ -107,6 +114,28 @@ public final class NetworkContext<ProxyIfc, QueryIfc> implements Serializable {
                                                                       PrIfc broadcastProxy,
                                                                       HashMap<Integer, HashMap<Long, PromiseResponse>> promises,
                                                                       HashMap<Integer, HashMap<Long, PromiseResponse>> broadcastPromises) {
+        return forNode(networkId,
+                numberOfHubs,
+                numberOfSpokes,
+                nodeId,
+                querier,
+                proxies,
+                broadcastProxy,
+                null,
+                promises,
+                broadcastPromises);
+    }
+
+    static public <PrIfc, QuIfc> NetworkContext<PrIfc, QuIfc> forNode(int networkId,
+                                                                      int numberOfHubs,
+                                                                      int numberOfSpokes,
+                                                                      int nodeId,
+                                                                      QuIfc querier,
+                                                                      Map<Integer, PrIfc> proxies,
+                                                                      PrIfc broadcastProxy,
+                                                                      PrIfc routingProxy,
+                                                                      HashMap<Integer, HashMap<Long, PromiseResponse>> promises,
+                                                                      HashMap<Integer, HashMap<Long, PromiseResponse>> broadcastPromises) {
         return new NetworkContext<>(networkId,
                 numberOfHubs,
                 numberOfSpokes,
@@ -114,6 +143,7 @@ public final class NetworkContext<ProxyIfc, QueryIfc> implements Serializable {
                 querier,
                 proxies,
                 broadcastProxy,
+                routingProxy,
                 promises,
                 broadcastPromises);
     }
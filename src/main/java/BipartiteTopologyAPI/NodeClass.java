@@ -2,12 +2,14 @@ package BipartiteTopologyAPI;
 
 import com.fasterxml.uuid.Generators;
 import BipartiteTopologyAPI.annotations.*;
+import BipartiteTopologyAPI.data.ColumnarBatch;
 import BipartiteTopologyAPI.futures.Response;
 import org.apache.commons.lang3.ClassUtils;
 
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
@@ -23,6 +25,7 @@ public class NodeClass implements Serializable {
     private Method processMethod; // The method used to process data.
     private Method mergeMethod; // The method used to merge two wrappedClasses.
     private Method queryMethod; // The method used to answer a query.
+    private Method snapshotMethod; // The method used to take an immutable snapshot of the node (optional).
     private Class<?> proxyClass; // the proxy class for this node.
 
     public NodeClass(Class wrappedClass) {
@@ -33,6 +36,9 @@ public class NodeClass implements Serializable {
         processMethod = checkAuxiliaryMethod(ProcessOp.class);
         mergeMethod = checkAuxiliaryMethod(MergeOp.class);
         queryMethod = checkAuxiliaryMethod(QueryOp.class);
+        snapshotMethod = findAuxiliaryMethod(SnapshotOp.class);
+        checkProcessMethod();
+        checkQueryMethod();
         createProxyClass();
     }
 
@@ -85,11 +91,18 @@ public class NodeClass implements Serializable {
         return getInterfaces(c).contains(Serializable.class);
     }
 
+    /**
+     * Returns true if the given type can be a parameter of a remote method, i.e. it is Serializable or a ByteBuffer.
+     */
+    static public boolean isParameterType(Class c) {
+        return isSerializable(c) || ByteBuffer.class.isAssignableFrom(c);
+    }
+
     /**
      * Check a remote method of proxyInterface:
      * <ul>
      *      <li>Is annotated with @RemoteOp</li>
-     *      <li>Every non-@Response parameter must be Serializable</li>
+     *      <li>Every non-@Response parameter must be Serializable or a java.nio.ByteBuffer</li>
      *      <li>If the first parameter is annotated with @Response then it must be of type java.util.function.Consumer</li>
      *      <li>Return type must be void</li>
      * <ul/>
@@ -106,14 +119,176 @@ public class NodeClass implements Serializable {
         for (Parameter param : params) {
             Class pcls = param.getType();
 
-            check(isSerializable(pcls),
-                    "Parameter type %s is not Serializable request method %s of remote proxy %s",
+            check(isParameterType(pcls),
+                    "Parameter type %s is neither Serializable nor a ByteBuffer request method %s of remote proxy %s",
                     pcls, m, proxiedInterface);
         }
 
         check(m.getReturnType() == void.class || m.getReturnType() == Response.class,
                 "Return type is not void request method %s of remote proxy %s",
                 m, proxiedInterface);
+
+        checkEncodings(m, proxiedInterface);
+        checkRouting(m, proxiedInterface);
+        checkCaching(m, proxiedInterface);
+        checkCombining(m, proxiedInterface);
+        checkChunking(m, proxiedInterface);
+    }
+
+    /**
+     * Check the payload encodings declared by a remote method:
+     * <ul>
+     *     <li>A @DeltaEncoded or @Compressed method has at least one double[] or float[] parameter</li>
+     *     <li>The maximum density of a delta and the top-k ratio are fractions</li>
+     *     <li>A method is not both delta encoded and compressed</li>
+     * <ul/>
+     *
+     * @param m   The method to be checked.
+     * @param ifc The remote proxy interface declaring the method.
+     */
+    static public void checkEncodings(Method m, Class<?> ifc) {
+        DeltaEncoded delta = m.getDeclaredAnnotation(DeltaEncoded.class);
+        if (delta != null) {
+            check(Arrays.stream(m.getParameterTypes()).anyMatch(p -> p == double[].class || p == float[].class),
+                    "Delta encoded method %s of remote proxy %s has no double[] or float[] parameter", m, ifc);
+            check(delta.maxDensity() >= 0 && delta.maxDensity() <= 1,
+                    "The maximum delta density of method %s of remote proxy %s is not a fraction", m, ifc);
+        }
+        Compressed compressed = m.getDeclaredAnnotation(Compressed.class);
+        if (compressed != null) {
+            check(delta == null, "Method %s of remote proxy %s cannot be both delta encoded and compressed", m, ifc);
+            check(Arrays.stream(m.getParameterTypes()).anyMatch(p -> p == double[].class || p == float[].class),
+                    "Compressed method %s of remote proxy %s has no double[] or float[] parameter", m, ifc);
+            check(compressed.ratio() > 0 && compressed.ratio() <= 1,
+                    "The top-k ratio of method %s of remote proxy %s is not a fraction", m, ifc);
+        }
+    }
+
+    /**
+     * Check the routing declared by a remote method:
+     * <ul>
+     *     <li>At most one parameter is annotated with @RoutingKey</li>
+     *     <li>@KeyAligned parameters are arrays and accompany an array @RoutingKey parameter</li>
+     * <ul/>
+     *
+     * @param m   The method to be checked.
+     * @param ifc The remote proxy interface declaring the method.
+     */
+    static public void checkRouting(Method m, Class<?> ifc) {
+        Parameter[] params = m.getParameters();
+        int keys = 0;
+        boolean multiKey = false;
+        for (Parameter param : params)
+            if (param.isAnnotationPresent(RoutingKey.class)) {
+                keys++;
+                multiKey = param.getType().isArray();
+            }
+        check(keys <= 1, "Method %s of remote proxy %s has more than one routing key", m, ifc);
+        for (Parameter param : params)
+            if (param.isAnnotationPresent(KeyAligned.class)) {
+                check(multiKey,
+                        "Method %s of remote proxy %s has key aligned parameters but no array routing key", m, ifc);
+                check(param.getType().isArray(),
+                        "Key aligned parameter %s of method %s of remote proxy %s is not an array", param, m, ifc);
+            }
+    }
+
+    /**
+     * Check the combiner declared by a remote method:
+     * <ul>
+     *     <li>A @Combiner method is a one-way method</li>
+     *     <li>Its combiner can be instantiated with a public no-argument constructor</li>
+     * <ul/>
+     *
+     * @param m   The method to be checked.
+     * @param ifc The remote proxy interface declaring the method.
+     */
+    static public void checkCombining(Method m, Class<?> ifc) {
+        Combiner combiner = m.getDeclaredAnnotation(Combiner.class);
+        if (combiner == null)
+            return;
+        check(m.getReturnType() == void.class,
+                "Method %s of remote proxy %s has a combiner but returns a Response", m, ifc);
+        try {
+            combiner.value().getConstructor();
+        } catch (NoSuchMethodException e) {
+            check(false, "The combiner %s of method %s of remote proxy %s has no public no-argument constructor",
+                    combiner.value(), m, ifc);
+        }
+    }
+
+    /**
+     * Check the chunking declared by a remote method:
+     * <ul>
+     *     <li>The chunk size of a @Chunked method is positive</li>
+     *     <li>A @Chunked method is not combined, as the combined calls are sent whole</li>
+     *     <li>A streamed method is a one-way method taking a single ByteBuffer</li>
+     * <ul/>
+     *
+     * @param m   The method to be checked.
+     * @param ifc The remote proxy interface declaring the method.
+     */
+    static public void checkChunking(Method m, Class<?> ifc) {
+        Chunked chunked = m.getDeclaredAnnotation(Chunked.class);
+        if (chunked == null)
+            return;
+        check(chunked.chunkSize() > 0, "The chunk size of method %s of remote proxy %s is not positive", m, ifc);
+        check(m.getDeclaredAnnotation(Combiner.class) == null,
+                "Method %s of remote proxy %s cannot be both chunked and combined", m, ifc);
+        if (chunked.streamed()) {
+            check(m.getReturnType() == void.class,
+                    "Streamed method %s of remote proxy %s returns a Response", m, ifc);
+            check(m.getParameterCount() == 1 && ByteBuffer.class.isAssignableFrom(m.getParameterTypes()[0]),
+                    "Streamed method %s of remote proxy %s does not take a single ByteBuffer", m, ifc);
+        }
+    }
+
+    /**
+     * Check the caching policy declared by a remote method:
+     * <ul>
+     *     <li>A @Cached method returns a Response</li>
+     *     <li>The version lag of its cached responses is not negative, and their maximum age is positive</li>
+     *     <li>It caches at least one response</li>
+     *     <li>A @VersionedPull method returns a double[] or float[] Response, and it is not @Cached</li>
+     *     <li>A @Coalesced method returns a Response and keeps at least one response</li>
+     * <ul/>
+     *
+     * @param m   The method to be checked.
+     * @param ifc The remote proxy interface declaring the method.
+     */
+    static public void checkCaching(Method m, Class<?> ifc) {
+        Cached cached = m.getDeclaredAnnotation(Cached.class);
+        if (cached != null) {
+            check(m.getReturnType() == Response.class,
+                    "Cached method %s of remote proxy %s does not return a Response", m, ifc);
+            check(cached.maxVersionLag() >= 0,
+                    "The version lag of cached method %s of remote proxy %s cannot be negative", m, ifc);
+            check(cached.maxAgeMillis() > 0,
+                    "The maximum age of cached method %s of remote proxy %s must be positive", m, ifc);
+            check(cached.capacity() > 0,
+                    "The capacity of cached method %s of remote proxy %s must be positive", m, ifc);
+        }
+        VersionedPull pull = m.getDeclaredAnnotation(VersionedPull.class);
+        if (pull != null) {
+            check(cached == null, "Method %s of remote proxy %s cannot be both cached and pulled by version", m, ifc);
+            Type returned = m.getGenericReturnType();
+            check(returned instanceof ParameterizedType &&
+                            (((ParameterizedType) returned).getActualTypeArguments()[0] == double[].class ||
+                                    ((ParameterizedType) returned).getActualTypeArguments()[0] == float[].class),
+                    "Method %s of remote proxy %s pulled by version does not return a double[] or float[] Response",
+                    m, ifc);
+            check(pull.logSize() > 0 && pull.capacity() > 0,
+                    "The log size and the capacity of method %s of remote proxy %s must be positive", m, ifc);
+            check(pull.maxDensity() >= 0 && pull.maxDensity() <= 1,
+                    "The maximum delta density of method %s of remote proxy %s is not a fraction", m, ifc);
+        }
+        Coalesced coalesced = m.getDeclaredAnnotation(Coalesced.class);
+        if (coalesced != null) {
+            check(m.getReturnType() == Response.class,
+                    "Coalesced method %s of remote proxy %s does not return a Response", m, ifc);
+            check(coalesced.capacity() > 0,
+                    "The capacity of coalesced method %s of remote proxy %s must be positive", m, ifc);
+        }
     }
 
     /**
@@ -155,6 +330,17 @@ public class NodeClass implements Serializable {
     }
 
     public Method checkAuxiliaryMethod(Class<? extends Annotation> C) {
+        Method process_method = findAuxiliaryMethod(C);
+        check(process_method != null, "No %s method in wrapped class %s", C.toString(), wrappedClass);
+        return process_method;
+    }
+
+    /**
+     * Looks up an optional auxiliary method of the wrapped class.
+     *
+     * @return The method annotated with C, or null if the wrapped class does not declare one.
+     */
+    public Method findAuxiliaryMethod(Class<? extends Annotation> C) {
         Class cls = wrappedClass;
         ArrayList<Method> methods = new ArrayList<>(Arrays.asList(cls.getMethods()));
         Method process_method = null;
@@ -165,10 +351,71 @@ public class NodeClass implements Serializable {
                 process_method = meth;
             }
         }
-        check(process_method != null, "No %s method in wrapped class %s", C.toString(), wrappedClass);
         return process_method;
     }
 
+    /**
+     * Check the query method of the wrapped class:
+     * <ul>
+     *     <li>It takes the query id, the network id and the query, plus an optional snapshot argument</li>
+     *     <li>If it takes a snapshot argument, the wrapped class must declare a @SnapshotOp method</li>
+     *     <li>The @SnapshotOp method takes no arguments and returns a Serializable snapshot</li>
+     * <ul/>
+     */
+    public void checkQueryMethod() {
+        int params = queryMethod.getParameterCount();
+        check(params == 3 || params == 4,
+                "Query method %s of wrapped class %s must take 3 or 4 parameters", queryMethod, wrappedClass);
+        if (snapshotMethod != null) {
+            check(snapshotMethod.getParameterCount() == 0,
+                    "Snapshot method %s of wrapped class %s cannot take parameters", snapshotMethod, wrappedClass);
+            check(isSerializable(snapshotMethod.getReturnType()),
+                    "Snapshot method %s of wrapped class %s must return a Serializable snapshot",
+                    snapshotMethod, wrappedClass);
+        }
+        if (params == 4) {
+            check(snapshotMethod != null,
+                    "Query method %s of wrapped class %s takes a snapshot but there is no @SnapshotOp method",
+                    queryMethod, wrappedClass);
+            check(queryMethod.getParameterTypes()[3].isAssignableFrom(snapshotMethod.getReturnType()),
+                    "The snapshot parameter of query method %s does not accept the snapshots of %s",
+                    queryMethod, snapshotMethod);
+        }
+    }
+
+    /**
+     * Check that a batched process method takes either a single List of tuples or a single ColumnarBatch.
+     */
+    public void checkProcessMethod() {
+        if (isBatchedProcess())
+            check(processMethod.getParameterCount() == 1 &&
+                            (processMethod.getParameterTypes()[0].isAssignableFrom(ArrayList.class) ||
+                                    processMethod.getParameterTypes()[0] == ColumnarBatch.class),
+                    "Batched process method %s of wrapped class %s must take a single List of tuples or a " +
+                            "ColumnarBatch", processMethod, wrappedClass);
+    }
+
+    /**
+     * Returns true if the process method of the wrapped class processes whole columnar batches.
+     */
+    public boolean isColumnarProcess() {
+        return isBatchedProcess() && processMethod.getParameterTypes()[0] == ColumnarBatch.class;
+    }
+
+    /**
+     * Returns true if the process method of the wrapped class processes runs of tuples in one call.
+     */
+    public boolean isBatchedProcess() {
+        return processMethod.getAnnotation(ProcessOp.class).batched();
+    }
+
+    /**
+     * Returns true if the query method of the wrapped class answers queries from a model snapshot.
+     */
+    public boolean isSnapshotQuery() {
+        return queryMethod.getParameterCount() == 4;
+    }
+
     /**
      * Create a dynamic proxy class for the proxied interface.
      */
@@ -179,6 +426,16 @@ public class NodeClass implements Serializable {
                 proxiedInterface);
     }
 
+    /**
+     * Returns true if a remote method is declared read-only, so that its calls do not change the state of the called
+     * node.
+     */
+    static public boolean isReadOnly(Method m) {
+        return m.isAnnotationPresent(Cached.class) ||
+                m.isAnnotationPresent(Coalesced.class) ||
+                m.isAnnotationPresent(VersionedPull.class);
+    }
+
     static public void check(boolean cond, String format, Object... args) {
         if (!cond)
             throw new RuntimeException(String.format(format, args));
@@ -235,6 +492,10 @@ public class NodeClass implements Serializable {
         return queryMethod;
     }
 
+    public Method getSnapshotMethod() {
+        return snapshotMethod;
+    }
+
     public Class<?> getProxyClass() {
         return proxyClass;
     }
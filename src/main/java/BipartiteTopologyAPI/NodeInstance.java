@@ -1,13 +1,20 @@
 package BipartiteTopologyAPI;
 
 import BipartiteTopologyAPI.annotations.Inject;
+import BipartiteTopologyAPI.chunking.PayloadChunk;
+import BipartiteTopologyAPI.encoding.LazyValue;
 import BipartiteTopologyAPI.futures.BroadcastValueResponse;
 import BipartiteTopologyAPI.futures.BroadcastValuesResponses;
+import BipartiteTopologyAPI.futures.Prefetch;
 import BipartiteTopologyAPI.futures.PromiseResponse;
 import BipartiteTopologyAPI.futures.PromisedResponses;
+import BipartiteTopologyAPI.futures.Response;
 import BipartiteTopologyAPI.interfaces.Network;
 import BipartiteTopologyAPI.operations.CallType;
 import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.routing.HotKeySketch;
+import BipartiteTopologyAPI.routing.KeyMigratable;
+import BipartiteTopologyAPI.routing.KeyRange;
 import BipartiteTopologyAPI.sites.NodeId;
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -17,6 +24,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * An abstract class of a node in the Bipartite Network. This class provides immutable information of the Network to the
@@ -221,6 +229,18 @@ public abstract class NodeInstance<ProxyIfc, QueryIfc> {
         }
     }
 
+    /**
+     * Migrates a range of keys owned by this node, along with their state, to another node of the same side of the
+     * Bipartite Network. The node must implement {@link KeyMigratable}. The migration completes asynchronously, once
+     * all the disjoint nodes route the range to its new owner.
+     *
+     * @param range       The migrated range of keys.
+     * @param destination The id of the new owner of the range.
+     */
+    public void migrateKeys(KeyRange range, int destination) {
+        genericWrapper.getKeyRouter().migrate(range, destination);
+    }
+
     // ============================================ Public Getters =====================================================
 
     public int getNetworkID() {
@@ -247,6 +267,14 @@ public abstract class NodeInstance<ProxyIfc, QueryIfc> {
         return networkContext.broadcastProxy;
     }
 
+    public ProxyIfc getRoutingProxy() {
+        return networkContext.routingProxy;
+    }
+
+    public HotKeySketch getHotKeySketch() {
+        return genericWrapper.getKeyRouter().getHotKeySketch();
+    }
+
     public QueryIfc getQuerier() {
         return networkContext.querier;
     }
@@ -259,6 +287,38 @@ public abstract class NodeInstance<ProxyIfc, QueryIfc> {
         return genericWrapper.isBlocked();
     }
 
+    /**
+     * Relays the one-way call being served by this node to another node serving the same remote operation, e.g. a node
+     * of the same side. The {@link LazyValue} arguments of the call are relayed byte for byte.
+     */
+    public void forward(NodeId destination) {
+        genericWrapper.forward(destination);
+    }
+
+    /**
+     * Returns the chunk being consumed by a streamed @Chunked operation, giving its position in the stream, or null
+     * outside of a streamed operation.
+     */
+    public PayloadChunk getCurrentChunk() {
+        return genericWrapper.getCurrentChunk();
+    }
+
+    public long getClock() {
+        return genericWrapper.getClock();
+    }
+
+    /**
+     * Creates a double buffer of a value pulled from a single remote node, e.g.
+     * {@code prefetch(() -> getProxy(0).pull())}. The next value is pulled while the current one is used, and the data
+     * stream of the node is held only if {@link Prefetch#advance()} is called before the next value has arrived. The
+     * first pull is issued at once and the data stream is held until it is answered.
+     *
+     * @param pull Issues the remote call returning the value.
+     */
+    public <T extends Serializable> Prefetch<T> prefetch(Supplier<Response<T>> pull) {
+        return new Prefetch<>(pull, genericWrapper::hold, genericWrapper::release);
+    }
+
     public void blockStream() {
         genericWrapper.block();
     }
@@ -0,0 +1,65 @@
+package BipartiteTopologyAPI;
+
+import java.io.Serializable;
+
+/**
+ * The error flag sent to the querier in place of the answers of a query that failed while served from a snapshot by a
+ * {@link SnapshotQueryServer}, as the failure is not thrown to the host that posed the query. A failure travels in the
+ * same envelope as the answers: a call of the {@link #OPERATION} operation whose arguments are the id of the query,
+ * followed by the failure itself.
+ */
+public class QueryFailure implements Serializable {
+
+    /**
+     * The operation of the calls carrying the failures to the querier.
+     */
+    public static final String OPERATION = "queryFailure";
+
+    /**
+     * The id of the failed query.
+     */
+    private final long queryId;
+
+    /**
+     * The cause of the failure.
+     */
+    private final Throwable cause;
+
+    public QueryFailure(long queryId, Throwable cause) {
+        this.queryId = queryId;
+        this.cause = cause;
+    }
+
+    /**
+     * Returns the arguments of the call carrying the failure to the querier.
+     */
+    public Object[] toAnswer() {
+        return new Object[]{queryId, this};
+    }
+
+    /**
+     * Returns the failure carried by a message sent to the querier, or null if the message is an answer.
+     */
+    public static QueryFailure of(Serializable message) {
+        if (message instanceof Object[]) {
+            Object[] args = (Object[]) message;
+            if (args.length == 2 && args[1] instanceof QueryFailure)
+                return (QueryFailure) args[1];
+        }
+        return null;
+    }
+
+    public long getQueryId() {
+        return queryId;
+    }
+
+    public Throwable getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryFailure(" + queryId + ", " + cause + ")";
+    }
+
+}
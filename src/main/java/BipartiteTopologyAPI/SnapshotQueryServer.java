@@ -0,0 +1,229 @@
+package BipartiteTopologyAPI;
+
+import BipartiteTopologyAPI.operations.CallType;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A server that answers the queries of a wrapped node from immutable snapshots of its model, on threads other than the
+ * processing thread of the node. The wrapper publishes a new snapshot on a configurable cadence of processed tuples and
+ * at every merge and synchronization point. The answers that the serving threads send through the querier proxy are
+ * queued and flushed back to the network in batches by the processing thread, which is woken up through the processing
+ * executor of the wrapper when an answer is queued, so an idle node still answers its queries. A query that fails is
+ * answered with a {@link QueryFailure}, in the same envelope as the answers.
+ */
+public class SnapshotQueryServer {
+
+    /**
+     * Marks the threads of the query servers, so that proxies can tell if they are invoked outside the processing thread.
+     */
+    private static final ThreadLocal<Boolean> servingThread = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * The wrapper of the node whose queries are served.
+     */
+    private final GenericWrapper wrapper;
+
+    /**
+     * The threads answering the queries.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The number of processed tuples after which a new snapshot is published. Zero disables the cadence.
+     */
+    private final long publishInterval;
+
+    /**
+     * The latest published snapshot of the wrapped node.
+     */
+    private volatile Serializable snapshot;
+
+    /**
+     * The version of the latest published snapshot.
+     */
+    private volatile long snapshotVersion;
+
+    /**
+     * The number of tuples processed since the latest snapshot was published.
+     */
+    private long tuplesSincePublish;
+
+    /**
+     * The answers sent through the querier proxy by the serving threads, waiting to be flushed to the network.
+     */
+    private final ConcurrentLinkedQueue<Object[]> pendingAnswers;
+
+    /**
+     * This flag determines if a flush of the queued answers has been handed over to the processing thread.
+     */
+    private final AtomicBoolean flushScheduled;
+
+    public SnapshotQueryServer(GenericWrapper wrapper, int threads, long publishInterval) {
+        NodeClass.check(wrapper.getNodeClass().getSnapshotMethod() != null,
+                "Snapshot query serving requires a @SnapshotOp method in wrapped class %s",
+                wrapper.getNodeClass().getWrappedClass());
+        NodeClass.check(wrapper.getNodeClass().isSnapshotQuery(),
+                "Snapshot query serving requires a query method that takes a snapshot in wrapped class %s",
+                wrapper.getNodeClass().getWrappedClass());
+        NodeClass.check(threads > 0, "The number of query serving threads must be positive.");
+        NodeClass.check(publishInterval >= 0, "The snapshot publishing interval cannot be negative.");
+        this.wrapper = wrapper;
+        this.publishInterval = publishInterval;
+        this.pendingAnswers = new ConcurrentLinkedQueue<>();
+        this.flushScheduled = new AtomicBoolean(false);
+        this.snapshotVersion = 0;
+        this.tuplesSincePublish = 0;
+        AtomicInteger threadCounter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(() -> {
+                servingThread.set(true);
+                runnable.run();
+            }, "query-server-" + wrapper.getNodeId() + "-" + threadCounter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = Executors.newFixedThreadPool(threads, factory);
+        publish();
+    }
+
+    /**
+     * Returns true if the calling thread is a thread of a query server.
+     */
+    public static boolean isServingThread() {
+        return servingThread.get();
+    }
+
+    /**
+     * Takes and publishes a new snapshot of the wrapped node. This must be called from the processing thread.
+     */
+    public void publish() {
+        try {
+            Method m = wrapper.getNodeClass().getSnapshotMethod();
+            snapshot = (Serializable) m.invoke(wrapper.getNode());
+            snapshotVersion += 1;
+            tuplesSincePublish = 0;
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new RuntimeException("Failed to publish a snapshot of " + wrapper.getNodeId(), e);
+        }
+    }
+
+    /**
+     * Counts a processed tuple and publishes a new snapshot if the publishing cadence has been reached.
+     */
+    public void tupleProcessed() {
+        tuplesSincePublish += 1;
+        if (publishInterval > 0 && tuplesSincePublish >= publishInterval)
+            publish();
+    }
+
+    /**
+     * Counts a run of processed tuples and publishes a new snapshot if the publishing cadence has been reached.
+     */
+    public void tuplesProcessed(int tuples) {
+        tuplesSincePublish += tuples;
+        if (publishInterval > 0 && tuplesSincePublish >= publishInterval)
+            publish();
+    }
+
+    /**
+     * Hands a query over to the serving threads. The query is answered from the latest published snapshot. If the query
+     * fails, the querier is sent a {@link QueryFailure} holding its cause.
+     *
+     * @param queryId   The id of the query.
+     * @param networkId The id of the network of the queried node.
+     * @param query     The Serializable query itself.
+     */
+    public void submit(long queryId, int networkId, Serializable query) {
+        final Serializable currentSnapshot = snapshot;
+        final Method m = wrapper.getNodeClass().getQueryMethod();
+        final NodeInstance node = wrapper.getNode();
+        executor.execute(() -> {
+            try {
+                m.invoke(node, queryId, networkId, query, currentSnapshot);
+            } catch (InvocationTargetException e) {
+                enqueueFailure(queryId, e.getCause());
+            } catch (IllegalAccessException | RuntimeException e) {
+                enqueueFailure(queryId, e);
+            }
+        });
+    }
+
+    /**
+     * Queues an answer sent through the querier proxy by a serving thread.
+     */
+    public void enqueueAnswer(RemoteCallIdentifier rpc, Object[] args) {
+        pendingAnswers.add(new Object[]{rpc, args});
+        scheduleFlush();
+    }
+
+    private void enqueueFailure(long queryId, Throwable cause) {
+        RemoteCallIdentifier rpc = new RemoteCallIdentifier(CallType.ONE_WAY, QueryFailure.OPERATION, queryId);
+        pendingAnswers.add(new Object[]{rpc, new QueryFailure(queryId, cause).toAnswer()});
+        scheduleFlush();
+    }
+
+    /**
+     * Hands a flush over to the processing thread, unless one is already pending. Without a processing executor, the
+     * answers are flushed when the node receives its next input, or when its host calls
+     * {@link GenericWrapper#flushQueryAnswers()}.
+     */
+    private void scheduleFlush() {
+        Executor processingExecutor = wrapper.getProcessingExecutor();
+        if (processingExecutor != null && flushScheduled.compareAndSet(false, true))
+            processingExecutor.execute(this::flush);
+    }
+
+    /**
+     * Sends all the queued answers to the querier. This must be called from the processing thread.
+     */
+    public void flush() {
+        // Cleared first, so that an answer queued during the flush schedules a new one.
+        flushScheduled.set(false);
+        Object[] answer;
+        while ((answer = pendingAnswers.poll()) != null)
+            wrapper.getNetwork()
+                    .send(wrapper.getNodeId(), null, (RemoteCallIdentifier) answer[0], (Serializable) answer[1]);
+    }
+
+    /**
+     * Stops the serving threads, waiting for the queries in progress to be answered.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    public Serializable getSnapshot() {
+        return snapshot;
+    }
+
+    public long getSnapshotVersion() {
+        return snapshotVersion;
+    }
+
+    public long getPublishInterval() {
+        return publishInterval;
+    }
+
+    public int getPendingAnswers() {
+        return pendingAnswers.size();
+    }
+
+}
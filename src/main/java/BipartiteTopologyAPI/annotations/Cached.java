@@ -0,0 +1,37 @@
+package BipartiteTopologyAPI.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an idempotent, read-only two-way remote operation whose responses can be cached by the caller, keyed by the
+ * called node and the arguments of the call. The called node tags the responses with the version of its state, which it
+ * increments on every tuple and every call of an operation that is neither cached nor coalesced. A cached response is
+ * reused as long as no response of the called node has carried a version more than maxVersionLag versions newer, and
+ * it is not older than maxAgeMillis. The age bound is always enforced, as a caller that only reads learns of newer
+ * versions only through the responses of other operations. A call of the caller that may modify the state of the
+ * called node drops its cached responses.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cached {
+
+    /**
+     * The maximum number of state versions that a cached response can lag behind the latest version piggybacked by the
+     * called node.
+     */
+    long maxVersionLag() default 0;
+
+    /**
+     * The maximum age of a cached response in milliseconds. It must be positive.
+     */
+    long maxAgeMillis() default 100;
+
+    /**
+     * The maximum number of cached responses of the operation, evicted in least recently used order.
+     */
+    int capacity() default 1024;
+
+}
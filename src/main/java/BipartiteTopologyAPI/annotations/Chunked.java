@@ -0,0 +1,32 @@
+package BipartiteTopologyAPI.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a remote operation whose calls may carry very large payloads, e.g. the hand-off of a model during rescaling. A
+ * call whose encoded payload exceeds the chunk size is sent as a sequence of chunks, which the callee reassembles before
+ * invoking the operation. The NIO transport lets the other messages of the caller through between the chunks.
+ * <p>
+ * A streamed operation takes a single java.nio.ByteBuffer and returns void. Its calls are split on the bytes of the
+ * buffer, and the callee is invoked once per chunk, in order, with the bytes of the chunk, so that it can build its
+ * state incrementally instead of holding the whole payload. The position of the chunk in the stream is given by
+ * {@code NodeInstance.getCurrentChunk()}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Chunked {
+
+    /**
+     * The maximum number of payload bytes per chunk.
+     */
+    int chunkSize() default 1 << 20;
+
+    /**
+     * True if the callee consumes the chunks as they arrive.
+     */
+    boolean streamed() default false;
+
+}
@@ -0,0 +1,23 @@
+package BipartiteTopologyAPI.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a read-only two-way remote operation whose identical calls are answered by a single invocation on the called
+ * node. The value returned by the first call with some arguments is reused for every call with equal arguments, until
+ * the state version of the called node changes. Coalesced operations do not change the state version, and their
+ * responses must not depend on the caller.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Coalesced {
+
+    /**
+     * The maximum number of distinct calls whose responses are kept, evicted in least recently used order.
+     */
+    int capacity() default 1024;
+
+}
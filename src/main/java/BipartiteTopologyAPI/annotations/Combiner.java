@@ -0,0 +1,24 @@
+package BipartiteTopologyAPI.annotations;
+
+import BipartiteTopologyAPI.combining.MessageCombiner;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a one-way remote operation whose calls to the same node can be folded into a single call by the given
+ * {@link MessageCombiner}, e.g. additive updates. The caller keeps the folded call pending until the end of the current
+ * processing step, or until any other call of the caller to the same node, and sends it then.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Combiner {
+
+    /**
+     * The combiner folding the calls. It must have a public no-argument constructor.
+     */
+    Class<? extends MessageCombiner> value();
+
+}
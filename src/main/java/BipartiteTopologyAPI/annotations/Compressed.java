@@ -0,0 +1,28 @@
+package BipartiteTopologyAPI.annotations;
+
+import BipartiteTopologyAPI.encoding.CompressionCodec;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a remote operation whose double[] and float[] arguments are compressed with a lossy codec. The receiving
+ * wrapper decompresses the arrays before invoking the operation.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Compressed {
+
+    /**
+     * The compression codec.
+     */
+    CompressionCodec value();
+
+    /**
+     * The fraction of elements sent by the {@link CompressionCodec#TOP_K} codec.
+     */
+    double ratio() default 0.01;
+
+}
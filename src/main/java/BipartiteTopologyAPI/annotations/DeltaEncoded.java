@@ -0,0 +1,22 @@
+package BipartiteTopologyAPI.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a remote operation whose double[] and float[] arguments are sent as sparse deltas against the values last sent
+ * to the same destination (or broadcast). The receiving wrapper reconstructs the full arrays before invoking the
+ * operation.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DeltaEncoded {
+
+    /**
+     * The fraction of changed elements above which the full array is sent instead of a delta.
+     */
+    double maxDensity() default 0.5;
+
+}
@@ -0,0 +1,15 @@
+package BipartiteTopologyAPI.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an array parameter of a remote operation whose elements correspond one to one to the keys of its array
+ * {@link RoutingKey} parameter. The routing proxy splits it along with the keys.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface KeyAligned {
+}
@@ -8,4 +8,13 @@ import java.lang.annotation.Target;
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface ProcessOp {
+
+    /**
+     * If true, the method takes a single {@link java.util.List} parameter and processes runs of tuples in one call. A
+     * tuple carrying a single argument is handed over as that argument, and any other tuple as its array of arguments.
+     * The method may instead take a single {@link BipartiteTopologyAPI.data.ColumnarBatch}, receiving the columnar
+     * batches of the stream whole.
+     */
+    boolean batched() default false;
+
 }
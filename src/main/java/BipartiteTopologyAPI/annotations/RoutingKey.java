@@ -0,0 +1,16 @@
+package BipartiteTopologyAPI.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the parameter of a remote operation holding the key that routes the calls made through the routing proxy. If
+ * the parameter is an array, every element is a key of its own and the call is split into one sub-call per disjoint
+ * node, each one carrying the keys routed to that node along with the matching elements of its @KeyAligned parameters.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RoutingKey {
+}
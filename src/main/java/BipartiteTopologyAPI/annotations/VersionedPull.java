@@ -0,0 +1,35 @@
+package BipartiteTopologyAPI.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a read-only two-way remote operation returning a double[] or a float[], whose callers only receive the elements
+ * that changed since the version they already hold. The proxy attaches the version of the array last pulled with the
+ * same arguments from the called node to every call, and the called node answers with a sparse delta against that
+ * version if it is still in its bounded log of pulled versions, or with the full array otherwise. The proxy applies the
+ * delta before executing the callbacks of the response.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface VersionedPull {
+
+    /**
+     * The number of pulled versions of every call kept by the called node.
+     */
+    int logSize() default 8;
+
+    /**
+     * The fraction of changed elements above which the full array is sent instead of a delta.
+     */
+    double maxDensity() default 0.5;
+
+    /**
+     * The maximum number of distinct calls whose versions are kept by the caller and the called node, evicted in least
+     * recently used order.
+     */
+    int capacity() default 1024;
+
+}
@@ -0,0 +1,130 @@
+package BipartiteTopologyAPI.benchmark;
+
+import BipartiteTopologyAPI.NodeInstance;
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.futures.Response;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A synthetic all-to-all exchange. For every tuple, a spoke exchanges a vector of the payload size with all the hubs
+ * asynchronously, and every hub broadcasts its state to all the spokes once it has received as many exchanges as
+ * there are spokes. A tuple is completed once all the hubs have answered its exchange.
+ */
+public class AllToAllWorkload {
+
+    @RemoteProxy
+    public interface HubIfc {
+
+        @RemoteOp
+        Response<double[]> exchange(double[] values);
+
+    }
+
+    @RemoteProxy
+    public interface SpokeIfc {
+
+        @RemoteOp
+        void update(double[] state);
+
+    }
+
+    @RemoteProxy
+    public interface QuerierIfc {
+
+        @RemoteOp
+        void answer(Long queryId, Double value);
+
+    }
+
+    public static class Hub extends NodeInstance<SpokeIfc, QuerierIfc> implements HubIfc {
+
+        private final double[] state;
+        private int exchanges;
+
+        public Hub(int payloadSize) {
+            this.state = new double[payloadSize];
+            this.exchanges = 0;
+        }
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Serializable tuple) {
+        }
+
+        @MergeOp
+        public void merge(Hub[] hubs) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+            getQuerier().answer(queryId, state[0]);
+        }
+
+        @Override
+        public Response<double[]> exchange(double[] values) {
+            for (int i = 0; i < state.length; i++)
+                state[i] += values[i];
+            if (++exchanges == getNumberOfSpokes()) {
+                exchanges = 0;
+                getBroadcastProxy().update(state);
+            }
+            return Response.respond(state.clone());
+        }
+
+    }
+
+    public static class Spoke extends NodeInstance<HubIfc, QuerierIfc> implements SpokeIfc {
+
+        private final Probe probe;
+        private final double[] values;
+        private final double[] state;
+
+        public Spoke(int payloadSize, Probe probe) {
+            this.probe = probe;
+            this.values = new double[payloadSize];
+            this.state = new double[payloadSize];
+        }
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Integer sequence) {
+            Arrays.fill(values, 1.0 / (sequence + 1));
+            long issued = System.nanoTime();
+            int[] responses = new int[1];
+            getBroadcastProxy().exchange(values).to(shard -> {
+                probe.responded(issued);
+                if (++responses[0] == getNumberOfHubs())
+                    probe.completed(issued);
+            });
+        }
+
+        @MergeOp
+        public void merge(Spoke[] spokes) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(double[] state) {
+            for (int i = 0; i < this.state.length; i++)
+                this.state[i] += state[i];
+        }
+
+    }
+
+}
@@ -0,0 +1,75 @@
+package BipartiteTopologyAPI.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * The latencies observed by a node during a benchmark, in nanoseconds. A recorder is not thread safe: every node
+ * records into its own recorder, and the recorders are merged once the run is over.
+ */
+public class LatencyRecorder {
+
+    /**
+     * The recorded latencies, in the first {@link #count} entries.
+     */
+    private long[] samples;
+    private int count;
+
+    /**
+     * True if the samples are sorted.
+     */
+    private boolean sorted;
+
+    public LatencyRecorder() {
+        this.samples = new long[1024];
+        this.count = 0;
+        this.sorted = true;
+    }
+
+    public void record(long latency) {
+        if (count == samples.length)
+            samples = Arrays.copyOf(samples, 2 * samples.length);
+        samples[count++] = latency;
+        sorted = false;
+    }
+
+    /**
+     * Adds the samples of another recorder to this one.
+     */
+    public void merge(LatencyRecorder other) {
+        if (count + other.count > samples.length)
+            samples = Arrays.copyOf(samples, Math.max(2 * samples.length, count + other.count));
+        System.arraycopy(other.samples, 0, samples, count, other.count);
+        count += other.count;
+        sorted = false;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the latency below which the given fraction of the samples lie, or 0 if there are no samples.
+     *
+     * @param quantile A fraction in [0, 1], e.g. 0.99 for the 99th percentile.
+     */
+    public long percentile(double quantile) {
+        if (count == 0)
+            return 0;
+        if (!sorted) {
+            Arrays.sort(samples, 0, count);
+            sorted = true;
+        }
+        int rank = (int) Math.ceil(quantile * count) - 1;
+        return samples[Math.min(count - 1, Math.max(0, rank))];
+    }
+
+    public double mean() {
+        if (count == 0)
+            return 0;
+        double sum = 0;
+        for (int i = 0; i < count; i++)
+            sum += samples[i];
+        return sum / count;
+    }
+
+}
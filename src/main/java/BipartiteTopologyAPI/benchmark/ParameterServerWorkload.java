@@ -0,0 +1,133 @@
+package BipartiteTopologyAPI.benchmark;
+
+import BipartiteTopologyAPI.NodeInstance;
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.futures.Response;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A synthetic parameter server. Every hub holds a model of the payload size. For every tuple, a spoke pushes a
+ * gradient to all the hubs and pulls their models in a synchronous round, so it is blocked until all the hubs have
+ * answered.
+ */
+public class ParameterServerWorkload {
+
+    @RemoteProxy
+    public interface HubIfc {
+
+        @RemoteOp
+        void push(double[] gradient);
+
+        @RemoteOp
+        Response<double[]> pull();
+
+    }
+
+    @RemoteProxy
+    public interface SpokeIfc {
+
+        @RemoteOp
+        void update(double[] model);
+
+    }
+
+    @RemoteProxy
+    public interface QuerierIfc {
+
+        @RemoteOp
+        void answer(Long queryId, Double value);
+
+    }
+
+    public static class Hub extends NodeInstance<SpokeIfc, QuerierIfc> implements HubIfc {
+
+        private final double[] model;
+
+        public Hub(int payloadSize) {
+            this.model = new double[payloadSize];
+        }
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Serializable tuple) {
+        }
+
+        @MergeOp
+        public void merge(Hub[] hubs) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+            getQuerier().answer(queryId, model[0]);
+        }
+
+        @Override
+        public void push(double[] gradient) {
+            for (int i = 0; i < model.length; i++)
+                model[i] += gradient[i];
+        }
+
+        @Override
+        public Response<double[]> pull() {
+            return Response.respond(model.clone());
+        }
+
+    }
+
+    public static class Spoke extends NodeInstance<HubIfc, QuerierIfc> implements SpokeIfc {
+
+        private final Probe probe;
+        private final double[] gradient;
+        private double[] model;
+
+        public Spoke(int payloadSize, Probe probe) {
+            this.probe = probe;
+            this.gradient = new double[payloadSize];
+            this.model = new double[payloadSize];
+        }
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Integer sequence) {
+            Arrays.fill(gradient, 1.0 / (sequence + 1));
+            getBroadcastProxy().push(gradient);
+
+            long issued = System.nanoTime();
+            int[] responses = new int[1];
+            getBroadcastProxy().pull().toSync(shard -> {
+                probe.responded(issued);
+                model = shard;
+                if (++responses[0] == getNumberOfHubs())
+                    probe.completed(issued);
+            });
+        }
+
+        @MergeOp
+        public void merge(Spoke[] spokes) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(double[] model) {
+            this.model = model;
+        }
+
+    }
+
+}
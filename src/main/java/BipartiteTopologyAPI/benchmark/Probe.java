@@ -0,0 +1,52 @@
+package BipartiteTopologyAPI.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * The instruments of a spoke of a benchmark workload: the latencies of its remote calls and synchronous rounds, and
+ * the countdown of the tuples of the run that are not completed yet.
+ */
+public class Probe {
+
+    /**
+     * The time from issuing a remote call to receiving (one of) its response(s).
+     */
+    private final LatencyRecorder rpcLatency;
+
+    /**
+     * The time from issuing the calls of a round to receiving all their responses.
+     */
+    private final LatencyRecorder roundLatency;
+
+    /**
+     * The tuples of the run that are not completed yet, shared by all the spokes.
+     */
+    private final CountDownLatch pending;
+
+    public Probe(CountDownLatch pending) {
+        this.rpcLatency = new LatencyRecorder();
+        this.roundLatency = new LatencyRecorder();
+        this.pending = pending;
+    }
+
+    public void responded(long issued) {
+        rpcLatency.record(System.nanoTime() - issued);
+    }
+
+    /**
+     * Completes a tuple whose round was issued at the given time.
+     */
+    public void completed(long issued) {
+        roundLatency.record(System.nanoTime() - issued);
+        pending.countDown();
+    }
+
+    public LatencyRecorder getRpcLatency() {
+        return rpcLatency;
+    }
+
+    public LatencyRecorder getRoundLatency() {
+        return roundLatency;
+    }
+
+}
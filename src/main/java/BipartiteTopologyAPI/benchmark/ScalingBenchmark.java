@@ -0,0 +1,249 @@
+package BipartiteTopologyAPI.benchmark;
+
+import BipartiteTopologyAPI.BufferingWrapper;
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.NodeInstance;
+import BipartiteTopologyAPI.network.InProcessNetwork;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An end-to-end benchmark of how the framework scales with the size of a Bipartite Network. It runs synthetic
+ * workloads on an {@link InProcessNetwork}, sweeping the numbers of hubs and spokes and the payload sizes, and reports
+ * the throughput along with the percentiles of the latencies of the remote calls and of the synchronous rounds of
+ * every configuration, one JSON object per line.
+ * <p>
+ * Usage: {@code ScalingBenchmark [--workloads PARAMETER_SERVER,ALL_TO_ALL] [--hubs 1,2,4] [--spokes 1,4,16]
+ * [--payloads 16,1024,65536] [--tuples 200] [--warmup 1] [--timeout 120] [--out report.jsonl]}, where the payload
+ * sizes are numbers of doubles, the tuples are per spoke and the timeout is in seconds per run.
+ */
+public class ScalingBenchmark {
+
+    public enum Workload {PARAMETER_SERVER, ALL_TO_ALL}
+
+    private List<Workload> workloads;
+    private int[] hubs;
+    private int[] spokes;
+    private int[] payloads;
+    private int tuples;
+    private int warmup;
+    private long timeout;
+
+    public ScalingBenchmark() {
+        this.workloads = new ArrayList<>();
+        this.workloads.add(Workload.PARAMETER_SERVER);
+        this.workloads.add(Workload.ALL_TO_ALL);
+        this.hubs = new int[]{1, 2, 4};
+        this.spokes = new int[]{1, 4, 16};
+        this.payloads = new int[]{16, 1024, 65536};
+        this.tuples = 200;
+        this.warmup = 1;
+        this.timeout = 120;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        ScalingBenchmark benchmark = new ScalingBenchmark();
+        String out = null;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length)
+                throw new RuntimeException("No value given to the option " + args[i]);
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--workloads":
+                    benchmark.workloads = new ArrayList<>();
+                    for (String workload : value.split(","))
+                        benchmark.workloads.add(Workload.valueOf(workload.trim().toUpperCase(Locale.ROOT)));
+                    break;
+                case "--hubs":
+                    benchmark.hubs = parseSizes(value);
+                    break;
+                case "--spokes":
+                    benchmark.spokes = parseSizes(value);
+                    break;
+                case "--payloads":
+                    benchmark.payloads = parseSizes(value);
+                    break;
+                case "--tuples":
+                    benchmark.tuples = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    benchmark.warmup = Integer.parseInt(value);
+                    break;
+                case "--timeout":
+                    benchmark.timeout = Long.parseLong(value);
+                    break;
+                case "--out":
+                    out = value;
+                    break;
+                default:
+                    throw new RuntimeException("Unknown option " + args[i]);
+            }
+        }
+
+        PrintWriter report = (out == null) ?
+                new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true) :
+                new PrintWriter(new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8), true);
+        try {
+            benchmark.sweep(report, (out == null) ? System.err : System.out);
+        } finally {
+            report.flush();
+            if (out != null)
+                report.close();
+        }
+    }
+
+    /**
+     * Runs every configuration of the sweep, and writes a line of the report per configuration.
+     *
+     * @param report   The writer of the report.
+     * @param progress The stream the progress of the sweep is printed to.
+     */
+    public void sweep(PrintWriter report, PrintStream progress) throws InterruptedException {
+        for (Workload workload : workloads)
+            for (int numberOfHubs : hubs)
+                for (int numberOfSpokes : spokes)
+                    for (int payloadSize : payloads) {
+                        progress.printf("%s hubs=%d spokes=%d payload=%d%n",
+                                workload, numberOfHubs, numberOfSpokes, payloadSize);
+                        for (int i = 0; i < warmup; i++)
+                            run(workload, numberOfHubs, numberOfSpokes, payloadSize);
+                        report.println(run(workload, numberOfHubs, numberOfSpokes, payloadSize).toJson());
+                    }
+    }
+
+    /**
+     * Runs a configuration of a workload on a fresh network, until all the tuples have been completed.
+     */
+    public Result run(Workload workload, int numberOfHubs, int numberOfSpokes, int payloadSize)
+            throws InterruptedException {
+        CountDownLatch pending = new CountDownLatch(numberOfSpokes * tuples);
+        List<Probe> probes = new ArrayList<>();
+        InProcessNetwork network = new InProcessNetwork(0, numberOfHubs, numberOfSpokes);
+        try {
+            for (int i = 0; i < numberOfHubs; i++) {
+                NodeId nodeId = NodeId.of(NodeType.HUB, i);
+                NodeInstance hub = (workload == Workload.PARAMETER_SERVER) ?
+                        new ParameterServerWorkload.Hub(payloadSize) :
+                        new AllToAllWorkload.Hub(payloadSize);
+                network.register(nodeId, new GenericWrapper(nodeId, hub, network));
+            }
+            for (int i = 0; i < numberOfSpokes; i++) {
+                NodeId nodeId = NodeId.of(NodeType.SPOKE, i);
+                Probe probe = new Probe(pending);
+                NodeInstance spoke = (workload == Workload.PARAMETER_SERVER) ?
+                        new ParameterServerWorkload.Spoke(payloadSize, probe) :
+                        new AllToAllWorkload.Spoke(payloadSize, probe);
+                probes.add(probe);
+                network.register(nodeId, new BufferingWrapper<Serializable>(nodeId, spoke, network));
+            }
+
+            long start = System.nanoTime();
+            for (int t = 0; t < tuples; t++)
+                for (int i = 0; i < numberOfSpokes; i++)
+                    network.submitTuple(NodeId.of(NodeType.SPOKE, i), new Object[]{t});
+            if (!pending.await(timeout, TimeUnit.SECONDS))
+                throw new RuntimeException(String.format("%s with %d hubs, %d spokes and payload %d timed out " +
+                                "with %d of %d tuples pending.", workload, numberOfHubs, numberOfSpokes, payloadSize,
+                        pending.getCount(), numberOfSpokes * tuples));
+            long elapsed = System.nanoTime() - start;
+
+            Result result = new Result(workload, numberOfHubs, numberOfSpokes, payloadSize, tuples, elapsed);
+            for (Probe probe : probes) {
+                result.rpcLatency.merge(probe.getRpcLatency());
+                result.roundLatency.merge(probe.getRoundLatency());
+            }
+            return result;
+        } finally {
+            network.close();
+        }
+    }
+
+    private static int[] parseSizes(String sizes) {
+        String[] values = sizes.split(",");
+        int[] parsed = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            parsed[i] = Integer.parseInt(values[i].trim());
+            if (parsed[i] <= 0)
+                throw new RuntimeException("Invalid size " + values[i] + " in " + sizes);
+        }
+        return parsed;
+    }
+
+    // ================================================= Results ======================================================
+
+    /**
+     * The measurements of a configuration of a workload.
+     */
+    public static class Result {
+
+        private final Workload workload;
+        private final int hubs;
+        private final int spokes;
+        private final int payloadSize;
+        private final int tuplesPerSpoke;
+
+        /**
+         * The wall clock time of the run, in nanoseconds.
+         */
+        private final long elapsed;
+
+        private final LatencyRecorder rpcLatency;
+        private final LatencyRecorder roundLatency;
+
+        Result(Workload workload, int hubs, int spokes, int payloadSize, int tuplesPerSpoke, long elapsed) {
+            this.workload = workload;
+            this.hubs = hubs;
+            this.spokes = spokes;
+            this.payloadSize = payloadSize;
+            this.tuplesPerSpoke = tuplesPerSpoke;
+            this.elapsed = elapsed;
+            this.rpcLatency = new LatencyRecorder();
+            this.roundLatency = new LatencyRecorder();
+        }
+
+        /**
+         * Returns the number of tuples completed per second.
+         */
+        public double getThroughput() {
+            return (long) spokes * tuplesPerSpoke / (elapsed / 1e9);
+        }
+
+        public LatencyRecorder getRpcLatency() {
+            return rpcLatency;
+        }
+
+        public LatencyRecorder getRoundLatency() {
+            return roundLatency;
+        }
+
+        public String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"workload\":\"%s\",\"hubs\":%d,\"spokes\":%d,\"payload_doubles\":%d,\"tuples\":%d," +
+                            "\"elapsed_ns\":%d,\"tuples_per_s\":%.1f,\"rpcs_per_s\":%.1f,\"rpc\":%s,\"round\":%s}",
+                    workload, hubs, spokes, payloadSize, (long) spokes * tuplesPerSpoke, elapsed, getThroughput(),
+                    rpcLatency.getCount() / (elapsed / 1e9), toJson(rpcLatency), toJson(roundLatency));
+        }
+
+        private static String toJson(LatencyRecorder latency) {
+            return String.format(Locale.ROOT,
+                    "{\"count\":%d,\"mean_ns\":%.1f,\"p50_ns\":%d,\"p99_ns\":%d,\"p999_ns\":%d}",
+                    latency.getCount(), latency.mean(), latency.percentile(0.5), latency.percentile(0.99),
+                    latency.percentile(0.999));
+        }
+
+    }
+
+}
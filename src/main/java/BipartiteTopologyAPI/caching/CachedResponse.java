@@ -0,0 +1,40 @@
+package BipartiteTopologyAPI.caching;
+
+import BipartiteTopologyAPI.futures.Response;
+
+import java.io.Serializable;
+import java.util.function.Consumer;
+
+/**
+ * A response served from the response cache of a node. Its callbacks are executed immediately, without blocking the
+ * node.
+ *
+ * @param <T> The type of the Serializable response value.
+ */
+public class CachedResponse<T extends Serializable> implements Response<T> {
+
+    /**
+     * The cached response value.
+     */
+    private final T value;
+
+    public CachedResponse(T value) {
+        this.value = value;
+    }
+
+    @Override
+    public void to(Consumer<T> consumer) {
+        consumer.accept(value);
+    }
+
+    @Override
+    public void toSync(Consumer<T> consumer) {
+        to(consumer);
+    }
+
+    @Override
+    public T getValue() {
+        return value;
+    }
+
+}
@@ -0,0 +1,49 @@
+package BipartiteTopologyAPI.caching;
+
+import BipartiteTopologyAPI.futures.FutureResponse;
+
+import java.io.Serializable;
+
+/**
+ * A future of a cached operation that stores the response in the response cache of the calling node before executing
+ * its callback.
+ *
+ * @param <T> The type of the Serializable response value.
+ */
+public class CachingFutureResponse<T extends Serializable> extends FutureResponse<T> {
+
+    /**
+     * The cache storing the response.
+     */
+    private final transient ResponseCache cache;
+
+    /**
+     * The key of the response in the cache.
+     */
+    private final ResponseCache.Key key;
+
+    /**
+     * The state version that the called node piggybacked on the response.
+     */
+    private long version;
+
+    public CachingFutureResponse(ResponseCache cache, ResponseCache.Key key) {
+        this.cache = cache;
+        this.key = key;
+        this.version = 0;
+    }
+
+    /**
+     * Sets the state version piggybacked on the response, before the response is accepted.
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @Override
+    public void accept(T value) {
+        cache.put(key, value, version);
+        super.accept(value);
+    }
+
+}
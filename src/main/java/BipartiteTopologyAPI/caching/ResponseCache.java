@@ -0,0 +1,243 @@
+package BipartiteTopologyAPI.caching;
+
+import BipartiteTopologyAPI.annotations.Cached;
+import BipartiteTopologyAPI.sites.NodeId;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of the responses to the @{@link Cached} remote operations of a node, keyed by the operation, the called node
+ * and the arguments of the call. The cache of every operation holds a bounded number of responses, evicted in least
+ * recently used order.
+ * <p>
+ * Every cached response is tagged with the state version that the called node piggybacked on it, and the cache tracks
+ * the latest version piggybacked by every disjoint node, so the version lag of a response is measured in versions of
+ * the called node only. As a caller that only reads may never learn of newer versions, the age of the responses is
+ * always bounded as well. The calls that may modify the state of a disjoint node drop its cached responses, so that the
+ * caller reads its own writes.
+ */
+public class ResponseCache implements Serializable {
+
+    /**
+     * The cached responses of every operation, in least recently used order.
+     */
+    private final HashMap<String, LinkedHashMap<Key, Entry>> entries;
+
+    /**
+     * The latest state version piggybacked by every disjoint node.
+     */
+    private final HashMap<Integer, Long> knownVersions;
+
+    /**
+     * The number of calls answered from the cache.
+     */
+    private long hits;
+
+    /**
+     * The number of calls of cached operations sent to the disjoint nodes.
+     */
+    private long misses;
+
+    public ResponseCache() {
+        this.entries = new HashMap<>();
+        this.knownVersions = new HashMap<>();
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    /**
+     * Looks up the response to a call of a cached operation.
+     *
+     * @param policy The caching policy of the operation.
+     * @param key    The key of the call.
+     * @return A copy of the cached response, or null if there is no fresh response in the cache.
+     */
+    public Serializable lookup(Cached policy, Key key) {
+        LinkedHashMap<Key, Entry> cache = entries.get(key.operation);
+        if (cache == null) {
+            final int capacity = policy.capacity();
+            cache = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                    return size() > capacity;
+                }
+            };
+            entries.put(key.operation, cache);
+        }
+        Entry entry = cache.get(key);
+        if (entry != null) {
+            boolean fresh = knownVersion(key.node) - entry.version <= policy.maxVersionLag() &&
+                    System.currentTimeMillis() - entry.timestamp <= policy.maxAgeMillis();
+            if (fresh) {
+                hits++;
+                return copyOf(entry.value);
+            }
+            cache.remove(key);
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Stores the response to a call of a cached operation.
+     *
+     * @param version The state version that the called node piggybacked on the response.
+     */
+    public void put(Key key, Serializable value, long version) {
+        LinkedHashMap<Key, Entry> cache = entries.get(key.operation);
+        if (cache != null && value != null)
+            cache.put(key, new Entry(copyOf(value), version, System.currentTimeMillis()));
+    }
+
+    /**
+     * Records a state version piggybacked on a response of a disjoint node.
+     */
+    public void observe(int node, long version) {
+        if (version > knownVersion(node))
+            knownVersions.put(node, version);
+    }
+
+    /**
+     * Records a call that may modify the state of a disjoint node, by forgetting the responses cached before it. The
+     * version the call leads to is only known once the node piggybacks it on a response.
+     */
+    public void invalidate(int node) {
+        for (LinkedHashMap<Key, Entry> cache : entries.values()) {
+            Iterator<Key> keys = cache.keySet().iterator();
+            while (keys.hasNext())
+                if (keys.next().node == node)
+                    keys.remove();
+        }
+    }
+
+    /**
+     * Forgets the responses and the version of a disjoint node.
+     */
+    public void reset(int node) {
+        invalidate(node);
+        knownVersions.remove(node);
+    }
+
+    /**
+     * Forgets all the cached responses.
+     */
+    public void clear() {
+        entries.clear();
+        knownVersions.clear();
+    }
+
+    public long knownVersion(int node) {
+        Long version = knownVersions.get(node);
+        return (version == null) ? 0 : version;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public int size() {
+        int size = 0;
+        for (LinkedHashMap<Key, Entry> cache : entries.values())
+            size += cache.size();
+        return size;
+    }
+
+    /**
+     * Copies the arrays, so that the callbacks cannot modify the cached responses in place.
+     */
+    private static Serializable copyOf(Serializable value) {
+        if (!value.getClass().isArray())
+            return value;
+        int length = Array.getLength(value);
+        Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+        System.arraycopy(value, 0, copy, 0, length);
+        return (Serializable) copy;
+    }
+
+    /**
+     * Returns the key of a call of a cached operation.
+     */
+    public static Key keyOf(String operation, NodeId target, Object[] args) {
+        return new Key(operation, target.getNodeId(), args);
+    }
+
+    /**
+     * Returns the key of a call of an operation, regardless of the called node.
+     */
+    public static Key keyOf(String operation, Object[] args) {
+        return new Key(operation, -1, args);
+    }
+
+    /**
+     * The key of a call of a cached operation.
+     */
+    public static final class Key implements Serializable {
+
+        private final String operation;
+
+        private final int node;
+
+        private final Object[] args;
+
+        private final int hash;
+
+        private Key(String operation, int node, Object[] args) {
+            this.operation = operation;
+            this.node = node;
+            this.args = (args == null) ? new Object[0] : args.clone();
+            this.hash = (operation.hashCode() * 31 + node) * 31 + Arrays.deepHashCode(this.args);
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public int getNode() {
+            return node;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return node == key.node && operation.equals(key.operation) && Arrays.deepEquals(args, key.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+    /**
+     * A cached response, along with the version piggybacked on it and the time it was cached at.
+     */
+    private static final class Entry implements Serializable {
+
+        private final Serializable value;
+
+        private final long version;
+
+        private final long timestamp;
+
+        private Entry(Serializable value, long version, long timestamp) {
+            this.value = value;
+            this.version = version;
+            this.timestamp = timestamp;
+        }
+
+    }
+
+}
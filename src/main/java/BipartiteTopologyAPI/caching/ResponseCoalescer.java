@@ -0,0 +1,133 @@
+package BipartiteTopologyAPI.caching;
+
+import BipartiteTopologyAPI.annotations.Coalesced;
+import BipartiteTopologyAPI.network.EncodedPayload;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the values returned by the @{@link Coalesced} operations of a node for the current version of its state, so
+ * that identical calls are answered without invoking the operation again. All the values are dropped as soon as the
+ * state version changes. The encoded form of a kept value can be kept as well, so that it is sent to every caller without
+ * encoding it again.
+ */
+public class ResponseCoalescer implements Serializable {
+
+    /**
+     * The state version of the kept values.
+     */
+    private long version;
+
+    /**
+     * The kept values of every operation, in least recently used order.
+     */
+    private final HashMap<String, LinkedHashMap<ResponseCache.Key, Serializable>> responses;
+
+    /**
+     * The encoded forms of the kept values, each holding a reference of its payload.
+     */
+    private final transient HashMap<ResponseCache.Key, EncodedPayload> encoded;
+
+    /**
+     * The number of calls answered with a kept value.
+     */
+    private long hits;
+
+    /**
+     * The number of invocations of coalesced operations.
+     */
+    private long invocations;
+
+    public ResponseCoalescer() {
+        this.version = -1;
+        this.responses = new HashMap<>();
+        this.encoded = new HashMap<>();
+        this.hits = 0;
+        this.invocations = 0;
+    }
+
+    /**
+     * Returns the value kept for a call at the given state version, or null if the operation must be invoked.
+     */
+    public Serializable lookup(ResponseCache.Key key, long stateVersion) {
+        if (stateVersion != version) {
+            responses.clear();
+            releaseEncoded();
+            version = stateVersion;
+        }
+        LinkedHashMap<ResponseCache.Key, Serializable> kept = responses.get(key.getOperation());
+        Serializable value = (kept == null) ? null : kept.get(key);
+        if (value != null)
+            hits++;
+        else
+            invocations++;
+        return value;
+    }
+
+    /**
+     * Keeps the value returned by a call at the given state version.
+     */
+    public void put(Coalesced policy, ResponseCache.Key key, long stateVersion, Serializable value) {
+        if (stateVersion != version || value == null)
+            return;
+        LinkedHashMap<ResponseCache.Key, Serializable> kept = responses.get(key.getOperation());
+        if (kept == null) {
+            final int capacity = policy.capacity();
+            kept = new LinkedHashMap<ResponseCache.Key, Serializable>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ResponseCache.Key, Serializable> eldest) {
+                    if (size() <= capacity)
+                        return false;
+                    EncodedPayload payload = encoded.remove(eldest.getKey());
+                    if (payload != null)
+                        payload.release();
+                    return true;
+                }
+            };
+            responses.put(key.getOperation(), kept);
+        }
+        kept.put(key, value);
+    }
+
+    /**
+     * Returns a new reference of the encoded form of the value kept for a call, or null if it has not been kept.
+     */
+    public EncodedPayload encodedOf(ResponseCache.Key key) {
+        EncodedPayload payload = encoded.get(key);
+        return (payload == null) ? null : payload.retain();
+    }
+
+    /**
+     * Keeps the encoded form of the value kept for a call, taking a new reference of the payload.
+     */
+    public void putEncoded(ResponseCache.Key key, EncodedPayload payload) {
+        LinkedHashMap<ResponseCache.Key, Serializable> kept = responses.get(key.getOperation());
+        if (kept == null || !kept.containsKey(key) || encoded.containsKey(key))
+            return;
+        encoded.put(key, payload.retain());
+    }
+
+    private void releaseEncoded() {
+        for (EncodedPayload payload : encoded.values())
+            payload.release();
+        encoded.clear();
+    }
+
+    public void clear() {
+        responses.clear();
+        releaseEncoded();
+        version = -1;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getInvocations() {
+        return invocations;
+    }
+
+}
@@ -0,0 +1,35 @@
+package BipartiteTopologyAPI.caching;
+
+import java.io.Serializable;
+
+/**
+ * A response value tagged with the version of the state of the node that produced it.
+ *
+ * @param <T> The type of the Serializable response value.
+ */
+public final class VersionedValue<T extends Serializable> implements Serializable {
+
+    /**
+     * The version of the state of the responding node.
+     */
+    private final long version;
+
+    /**
+     * The response value.
+     */
+    private final T value;
+
+    public VersionedValue(long version, T value) {
+        this.version = version;
+        this.value = value;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+}
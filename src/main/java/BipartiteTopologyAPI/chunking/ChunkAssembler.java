@@ -0,0 +1,157 @@
+package BipartiteTopologyAPI.chunking;
+
+import BipartiteTopologyAPI.annotations.Chunked;
+import BipartiteTopologyAPI.sites.NodeId;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Keeps the transfers of the calls of the @{@link Chunked} operations received by a node, until all their chunks have
+ * arrived. The payload of a transfer is reassembled in a single array allocated on its first chunk, while the chunks of
+ * a streamed transfer are only held until the ones preceding them have arrived.
+ */
+public class ChunkAssembler implements Serializable {
+
+    /**
+     * The transfers in progress, indexed by their caller and their id.
+     */
+    private final HashMap<Pair<NodeId, Long>, Transfer> transfers;
+
+    /**
+     * The number of transfers completed.
+     */
+    private long completed;
+
+    public ChunkAssembler() {
+        this.transfers = new HashMap<>();
+        this.completed = 0;
+    }
+
+    /**
+     * Copies a chunk into the payload of its transfer.
+     *
+     * @return The payload of the transfer if this was its last missing chunk, or null otherwise.
+     */
+    public byte[] assemble(NodeId source, PayloadChunk chunk) {
+        if (chunk.getLength() > Integer.MAX_VALUE)
+            throw new RuntimeException("Transfer " + chunk.getTransfer() + " from " + source + " of " +
+                    chunk.getLength() + " bytes must be streamed.");
+        if (chunk.getCount() == 1) {
+            completed += 1;
+            return toArray(chunk.getData());
+        }
+        Pair<NodeId, Long> key = Pair.of(source, chunk.getTransfer());
+        Transfer transfer = transfers.computeIfAbsent(key, k -> new Transfer(new byte[(int) chunk.getLength()]));
+        ByteBuffer data = chunk.getData();
+        data.get(transfer.payload, (int) chunk.getOffset(), data.remaining());
+        if (++transfer.received < chunk.getCount())
+            return null;
+        transfers.remove(key);
+        completed += 1;
+        return transfer.payload;
+    }
+
+    /**
+     * Orders the chunks of a streamed transfer.
+     *
+     * @return The chunks that can be consumed after this one has arrived, in order.
+     */
+    public List<PayloadChunk> sequence(NodeId source, PayloadChunk chunk) {
+        if (chunk.getCount() == 1) {
+            completed += 1;
+            return Collections.singletonList(chunk);
+        }
+        Pair<NodeId, Long> key = Pair.of(source, chunk.getTransfer());
+        Transfer transfer = transfers.computeIfAbsent(key, k -> new Transfer(null));
+        if (chunk.getSequence() != transfer.next) {
+            transfer.early.put(chunk.getSequence(), chunk);
+            return Collections.emptyList();
+        }
+        List<PayloadChunk> ready = new ArrayList<>();
+        ready.add(chunk);
+        transfer.next += 1;
+        PayloadChunk next;
+        while ((next = transfer.early.remove(transfer.next)) != null) {
+            ready.add(next);
+            transfer.next += 1;
+        }
+        if (transfer.next == chunk.getCount()) {
+            transfers.remove(key);
+            completed += 1;
+        }
+        return ready;
+    }
+
+    /**
+     * Drops the transfers from a disjoint node that left the network.
+     */
+    public void reset(int source) {
+        transfers.keySet().removeIf(key -> key.getLeft().getNodeId() == source);
+    }
+
+    public void clear() {
+        transfers.clear();
+    }
+
+    /**
+     * Returns the number of transfers in progress.
+     */
+    public int getPending() {
+        return transfers.size();
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    private static byte[] toArray(ByteBuffer data) {
+        if (data.hasArray() && data.arrayOffset() == 0 && data.position() == 0 &&
+                data.remaining() == data.array().length)
+            return data.array();
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * A transfer in progress.
+     */
+    private static class Transfer implements Serializable {
+
+        /**
+         * The reassembled payload, or null if the transfer is streamed.
+         */
+        final byte[] payload;
+
+        /**
+         * The number of chunks received.
+         */
+        int received;
+
+        /**
+         * The sequence of the next chunk to be consumed of a streamed transfer.
+         */
+        int next;
+
+        /**
+         * The chunks of a streamed transfer that arrived before the ones preceding them.
+         */
+        final TreeMap<Integer, PayloadChunk> early;
+
+        Transfer(byte[] payload) {
+            this.payload = payload;
+            this.received = 0;
+            this.next = 0;
+            this.early = new TreeMap<>();
+        }
+
+    }
+
+}
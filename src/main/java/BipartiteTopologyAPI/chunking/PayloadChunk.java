@@ -0,0 +1,150 @@
+package BipartiteTopologyAPI.chunking;
+
+import BipartiteTopologyAPI.annotations.Chunked;
+import BipartiteTopologyAPI.network.ByteBufferValue;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A chunk of the payload of a call of a @{@link Chunked} operation. The chunks of a transfer are numbered in order, and
+ * each one carries the Remote Procedure Call of the whole call. The bytes of a chunk are a view of the payload of the
+ * caller, which the transports write without copying it.
+ */
+public class PayloadChunk implements Serializable {
+
+    /**
+     * The id of the transfer, unique per caller.
+     */
+    private final long transfer;
+
+    /**
+     * The position of the chunk in the transfer.
+     */
+    private final int sequence;
+
+    /**
+     * The number of chunks of the transfer.
+     */
+    private final int count;
+
+    /**
+     * The offset of the bytes of the chunk in the payload.
+     */
+    private final long offset;
+
+    /**
+     * The length of the whole payload.
+     */
+    private final long length;
+
+    /**
+     * The Remote Procedure Call of the whole call.
+     */
+    private final RemoteCallIdentifier rpc;
+
+    /**
+     * True if the callee consumes the chunks as they arrive.
+     */
+    private final boolean streamed;
+
+    /**
+     * The bytes of the chunk.
+     */
+    private final ByteBufferValue data;
+
+    private PayloadChunk(long transfer,
+                         int sequence,
+                         int count,
+                         long offset,
+                         long length,
+                         RemoteCallIdentifier rpc,
+                         boolean streamed,
+                         ByteBufferValue data) {
+        this.transfer = transfer;
+        this.sequence = sequence;
+        this.count = count;
+        this.offset = offset;
+        this.length = length;
+        this.rpc = rpc;
+        this.streamed = streamed;
+        this.data = data;
+    }
+
+    /**
+     * Splits the remaining bytes of a payload into chunks of at most chunkSize bytes. An empty payload makes a single
+     * empty chunk. The chunks are views of the given buffer.
+     */
+    public static List<PayloadChunk> split(long transfer,
+                                           RemoteCallIdentifier rpc,
+                                           boolean streamed,
+                                           ByteBuffer payload,
+                                           int chunkSize) {
+        if (chunkSize <= 0)
+            throw new RuntimeException("The size of the chunks of a transfer must be positive.");
+        int length = payload.remaining();
+        int count = Math.max(1, (int) ((length + (long) chunkSize - 1) / chunkSize));
+        List<PayloadChunk> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ByteBuffer bytes = payload.duplicate();
+            bytes.position(payload.position() + i * chunkSize);
+            bytes.limit(bytes.position() + Math.min(chunkSize, length - i * chunkSize));
+            chunks.add(new PayloadChunk(transfer,
+                    i,
+                    count,
+                    (long) i * chunkSize,
+                    length,
+                    rpc,
+                    streamed,
+                    ByteBufferValue.of(bytes)));
+        }
+        return chunks;
+    }
+
+    public long getTransfer() {
+        return transfer;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public boolean isFirst() {
+        return sequence == 0;
+    }
+
+    public boolean isLast() {
+        return sequence == count - 1;
+    }
+
+    public RemoteCallIdentifier getRpc() {
+        return rpc;
+    }
+
+    public boolean isStreamed() {
+        return streamed;
+    }
+
+    /**
+     * Returns a view of the bytes of the chunk.
+     */
+    public ByteBuffer getData() {
+        return data.getBuffer();
+    }
+
+}
@@ -0,0 +1,217 @@
+package BipartiteTopologyAPI.combining;
+
+import BipartiteTopologyAPI.annotations.Combiner;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.annotations.RoutingKey;
+import org.apache.commons.lang3.tuple.Triple;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the pending calls of the @{@link Combiner} operations of a node, folded per (destination, operation, key) until
+ * the node flushes them to the network. The key is the scalar @{@link RoutingKey} argument of the call, if any, so that
+ * the updates of different keys are folded separately.
+ */
+public class CombinedCalls implements Serializable {
+
+    /**
+     * The pending folded calls, indexed by the id of their destination, their operation and their scalar key, in the
+     * order of their first call.
+     */
+    private final LinkedHashMap<Triple<Integer, String, Object>, PendingCall> pending;
+
+    /**
+     * The combiner of every @Combiner operation.
+     */
+    private transient HashMap<Method, MessageCombiner> combiners;
+
+    /**
+     * The index of the @RoutingKey parameter of every @Combiner operation, or -1 if it has none.
+     */
+    private transient HashMap<Method, Integer> keyIndices;
+
+    /**
+     * The number of calls added.
+     */
+    private long calls;
+
+    /**
+     * The number of folded calls flushed.
+     */
+    private long flushed;
+
+    public CombinedCalls() {
+        this.pending = new LinkedHashMap<>();
+        this.combiners = new HashMap<>();
+        this.keyIndices = new HashMap<>();
+        this.calls = 0;
+        this.flushed = 0;
+    }
+
+    /**
+     * Folds a call into the pending call of its operation to its destination, or makes it the pending call if there is
+     * none.
+     *
+     * @return False if there is a pending call that the new one cannot be folded into, in which case the pending calls
+     * to the destination must be flushed before adding the new call again.
+     */
+    public boolean add(NodeId destination, RemoteCallIdentifier rpc, Method method, Object[] args) {
+        MessageCombiner combiner = combinerOf(method);
+        Triple<Integer, String, Object> key = Triple.of(destination.getNodeId(), rpc.getOperation(), keyOf(method, args));
+        PendingCall call = pending.get(key);
+        if (call == null)
+            pending.put(key, new PendingCall(destination, rpc, method, combiner.init(method, args)));
+        else {
+            Object[] combined = combiner.combine(method, call.args, args);
+            if (combined == null)
+                return false;
+            call.args = combined;
+            call.calls += 1;
+        }
+        calls += 1;
+        return true;
+    }
+
+    /**
+     * Removes and returns all the pending calls, in the order of their first call.
+     */
+    public List<PendingCall> drain() {
+        ArrayList<PendingCall> calls = new ArrayList<>(pending.values());
+        pending.clear();
+        flushed += calls.size();
+        return calls;
+    }
+
+    /**
+     * Removes and returns the pending calls to a destination, in the order of their first call.
+     */
+    public List<PendingCall> drain(int destination) {
+        ArrayList<PendingCall> calls = new ArrayList<>();
+        if (pending.isEmpty())
+            return calls;
+        Iterator<Map.Entry<Triple<Integer, String, Object>, PendingCall>> i = pending.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<Triple<Integer, String, Object>, PendingCall> entry = i.next();
+            if (entry.getKey().getLeft() == destination) {
+                calls.add(entry.getValue());
+                i.remove();
+            }
+        }
+        flushed += calls.size();
+        return calls;
+    }
+
+    /**
+     * Drops the pending calls to a destination that left the network.
+     */
+    public void reset(int destination) {
+        pending.keySet().removeIf(key -> key.getLeft() == destination);
+    }
+
+    public void clear() {
+        pending.clear();
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * Returns the scalar routing key of a call, or null if the method has no scalar routing key.
+     */
+    private Object keyOf(Method method, Object[] args) {
+        if (keyIndices == null)
+            keyIndices = new HashMap<>();
+        Integer index = keyIndices.get(method);
+        if (index == null) {
+            index = -1;
+            for (int i = 0; i < method.getParameterCount(); i++)
+                if (method.getParameters()[i].isAnnotationPresent(RoutingKey.class))
+                    index = i;
+            keyIndices.put(method, index);
+        }
+        if (index < 0 || args[index] == null || args[index].getClass().isArray())
+            return null;
+        return args[index];
+    }
+
+    private MessageCombiner combinerOf(Method method) {
+        if (combiners == null)
+            combiners = new HashMap<>();
+        MessageCombiner combiner = combiners.get(method);
+        if (combiner == null) {
+            try {
+                combiner = method.getAnnotation(Combiner.class).value().getConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException("Failed to create the combiner of method " + method, e);
+            }
+            combiners.put(method, combiner);
+        }
+        return combiner;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getFlushed() {
+        return flushed;
+    }
+
+    /**
+     * A folded call waiting to be sent.
+     */
+    public static class PendingCall implements Serializable {
+
+        private final NodeId destination;
+
+        private final RemoteCallIdentifier rpc;
+
+        private final transient Method method;
+
+        private Object[] args;
+
+        /**
+         * The number of calls folded into this one.
+         */
+        private long calls;
+
+        PendingCall(NodeId destination, RemoteCallIdentifier rpc, Method method, Object[] args) {
+            this.destination = destination;
+            this.rpc = rpc;
+            this.method = method;
+            this.args = args;
+            this.calls = 1;
+        }
+
+        public NodeId getDestination() {
+            return destination;
+        }
+
+        public RemoteCallIdentifier getRpc() {
+            return rpc;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        public Object[] getArgs() {
+            return args;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+    }
+
+}
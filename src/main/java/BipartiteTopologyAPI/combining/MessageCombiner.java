@@ -0,0 +1,31 @@
+package BipartiteTopologyAPI.combining;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+
+/**
+ * Folds the pending calls of a one-way remote operation to the same node into a single call.
+ */
+public interface MessageCombiner extends Serializable {
+
+    /**
+     * Starts a folded call from the first pending call. The returned arguments must not share mutable state with the
+     * given ones, as the caller may reuse them after the call.
+     *
+     * @param method The called method of the remote proxy interface.
+     * @param args   The arguments of the call.
+     * @return The arguments of the folded call.
+     */
+    Object[] init(Method method, Object[] args);
+
+    /**
+     * Folds a call into a pending call.
+     *
+     * @param method   The called method of the remote proxy interface.
+     * @param combined The arguments of the pending folded call, which may be updated in place.
+     * @param args     The arguments of the new call.
+     * @return The arguments of the folded call, or null if the calls cannot be folded.
+     */
+    Object[] combine(Method method, Object[] combined, Object[] args);
+
+}
@@ -0,0 +1,100 @@
+package BipartiteTopologyAPI.combining;
+
+import BipartiteTopologyAPI.annotations.RoutingKey;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A {@link MessageCombiner} for additive updates, which sums the numeric arguments of the calls and their numeric arrays
+ * element-wise. The @{@link RoutingKey} arguments and all the other arguments must be equal for two calls to be folded.
+ */
+public class SumCombiner implements MessageCombiner {
+
+    @Override
+    public Object[] init(Method method, Object[] args) {
+        Object[] combined = new Object[args.length];
+        for (int i = 0; i < args.length; i++)
+            combined[i] = copyOf(args[i]);
+        return combined;
+    }
+
+    @Override
+    public Object[] combine(Method method, Object[] combined, Object[] args) {
+        if (combined.length != args.length)
+            return null;
+        boolean[] summed = new boolean[args.length];
+        for (int i = 0; i < args.length; i++) {
+            summed[i] = !method.getParameters()[i].isAnnotationPresent(RoutingKey.class) &&
+                    isSummable(combined[i], args[i]);
+            if (!summed[i] && !Objects.deepEquals(combined[i], args[i]))
+                return null;
+        }
+        for (int i = 0; i < args.length; i++)
+            if (summed[i])
+                combined[i] = sum(combined[i], args[i]);
+        return combined;
+    }
+
+    private static boolean isSummable(Object a, Object b) {
+        if (a == null || b == null || a.getClass() != b.getClass())
+            return false;
+        if (a instanceof Double || a instanceof Float || a instanceof Integer || a instanceof Long)
+            return true;
+        if (a instanceof double[])
+            return ((double[]) a).length == ((double[]) b).length;
+        if (a instanceof float[])
+            return ((float[]) a).length == ((float[]) b).length;
+        if (a instanceof int[])
+            return ((int[]) a).length == ((int[]) b).length;
+        if (a instanceof long[])
+            return ((long[]) a).length == ((long[]) b).length;
+        return false;
+    }
+
+    /**
+     * Adds b to a, updating the arrays of a in place.
+     */
+    private static Object sum(Object a, Object b) {
+        if (a instanceof Double)
+            return (Double) a + (Double) b;
+        if (a instanceof Float)
+            return (Float) a + (Float) b;
+        if (a instanceof Integer)
+            return (Integer) a + (Integer) b;
+        if (a instanceof Long)
+            return (Long) a + (Long) b;
+        if (a instanceof double[]) {
+            double[] x = (double[]) a, y = (double[]) b;
+            for (int i = 0; i < x.length; i++)
+                x[i] += y[i];
+        } else if (a instanceof float[]) {
+            float[] x = (float[]) a, y = (float[]) b;
+            for (int i = 0; i < x.length; i++)
+                x[i] += y[i];
+        } else if (a instanceof int[]) {
+            int[] x = (int[]) a, y = (int[]) b;
+            for (int i = 0; i < x.length; i++)
+                x[i] += y[i];
+        } else {
+            long[] x = (long[]) a, y = (long[]) b;
+            for (int i = 0; i < x.length; i++)
+                x[i] += y[i];
+        }
+        return a;
+    }
+
+    private static Object copyOf(Object arg) {
+        if (arg instanceof double[])
+            return Arrays.copyOf((double[]) arg, ((double[]) arg).length);
+        if (arg instanceof float[])
+            return Arrays.copyOf((float[]) arg, ((float[]) arg).length);
+        if (arg instanceof int[])
+            return Arrays.copyOf((int[]) arg, ((int[]) arg).length);
+        if (arg instanceof long[])
+            return Arrays.copyOf((long[]) arg, ((long[]) arg).length);
+        return arg;
+    }
+
+}
@@ -0,0 +1,484 @@
+package BipartiteTopologyAPI.data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A batch of records of the data stream stored column by column in primitive arrays, so that buffering and iterating
+ * over numeric records does not cost any per-record objects. A batch has any number of dense double, float and int
+ * columns of a fixed width, e.g. a feature vector and a label, and of sparse columns of (index, value) pairs stored in
+ * compressed sparse row layout.
+ * <p>
+ * The columns are declared before the first record is appended, and are identified by the order of their declaration.
+ * A batch flows through {@code receiveTuple} as a single tuple. It is handed over as a whole to a batched process
+ * method taking a ColumnarBatch, and record by record, as {@link Row} views, to any other process method.
+ */
+public class ColumnarBatch implements Serializable {
+
+    /**
+     * The kinds of the columns of a batch.
+     */
+    public enum ColumnType {
+        DOUBLE,
+        FLOAT,
+        INT,
+        SPARSE
+    }
+
+    /**
+     * The columns of the batch, in the order of their declaration.
+     */
+    private final ArrayList<Column> columns;
+
+    /**
+     * The number of records of the batch.
+     */
+    private int size;
+
+    /**
+     * The number of records the columns have room for.
+     */
+    private int capacity;
+
+    public ColumnarBatch(int capacity) {
+        if (capacity <= 0)
+            throw new RuntimeException("The capacity of a columnar batch must be positive.");
+        this.columns = new ArrayList<>();
+        this.size = 0;
+        this.capacity = capacity;
+    }
+
+    // =============================================== Declaration ====================================================
+
+    /**
+     * Declares a dense double column holding width values per record.
+     *
+     * @return The index of the column.
+     */
+    public int addDoubleColumn(int width) {
+        return addColumn(new DoubleColumn(width, capacity));
+    }
+
+    /**
+     * Declares a dense float column holding width values per record.
+     *
+     * @return The index of the column.
+     */
+    public int addFloatColumn(int width) {
+        return addColumn(new FloatColumn(width, capacity));
+    }
+
+    /**
+     * Declares a dense int column holding width values per record.
+     *
+     * @return The index of the column.
+     */
+    public int addIntColumn(int width) {
+        return addColumn(new IntColumn(width, capacity));
+    }
+
+    /**
+     * Declares a sparse column holding a variable number of (index, value) pairs per record.
+     *
+     * @return The index of the column.
+     */
+    public int addSparseColumn() {
+        return addColumn(new SparseColumn(capacity));
+    }
+
+    private int addColumn(Column column) {
+        if (size > 0)
+            throw new RuntimeException("The columns of a batch must be declared before its first record.");
+        columns.add(column);
+        return columns.size() - 1;
+    }
+
+    // ================================================= Writing ======================================================
+
+    /**
+     * Appends a record with zero dense values and no sparse entries.
+     *
+     * @return The index of the new record.
+     */
+    public int appendRow() {
+        if (size == capacity) {
+            capacity *= 2;
+            for (Column column : columns)
+                column.grow(capacity);
+        }
+        for (Column column : columns)
+            if (column instanceof SparseColumn)
+                ((SparseColumn) column).endRow(size);
+        return size++;
+    }
+
+    public void setDouble(int column, int row, int offset, double value) {
+        DoubleColumn c = column(column, DoubleColumn.class);
+        c.values[c.position(row, offset, size)] = value;
+    }
+
+    public void setDoubles(int column, int row, double[] values) {
+        DoubleColumn c = column(column, DoubleColumn.class);
+        System.arraycopy(values, 0, c.values, c.rowStart(row, values.length, size), c.width);
+    }
+
+    public void setFloat(int column, int row, int offset, float value) {
+        FloatColumn c = column(column, FloatColumn.class);
+        c.values[c.position(row, offset, size)] = value;
+    }
+
+    public void setFloats(int column, int row, float[] values) {
+        FloatColumn c = column(column, FloatColumn.class);
+        System.arraycopy(values, 0, c.values, c.rowStart(row, values.length, size), c.width);
+    }
+
+    public void setInt(int column, int row, int offset, int value) {
+        IntColumn c = column(column, IntColumn.class);
+        c.values[c.position(row, offset, size)] = value;
+    }
+
+    public void setInts(int column, int row, int[] values) {
+        IntColumn c = column(column, IntColumn.class);
+        System.arraycopy(values, 0, c.values, c.rowStart(row, values.length, size), c.width);
+    }
+
+    /**
+     * Sets the sparse entries of the last appended record.
+     */
+    public void setSparse(int column, int row, int[] indices, double[] values) {
+        if (indices.length != values.length)
+            throw new RuntimeException("The indices and the values of a sparse record differ in length.");
+        if (row != size - 1)
+            throw new RuntimeException("Only the sparse entries of the last appended record can be set.");
+        column(column, SparseColumn.class).setLastRow(row, indices, values);
+    }
+
+    // ================================================= Reading ======================================================
+
+    public double getDouble(int column, int row, int offset) {
+        DoubleColumn c = column(column, DoubleColumn.class);
+        return c.values[c.position(row, offset, size)];
+    }
+
+    public float getFloat(int column, int row, int offset) {
+        FloatColumn c = column(column, FloatColumn.class);
+        return c.values[c.position(row, offset, size)];
+    }
+
+    public int getInt(int column, int row, int offset) {
+        IntColumn c = column(column, IntColumn.class);
+        return c.values[c.position(row, offset, size)];
+    }
+
+    /**
+     * Returns the backing array of a dense double column, holding the values of record r at [r * width, (r + 1) *
+     * width). The array may be longer than the records of the batch.
+     */
+    public double[] getDoubleColumn(int column) {
+        return column(column, DoubleColumn.class).values;
+    }
+
+    /**
+     * Returns the backing array of a dense float column, laid out as in {@link #getDoubleColumn(int)}.
+     */
+    public float[] getFloatColumn(int column) {
+        return column(column, FloatColumn.class).values;
+    }
+
+    /**
+     * Returns the backing array of a dense int column, laid out as in {@link #getDoubleColumn(int)}.
+     */
+    public int[] getIntColumn(int column) {
+        return column(column, IntColumn.class).values;
+    }
+
+    /**
+     * Returns the row offsets of a sparse column. The entries of record r are at [offsets[r], offsets[r + 1]) of the
+     * index and value arrays.
+     */
+    public int[] getSparseOffsets(int column) {
+        return column(column, SparseColumn.class).offsets;
+    }
+
+    public int[] getSparseIndices(int column) {
+        return column(column, SparseColumn.class).indices;
+    }
+
+    public double[] getSparseValues(int column) {
+        return column(column, SparseColumn.class).values;
+    }
+
+    public int getWidth(int column) {
+        Column c = columns.get(column);
+        return c instanceof DenseColumn ? ((DenseColumn) c).width : 0;
+    }
+
+    public ColumnType getColumnType(int column) {
+        return columns.get(column).type();
+    }
+
+    public int getNumberOfColumns() {
+        return columns.size();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a view of a record of the batch.
+     */
+    public Row row(int row) {
+        if (row < 0 || row >= size)
+            throw new RuntimeException("Record " + row + " is out of the " + size + " records of the batch.");
+        return new Row(this, row);
+    }
+
+    /**
+     * Returns the number of bytes held by the columns of the batch.
+     */
+    public long memoryFootprint() {
+        long bytes = 0;
+        for (Column column : columns)
+            bytes += column.bytes();
+        return bytes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <C extends Column> C column(int column, Class<C> cls) {
+        Column c = columns.get(column);
+        if (!cls.isInstance(c))
+            throw new RuntimeException("Column " + column + " of the batch is a " + c.type() + " column.");
+        return (C) c;
+    }
+
+    // ================================================= Columns ======================================================
+
+    private static abstract class Column implements Serializable {
+
+        abstract ColumnType type();
+
+        abstract void grow(int capacity);
+
+        abstract long bytes();
+
+    }
+
+    private static abstract class DenseColumn extends Column {
+
+        /**
+         * The number of values per record.
+         */
+        final int width;
+
+        DenseColumn(int width) {
+            if (width <= 0)
+                throw new RuntimeException("The width of a dense column must be positive.");
+            this.width = width;
+        }
+
+        int position(int row, int offset, int size) {
+            if (row < 0 || row >= size || offset < 0 || offset >= width)
+                throw new RuntimeException("Value " + offset + " of record " + row + " is out of the column.");
+            return row * width + offset;
+        }
+
+        int rowStart(int row, int length, int size) {
+            if (length != width)
+                throw new RuntimeException("A record of " + length + " values does not fit a column of width " + width);
+            return position(row, 0, size);
+        }
+
+    }
+
+    private static class DoubleColumn extends DenseColumn {
+
+        double[] values;
+
+        DoubleColumn(int width, int capacity) {
+            super(width);
+            this.values = new double[width * capacity];
+        }
+
+        ColumnType type() {
+            return ColumnType.DOUBLE;
+        }
+
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, width * capacity);
+        }
+
+        long bytes() {
+            return 8L * values.length;
+        }
+
+    }
+
+    private static class FloatColumn extends DenseColumn {
+
+        float[] values;
+
+        FloatColumn(int width, int capacity) {
+            super(width);
+            this.values = new float[width * capacity];
+        }
+
+        ColumnType type() {
+            return ColumnType.FLOAT;
+        }
+
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, width * capacity);
+        }
+
+        long bytes() {
+            return 4L * values.length;
+        }
+
+    }
+
+    private static class IntColumn extends DenseColumn {
+
+        int[] values;
+
+        IntColumn(int width, int capacity) {
+            super(width);
+            this.values = new int[width * capacity];
+        }
+
+        ColumnType type() {
+            return ColumnType.INT;
+        }
+
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, width * capacity);
+        }
+
+        long bytes() {
+            return 4L * values.length;
+        }
+
+    }
+
+    private static class SparseColumn extends Column {
+
+        int[] offsets;
+        int[] indices;
+        double[] values;
+
+        SparseColumn(int capacity) {
+            this.offsets = new int[capacity + 1];
+            this.indices = new int[capacity];
+            this.values = new double[capacity];
+        }
+
+        ColumnType type() {
+            return ColumnType.SPARSE;
+        }
+
+        void grow(int capacity) {
+            offsets = Arrays.copyOf(offsets, capacity + 1);
+        }
+
+        /**
+         * Opens an empty record after the given one.
+         */
+        void endRow(int row) {
+            offsets[row + 1] = offsets[row];
+        }
+
+        void setLastRow(int row, int[] rowIndices, double[] rowValues) {
+            int start = offsets[row];
+            int end = start + rowIndices.length;
+            if (end > indices.length) {
+                int length = Math.max(end, 2 * indices.length);
+                indices = Arrays.copyOf(indices, length);
+                values = Arrays.copyOf(values, length);
+            }
+            System.arraycopy(rowIndices, 0, indices, start, rowIndices.length);
+            System.arraycopy(rowValues, 0, values, start, rowValues.length);
+            offsets[row + 1] = end;
+        }
+
+        long bytes() {
+            return 4L * offsets.length + 4L * indices.length + 8L * values.length;
+        }
+
+    }
+
+    // =================================================== Rows =======================================================
+
+    /**
+     * A view of a record of a batch, handed over to process methods that do not take whole batches.
+     */
+    public static class Row implements Serializable {
+
+        private final ColumnarBatch batch;
+
+        private final int index;
+
+        Row(ColumnarBatch batch, int index) {
+            this.batch = batch;
+            this.index = index;
+        }
+
+        public double getDouble(int column, int offset) {
+            return batch.getDouble(column, index, offset);
+        }
+
+        public float getFloat(int column, int offset) {
+            return batch.getFloat(column, index, offset);
+        }
+
+        public int getInt(int column, int offset) {
+            return batch.getInt(column, index, offset);
+        }
+
+        /**
+         * Returns a copy of the values of a dense double column of the record.
+         */
+        public double[] getDoubles(int column) {
+            int width = batch.getWidth(column);
+            return Arrays.copyOfRange(batch.getDoubleColumn(column), index * width, (index + 1) * width);
+        }
+
+        /**
+         * Returns a copy of the values of a dense float column of the record.
+         */
+        public float[] getFloats(int column) {
+            int width = batch.getWidth(column);
+            return Arrays.copyOfRange(batch.getFloatColumn(column), index * width, (index + 1) * width);
+        }
+
+        /**
+         * Returns a copy of the values of a dense int column of the record.
+         */
+        public int[] getInts(int column) {
+            int width = batch.getWidth(column);
+            return Arrays.copyOfRange(batch.getIntColumn(column), index * width, (index + 1) * width);
+        }
+
+        public int getSparseStart(int column) {
+            return batch.getSparseOffsets(column)[index];
+        }
+
+        public int getSparseEnd(int column) {
+            return batch.getSparseOffsets(column)[index + 1];
+        }
+
+        public ColumnarBatch getBatch() {
+            return batch;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+    }
+
+}
@@ -0,0 +1,22 @@
+package BipartiteTopologyAPI.encoding;
+
+import java.io.Serializable;
+
+/**
+ * A double[] or float[] argument of a remote operation, compressed by a {@link CompressionCodec}.
+ */
+public interface CompressedArray extends Serializable {
+
+    /**
+     * Reconstructs the (approximate) array.
+     *
+     * @return A new double[] or float[] array.
+     */
+    Object decompress();
+
+    /**
+     * Returns the codec that compressed the array.
+     */
+    CompressionCodec getCodec();
+
+}
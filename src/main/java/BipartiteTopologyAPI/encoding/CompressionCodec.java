@@ -0,0 +1,24 @@
+package BipartiteTopologyAPI.encoding;
+
+/**
+ * The lossy compression codecs of the double[] and float[] arguments of remote operations.
+ */
+public enum CompressionCodec {
+
+    /**
+     * Every element is sent as an IEEE 754 half precision float.
+     */
+    FP16,
+
+    /**
+     * Every element is sent as a signed byte, scaled by the largest absolute value of the array.
+     */
+    INT8,
+
+    /**
+     * Only the elements with the largest absolute values are sent. The elements left out are accumulated by the sender
+     * and added to the next call to the same destination (error feedback).
+     */
+    TOP_K
+
+}
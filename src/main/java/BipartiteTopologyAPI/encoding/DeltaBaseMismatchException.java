@@ -0,0 +1,45 @@
+package BipartiteTopologyAPI.encoding;
+
+import BipartiteTopologyAPI.sites.NodeId;
+
+/**
+ * Thrown by a {@link PayloadDecoder} that received a delta whose base it does not hold. The call cannot be
+ * reconstructed, and the caller should be sent a {@link DeltaResync}.
+ */
+public class DeltaBaseMismatchException extends RuntimeException {
+
+    /**
+     * The caller.
+     */
+    private final NodeId source;
+
+    /**
+     * The id of the remote operation.
+     */
+    private final String operation;
+
+    /**
+     * True if no resync has been requested from the caller since its last full array.
+     */
+    private final boolean resyncRequired;
+
+    public DeltaBaseMismatchException(String message, NodeId source, String operation, boolean resyncRequired) {
+        super(message);
+        this.source = source;
+        this.operation = operation;
+        this.resyncRequired = resyncRequired;
+    }
+
+    public NodeId getSource() {
+        return source;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public boolean isResyncRequired() {
+        return resyncRequired;
+    }
+
+}
@@ -0,0 +1,30 @@
+package BipartiteTopologyAPI.encoding;
+
+import java.io.Serializable;
+
+/**
+ * The control message a node sends to a caller whose delta encoded argument it could not reconstruct, as it does not
+ * hold the base of the delta, e.g. because a message was lost when a connection was re-established. The caller forgets
+ * the arrays it last sent to the node, so that its next calls send full arrays.
+ */
+public class DeltaResync implements Serializable {
+
+    /**
+     * The id of the remote operation whose argument could not be reconstructed.
+     */
+    private final String operation;
+
+    public DeltaResync(String operation) {
+        this.operation = operation;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    @Override
+    public String toString() {
+        return "DeltaResync(" + operation + ")";
+    }
+
+}
@@ -0,0 +1,80 @@
+package BipartiteTopologyAPI.encoding;
+
+import BipartiteTopologyAPI.network.MessageCodec;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * An argument of a remote operation that is decoded on first access. A LazyValue travels as the encoded bytes of its
+ * value, so receiving a call only copies these bytes, and a node that filters the calls it receives decodes only the
+ * values it uses. The bytes are kept after decoding, so a node relaying the value to another node, e.g. through
+ * {@code NodeInstance.forward(NodeId)}, sends them as they were received, without encoding the value again.
+ * <p>
+ * As the bytes are kept, a decoded value must not be changed by a node that relays it.
+ *
+ * @param <T> The type of the value.
+ */
+public class LazyValue<T extends Serializable> implements Serializable {
+
+    /**
+     * The encoded value, or null if the value has not been encoded yet.
+     */
+    private byte[] bytes;
+
+    /**
+     * The decoded value, or null if the value has not been decoded yet.
+     */
+    private transient T value;
+
+    private LazyValue(T value, byte[] bytes) {
+        this.value = value;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Holds a value, which is encoded when the holder is sent.
+     */
+    public static <T extends Serializable> LazyValue<T> of(T value) {
+        return new LazyValue<>(value, null);
+    }
+
+    /**
+     * Returns the value, decoding it on the first access.
+     */
+    @SuppressWarnings("unchecked")
+    public T get() {
+        if (value == null && bytes != null)
+            value = (T) MessageCodec.decodePayload(bytes);
+        return value;
+    }
+
+    public boolean isDecoded() {
+        return value != null || bytes == null;
+    }
+
+    /**
+     * Returns the length of the encoded value, encoding it if needed.
+     */
+    public int getEncodedLength() {
+        return encode().length;
+    }
+
+    private byte[] encode() {
+        if (bytes == null)
+            bytes = MessageCodec.encodePayload(value);
+        return bytes;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        encode();
+        out.defaultWriteObject();
+    }
+
+    @Override
+    public String toString() {
+        return isDecoded() ? "LazyValue(" + value + ")" : "LazyValue(" + bytes.length + " encoded bytes)";
+    }
+
+}
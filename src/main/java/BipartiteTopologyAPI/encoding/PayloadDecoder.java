@@ -0,0 +1,121 @@
+package BipartiteTopologyAPI.encoding;
+
+import BipartiteTopologyAPI.network.ByteBufferValue;
+import BipartiteTopologyAPI.sites.NodeId;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * The receiving side of the payload encodings of a wrapped node. It reconstructs the arguments of the remote operations
+ * that were encoded by the {@link PayloadEncoder} of the caller, keeping the state the encodings need for every source.
+ * A delta whose base is not held cannot be reconstructed, and the decoder then waits for the source to send a full
+ * array, which it asks for once through a {@link DeltaResync}.
+ */
+public class PayloadDecoder {
+
+    /**
+     * The arrays last reconstructed for every source, operation, argument and channel (point to point or broadcast).
+     */
+    private final Map<String, Baseline> baselines;
+
+    /**
+     * The arguments whose sources have been asked for a full array, keyed as the baselines.
+     */
+    private final HashSet<String> resyncing;
+
+    public PayloadDecoder() {
+        this.baselines = new HashMap<>();
+        this.resyncing = new HashSet<>();
+    }
+
+    /**
+     * Decodes the arguments of a remote call.
+     *
+     * @param source    The caller.
+     * @param operation The id of the remote operation.
+     * @param args      The received arguments.
+     * @return The arguments to invoke the operation with, which are the given ones if none of them is encoded.
+     * @throws DeltaBaseMismatchException If an argument is a delta whose base is not held.
+     */
+    public Object[] decode(NodeId source, String operation, Object[] args) {
+        if (args == null)
+            return null;
+        Object[] decoded = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof ByteBufferValue) {
+                if (decoded == null)
+                    decoded = args.clone();
+                decoded[i] = ((ByteBufferValue) args[i]).getBuffer();
+                continue;
+            }
+            if (args[i] instanceof CompressedArray) {
+                if (decoded == null)
+                    decoded = args.clone();
+                decoded[i] = ((CompressedArray) args[i]).decompress();
+                continue;
+            }
+            if (!(args[i] instanceof SparseDelta))
+                continue;
+            if (decoded == null)
+                decoded = args.clone();
+            SparseDelta delta = (SparseDelta) args[i];
+            String key = source.getNodeType() + ":" + source.getNodeId() + "/" + operation + "/" + i +
+                    (delta.isBroadcast() ? "/broadcast" : "");
+            Baseline baseline = baselines.get(key);
+            Object array;
+            if (delta.isFull()) {
+                array = delta.applyTo(null);
+                resyncing.remove(key);
+            } else if (baseline != null && baseline.version == delta.getBaseVersion()) {
+                array = delta.applyTo(baseline.array);
+            } else {
+                // The later deltas are based on the array this one reconstructs, so they are dropped as well.
+                baselines.remove(key);
+                throw new DeltaBaseMismatchException("Received a delta of version " + delta.getBaseVersion() +
+                        " for argument " + i + " of operation " + operation + " from " + source + ", while holding " +
+                        ((baseline == null) ? "no version." : "version " + baseline.version + "."),
+                        source,
+                        operation,
+                        resyncing.add(key));
+            }
+            baselines.put(key, new Baseline(delta.getVersion(), array));
+            decoded[i] = (array instanceof double[]) ? ((double[]) array).clone() : ((float[]) array).clone();
+        }
+        return (decoded == null) ? args : decoded;
+    }
+
+    /**
+     * Forgets the arrays received from a source.
+     */
+    public void reset(NodeId source) {
+        String prefix = source.getNodeType() + ":" + source.getNodeId() + "/";
+        baselines.keySet().removeIf(key -> key.startsWith(prefix));
+        resyncing.removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Forgets the arrays received from all sources.
+     */
+    public void clear() {
+        baselines.clear();
+        resyncing.clear();
+    }
+
+    /**
+     * An array last reconstructed for a source, along with its version.
+     */
+    private static class Baseline {
+
+        final long version;
+        final Object array;
+
+        Baseline(long version, Object array) {
+            this.version = version;
+            this.array = array;
+        }
+
+    }
+
+}
@@ -0,0 +1,196 @@
+package BipartiteTopologyAPI.encoding;
+
+import BipartiteTopologyAPI.annotations.Compressed;
+import BipartiteTopologyAPI.annotations.DeltaEncoded;
+import BipartiteTopologyAPI.network.ByteBufferValue;
+import BipartiteTopologyAPI.sites.NodeId;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The sending side of the payload encodings of a wrapped node. It replaces the arguments of the remote operations that
+ * declare an encoding (a delta encoding or a compression codec) with their encoded form, keeping the state the encodings
+ * need for every destination. The {@link ByteBuffer} arguments are held by {@link ByteBufferValue}s, without copying
+ * them.
+ */
+public class PayloadEncoder {
+
+    /**
+     * The encodings declared by every proxied method.
+     */
+    private final Map<Method, Encoding> encodings;
+
+    /**
+     * The arrays last sent for every destination, operation and argument.
+     */
+    private final Map<String, Baseline> baselines;
+
+    /**
+     * The error feedback of the top-k compression for every destination, operation and argument. It holds the sum of
+     * the elements that were left out of the previous calls.
+     */
+    private final Map<String, double[]> residuals;
+
+    public PayloadEncoder() {
+        this.encodings = new HashMap<>();
+        this.baselines = new HashMap<>();
+        this.residuals = new HashMap<>();
+    }
+
+    /**
+     * Encodes the arguments of a remote call.
+     *
+     * @param method    The proxied method being called.
+     * @param operation The id of the remote operation.
+     * @param target    The destination of the call, or the broadcast target if the call is broadcast.
+     * @param broadcast True if the call is broadcast.
+     * @param args      The arguments of the call.
+     * @return The arguments to send, which are the given ones if the operation declares no encoding.
+     */
+    public Object[] encode(Method method, String operation, NodeId target, boolean broadcast, Object[] args) {
+        if (args == null)
+            return null;
+        Encoding encoding = encodingOf(method);
+        if (encoding.delta == null && encoding.compressed == null && !encoding.buffers)
+            return args;
+        Object[] encoded = args.clone();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof ByteBuffer) {
+                encoded[i] = ByteBufferValue.of((ByteBuffer) args[i]);
+                continue;
+            }
+            if (encoding.delta == null && encoding.compressed == null)
+                continue;
+            if (!(args[i] instanceof double[] || args[i] instanceof float[]))
+                continue;
+            String key = target.getNodeType() + ":" + target.getNodeId() + "/" + operation + "/" + i;
+            if (encoding.delta != null)
+                encoded[i] = deltaEncode(key, args[i], encoding.delta, broadcast);
+            else
+                encoded[i] = compress(key, args[i], encoding.compressed);
+        }
+        return encoded;
+    }
+
+    private SparseDelta deltaEncode(String key, Object array, DeltaEncoded delta, boolean broadcast) {
+        Baseline baseline = baselines.get(key);
+        SparseDelta sparseDelta = (baseline == null) ?
+                SparseDelta.diff(null, array, 0, delta.maxDensity(), broadcast) :
+                SparseDelta.diff(baseline.array, array, baseline.version, delta.maxDensity(), broadcast);
+        baselines.put(key, new Baseline(sparseDelta.getVersion(), copy(array)));
+        return sparseDelta;
+    }
+
+    private CompressedArray compress(String key, Object array, Compressed compressed) {
+        switch (compressed.value()) {
+            case FP16:
+                return QuantizedArray.fp16(array);
+            case INT8:
+                return QuantizedArray.int8(array);
+            case TOP_K:
+                int length = QuantizedArray.length(array);
+                double[] residual = residuals.get(key);
+                if (residual == null || residual.length != length)
+                    residual = new double[length];
+
+                // Add the elements left out of the previous calls, and keep the ones left out of this call.
+                Object corrected;
+                if (array instanceof double[]) {
+                    double[] values = ((double[]) array).clone();
+                    for (int i = 0; i < length; i++)
+                        values[i] += residual[i];
+                    corrected = values;
+                } else {
+                    float[] values = ((float[]) array).clone();
+                    for (int i = 0; i < length; i++)
+                        values[i] += (float) residual[i];
+                    corrected = values;
+                }
+                TopKArray topK = TopKArray.of(corrected, (int) Math.ceil(compressed.ratio() * length));
+                for (int i = 0; i < length; i++)
+                    residual[i] = QuantizedArray.get(corrected, i);
+                for (int index : topK.getIndices())
+                    residual[index] = 0;
+                residuals.put(key, residual);
+                return topK;
+            default:
+                throw new IllegalArgumentException("Unknown compression codec " + compressed.value());
+        }
+    }
+
+    /**
+     * Forgets the arrays last sent to a destination, so that the next calls send full arrays, along with the error
+     * feedback of the destination.
+     */
+    public void reset(NodeId target) {
+        String prefix = target.getNodeType() + ":" + target.getNodeId() + "/";
+        baselines.keySet().removeIf(key -> key.startsWith(prefix));
+        residuals.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Forgets the arrays last sent to all destinations, along with the error feedback of all destinations.
+     */
+    public void clear() {
+        baselines.clear();
+        residuals.clear();
+    }
+
+    private Encoding encodingOf(Method method) {
+        Encoding encoding = encodings.get(method);
+        if (encoding == null) {
+            boolean buffers = false;
+            for (Class<?> parameter : method.getParameterTypes())
+                buffers |= ByteBuffer.class.isAssignableFrom(parameter);
+            encoding = new Encoding(method.getAnnotation(DeltaEncoded.class),
+                    method.getAnnotation(Compressed.class),
+                    buffers);
+            encodings.put(method, encoding);
+        }
+        return encoding;
+    }
+
+    private static Object copy(Object array) {
+        return (array instanceof double[]) ? ((double[]) array).clone() : ((float[]) array).clone();
+    }
+
+    /**
+     * The encodings declared by a proxied method.
+     */
+    private static class Encoding {
+
+        final DeltaEncoded delta;
+        final Compressed compressed;
+
+        /**
+         * True if the method takes {@link ByteBuffer} arguments.
+         */
+        final boolean buffers;
+
+        Encoding(DeltaEncoded delta, Compressed compressed, boolean buffers) {
+            this.delta = delta;
+            this.compressed = compressed;
+            this.buffers = buffers;
+        }
+
+    }
+
+    /**
+     * An array last sent to a destination, along with its version.
+     */
+    private static class Baseline {
+
+        final long version;
+        final Object array;
+
+        Baseline(long version, Object array) {
+            this.version = version;
+            this.array = array;
+        }
+
+    }
+
+}
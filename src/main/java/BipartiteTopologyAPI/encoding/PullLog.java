@@ -0,0 +1,107 @@
+package BipartiteTopologyAPI.encoding;
+
+import BipartiteTopologyAPI.annotations.VersionedPull;
+import BipartiteTopologyAPI.caching.ResponseCache;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The log of the versions of the arrays pulled from a node through its @{@link VersionedPull} operations. For every
+ * distinct call, the log keeps the arrays returned at the latest state versions of the node, so that later calls can be
+ * answered with the changes since the version their callers hold.
+ */
+public class PullLog implements Serializable {
+
+    /**
+     * The logged versions of every call of every operation, in least recently used order.
+     */
+    private final HashMap<String, LinkedHashMap<ResponseCache.Key, ArrayDeque<Version>>> logs;
+
+    public PullLog() {
+        this.logs = new HashMap<>();
+    }
+
+    /**
+     * Answers a pull and logs the pulled array.
+     *
+     * @param policy        The pulling policy of the operation.
+     * @param key           The key of the call.
+     * @param clientVersion The version of the array held by the caller, or -1 if it holds none.
+     * @param current       The array returned by the operation.
+     * @param stateVersion  The current state version of the node.
+     * @return A delta against the version held by the caller, or the full array if that version is not logged.
+     */
+    public SparseDelta respond(VersionedPull policy,
+                               ResponseCache.Key key,
+                               long clientVersion,
+                               Object current,
+                               long stateVersion) {
+        ArrayDeque<Version> log = logOf(policy, key);
+        Object base = null;
+        if (clientVersion >= 0)
+            for (Version version : log)
+                if (version.version == clientVersion)
+                    base = version.array;
+        SparseDelta delta = SparseDelta.diff(base,
+                current,
+                (base == null) ? -1 : clientVersion,
+                stateVersion,
+                policy.maxDensity(),
+                false);
+        if (log.isEmpty() || log.peekLast().version != stateVersion) {
+            log.addLast(new Version(stateVersion, copyOf(current)));
+            while (log.size() > policy.logSize())
+                log.removeFirst();
+        }
+        return delta;
+    }
+
+    public void clear() {
+        logs.clear();
+    }
+
+    static Object copyOf(Object array) {
+        return (array instanceof double[]) ? ((double[]) array).clone() : ((float[]) array).clone();
+    }
+
+    private ArrayDeque<Version> logOf(VersionedPull policy, ResponseCache.Key key) {
+        LinkedHashMap<ResponseCache.Key, ArrayDeque<Version>> operationLogs = logs.get(key.getOperation());
+        if (operationLogs == null) {
+            final int capacity = policy.capacity();
+            operationLogs = new LinkedHashMap<ResponseCache.Key, ArrayDeque<Version>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ResponseCache.Key, ArrayDeque<Version>> eldest) {
+                    return size() > capacity;
+                }
+            };
+            logs.put(key.getOperation(), operationLogs);
+        }
+        ArrayDeque<Version> log = operationLogs.get(key);
+        if (log == null) {
+            log = new ArrayDeque<>();
+            operationLogs.put(key, log);
+        }
+        return log;
+    }
+
+    /**
+     * A logged version of a pulled array.
+     */
+    private static final class Version implements Serializable {
+
+        private final long version;
+
+        private final Object array;
+
+        private Version(long version, Object array) {
+            this.version = version;
+            this.array = array;
+        }
+
+    }
+
+}
@@ -0,0 +1,97 @@
+package BipartiteTopologyAPI.encoding;
+
+import BipartiteTopologyAPI.annotations.VersionedPull;
+import BipartiteTopologyAPI.caching.ResponseCache;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The arrays last pulled by a node through the @{@link VersionedPull} operations of its disjoint nodes, along with their
+ * versions, against which the disjoint nodes compute the deltas of the next pulls.
+ */
+public class PulledValues implements Serializable {
+
+    /**
+     * The pulled arrays of every call of every operation, in least recently used order.
+     */
+    private final HashMap<String, LinkedHashMap<ResponseCache.Key, Pulled>> pulled;
+
+    public PulledValues() {
+        this.pulled = new HashMap<>();
+    }
+
+    /**
+     * Returns the array last pulled by a call, or null if none has been pulled.
+     */
+    public Pulled get(VersionedPull policy, ResponseCache.Key key) {
+        LinkedHashMap<ResponseCache.Key, Pulled> operationValues = pulled.get(key.getOperation());
+        if (operationValues == null) {
+            final int capacity = policy.capacity();
+            operationValues = new LinkedHashMap<ResponseCache.Key, Pulled>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ResponseCache.Key, Pulled> eldest) {
+                    return size() > capacity;
+                }
+            };
+            pulled.put(key.getOperation(), operationValues);
+        }
+        return operationValues.get(key);
+    }
+
+    /**
+     * Stores a pulled array, unless a later version of it has already been stored.
+     */
+    public void put(ResponseCache.Key key, long version, Object array) {
+        LinkedHashMap<ResponseCache.Key, Pulled> operationValues = pulled.get(key.getOperation());
+        if (operationValues == null)
+            return;
+        Pulled previous = operationValues.get(key);
+        if (previous == null || previous.version < version)
+            operationValues.put(key, new Pulled(version, array));
+    }
+
+    /**
+     * Forgets the arrays pulled from a disjoint node.
+     */
+    public void reset(int node) {
+        for (LinkedHashMap<ResponseCache.Key, Pulled> operationValues : pulled.values()) {
+            Iterator<ResponseCache.Key> keys = operationValues.keySet().iterator();
+            while (keys.hasNext())
+                if (keys.next().getNode() == node)
+                    keys.remove();
+        }
+    }
+
+    public void clear() {
+        pulled.clear();
+    }
+
+    /**
+     * A pulled array along with its version.
+     */
+    public static final class Pulled implements Serializable {
+
+        private final long version;
+
+        private final Object array;
+
+        private Pulled(long version, Object array) {
+            this.version = version;
+            this.array = array;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public Object getArray() {
+            return array;
+        }
+
+    }
+
+}
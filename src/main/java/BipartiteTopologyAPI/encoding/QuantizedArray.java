@@ -0,0 +1,142 @@
+package BipartiteTopologyAPI.encoding;
+
+/**
+ * A double[] or float[] array quantized to half precision floats or to scaled bytes.
+ */
+public class QuantizedArray implements CompressedArray {
+
+    /**
+     * The codec that quantized the array.
+     */
+    private final CompressionCodec codec;
+
+    /**
+     * A flag determining if the original array is a double[] (or a float[]).
+     */
+    private final boolean doubles;
+
+    /**
+     * The half precision elements of a {@link CompressionCodec#FP16} array.
+     */
+    private final short[] halves;
+
+    /**
+     * The scaled elements of a {@link CompressionCodec#INT8} array.
+     */
+    private final byte[] bytes;
+
+    /**
+     * The scale of the elements of a {@link CompressionCodec#INT8} array.
+     */
+    private final double scale;
+
+    private QuantizedArray(CompressionCodec codec, boolean doubles, short[] halves, byte[] bytes, double scale) {
+        this.codec = codec;
+        this.doubles = doubles;
+        this.halves = halves;
+        this.bytes = bytes;
+        this.scale = scale;
+    }
+
+    /**
+     * Quantizes every element of an array to a half precision float.
+     */
+    public static QuantizedArray fp16(Object array) {
+        int length = length(array);
+        short[] halves = new short[length];
+        for (int i = 0; i < length; i++)
+            halves[i] = toHalf((float) get(array, i));
+        return new QuantizedArray(CompressionCodec.FP16, array instanceof double[], halves, null, 0);
+    }
+
+    /**
+     * Quantizes every element of an array to a signed byte, scaled by the largest absolute value of the array.
+     */
+    public static QuantizedArray int8(Object array) {
+        int length = length(array);
+        double max = 0;
+        for (int i = 0; i < length; i++)
+            max = Math.max(max, Math.abs(get(array, i)));
+        double scale = (max == 0 || Double.isNaN(max) || Double.isInfinite(max)) ? 1 : max / 127;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+            bytes[i] = (byte) Math.max(-127, Math.min(127, Math.round(get(array, i) / scale)));
+        return new QuantizedArray(CompressionCodec.INT8, array instanceof double[], null, bytes, scale);
+    }
+
+    @Override
+    public Object decompress() {
+        int length = (halves != null) ? halves.length : bytes.length;
+        double[] doubleArray = (doubles) ? new double[length] : null;
+        float[] floatArray = (doubles) ? null : new float[length];
+        for (int i = 0; i < length; i++) {
+            double value = (halves != null) ? toFloat(halves[i]) : bytes[i] * scale;
+            if (doubles)
+                doubleArray[i] = value;
+            else
+                floatArray[i] = (float) value;
+        }
+        return (doubles) ? doubleArray : floatArray;
+    }
+
+    @Override
+    public CompressionCodec getCodec() {
+        return codec;
+    }
+
+    static int length(Object array) {
+        return (array instanceof double[]) ? ((double[]) array).length : ((float[]) array).length;
+    }
+
+    static double get(Object array, int index) {
+        return (array instanceof double[]) ? ((double[]) array)[index] : ((float[]) array)[index];
+    }
+
+    /**
+     * Converts a float to the bits of the nearest half precision float.
+     */
+    static short toHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int rounded = (bits & 0x7fffffff) + 0x1000;
+        if (rounded >= 0x47800000) {
+            if ((bits & 0x7fffffff) >= 0x47800000) {
+                // Infinities and NaNs keep their class, finite values overflow to infinity.
+                if (rounded < 0x7f800000)
+                    return (short) (sign | 0x7c00);
+                return (short) (sign | 0x7c00 | ((bits & 0x007fffff) >>> 13));
+            }
+            return (short) (sign | 0x7bff);
+        }
+        if (rounded >= 0x38800000)
+            return (short) (sign | ((rounded - 0x38000000) >>> 13));
+        if (rounded < 0x33000000)
+            return (short) sign;
+        // Subnormal half precision floats.
+        int exponent = (bits & 0x7fffffff) >>> 23;
+        return (short) (sign | ((((bits & 0x7fffff) | 0x800000) + (0x800000 >>> (exponent - 102))) >>> (126 - exponent)));
+    }
+
+    /**
+     * Converts the bits of a half precision float to a float.
+     */
+    static float toFloat(short half) {
+        int mantissa = half & 0x03ff;
+        int exponent = half & 0x7c00;
+        if (exponent == 0x7c00) {
+            exponent = 0x3fc00;
+        } else if (exponent != 0) {
+            exponent += 0x1c000;
+        } else if (mantissa != 0) {
+            // Normalize a subnormal half precision float.
+            exponent = 0x1c400;
+            do {
+                mantissa <<= 1;
+                exponent -= 0x400;
+            } while ((mantissa & 0x400) == 0);
+            mantissa &= 0x3ff;
+        }
+        return Float.intBitsToFloat((half & 0x8000) << 16 | (exponent | mantissa) << 13);
+    }
+
+}
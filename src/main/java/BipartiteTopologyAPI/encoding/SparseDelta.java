@@ -0,0 +1,183 @@
+package BipartiteTopologyAPI.encoding;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A versioned update of a double[] or float[] argument of a remote operation. The update either carries the full
+ * array, or the indices and the new values of the elements that changed since the version the receiver already holds.
+ */
+public class SparseDelta implements Serializable {
+
+    /**
+     * The version of the array this delta applies to, or -1 if the delta carries the full array.
+     */
+    private final long baseVersion;
+
+    /**
+     * The version of the array after applying this delta.
+     */
+    private final long version;
+
+    /**
+     * The length of the array.
+     */
+    private final int length;
+
+    /**
+     * The indices of the changed elements, or null if the delta carries the full array.
+     */
+    private final int[] indices;
+
+    /**
+     * The new values of a double[] array.
+     */
+    private final double[] doubleValues;
+
+    /**
+     * The new values of a float[] array.
+     */
+    private final float[] floatValues;
+
+    /**
+     * A flag determining if the delta was broadcast, as broadcasts and point to point calls are versioned separately.
+     */
+    private final boolean broadcast;
+
+    private SparseDelta(long baseVersion,
+                        long version,
+                        int length,
+                        int[] indices,
+                        double[] doubleValues,
+                        float[] floatValues,
+                        boolean broadcast) {
+        this.baseVersion = baseVersion;
+        this.version = version;
+        this.length = length;
+        this.indices = indices;
+        this.doubleValues = doubleValues;
+        this.floatValues = floatValues;
+        this.broadcast = broadcast;
+    }
+
+    /**
+     * Computes the delta between two versions of an array.
+     *
+     * @param base        The version of the array the receiver holds, or null if it holds none.
+     * @param current     The current version of the array.
+     * @param baseVersion The version number of the base array.
+     * @param maxDensity  The fraction of changed elements above which the full array is sent.
+     * @param broadcast   True if the delta is broadcast.
+     */
+    public static SparseDelta diff(Object base,
+                                   Object current,
+                                   long baseVersion,
+                                   double maxDensity,
+                                   boolean broadcast) {
+        return diff(base, current, baseVersion, baseVersion + 1, maxDensity, broadcast);
+    }
+
+    /**
+     * Computes the delta between two versions of an array, numbering the current version explicitly.
+     *
+     * @param base        The version of the array the receiver holds, or null if it holds none.
+     * @param current     The current version of the array.
+     * @param baseVersion The version number of the base array.
+     * @param version     The version number of the current array.
+     * @param maxDensity  The fraction of changed elements above which the full array is sent.
+     * @param broadcast   True if the delta is broadcast.
+     */
+    public static SparseDelta diff(Object base,
+                                   Object current,
+                                   long baseVersion,
+                                   long version,
+                                   double maxDensity,
+                                   boolean broadcast) {
+        if (current instanceof double[]) {
+            double[] array = (double[]) current;
+            if (base instanceof double[] && ((double[]) base).length == array.length) {
+                double[] previous = (double[]) base;
+                int[] changed = new int[array.length];
+                int count = 0;
+                for (int i = 0; i < array.length; i++)
+                    if (Double.doubleToLongBits(array[i]) != Double.doubleToLongBits(previous[i]))
+                        changed[count++] = i;
+                if (count <= maxDensity * array.length) {
+                    double[] values = new double[count];
+                    for (int i = 0; i < count; i++)
+                        values[i] = array[changed[i]];
+                    return new SparseDelta(baseVersion, version, array.length,
+                            Arrays.copyOf(changed, count), values, null, broadcast);
+                }
+            }
+            return new SparseDelta(-1, version, array.length, null, array.clone(), null, broadcast);
+        } else if (current instanceof float[]) {
+            float[] array = (float[]) current;
+            if (base instanceof float[] && ((float[]) base).length == array.length) {
+                float[] previous = (float[]) base;
+                int[] changed = new int[array.length];
+                int count = 0;
+                for (int i = 0; i < array.length; i++)
+                    if (Float.floatToIntBits(array[i]) != Float.floatToIntBits(previous[i]))
+                        changed[count++] = i;
+                if (count <= maxDensity * array.length) {
+                    float[] values = new float[count];
+                    for (int i = 0; i < count; i++)
+                        values[i] = array[changed[i]];
+                    return new SparseDelta(baseVersion, version, array.length,
+                            Arrays.copyOf(changed, count), null, values, broadcast);
+                }
+            }
+            return new SparseDelta(-1, version, array.length, null, null, array.clone(), broadcast);
+        } else {
+            throw new IllegalArgumentException("Only double[] and float[] arguments can be delta encoded.");
+        }
+    }
+
+    /**
+     * Reconstructs the full array by applying this delta to the array held by the receiver.
+     *
+     * @param base The array held by the receiver, or null if it holds none.
+     * @return A new array holding the values of the sender.
+     */
+    public Object applyTo(Object base) {
+        if (isFull())
+            return (doubleValues != null) ? doubleValues.clone() : floatValues.clone();
+        if (doubleValues != null) {
+            double[] array = ((double[]) base).clone();
+            for (int i = 0; i < indices.length; i++)
+                array[indices[i]] = doubleValues[i];
+            return array;
+        } else {
+            float[] array = ((float[]) base).clone();
+            for (int i = 0; i < indices.length; i++)
+                array[indices[i]] = floatValues[i];
+            return array;
+        }
+    }
+
+    public boolean isFull() {
+        return indices == null;
+    }
+
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getNumberOfChanges() {
+        return (indices == null) ? length : indices.length;
+    }
+
+    public boolean isBroadcast() {
+        return broadcast;
+    }
+
+}
@@ -0,0 +1,150 @@
+package BipartiteTopologyAPI.encoding;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The elements with the largest absolute values of a double[] or float[] array. All the other elements are zero.
+ */
+public class TopKArray implements CompressedArray {
+
+    /**
+     * A flag determining if the original array is a double[] (or a float[]).
+     */
+    private final boolean doubles;
+
+    /**
+     * The length of the original array.
+     */
+    private final int length;
+
+    /**
+     * The indices of the kept elements.
+     */
+    private final int[] indices;
+
+    /**
+     * The values of the kept elements of a double[] array.
+     */
+    private final double[] doubleValues;
+
+    /**
+     * The values of the kept elements of a float[] array.
+     */
+    private final float[] floatValues;
+
+    private TopKArray(boolean doubles, int length, int[] indices, double[] doubleValues, float[] floatValues) {
+        this.doubles = doubles;
+        this.length = length;
+        this.indices = indices;
+        this.doubleValues = doubleValues;
+        this.floatValues = floatValues;
+    }
+
+    /**
+     * Keeps the k elements of an array with the largest absolute values.
+     *
+     * @param array The double[] or float[] array.
+     * @param k     The number of elements to keep.
+     */
+    public static TopKArray of(Object array, int k) {
+        int length = QuantizedArray.length(array);
+        k = Math.max(0, Math.min(k, length));
+        double[] magnitudes = new double[length];
+        for (int i = 0; i < length; i++)
+            magnitudes[i] = Math.abs(QuantizedArray.get(array, i));
+        double threshold = (k == 0) ? Double.POSITIVE_INFINITY : kthLargest(magnitudes.clone(), k);
+
+        // Keep the elements above the threshold first, and then as many elements equal to it as needed.
+        int[] indices = new int[k];
+        int kept = 0;
+        for (int i = 0; i < length && kept < k; i++)
+            if (magnitudes[i] > threshold)
+                indices[kept++] = i;
+        for (int i = 0; i < length && kept < k; i++)
+            if (magnitudes[i] == threshold)
+                indices[kept++] = i;
+        indices = Arrays.copyOf(indices, kept);
+        Arrays.sort(indices);
+
+        if (array instanceof double[]) {
+            double[] values = new double[kept];
+            for (int i = 0; i < kept; i++)
+                values[i] = ((double[]) array)[indices[i]];
+            return new TopKArray(true, length, indices, values, null);
+        } else {
+            float[] values = new float[kept];
+            for (int i = 0; i < kept; i++)
+                values[i] = ((float[]) array)[indices[i]];
+            return new TopKArray(false, length, indices, null, values);
+        }
+    }
+
+    @Override
+    public Object decompress() {
+        if (doubles) {
+            double[] array = new double[length];
+            for (int i = 0; i < indices.length; i++)
+                array[indices[i]] = doubleValues[i];
+            return array;
+        } else {
+            float[] array = new float[length];
+            for (int i = 0; i < indices.length; i++)
+                array[indices[i]] = floatValues[i];
+            return array;
+        }
+    }
+
+    @Override
+    public CompressionCodec getCodec() {
+        return CompressionCodec.TOP_K;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int[] getIndices() {
+        return indices;
+    }
+
+    public double getValue(int i) {
+        return (doubles) ? doubleValues[i] : floatValues[i];
+    }
+
+    /**
+     * Selects the k-th largest value of an array in linear expected time, reordering the array.
+     */
+    private static double kthLargest(double[] array, int k) {
+        int target = array.length - k;
+        int low = 0;
+        int high = array.length - 1;
+        Random random = new Random(array.length);
+        while (low < high) {
+            double pivot = array[low + random.nextInt(high - low + 1)];
+            int lt = low, i = low, gt = high;
+            while (i <= gt) {
+                if (array[i] < pivot)
+                    swap(array, lt++, i++);
+                else if (array[i] > pivot)
+                    swap(array, i, gt--);
+                else
+                    i++;
+            }
+            if (target < lt)
+                high = lt - 1;
+            else if (target > gt)
+                low = gt + 1;
+            else
+                return pivot;
+        }
+        return array[target];
+    }
+
+    private static void swap(double[] array, int i, int j) {
+        double tmp = array[i];
+        array[i] = array[j];
+        array[j] = tmp;
+    }
+
+}
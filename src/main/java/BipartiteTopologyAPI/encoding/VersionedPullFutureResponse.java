@@ -0,0 +1,98 @@
+package BipartiteTopologyAPI.encoding;
+
+import BipartiteTopologyAPI.caching.ResponseCache;
+import BipartiteTopologyAPI.futures.FutureResponse;
+
+import java.io.Serializable;
+
+/**
+ * A future of a @{@link BipartiteTopologyAPI.annotations.VersionedPull} operation, which reconstructs the pulled array
+ * from the delta sent by the called node and the array held when the call was made, before executing its callback. A
+ * delta against an array that the caller does not hold is dropped, and the call is issued again as a full pull.
+ *
+ * @param <T> The type of the Serializable response value.
+ */
+public class VersionedPullFutureResponse<T extends Serializable> extends FutureResponse<T> {
+
+    /**
+     * The arrays pulled by the calling node.
+     */
+    private final transient PulledValues pulledValues;
+
+    /**
+     * The key of the call.
+     */
+    private final ResponseCache.Key key;
+
+    /**
+     * The array held when the call was made, or null if none was held.
+     */
+    private final PulledValues.Pulled base;
+
+    /**
+     * Issues the call again as a full pull, or null if it cannot be issued again.
+     */
+    private transient Runnable fullPull;
+
+    /**
+     * True if the call has been issued again as a full pull.
+     */
+    private boolean reissued;
+
+    /**
+     * True if the response of the call has been dropped, and the response of its full pull has not arrived yet.
+     */
+    private boolean awaitingFullPull;
+
+    public VersionedPullFutureResponse(PulledValues pulledValues, ResponseCache.Key key, PulledValues.Pulled base) {
+        this.pulledValues = pulledValues;
+        this.key = key;
+        this.base = base;
+    }
+
+    /**
+     * Returns the version of the array held when the call was made, or -1 if none was held.
+     */
+    public long getBaseVersion() {
+        return (base == null) ? -1 : base.getVersion();
+    }
+
+    /**
+     * Sets the callback issuing the call again with version -1, which asks the called node for the full array.
+     */
+    public void onBaseMismatch(Runnable fullPull) {
+        this.fullPull = fullPull;
+    }
+
+    /**
+     * Returns true if the last response has been dropped, as the call has been issued again as a full pull.
+     */
+    public boolean isAwaitingFullPull() {
+        return awaitingFullPull;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void accept(T value) {
+        awaitingFullPull = false;
+        if (value instanceof SparseDelta) {
+            SparseDelta delta = (SparseDelta) value;
+            boolean mismatch = !delta.isFull() && (base == null || base.getVersion() != delta.getBaseVersion());
+            if (mismatch && fullPull != null && !reissued) {
+                reissued = true;
+                awaitingFullPull = true;
+                fullPull.run();
+                return;
+            }
+            if (mismatch)
+                throw new RuntimeException("Received a delta against version " + delta.getBaseVersion() +
+                        " of a pulled array, while holding " + ((base == null) ? "none" : base.getVersion()) + ".");
+            Object array = delta.applyTo((base == null) ? null : base.getArray());
+            pulledValues.put(key, delta.getVersion(), array);
+            super.accept((T) PullLog.copyOf(array));
+        } else {
+            super.accept(value);
+        }
+    }
+
+}
@@ -20,6 +20,16 @@ public class FutureResponse<T extends Serializable> implements Response<T>, Cons
      */
     protected boolean sync = false;
 
+    /**
+     * The logical clock of the calling node when the call was made, used for bounding its staleness.
+     */
+    protected long round = -1;
+
+    /**
+     * The callback to be run if the future is cancelled, as its caller departed the network, or null.
+     */
+    protected Runnable cancellation = null;
+
     @Override
     public void to(Consumer<T> consumer) {
         this.consumer = consumer;
@@ -44,8 +54,31 @@ public class FutureResponse<T extends Serializable> implements Response<T>, Cons
             throw new RuntimeException("The FutureResponse " + this + " does not have callback to execute.");
     }
 
+    /**
+     * Sets the callback to be run if the future is cancelled instead of being answered.
+     */
+    public void onCancel(Runnable cancellation) {
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * Cancels the future, whose response will never arrive.
+     */
+    public void cancel() {
+        if (cancellation != null)
+            cancellation.run();
+    }
+
     public boolean isSync() {
         return sync;
     }
 
+    public long getRound() {
+        return round;
+    }
+
+    public void setRound(long round) {
+        this.round = round;
+    }
+
 }
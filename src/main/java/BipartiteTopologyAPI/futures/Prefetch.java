@@ -0,0 +1,152 @@
+package BipartiteTopologyAPI.futures;
+
+import java.io.Serializable;
+import java.util.function.Supplier;
+
+/**
+ * A double buffer of a value pulled from a remote node, overlapping the pull of the next value with the processing of
+ * the current one. The first pull is issued when the prefetch is created and every time the front buffer is swapped, so
+ * at most one pull is in flight. The data stream of the node is held only when it asks for the next value before it has
+ * arrived, i.e. when processing outruns the prefetch. If the pull is cancelled, as the pulled node departed the network,
+ * the hold is released and the node keeps its current value, until it advances and the next pull is issued.
+ *
+ * @param <T> The type of the Serializable pulled value.
+ */
+public class Prefetch<T extends Serializable> {
+
+    /**
+     * Issues a pull of the value from a single remote node.
+     */
+    private final Supplier<Response<T>> pull;
+
+    /**
+     * Holds the data stream of the node until a value arrives.
+     */
+    private final Runnable hold;
+
+    /**
+     * Releases the data stream of the node.
+     */
+    private final Runnable release;
+
+    /**
+     * The value being used by the node.
+     */
+    private T front;
+
+    /**
+     * The next value, or null if it has not arrived yet.
+     */
+    private T back;
+
+    /**
+     * This flag determines if a pull has been issued and not answered yet.
+     */
+    private boolean inFlight;
+
+    /**
+     * This flag determines if the node waits for the next value, holding its data stream.
+     */
+    private boolean waiting;
+
+    /**
+     * The number of times the front buffer has been swapped.
+     */
+    private long swaps;
+
+    /**
+     * The number of times the node asked for the next value before it arrived.
+     */
+    private long stalls;
+
+    public Prefetch(Supplier<Response<T>> pull, Runnable hold, Runnable release) {
+        this.pull = pull;
+        this.hold = hold;
+        this.release = release;
+        this.front = null;
+        this.back = null;
+        this.inFlight = false;
+        this.waiting = false;
+        this.swaps = 0;
+        this.stalls = 0;
+        await();
+    }
+
+    /**
+     * Returns the value being used by the node, or null before the first value arrives.
+     */
+    public T get() {
+        return front;
+    }
+
+    /**
+     * Marks the current value as consumed. If the next value has arrived, the buffers are swapped at once and the
+     * following pull is issued. Otherwise the data stream of the node is held until the next value arrives.
+     */
+    public void advance() {
+        if (waiting)
+            return;
+        if (back != null)
+            swap();
+        else {
+            stalls += 1;
+            await();
+        }
+    }
+
+    /**
+     * Returns true if the next value has arrived.
+     */
+    public boolean isReady() {
+        return back != null;
+    }
+
+    private void await() {
+        waiting = true;
+        hold.run();
+        if (!inFlight)
+            issue();
+    }
+
+    private void issue() {
+        inFlight = true;
+        Response<T> response = pull.get();
+        response.to(this::arrived);
+        if (response instanceof FutureResponse)
+            ((FutureResponse<T>) response).onCancel(this::cancelled);
+    }
+
+    private void arrived(T value) {
+        inFlight = false;
+        back = value;
+        if (waiting) {
+            waiting = false;
+            swap();
+            release.run();
+        }
+    }
+
+    private void cancelled() {
+        inFlight = false;
+        if (waiting) {
+            waiting = false;
+            release.run();
+        }
+    }
+
+    private void swap() {
+        front = back;
+        back = null;
+        swaps += 1;
+        issue();
+    }
+
+    public long getSwaps() {
+        return swaps;
+    }
+
+    public long getStalls() {
+        return stalls;
+    }
+
+}
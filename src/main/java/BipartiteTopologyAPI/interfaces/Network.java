@@ -1,10 +1,13 @@
 package BipartiteTopologyAPI.interfaces;
 
+import BipartiteTopologyAPI.network.EncodedPayload;
+import BipartiteTopologyAPI.sites.BroadcastTargets;
 import BipartiteTopologyAPI.sites.NodeId;
 import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
 import BipartiteTopologyAPI.sites.NetworkDescriptor;
 
 import java.io.Serializable;
+import java.util.HashMap;
 import java.util.Map;
 
 public interface Network extends Serializable {
@@ -15,4 +18,46 @@ public interface Network extends Serializable {
 
     NetworkDescriptor describe();
 
+    /**
+     * Broadcasts a message with the same Remote Procedure Call to a compact description of the targets. The default
+     * implementation encodes the message once and hands it over to
+     * {@link #broadcastEncoded(NodeId, Iterable, RemoteCallIdentifier, EncodedPayload)}, so the transports overriding
+     * the latter write the same bytes to every target.
+     */
+    default void broadcast(NodeId source, BroadcastTargets targets, RemoteCallIdentifier rpc, Serializable message) {
+        broadcastEncoded(source, targets, rpc, EncodedPayload.encode(message));
+    }
+
+    /**
+     * Sends an already encoded message, transferring one reference of the payload to the network. Transports that keep
+     * messages encoded should override this, as the default implementation decodes the payload and sends the message.
+     */
+    default void sendEncoded(NodeId source, NodeId destination, RemoteCallIdentifier rpc, EncodedPayload payload) {
+        try {
+            send(source, destination, rpc, payload.decode());
+        } finally {
+            payload.release();
+        }
+    }
+
+    /**
+     * Sends an already encoded message with the same Remote Procedure Call to every target, transferring one reference
+     * of the payload to the network. Transports should override this to write the same bytes to every link and to share
+     * a single decoded instance among the targets of the current process, as the default implementation decodes the
+     * payload and broadcasts the message.
+     */
+    default void broadcastEncoded(NodeId source,
+                                  Iterable<NodeId> targets,
+                                  RemoteCallIdentifier rpc,
+                                  EncodedPayload payload) {
+        try {
+            Map<NodeId, RemoteCallIdentifier> rpcMap = new HashMap<>();
+            for (NodeId target : targets)
+                rpcMap.put(target, rpc);
+            broadcast(source, rpcMap, payload.decode());
+        } finally {
+            payload.release();
+        }
+    }
+
 }
@@ -0,0 +1,73 @@
+package BipartiteTopologyAPI.network;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread safe pool of fixed size direct byte buffers, used by the transports to avoid allocating and freeing off-heap
+ * memory for every message.
+ */
+public class BufferPool {
+
+    /**
+     * The size of the pooled buffers.
+     */
+    private final int bufferSize;
+
+    /**
+     * The maximum number of idle buffers kept by the pool.
+     */
+    private final int maxPooled;
+
+    /**
+     * The idle buffers.
+     */
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers;
+
+    /**
+     * The number of idle buffers.
+     */
+    private final AtomicInteger pooled;
+
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+        this.buffers = new ConcurrentLinkedQueue<>();
+        this.pooled = new AtomicInteger();
+    }
+
+    /**
+     * Takes a cleared buffer from the pool, allocating a new one if the pool is empty.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null)
+            return ByteBuffer.allocateDirect(bufferSize);
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. Buffers of a different size, read-only views of buffers not taken from the pool, and
+     * buffers exceeding the capacity of the pool are left to the garbage collector.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.isReadOnly() || buffer.capacity() != bufferSize)
+            return;
+        if (pooled.incrementAndGet() <= maxPooled)
+            buffers.offer(buffer);
+        else
+            pooled.decrementAndGet();
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getPooled() {
+        return pooled.get();
+    }
+
+}
@@ -0,0 +1,89 @@
+package BipartiteTopologyAPI.network;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * A serializable holder of the contents of a {@link ByteBuffer}, which may be a heap, a direct or a mapped buffer. The
+ * {@link ByteBuffer} arguments of the remote operations travel in such holders, and a remote operation may return one
+ * as the value of its response.
+ * <p>
+ * The transports do not copy the contents of a held buffer into the encoded message. The targets of the same process
+ * get a view of the buffer itself, and the NIO transport writes the buffer straight to the socket after the encoded
+ * message. Any other encoding writes the contents inline. As the buffer may be shared with its targets, it must not
+ * be changed after it has been handed over.
+ */
+public class ByteBufferValue implements Serializable {
+
+    /**
+     * The size of the chunks that the contents of a direct buffer are written inline in.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * The held contents, between position 0 and the limit of the buffer.
+     */
+    private transient ByteBuffer buffer;
+
+    private ByteBufferValue(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Holds the remaining contents of a buffer, without copying them. The position of the given buffer is not changed.
+     */
+    public static ByteBufferValue of(ByteBuffer buffer) {
+        return new ByteBufferValue(buffer.slice());
+    }
+
+    /**
+     * Returns a view of the held contents, with its own position and limit.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate();
+    }
+
+    public int length() {
+        return buffer.limit();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        if (out instanceof MessageCodec.AttachingOutputStream) {
+            // Write the index of the out of band attachment as a negative length.
+            out.writeInt(-1 - ((MessageCodec.AttachingOutputStream) out).attach(buffer));
+            return;
+        }
+        ByteBuffer contents = buffer.duplicate();
+        contents.clear();
+        out.writeInt(contents.remaining());
+        if (contents.hasArray()) {
+            out.write(contents.array(), contents.arrayOffset(), contents.remaining());
+            return;
+        }
+        byte[] chunk = new byte[Math.min(CHUNK_SIZE, contents.remaining())];
+        while (contents.hasRemaining()) {
+            int n = Math.min(chunk.length, contents.remaining());
+            contents.get(chunk, 0, n);
+            out.write(chunk, 0, n);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int length = in.readInt();
+        if (length < 0) {
+            if (!(in instanceof MessageCodec.AttachedInputStream))
+                throw new IOException("An out of band buffer was decoded without its attachments.");
+            buffer = ((MessageCodec.AttachedInputStream) in).attachment(-1 - length);
+            return;
+        }
+        byte[] contents = new byte[length];
+        in.readFully(contents);
+        buffer = ByteBuffer.wrap(contents);
+    }
+
+}
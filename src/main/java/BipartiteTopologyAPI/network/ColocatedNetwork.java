@@ -0,0 +1,203 @@
+package BipartiteTopologyAPI.network;
+
+import BipartiteTopologyAPI.interfaces.Network;
+import BipartiteTopologyAPI.interfaces.Node;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.NetworkDescriptor;
+import BipartiteTopologyAPI.sites.NodeId;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link Network} selecting the transport of every message automatically: messages to nodes running in another
+ * process of the same host go through a {@link SharedMemoryNetwork}, and all the other messages go through a
+ * {@link NioNetwork}. Both transports deliver to the same nodes of this process.
+ * <p>
+ * The messages of a (source, destination) pair are delivered in order, as the delta encodings, the key migrations, the
+ * versioned pulls and the chunked transfers rely on it. A pair therefore uses a single transport at a time: the first
+ * message of a pair too large for the shared memory rings waits for the messages already in its ring to be consumed,
+ * and the pair goes through TCP from then on.
+ */
+public class ColocatedNetwork implements Network, Closeable {
+
+    /**
+     * The nodes hosted by this process.
+     */
+    private final transient LocalNodes localNodes;
+
+    /**
+     * The transport to the processes of other hosts.
+     */
+    private final transient NioNetwork tcp;
+
+    /**
+     * The transport to the other processes of this host.
+     */
+    private final transient SharedMemoryNetwork sharedMemory;
+
+    /**
+     * The (source, destination) pairs of co-located nodes that have switched to TCP.
+     */
+    private final transient Set<Pair<NodeId, NodeId>> pinnedToTcp;
+
+    public ColocatedNetwork(int networkId, Membership membership, InetSocketAddress localEndpoint, Path directory)
+            throws IOException {
+        this.localNodes = new LocalNodes();
+        this.tcp = new NioNetwork(networkId, membership, localEndpoint, localNodes);
+        this.sharedMemory = new SharedMemoryNetwork(networkId,
+                membership,
+                localEndpoint,
+                directory,
+                SharedMemoryNetwork.DEFAULT_RING_CAPACITY,
+                localNodes);
+        this.pinnedToTcp = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Registers a node of this process to the network and starts running it.
+     */
+    public NodeRunner register(NodeId nodeId, Node node) {
+        return tcp.register(nodeId, node);
+    }
+
+    /**
+     * Feeds a record of the data stream to a node of this process.
+     */
+    public void submitTuple(NodeId nodeId, Serializable tuple) {
+        localNodes.submitTuple(nodeId, tuple);
+    }
+
+    /**
+     * Poses a query to a node of this process.
+     */
+    public void submitQuery(NodeId nodeId, long queryId, Serializable query) {
+        localNodes.submitQuery(nodeId, queryId, query);
+    }
+
+    /**
+     * Sets the consumer of the messages sent to the querier by the nodes of this process.
+     */
+    public void setQuerierSink(BiConsumer<NodeId, Serializable> querierSink) {
+        localNodes.setQuerierSink(querierSink);
+    }
+
+    @Override
+    public void send(NodeId source, NodeId destination, RemoteCallIdentifier rpc, Serializable message) {
+        if (destination == null || localNodes.isLocal(destination)) {
+            tcp.send(source, destination, rpc, message);
+        } else if (sharedMemory.isCoLocated(destination)) {
+            byte[] payload = MessageCodec.encodePayload(message);
+            if (viaSharedMemory(source, destination, rpc, payload.length))
+                sharedMemory.write(source, destination, rpc, ByteBuffer.wrap(payload));
+            else
+                tcp.sendEncoded(source, destination, rpc, payload);
+        } else {
+            tcp.send(source, destination, rpc, message);
+        }
+    }
+
+    @Override
+    public void broadcast(NodeId source, Map<NodeId, RemoteCallIdentifier> rpcMap, Serializable message) {
+        byte[] payload = MessageCodec.encodePayload(message);
+        for (Map.Entry<NodeId, RemoteCallIdentifier> target : rpcMap.entrySet()) {
+            NodeId destination = target.getKey();
+            RemoteCallIdentifier rpc = target.getValue();
+            if (localNodes.isLocal(destination))
+                localNodes.deliver(new Envelope(source, destination, rpc, payload));
+            else if (viaSharedMemory(source, destination, rpc, payload.length))
+                sharedMemory.write(source, destination, rpc, ByteBuffer.wrap(payload));
+            else
+                tcp.sendEncoded(source, destination, rpc, payload);
+        }
+    }
+
+    @Override
+    public void sendEncoded(NodeId source, NodeId destination, RemoteCallIdentifier rpc, EncodedPayload payload) {
+        if (destination != null && !localNodes.isLocal(destination) &&
+                viaSharedMemory(source, destination, rpc, payload.length()))
+            sharedMemory.sendEncoded(source, destination, rpc, payload);
+        else
+            tcp.sendEncoded(source, destination, rpc, payload);
+    }
+
+    @Override
+    public void broadcastEncoded(NodeId source,
+                                 Iterable<NodeId> targets,
+                                 RemoteCallIdentifier rpc,
+                                 EncodedPayload payload) {
+        try {
+            for (NodeId destination : targets) {
+                if (localNodes.isLocal(destination))
+                    localNodes.deliver(new Envelope(source, destination, rpc, payload.retain()));
+                else if (viaSharedMemory(source, destination, rpc, payload.length()))
+                    sharedMemory.write(source, destination, rpc, ByteBuffer.wrap(payload.bytes()));
+                else
+                    tcp.sendEncoded(source, destination, rpc, payload.bytes());
+            }
+        } finally {
+            payload.release();
+        }
+    }
+
+    /**
+     * Returns true if a message from a node of this process to a remote node goes through the shared memory rings. The
+     * first message of a pair that does not fit in the rings pins the pair to TCP, once its ring has been consumed.
+     *
+     * @param payloadLength The length of the encoded payload of the message.
+     */
+    private boolean viaSharedMemory(NodeId source, NodeId destination, RemoteCallIdentifier rpc, int payloadLength) {
+        if (!sharedMemory.isCoLocated(destination))
+            return false;
+        Pair<NodeId, NodeId> pair = Pair.of(source, destination);
+        if (pinnedToTcp.contains(pair))
+            return false;
+        if (sharedMemory.fits(MessageCodec.headerSize(rpc) + payloadLength))
+            return true;
+        sharedMemory.awaitConsumed(source, destination);
+        pinnedToTcp.add(pair);
+        return false;
+    }
+
+    /**
+     * Returns true if the messages from the given node of this process to the given remote node go through TCP.
+     */
+    public boolean isPinnedToTcp(NodeId source, NodeId destination) {
+        return pinnedToTcp.contains(Pair.of(source, destination));
+    }
+
+    @Override
+    public NetworkDescriptor describe() {
+        return tcp.describe();
+    }
+
+    /**
+     * Closes both transports, rethrowing the failure of a node of this process once they are closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            sharedMemory.close();
+        } finally {
+            tcp.close();
+        }
+    }
+
+    public NioNetwork getTcp() {
+        return tcp;
+    }
+
+    public SharedMemoryNetwork getSharedMemory() {
+        return sharedMemory;
+    }
+
+}
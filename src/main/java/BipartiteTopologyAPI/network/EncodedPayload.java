@@ -0,0 +1,119 @@
+package BipartiteTopologyAPI.network;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An immutable, reference counted message that has already been encoded, so that it can be handed over to many targets
+ * without encoding it again. The transports write the same bytes to every link, and the targets hosted by the same
+ * process share a single decoded instance of the message, which they must treat as read-only.
+ * <p>
+ * A payload starts with one reference, held by its creator. Handing a payload over to the network transfers one
+ * reference, which the network releases once the payload has been delivered to or written for every target. A holder
+ * that keeps using a payload after handing it over must {@link #retain()} it first.
+ */
+public class EncodedPayload {
+
+    /**
+     * The encoded message, or null once all the references have been released.
+     */
+    private volatile byte[] bytes;
+
+    /**
+     * The decoded message, shared by all the in-process targets.
+     */
+    private volatile Serializable decoded;
+
+    /**
+     * The number of holders of the payload.
+     */
+    private final AtomicInteger references;
+
+    private EncodedPayload(byte[] bytes, Serializable decoded) {
+        this.bytes = bytes;
+        this.decoded = decoded;
+        this.references = new AtomicInteger(1);
+    }
+
+    /**
+     * Encodes a message. The given instance is not kept, as the sender may change it after the call.
+     */
+    public static EncodedPayload encode(Serializable message) {
+        return new EncodedPayload(MessageCodec.encodePayload(message), null);
+    }
+
+    /**
+     * Wraps a message that has already been encoded by {@link MessageCodec#encodePayload(Serializable)}. The bytes must
+     * not be changed afterwards.
+     */
+    public static EncodedPayload wrap(byte[] bytes) {
+        return new EncodedPayload(bytes, null);
+    }
+
+    /**
+     * Adds a holder of the payload.
+     *
+     * @return This payload.
+     */
+    public EncodedPayload retain() {
+        if (references.getAndUpdate(n -> (n > 0) ? n + 1 : n) <= 0)
+            throw new RuntimeException("The encoded payload has already been released.");
+        return this;
+    }
+
+    /**
+     * Removes a holder of the payload, dropping the encoded and the decoded message when none is left.
+     */
+    public void release() {
+        int left = references.decrementAndGet();
+        if (left == 0) {
+            bytes = null;
+            decoded = null;
+        } else if (left < 0)
+            throw new RuntimeException("The encoded payload has been released more times than it was retained.");
+    }
+
+    /**
+     * Returns the message, decoding it on the first access. All the callers get the same instance.
+     */
+    public Serializable decode() {
+        Serializable message = decoded;
+        if (message == null) {
+            synchronized (this) {
+                message = decoded;
+                if (message == null) {
+                    message = MessageCodec.decodePayload(bytes());
+                    decoded = message;
+                }
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Returns a read-only view of the encoded message.
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        return ByteBuffer.wrap(bytes()).asReadOnlyBuffer();
+    }
+
+    public int length() {
+        return bytes().length;
+    }
+
+    public int getReferences() {
+        return references.get();
+    }
+
+    /**
+     * Returns the encoded message itself, which the transports must not change.
+     */
+    byte[] bytes() {
+        byte[] encoded = bytes;
+        if (encoded == null)
+            throw new RuntimeException("The encoded payload has already been released.");
+        return encoded;
+    }
+
+}
@@ -0,0 +1,135 @@
+package BipartiteTopologyAPI.network;
+
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.NodeId;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A message travelling through a transport of the Bipartite Network, along with its addressing information. The
+ * message may be kept encoded until it is delivered to the destination node.
+ */
+public class Envelope implements Serializable {
+
+    /**
+     * The source of the message.
+     */
+    private final NodeId source;
+
+    /**
+     * The destination of the message. A null destination addresses the querier.
+     */
+    private final NodeId destination;
+
+    /**
+     * The Remote Procedure Call of the message.
+     */
+    private final RemoteCallIdentifier rpc;
+
+    /**
+     * The encoded message, or null if the message is not encoded.
+     */
+    private byte[] payload;
+
+    /**
+     * The buffers of the encoded message that have been left out of the payload, or null if there are none.
+     */
+    private transient List<ByteBuffer> attachments;
+
+    /**
+     * The encoded message shared with other in-process targets, or null if the message is not shared.
+     */
+    private transient EncodedPayload shared;
+
+    /**
+     * The decoded message, or null if the message has not been decoded yet.
+     */
+    private Serializable message;
+
+    public Envelope(NodeId source, NodeId destination, RemoteCallIdentifier rpc, byte[] payload) {
+        this.source = source;
+        this.destination = destination;
+        this.rpc = rpc;
+        this.payload = payload;
+    }
+
+    /**
+     * Creates an envelope of a message encoded by {@link MessageCodec#encodePayload(Serializable, List)}, which hands
+     * over the given buffers to the decoded message.
+     */
+    public Envelope(NodeId source,
+                    NodeId destination,
+                    RemoteCallIdentifier rpc,
+                    byte[] payload,
+                    List<ByteBuffer> attachments) {
+        this(source, destination, rpc, payload);
+        this.attachments = attachments;
+    }
+
+    /**
+     * Creates an envelope holding a reference of a payload shared with other targets, which is released once the
+     * message has been decoded.
+     */
+    public Envelope(NodeId source, NodeId destination, RemoteCallIdentifier rpc, EncodedPayload shared) {
+        this.source = source;
+        this.destination = destination;
+        this.rpc = rpc;
+        this.shared = shared;
+    }
+
+    public Envelope(NodeId source, NodeId destination, RemoteCallIdentifier rpc, Serializable message) {
+        this.source = source;
+        this.destination = destination;
+        this.rpc = rpc;
+        this.message = message;
+    }
+
+    public NodeId getSource() {
+        return source;
+    }
+
+    public NodeId getDestination() {
+        return destination;
+    }
+
+    public RemoteCallIdentifier getRpc() {
+        return rpc;
+    }
+
+    /**
+     * Returns the message, decoding it on the first access.
+     */
+    public Serializable getMessage() {
+        if (message == null && payload != null) {
+            message = (attachments == null)
+                    ? MessageCodec.decodePayload(payload)
+                    : MessageCodec.decodePayload(payload, attachments);
+            payload = null;
+            attachments = null;
+        } else if (message == null && shared != null) {
+            message = shared.decode();
+            shared.release();
+            shared = null;
+        }
+        return message;
+    }
+
+    public boolean isEncoded() {
+        return payload != null || shared != null;
+    }
+
+    /**
+     * Returns the message encoded as a self-contained payload, reusing the encoded bytes if the message has not been
+     * decoded yet. A message whose buffers are attached out of band is decoded and encoded inline.
+     */
+    byte[] toPayload() {
+        if (payload != null && attachments == null)
+            return payload;
+        if (payload == null && shared != null)
+            return shared.bytes();
+        return MessageCodec.encodePayload(getMessage());
+    }
+
+}
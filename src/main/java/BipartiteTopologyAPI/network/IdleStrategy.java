@@ -0,0 +1,77 @@
+package BipartiteTopologyAPI.network;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A backoff strategy for the threads polling the shared memory transports. An idle thread first spins, then yields and
+ * finally parks for exponentially growing periods, up to a maximum. Any work done resets the backoff.
+ */
+public class IdleStrategy {
+
+    /**
+     * The number of idle iterations spent spinning.
+     */
+    private final int maxSpins;
+
+    /**
+     * The number of idle iterations spent yielding, after spinning.
+     */
+    private final int maxYields;
+
+    /**
+     * The shortest parking period, in nanoseconds.
+     */
+    private final long minParkNanos;
+
+    /**
+     * The longest parking period, in nanoseconds.
+     */
+    private final long maxParkNanos;
+
+    /**
+     * The number of consecutive idle iterations.
+     */
+    private long idleIterations;
+
+    /**
+     * The current parking period, in nanoseconds.
+     */
+    private long parkNanos;
+
+    public IdleStrategy() {
+        this(100, 100, 1000, 1000000);
+    }
+
+    public IdleStrategy(int maxSpins, int maxYields, long minParkNanos, long maxParkNanos) {
+        this.maxSpins = maxSpins;
+        this.maxYields = maxYields;
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+        reset();
+    }
+
+    /**
+     * Backs off if no work was done in the last iteration of the polling loop.
+     *
+     * @param workCount The amount of work done in the last iteration.
+     */
+    public void idle(int workCount) {
+        if (workCount > 0) {
+            reset();
+        } else if (idleIterations < maxSpins) {
+            idleIterations++;
+        } else if (idleIterations < maxSpins + maxYields) {
+            idleIterations++;
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(parkNanos);
+            parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+        }
+    }
+
+    public void reset() {
+        idleIterations = 0;
+        parkNanos = minParkNanos;
+    }
+
+}
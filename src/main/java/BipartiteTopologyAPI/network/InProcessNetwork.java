@@ -0,0 +1,145 @@
+package BipartiteTopologyAPI.network;
+
+import BipartiteTopologyAPI.interfaces.Network;
+import BipartiteTopologyAPI.interfaces.Node;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.NetworkDescriptor;
+import BipartiteTopologyAPI.sites.NodeId;
+
+import java.io.Closeable;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link Network} hosting all the nodes of a Bipartite Network in the current process. Every node runs in its own
+ * {@link NodeRunner}, and the messages are encoded and delivered as the transports deliver the messages of the nodes
+ * of the same process, so running a network in process costs what the framework itself costs, without any I/O.
+ */
+public class InProcessNetwork implements Network, Closeable {
+
+    /**
+     * The id of the Bipartite Network.
+     */
+    private final int networkId;
+
+    /**
+     * The number of hubs and spokes of the network.
+     */
+    private final int numberOfHubs;
+    private final int numberOfSpokes;
+
+    /**
+     * The nodes of the network.
+     */
+    private final transient LocalNodes localNodes;
+
+    public InProcessNetwork(int networkId, int numberOfHubs, int numberOfSpokes) {
+        this.networkId = networkId;
+        this.numberOfHubs = numberOfHubs;
+        this.numberOfSpokes = numberOfSpokes;
+        this.localNodes = new LocalNodes();
+    }
+
+    /**
+     * Registers a node to the network and starts running it.
+     */
+    public NodeRunner register(NodeId nodeId, Node node) {
+        int size = nodeId.isHub() ? numberOfHubs : numberOfSpokes;
+        if (nodeId.getNodeId() >= size)
+            throw new RuntimeException(nodeId + " is out of the " + size + " nodes of its side.");
+        return localNodes.register(nodeId, node);
+    }
+
+    /**
+     * Feeds a record of the data stream to a node.
+     */
+    public void submitTuple(NodeId nodeId, Serializable tuple) {
+        localNodes.submitTuple(nodeId, tuple);
+    }
+
+    /**
+     * Poses a query to a node.
+     */
+    public void submitQuery(NodeId nodeId, long queryId, Serializable query) {
+        localNodes.submitQuery(nodeId, queryId, query);
+    }
+
+    public NodeRunner getRunner(NodeId nodeId) {
+        return localNodes.getRunner(nodeId);
+    }
+
+    public LocalNodes getLocalNodes() {
+        return localNodes;
+    }
+
+    /**
+     * Sets the consumer of the messages sent to the querier.
+     */
+    public void setQuerierSink(BiConsumer<NodeId, Serializable> querierSink) {
+        localNodes.setQuerierSink(querierSink);
+    }
+
+    // ============================================== Network contract ================================================
+
+    @Override
+    public void send(NodeId source, NodeId destination, RemoteCallIdentifier rpc, Serializable message) {
+        if (destination == null) {
+            localNodes.deliverToQuerier(source, message);
+            return;
+        }
+        // Hand over the buffers of the message by reference.
+        List<ByteBuffer> attachments = new ArrayList<>();
+        byte[] payload = MessageCodec.encodePayload(message, attachments);
+        localNodes.deliver(new Envelope(source, destination, rpc, payload, attachments));
+    }
+
+    @Override
+    public void broadcast(NodeId source, Map<NodeId, RemoteCallIdentifier> rpcMap, Serializable message) {
+        byte[] payload = MessageCodec.encodePayload(message);
+        for (Map.Entry<NodeId, RemoteCallIdentifier> target : rpcMap.entrySet())
+            localNodes.deliver(new Envelope(source, target.getKey(), target.getValue(), payload));
+    }
+
+    @Override
+    public void sendEncoded(NodeId source, NodeId destination, RemoteCallIdentifier rpc, EncodedPayload payload) {
+        try {
+            if (destination == null)
+                localNodes.deliverToQuerier(source, payload.decode());
+            else
+                localNodes.deliver(new Envelope(source, destination, rpc, payload.retain()));
+        } finally {
+            payload.release();
+        }
+    }
+
+    @Override
+    public void broadcastEncoded(NodeId source,
+                                 Iterable<NodeId> targets,
+                                 RemoteCallIdentifier rpc,
+                                 EncodedPayload payload) {
+        try {
+            for (NodeId destination : targets)
+                localNodes.deliver(new Envelope(source, destination, rpc, payload.retain()));
+        } finally {
+            payload.release();
+        }
+    }
+
+    @Override
+    public NetworkDescriptor describe() {
+        return new NetworkDescriptor(networkId, numberOfSpokes, numberOfHubs);
+    }
+
+    /**
+     * Stops the runners of all the nodes.
+     */
+    @Override
+    public void close() {
+        localNodes.stop();
+    }
+
+}
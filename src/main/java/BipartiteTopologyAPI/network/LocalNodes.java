@@ -0,0 +1,166 @@
+package BipartiteTopologyAPI.network;
+
+import BipartiteTopologyAPI.interfaces.Node;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.trace.TraceRecorder;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * The nodes of the Bipartite Network hosted by the current process. The transports of the process hand the messages
+ * they receive over to this registry, which delivers them to the runners of the destination nodes. A registry may be
+ * shared by several transports, so that a node receives the messages of all of them.
+ */
+public class LocalNodes {
+
+    /**
+     * The runners of the nodes of this process.
+     */
+    private final Map<Long, NodeRunner> runners;
+
+    /**
+     * The consumer of the messages sent to the querier by the nodes of this process.
+     */
+    private volatile BiConsumer<NodeId, Serializable> querierSink;
+
+    /**
+     * The recorder of the inputs delivered to the nodes of this process, or null if they are not recorded.
+     */
+    private volatile TraceRecorder recorder;
+
+    /**
+     * The consumer of the failures that stop the runners of the nodes of this process, or null.
+     */
+    private volatile BiConsumer<NodeId, RuntimeException> errorHandler;
+
+    public LocalNodes() {
+        this.runners = new ConcurrentHashMap<>();
+        this.querierSink = (source, message) -> { };
+    }
+
+    /**
+     * Registers a node to this process and starts running it.
+     *
+     * @return The runner of the node.
+     */
+    public NodeRunner register(NodeId nodeId, Node node) {
+        NodeRunner runner = new NodeRunner(nodeId, node)
+                .setTraceRecorder(recorder)
+                .setErrorHandler(errorHandler)
+                .start();
+        if (runners.putIfAbsent(key(nodeId), runner) != null) {
+            runner.stop();
+            throw new RuntimeException(nodeId + " is already registered to this process.");
+        }
+        return runner;
+    }
+
+    public boolean isLocal(NodeId nodeId) {
+        return runners.containsKey(key(nodeId));
+    }
+
+    public NodeRunner getRunner(NodeId nodeId) {
+        NodeRunner runner = runners.get(key(nodeId));
+        if (runner == null)
+            throw new RuntimeException(nodeId + " is not registered to this process.");
+        return runner;
+    }
+
+    public Collection<NodeRunner> getRunners() {
+        return runners.values();
+    }
+
+    /**
+     * Delivers a message to its destination node, or to the querier if it has no destination.
+     */
+    public void deliver(Envelope envelope) {
+        if (envelope.getDestination() == null) {
+            querierSink.accept(envelope.getSource(), envelope.getMessage());
+            return;
+        }
+        NodeRunner runner = runners.get(key(envelope.getDestination()));
+        if (runner != null)
+            runner.deliverMessage(envelope);
+        else
+            System.out.println("No node " + envelope.getDestination() + " is hosted by this process.");
+    }
+
+    /**
+     * Hands a message sent to the querier over to the querier sink.
+     */
+    public void deliverToQuerier(NodeId source, Serializable message) {
+        querierSink.accept(source, message);
+    }
+
+    /**
+     * Feeds a record of the data stream to a node of this process.
+     */
+    public void submitTuple(NodeId nodeId, Serializable tuple) {
+        getRunner(nodeId).deliverTuple(tuple);
+    }
+
+    /**
+     * Poses a query to a node of this process.
+     */
+    public void submitQuery(NodeId nodeId, long queryId, Serializable query) {
+        getRunner(nodeId).deliverQuery(queryId, query);
+    }
+
+    /**
+     * Sets the consumer of the messages sent to the querier by the nodes of this process.
+     */
+    public void setQuerierSink(BiConsumer<NodeId, Serializable> querierSink) {
+        this.querierSink = querierSink;
+    }
+
+    /**
+     * Records the inputs delivered to all the nodes of this process from now on, including the nodes registered later,
+     * or stops recording them if the recorder is null.
+     */
+    public void setTraceRecorder(TraceRecorder recorder) {
+        this.recorder = recorder;
+        for (NodeRunner runner : runners.values())
+            runner.setTraceRecorder(recorder);
+    }
+
+    /**
+     * Sets the consumer of the failures that stop the runners of the nodes of this process, including the nodes
+     * registered later.
+     */
+    public void setErrorHandler(BiConsumer<NodeId, RuntimeException> errorHandler) {
+        this.errorHandler = errorHandler;
+        for (NodeRunner runner : runners.values())
+            runner.setErrorHandler(errorHandler);
+    }
+
+    /**
+     * Stops the runners of all the nodes of this process.
+     *
+     * @throws RuntimeException If an input of a node has failed, once all the runners have been stopped.
+     */
+    public void stop() {
+        RuntimeException failure = null;
+        for (NodeRunner runner : runners.values()) {
+            try {
+                runner.stop();
+            } catch (RuntimeException e) {
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e);
+            }
+        }
+        runners.clear();
+        if (failure != null)
+            throw failure;
+    }
+
+    private static long key(NodeId nodeId) {
+        return ((long) nodeId.getNodeType().ordinal() << 32) | nodeId.getNodeId();
+    }
+
+}
@@ -0,0 +1,269 @@
+package BipartiteTopologyAPI.network;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Consumer;
+
+/**
+ * A single producer, single consumer ring buffer of variable length records, stored in a memory mapped file so that
+ * it can be shared by two processes of the same host. The file starts with a header holding the capacity of the ring
+ * and the write and read indices, each one on its own cache line, followed by the records. Every record starts with
+ * the length of the bytes following it (like a {@link MessageCodec} frame), and is aligned to 8 bytes. A negative
+ * length marks the padding at the end of the ring.
+ * <p>
+ * The producer publishes a record by advancing the write index after the record has been written, and the consumer
+ * releases a record by advancing the read index after the record has been read. As the byte buffer accessors do not
+ * order the accesses to the mapped file, the shared indices are read with acquire semantics (a load fence after the
+ * read) and written with release semantics (a store fence before the write), through the fences of
+ * {@code sun.misc.Unsafe}. Java 8 has no public fence API, so the fences are looked up reflectively, which keeps the
+ * internal API out of the build, and are inlined by the JIT as they are constant method handles.
+ */
+public class MappedRingBuffer implements Closeable {
+
+    private static final int MAGIC = 0x42545242;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int WRITE_INDEX_OFFSET = 64;
+    private static final int READ_INDEX_OFFSET = 128;
+    private static final int HEADER_SIZE = 192;
+    private static final int PADDING = -1;
+    private static final int ALIGNMENT = 8;
+
+    /**
+     * The file backing the ring.
+     */
+    private final Path file;
+
+    /**
+     * The mapped header and records of the ring.
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * The size of the record area of the ring. It is always a power of two.
+     */
+    private final int capacity;
+
+    /**
+     * The last read index observed by the producer, saving it from reading the shared index on every record.
+     */
+    private long cachedReadIndex;
+
+    private MappedRingBuffer(Path file, MappedByteBuffer buffer, int capacity) {
+        this.file = file;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.cachedReadIndex = 0;
+    }
+
+    /**
+     * Creates a new empty ring, replacing any stale file. This is done by the consumer, and the file appears atomically
+     * to the producer.
+     *
+     * @param file     The file backing the ring.
+     * @param capacity The size of the record area, rounded up to a power of two.
+     */
+    public static MappedRingBuffer create(Path file, int capacity) throws IOException {
+        int size = Integer.highestOneBit(Math.max(capacity, 1024) - 1) << 1;
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(temporary.toFile(), "rw")) {
+            raf.setLength(0);
+            raf.setLength(HEADER_SIZE + size);
+            MappedByteBuffer header = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.putLong(CAPACITY_OFFSET, size);
+            header.putInt(0, MAGIC);
+            header.force();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return map(file);
+    }
+
+    /**
+     * Opens an existing ring created by {@link #create(Path, int)}.
+     *
+     * @return The ring, or null if the file does not exist yet.
+     */
+    public static MappedRingBuffer open(Path file) throws IOException {
+        if (!Files.exists(file))
+            return null;
+        return map(file);
+    }
+
+    private static MappedRingBuffer map(Path file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+            if (buffer.getInt(0) != MAGIC)
+                throw new IOException("File " + file + " is not a ring buffer.");
+            int capacity = (int) buffer.getLong(CAPACITY_OFFSET);
+            return new MappedRingBuffer(file, buffer, capacity);
+        }
+    }
+
+    /**
+     * Returns the size of the largest record that fits in the ring.
+     */
+    public int getMaxRecordSize() {
+        return capacity / 2;
+    }
+
+    /**
+     * Appends a record made of the remaining bytes of the given buffers, which must start with the length of the bytes
+     * following it. The buffers are not consumed.
+     *
+     * @return False if the ring does not have enough free space for the record at the moment.
+     */
+    public boolean offer(ByteBuffer... segments) {
+        int length = 0;
+        for (ByteBuffer segment : segments)
+            length += segment.remaining();
+        if (length > getMaxRecordSize())
+            throw new IllegalArgumentException("A record of " + length + " bytes does not fit in ring " + file);
+        int recordSize = align(length);
+
+        long writeIndex = buffer.getLong(WRITE_INDEX_OFFSET);
+        int position = (int) (writeIndex & (capacity - 1));
+        int contiguous = capacity - position;
+        int required = (recordSize > contiguous) ? contiguous + recordSize : recordSize;
+        if (writeIndex + required - cachedReadIndex > capacity) {
+            cachedReadIndex = readAcquire(READ_INDEX_OFFSET);
+            if (writeIndex + required - cachedReadIndex > capacity)
+                return false;
+        }
+
+        if (recordSize > contiguous) {
+            buffer.putInt(HEADER_SIZE + position, PADDING);
+            writeIndex += contiguous;
+            position = 0;
+        }
+        ByteBuffer record = buffer.duplicate();
+        record.position(HEADER_SIZE + position);
+        for (ByteBuffer segment : segments)
+            record.put(segment.duplicate());
+        writeRelease(WRITE_INDEX_OFFSET, writeIndex + recordSize);
+        return true;
+    }
+
+    /**
+     * Consumes all the published records, handing each one of them to the given handler. The handler receives a view
+     * of the record that is only valid for the duration of the call.
+     *
+     * @return The number of consumed records.
+     */
+    public int poll(Consumer<ByteBuffer> handler) {
+        long readIndex = buffer.getLong(READ_INDEX_OFFSET);
+        long writeIndex = readAcquire(WRITE_INDEX_OFFSET);
+        int records = 0;
+        while (readIndex < writeIndex) {
+            int position = (int) (readIndex & (capacity - 1));
+            int length = buffer.getInt(HEADER_SIZE + position);
+            if (length == PADDING) {
+                readIndex += capacity - position;
+                continue;
+            }
+            ByteBuffer record = buffer.duplicate();
+            record.position(HEADER_SIZE + position);
+            record.limit(HEADER_SIZE + position + 4 + length);
+            handler.accept(record.slice());
+            readIndex += align(4 + length);
+            records++;
+        }
+        if (records > 0)
+            writeRelease(READ_INDEX_OFFSET, readIndex);
+        return records;
+    }
+
+    /**
+     * Returns true if the consumer has consumed all the published records.
+     */
+    public boolean isEmpty() {
+        return readAcquire(READ_INDEX_OFFSET) >= readAcquire(WRITE_INDEX_OFFSET);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public void close() {
+        buffer.force();
+    }
+
+    private static int align(int length) {
+        return (length + ALIGNMENT - 1) & ~(ALIGNMENT - 1);
+    }
+
+    /**
+     * Reads a shared index, ordering the accesses that follow after the read.
+     */
+    private long readAcquire(int offset) {
+        long value = buffer.getLong(offset);
+        Fences.loadFence();
+        return value;
+    }
+
+    /**
+     * Writes a shared index, ordering the accesses that precede before the write.
+     */
+    private void writeRelease(int offset, long value) {
+        Fences.storeFence();
+        buffer.putLong(offset, value);
+    }
+
+    /**
+     * The memory fences ordering the accesses to the mapped file, which the plain byte buffer accessors do not order.
+     * The load fence orders the preceding loads before the following loads and stores, and the store fence orders the
+     * preceding loads and stores before the following stores.
+     */
+    private static final class Fences {
+
+        private static final MethodHandle LOAD_FENCE;
+        private static final MethodHandle STORE_FENCE;
+
+        static {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                Object unsafe = field.get(null);
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                MethodType fence = MethodType.methodType(void.class);
+                LOAD_FENCE = lookup.findVirtual(unsafeClass, "loadFence", fence).bindTo(unsafe);
+                STORE_FENCE = lookup.findVirtual(unsafeClass, "storeFence", fence).bindTo(unsafe);
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException("Memory fences are not available for the shared memory transport", e);
+            }
+        }
+
+        static void loadFence() {
+            try {
+                LOAD_FENCE.invokeExact();
+            } catch (Throwable e) {
+                throw new RuntimeException("Failed to fence the shared memory transport", e);
+            }
+        }
+
+        static void storeFence() {
+            try {
+                STORE_FENCE.invokeExact();
+            } catch (Throwable e) {
+                throw new RuntimeException("Failed to fence the shared memory transport", e);
+            }
+        }
+
+    }
+
+}
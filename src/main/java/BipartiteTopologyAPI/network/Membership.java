@@ -0,0 +1,144 @@
+package BipartiteTopologyAPI.network;
+
+import BipartiteTopologyAPI.sites.NetworkDescriptor;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * A static membership of a Bipartite Network deployed over several processes, mapping every node to the host and port
+ * of the process running it. The membership file contains one node per line, in the form
+ * <pre>
+ *     # type id host:port
+ *     HUB   0  10.0.0.1:7000
+ *     SPOKE 0  10.0.0.2:7000
+ *     SPOKE 1  10.0.0.2:7000
+ * </pre>
+ * Nodes sharing the same host and port are run by the same process.
+ */
+public class Membership implements Serializable {
+
+    /**
+     * The endpoints of the hubs, indexed by their ids.
+     */
+    private final TreeMap<Integer, InetSocketAddress> hubs;
+
+    /**
+     * The endpoints of the spokes, indexed by their ids.
+     */
+    private final TreeMap<Integer, InetSocketAddress> spokes;
+
+    public Membership() {
+        this.hubs = new TreeMap<>();
+        this.spokes = new TreeMap<>();
+    }
+
+    /**
+     * Parses a membership file.
+     */
+    public static Membership load(Path file) throws IOException {
+        return parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses the contents of a membership file.
+     */
+    public static Membership parse(String contents) {
+        Membership membership = new Membership();
+        int lineNumber = 0;
+        for (String line : contents.split("\\r?\\n")) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#"))
+                continue;
+            String[] fields = trimmed.split("\\s+");
+            if (fields.length != 3)
+                throw new RuntimeException("Malformed membership entry at line " + lineNumber + ": " + line);
+            int separator = fields[2].lastIndexOf(':');
+            if (separator < 0)
+                throw new RuntimeException("Missing port in membership entry at line " + lineNumber + ": " + line);
+            NodeType type = NodeType.valueOf(fields[0].toUpperCase());
+            int id = Integer.parseInt(fields[1]);
+            String host = fields[2].substring(0, separator);
+            int port = Integer.parseInt(fields[2].substring(separator + 1));
+            membership.add(new NodeId(type, id), new InetSocketAddress(host, port));
+        }
+        return membership;
+    }
+
+    /**
+     * Adds a node to the membership.
+     */
+    public Membership add(NodeId nodeId, InetSocketAddress endpoint) {
+        TreeMap<Integer, InetSocketAddress> side = (nodeId.isHub()) ? hubs : spokes;
+        if (side.containsKey(nodeId.getNodeId()))
+            throw new RuntimeException("Duplicate membership entry for " + nodeId);
+        side.put(nodeId.getNodeId(), endpoint);
+        return this;
+    }
+
+    /**
+     * Returns the endpoint of the process running the given node, or null if the node is not a member.
+     */
+    public InetSocketAddress getEndpoint(NodeId nodeId) {
+        return ((nodeId.isHub()) ? hubs : spokes).get(nodeId.getNodeId());
+    }
+
+    /**
+     * Returns the nodes run by the process listening on the given endpoint.
+     */
+    public List<NodeId> getNodesOf(InetSocketAddress endpoint) {
+        List<NodeId> nodes = new ArrayList<>();
+        for (Map.Entry<Integer, InetSocketAddress> hub : hubs.entrySet())
+            if (hub.getValue().equals(endpoint))
+                nodes.add(new NodeId(NodeType.HUB, hub.getKey()));
+        for (Map.Entry<Integer, InetSocketAddress> spoke : spokes.entrySet())
+            if (spoke.getValue().equals(endpoint))
+                nodes.add(new NodeId(NodeType.SPOKE, spoke.getKey()));
+        return nodes;
+    }
+
+    /**
+     * Returns all the members of the network.
+     */
+    public List<NodeId> getNodes() {
+        List<NodeId> nodes = new ArrayList<>();
+        for (Integer hub : hubs.keySet())
+            nodes.add(new NodeId(NodeType.HUB, hub));
+        for (Integer spoke : spokes.keySet())
+            nodes.add(new NodeId(NodeType.SPOKE, spoke));
+        return nodes;
+    }
+
+    /**
+     * Returns the distinct endpoints of the processes of the network.
+     */
+    public Set<InetSocketAddress> getEndpoints() {
+        Set<InetSocketAddress> endpoints = new LinkedHashSet<>(hubs.values());
+        endpoints.addAll(spokes.values());
+        return endpoints;
+    }
+
+    /**
+     * Describes the network formed by the members.
+     */
+    public NetworkDescriptor describe(int networkId) {
+        return new NetworkDescriptor(networkId, spokes.size(), hubs.size());
+    }
+
+    public int getNumberOfHubs() {
+        return hubs.size();
+    }
+
+    public int getNumberOfSpokes() {
+        return spokes.size();
+    }
+
+}
@@ -0,0 +1,344 @@
+package BipartiteTopologyAPI.network;
+
+import BipartiteTopologyAPI.operations.CallType;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The wire format of the transports of the Bipartite Network. A frame consists of a length prefix, a fixed header with
+ * the source, the destination and the Remote Procedure Call of the message, and the Java serialized message itself.
+ * <pre>
+ *     int    frame length (excluding the prefix)
+ *     byte   source type,      int source id
+ *     byte   destination type, int destination id
+ *     byte   call type,        long call number
+ *     short  operation length, operation bytes
+ *     byte[] payload
+ * </pre>
+ * A payload holding {@link ByteBufferValue}s encoded by {@link #encodePayload(Serializable, BufferPool)} carries their
+ * contents out of band, after the serialized message, so that the buffers are written to the socket as they are.
+ * <pre>
+ *     short  {@link #ATTACHED_MAGIC}
+ *     int    number of attachments, int serialized message length
+ *     int[]  attachment lengths
+ *     byte[] serialized message
+ *     byte[] attachments
+ * </pre>
+ */
+public final class MessageCodec {
+
+    /**
+     * The maximum size of a frame header, including the length prefix.
+     */
+    public static final int MAX_HEADER_SIZE = 4 + 5 + 5 + 9 + 2 + Short.MAX_VALUE;
+
+    /**
+     * The size of a frame header without the operation bytes, including the length prefix.
+     */
+    public static final int FIXED_HEADER_SIZE = 4 + 5 + 5 + 9 + 2;
+
+    /**
+     * The first bytes of a payload carrying out of band attachments. Java serialized payloads start with 0xACED.
+     */
+    public static final short ATTACHED_MAGIC = (short) 0xB0FF;
+
+    private MessageCodec() {
+    }
+
+    /**
+     * Returns the size of the header of a frame for the given Remote Procedure Call, including the length prefix.
+     */
+    public static int headerSize(RemoteCallIdentifier rpc) {
+        String operation = rpc.getOperation();
+        return FIXED_HEADER_SIZE + ((operation == null) ? 0 : operation.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    /**
+     * Writes the length prefix and the header of a frame.
+     *
+     * @param buffer        The buffer to write the header to.
+     * @param source        The source of the message.
+     * @param destination   The destination of the message, or null for the querier.
+     * @param rpc           The Remote Procedure Call of the message.
+     * @param payloadLength The length of the encoded message following the header.
+     */
+    public static void writeHeader(ByteBuffer buffer,
+                                   NodeId source,
+                                   NodeId destination,
+                                   RemoteCallIdentifier rpc,
+                                   int payloadLength) {
+        byte[] operation = (rpc.getOperation() == null) ? null : rpc.getOperation().getBytes(StandardCharsets.UTF_8);
+        int headerLength = FIXED_HEADER_SIZE - 4 + ((operation == null) ? 0 : operation.length);
+        buffer.putInt(headerLength + payloadLength);
+        writeNodeId(buffer, source);
+        writeNodeId(buffer, destination);
+        buffer.put((rpc.getCallType() == null) ? -1 : (byte) rpc.getCallType().ordinal());
+        buffer.putLong(rpc.getCallNumber());
+        if (operation == null) {
+            buffer.putShort((short) -1);
+        } else {
+            buffer.putShort((short) operation.length);
+            buffer.put(operation);
+        }
+    }
+
+    /**
+     * Reads a frame whose length prefix has already been consumed. The payload is copied out of the buffer and left
+     * encoded, so that it is decoded by the thread of the receiving node.
+     *
+     * @param buffer      The buffer positioned at the start of the frame.
+     * @param frameLength The length of the frame.
+     * @return The envelope of the message.
+     */
+    public static Envelope readFrame(ByteBuffer buffer, int frameLength) {
+        int start = buffer.position();
+        NodeId source = readNodeId(buffer);
+        NodeId destination = readNodeId(buffer);
+        byte callType = buffer.get();
+        long callNumber = buffer.getLong();
+        short operationLength = buffer.getShort();
+        String operation = null;
+        if (operationLength >= 0) {
+            byte[] operationBytes = new byte[operationLength];
+            buffer.get(operationBytes);
+            operation = new String(operationBytes, StandardCharsets.UTF_8);
+        }
+        byte[] payload = new byte[frameLength - (buffer.position() - start)];
+        buffer.get(payload);
+        RemoteCallIdentifier rpc = new RemoteCallIdentifier(
+                (callType < 0) ? null : CallType.values()[callType],
+                operation,
+                callNumber
+        );
+        return new Envelope(source, destination, rpc, payload);
+    }
+
+    /**
+     * Encodes a message into a byte array.
+     */
+    public static byte[] encodePayload(Serializable message) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(message);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to encode message " + message, e);
+        }
+    }
+
+    /**
+     * Encodes a message into a byte array, leaving the contents of its {@link ByteBufferValue}s out of the array. The
+     * held buffers are added to the given attachments, without copying them, for delivering the message in-process.
+     */
+    public static byte[] encodePayload(Serializable message, List<ByteBuffer> attachments) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new AttachingOutputStream(bytes, attachments);
+            out.writeObject(message);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to encode message " + message, e);
+        }
+    }
+
+    /**
+     * Encodes a message into a chain of direct buffers taken from the given pool. The contents of the
+     * {@link ByteBufferValue}s of the message follow the serialized message as read-only views of the held buffers,
+     * which the pool does not take.
+     *
+     * @return The flipped buffers holding the encoded message.
+     */
+    public static List<ByteBuffer> encodePayload(Serializable message, BufferPool pool) {
+        PooledOutputStream bytes = new PooledOutputStream(pool);
+        List<ByteBuffer> attachments = new ArrayList<>();
+        try {
+            ObjectOutputStream out = new AttachingOutputStream(bytes, attachments);
+            out.writeObject(message);
+            out.close();
+        } catch (IOException e) {
+            for (ByteBuffer segment : bytes.segments())
+                pool.release(segment);
+            throw new RuntimeException("Failed to encode message " + message, e);
+        }
+        if (attachments.isEmpty())
+            return bytes.segments();
+
+        List<ByteBuffer> segments = new ArrayList<>();
+        int messageLength = 0;
+        for (ByteBuffer segment : bytes.segments())
+            messageLength += segment.remaining();
+        ByteBuffer prefix = ByteBuffer.allocate(2 + 4 + 4 + 4 * attachments.size());
+        prefix.putShort(ATTACHED_MAGIC).putInt(attachments.size()).putInt(messageLength);
+        for (ByteBuffer attachment : attachments)
+            prefix.putInt(attachment.remaining());
+        prefix.flip();
+        segments.add(prefix);
+        segments.addAll(bytes.segments());
+        for (ByteBuffer attachment : attachments)
+            segments.add(attachment.asReadOnlyBuffer());
+        return segments;
+    }
+
+    /**
+     * Decodes a message from a byte array. The {@link ByteBufferValue}s of a payload carrying out of band attachments
+     * hold views of the array.
+     */
+    public static Serializable decodePayload(byte[] payload) {
+        if (payload.length < 2 || ByteBuffer.wrap(payload).getShort() != ATTACHED_MAGIC)
+            return decodePayload(payload, 0, payload.length, null);
+        ByteBuffer prefix = ByteBuffer.wrap(payload);
+        prefix.getShort();
+        int count = prefix.getInt();
+        int messageLength = prefix.getInt();
+        int offset = prefix.position() + 4 * count;
+        int attachmentOffset = offset + messageLength;
+        List<ByteBuffer> attachments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = prefix.getInt();
+            attachments.add(ByteBuffer.wrap(payload, attachmentOffset, length).slice());
+            attachmentOffset += length;
+        }
+        return decodePayload(payload, offset, messageLength, attachments);
+    }
+
+    /**
+     * Decodes a message encoded by {@link #encodePayload(Serializable, List)}, handing over the given attachments to
+     * its {@link ByteBufferValue}s.
+     */
+    public static Serializable decodePayload(byte[] payload, List<ByteBuffer> attachments) {
+        return decodePayload(payload, 0, payload.length, attachments);
+    }
+
+    private static Serializable decodePayload(byte[] payload, int offset, int length, List<ByteBuffer> attachments) {
+        try (ObjectInputStream in =
+                     new AttachedInputStream(new ByteArrayInputStream(payload, offset, length), attachments)) {
+            return (Serializable) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException("Failed to decode message", e);
+        }
+    }
+
+    private static void writeNodeId(ByteBuffer buffer, NodeId nodeId) {
+        if (nodeId == null) {
+            buffer.put((byte) -1);
+            buffer.putInt(-1);
+        } else {
+            buffer.put((byte) nodeId.getNodeType().ordinal());
+            buffer.putInt(nodeId.getNodeId());
+        }
+    }
+
+    private static NodeId readNodeId(ByteBuffer buffer) {
+        byte type = buffer.get();
+        int id = buffer.getInt();
+        return (type < 0) ? null : NodeId.of(NodeType.values()[type], id);
+    }
+
+    /**
+     * An object stream collecting the buffers of the {@link ByteBufferValue}s it encodes as out of band attachments.
+     */
+    static class AttachingOutputStream extends ObjectOutputStream {
+
+        private final List<ByteBuffer> attachments;
+
+        AttachingOutputStream(OutputStream out, List<ByteBuffer> attachments) throws IOException {
+            super(out);
+            this.attachments = attachments;
+        }
+
+        /**
+         * Adds the contents of a buffer to the attachments.
+         *
+         * @return The index of the attachment.
+         */
+        int attach(ByteBuffer buffer) {
+            ByteBuffer contents = buffer.duplicate();
+            contents.clear();
+            attachments.add(contents);
+            return attachments.size() - 1;
+        }
+
+    }
+
+    /**
+     * An object stream handing over the out of band attachments of a payload to the {@link ByteBufferValue}s it decodes.
+     */
+    static class AttachedInputStream extends ObjectInputStream {
+
+        private final List<ByteBuffer> attachments;
+
+        AttachedInputStream(InputStream in, List<ByteBuffer> attachments) throws IOException {
+            super(in);
+            this.attachments = attachments;
+        }
+
+        ByteBuffer attachment(int index) throws IOException {
+            if (attachments == null || index >= attachments.size())
+                throw new IOException("The payload has no attachment " + index);
+            return attachments.get(index).duplicate();
+        }
+
+    }
+
+    /**
+     * An output stream writing into a growing chain of pooled direct buffers.
+     */
+    private static class PooledOutputStream extends OutputStream {
+
+        private final BufferPool pool;
+        private final ArrayList<ByteBuffer> segments;
+        private ByteBuffer current;
+        private boolean flipped;
+
+        PooledOutputStream(BufferPool pool) {
+            this.pool = pool;
+            this.segments = new ArrayList<>();
+            this.flipped = false;
+        }
+
+        @Override
+        public void write(int b) {
+            ensureRemaining();
+            current.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                ensureRemaining();
+                int n = Math.min(len, current.remaining());
+                current.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void ensureRemaining() {
+            if (current == null || !current.hasRemaining()) {
+                current = pool.acquire();
+                segments.add(current);
+            }
+        }
+
+        List<ByteBuffer> segments() {
+            if (!flipped) {
+                for (ByteBuffer segment : segments)
+                    segment.flip();
+                flipped = true;
+            }
+            return segments;
+        }
+
+    }
+
+}
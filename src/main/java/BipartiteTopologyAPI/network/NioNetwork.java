@@ -0,0 +1,687 @@
+package BipartiteTopologyAPI.network;
+
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.interfaces.Network;
+import BipartiteTopologyAPI.interfaces.Node;
+import BipartiteTopologyAPI.operations.CallType;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.NetworkDescriptor;
+import BipartiteTopologyAPI.sites.NodeId;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link Network} connecting the nodes of a Bipartite Network that run in different processes over TCP, without a
+ * stream processing engine. Every process runs a single selector loop serving all of its connections. Messages are
+ * sent as length prefixed frames (see {@link MessageCodec}), encoded into pooled direct buffers and written to the
+ * sockets with gathering writes. The nodes of the process are registered to the network, and each one of them is run
+ * by a {@link NodeRunner}.
+ * <p>
+ * The processes of the network and the nodes they run are given by a static {@link Membership}.
+ */
+public class NioNetwork implements Network, Closeable {
+
+    /**
+     * The size of the pooled buffers holding the frame headers.
+     */
+    private static final int HEADER_BUFFER_SIZE = 256;
+
+    /**
+     * The size of the pooled buffers holding the encoded messages and the received bytes.
+     */
+    private static final int DATA_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The maximum number of buffers gathered in a single socket write.
+     */
+    private static final int MAX_GATHERED_BUFFERS = 64;
+
+    /**
+     * The number of other frames written to a connection before the next chunk of a large transfer is let through.
+     */
+    private static final int CHUNK_INTERVAL = 8;
+
+    /**
+     * The delay before reconnecting to a process that could not be reached.
+     */
+    private static final long RECONNECT_DELAY_MS = 100;
+
+    /**
+     * The id of the Bipartite Network.
+     */
+    private final int networkId;
+
+    /**
+     * The static membership of the network.
+     */
+    private final Membership membership;
+
+    /**
+     * The endpoint this process listens to.
+     */
+    private final InetSocketAddress localEndpoint;
+
+    /**
+     * The nodes hosted by this process.
+     */
+    private final transient LocalNodes localNodes;
+
+    /**
+     * The outgoing connections to the other processes of the network.
+     */
+    private final transient Map<InetSocketAddress, Connection> connections;
+
+    /**
+     * The outgoing connections waiting for the selector loop to (re)connect them or to write to them.
+     */
+    private final transient ConcurrentLinkedQueue<Connection> pendingConnections;
+
+    /**
+     * The pool of the buffers holding the frame headers.
+     */
+    private final transient BufferPool headerPool;
+
+    /**
+     * The pool of the buffers holding the encoded messages and the received bytes.
+     */
+    private final transient BufferPool dataPool;
+
+    /**
+     * The selector multiplexing all the connections of this process.
+     */
+    private final transient Selector selector;
+
+    /**
+     * The channel accepting the connections of the other processes.
+     */
+    private final transient ServerSocketChannel server;
+
+    /**
+     * The thread running the selector loop.
+     */
+    private final transient Thread loop;
+
+    /**
+     * A flag determining if the network is running.
+     */
+    private volatile boolean running;
+
+    public NioNetwork(int networkId, Membership membership, InetSocketAddress localEndpoint) throws IOException {
+        this(networkId, membership, localEndpoint, new LocalNodes());
+    }
+
+    /**
+     * Creates a network delivering the messages it receives to the given nodes, which may be shared with other
+     * transports of this process.
+     */
+    public NioNetwork(int networkId,
+                      Membership membership,
+                      InetSocketAddress localEndpoint,
+                      LocalNodes localNodes) throws IOException {
+        this.networkId = networkId;
+        this.membership = membership;
+        this.localEndpoint = localEndpoint;
+        this.localNodes = localNodes;
+        this.connections = new ConcurrentHashMap<>();
+        this.pendingConnections = new ConcurrentLinkedQueue<>();
+        this.headerPool = new BufferPool(HEADER_BUFFER_SIZE, 4096);
+        this.dataPool = new BufferPool(DATA_BUFFER_SIZE, 1024);
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        this.server.configureBlocking(false);
+        this.server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        this.server.bind(localEndpoint);
+        this.server.register(selector, SelectionKey.OP_ACCEPT);
+        this.running = true;
+        this.loop = new Thread(this::selectorLoop, "nio-network-" + localEndpoint);
+        this.loop.setDaemon(true);
+        this.loop.start();
+    }
+
+    // =============================================== Node hosting ===================================================
+
+    /**
+     * Registers a node of this process to the network and starts running it.
+     *
+     * @param nodeId The id of the node. It must be mapped to the endpoint of this process by the membership.
+     * @param node   The (wrapped) node.
+     * @return The runner of the node.
+     */
+    public NodeRunner register(NodeId nodeId, Node node) {
+        if (!localEndpoint.equals(membership.getEndpoint(nodeId)))
+            throw new RuntimeException(nodeId + " is not a member of the process listening on " + localEndpoint);
+        return localNodes.register(nodeId, node);
+    }
+
+    /**
+     * Feeds a record of the data stream to a node of this process.
+     */
+    public void submitTuple(NodeId nodeId, Serializable tuple) {
+        localNodes.submitTuple(nodeId, tuple);
+    }
+
+    /**
+     * Poses a query to a node of this process.
+     */
+    public void submitQuery(NodeId nodeId, long queryId, Serializable query) {
+        localNodes.submitQuery(nodeId, queryId, query);
+    }
+
+    public NodeRunner getRunner(NodeId nodeId) {
+        return localNodes.getRunner(nodeId);
+    }
+
+    /**
+     * Sets the consumer of the messages sent to the querier by the nodes of this process.
+     */
+    public void setQuerierSink(BiConsumer<NodeId, Serializable> querierSink) {
+        localNodes.setQuerierSink(querierSink);
+    }
+
+    // ============================================== Network contract ================================================
+
+    @Override
+    public void send(NodeId source, NodeId destination, RemoteCallIdentifier rpc, Serializable message) {
+        if (destination == null) {
+            localNodes.deliverToQuerier(source, message);
+            return;
+        }
+        if (localNodes.isLocal(destination)) {
+            // Hand over the buffers of the message by reference.
+            List<ByteBuffer> attachments = new ArrayList<>();
+            byte[] payload = MessageCodec.encodePayload(message, attachments);
+            localNodes.deliver(new Envelope(source, destination, rpc, payload, attachments));
+        } else {
+            SharedPayload payload = new SharedPayload(MessageCodec.encodePayload(message, dataPool), 1);
+            enqueue(source, destination, rpc, payload);
+        }
+    }
+
+    /**
+     * Sends an already encoded message to a node of another process.
+     */
+    void sendEncoded(NodeId source, NodeId destination, RemoteCallIdentifier rpc, byte[] payload) {
+        enqueue(source, destination, rpc, new SharedPayload(Collections.singletonList(ByteBuffer.wrap(payload)), 1));
+    }
+
+    @Override
+    public void broadcast(NodeId source, Map<NodeId, RemoteCallIdentifier> rpcMap, Serializable message) {
+        int remoteTargets = 0;
+        boolean localTargets = false;
+        for (NodeId destination : rpcMap.keySet()) {
+            if (localNodes.isLocal(destination))
+                localTargets = true;
+            else
+                remoteTargets++;
+        }
+
+        // Encode the message once, and share the encoded bytes among all the targets.
+        SharedPayload payload = new SharedPayload(MessageCodec.encodePayload(message, dataPool), remoteTargets);
+        byte[] localPayload = (localTargets) ? payload.toByteArray() : null;
+        if (remoteTargets == 0)
+            payload.release();
+
+        for (Map.Entry<NodeId, RemoteCallIdentifier> target : rpcMap.entrySet()) {
+            if (localNodes.isLocal(target.getKey()))
+                localNodes.deliver(new Envelope(source, target.getKey(), target.getValue(), localPayload));
+            else
+                enqueue(source, target.getKey(), target.getValue(), payload);
+        }
+    }
+
+    @Override
+    public void sendEncoded(NodeId source, NodeId destination, RemoteCallIdentifier rpc, EncodedPayload payload) {
+        try {
+            if (destination == null)
+                localNodes.deliverToQuerier(source, payload.decode());
+            else if (localNodes.isLocal(destination))
+                localNodes.deliver(new Envelope(source, destination, rpc, payload.retain()));
+            else
+                sendEncoded(source, destination, rpc, payload.bytes());
+        } finally {
+            payload.release();
+        }
+    }
+
+    @Override
+    public void broadcastEncoded(NodeId source,
+                                 Iterable<NodeId> targets,
+                                 RemoteCallIdentifier rpc,
+                                 EncodedPayload payload) {
+        try {
+            int remoteTargets = 0;
+            for (NodeId destination : targets)
+                if (!localNodes.isLocal(destination))
+                    remoteTargets++;
+
+            // Every link writes the same bytes, and the local targets share a single decoded instance.
+            SharedPayload remote = (remoteTargets == 0) ? null :
+                    new SharedPayload(Collections.singletonList(ByteBuffer.wrap(payload.bytes())), remoteTargets);
+            for (NodeId destination : targets) {
+                if (localNodes.isLocal(destination))
+                    localNodes.deliver(new Envelope(source, destination, rpc, payload.retain()));
+                else
+                    enqueue(source, destination, rpc, remote);
+            }
+        } finally {
+            payload.release();
+        }
+    }
+
+    @Override
+    public NetworkDescriptor describe() {
+        return membership.describe(networkId);
+    }
+
+    // ============================================== Outgoing frames =================================================
+
+    private void enqueue(NodeId source, NodeId destination, RemoteCallIdentifier rpc, SharedPayload payload) {
+        InetSocketAddress endpoint = membership.getEndpoint(destination);
+        if (endpoint == null) {
+            payload.release();
+            throw new RuntimeException(destination + " is not a member of network " + networkId);
+        }
+        int headerSize = MessageCodec.headerSize(rpc);
+        ByteBuffer header = (headerSize <= HEADER_BUFFER_SIZE) ? headerPool.acquire() : ByteBuffer.allocate(headerSize);
+        MessageCodec.writeHeader(header, source, destination, rpc, payload.length);
+        header.flip();
+
+        Connection connection = connections.computeIfAbsent(endpoint, Connection::new);
+        if (CallType.CHUNK.equals(rpc.getCallType()))
+            connection.chunks.add(new OutgoingFrame(header, payload));
+        else
+            connection.frames.add(new OutgoingFrame(header, payload));
+        if (connection.scheduled.compareAndSet(false, true)) {
+            pendingConnections.add(connection);
+            selector.wakeup();
+        }
+    }
+
+    // =============================================== Selector loop ==================================================
+
+    private void selectorLoop() {
+        while (running) {
+            try {
+                selector.select(RECONNECT_DELAY_MS);
+                schedulePendingConnections();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid())
+                            continue;
+                        if (key.isAcceptable())
+                            accept();
+                        else if (key.isConnectable())
+                            finishConnect(key);
+                        else {
+                            if (key.isReadable())
+                                read(key);
+                            if (key.isValid() && key.isWritable())
+                                write(key);
+                        }
+                    } catch (IOException e) {
+                        failed(key, e);
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running)
+                    e.printStackTrace();
+            }
+        }
+    }
+
+    private void schedulePendingConnections() {
+        long now = System.currentTimeMillis();
+        int pending = pendingConnections.size();
+        for (int i = 0; i < pending; i++) {
+            Connection connection = pendingConnections.poll();
+            if (connection == null)
+                break;
+            if (connection.channel == null) {
+                if (connection.retryAt > now)
+                    pendingConnections.add(connection);
+                else
+                    connect(connection);
+            } else if (connection.channel.isConnected()) {
+                SelectionKey key = connection.channel.keyFor(selector);
+                if (key != null && key.isValid())
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    private void connect(Connection connection) {
+        try {
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            connection.channel = channel;
+            if (channel.connect(connection.endpoint)) {
+                connection.established = true;
+                channel.register(selector, SelectionKey.OP_WRITE, connection);
+            } else
+                channel.register(selector, SelectionKey.OP_CONNECT, connection);
+        } catch (IOException e) {
+            retry(connection);
+        }
+    }
+
+    private void finishConnect(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        channel.finishConnect();
+        ((Connection) key.attachment()).established = true;
+        key.interestOps(SelectionKey.OP_WRITE);
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.register(selector, SelectionKey.OP_READ, new InboundConnection(dataPool.acquire()));
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        InboundConnection inbound = (InboundConnection) key.attachment();
+        if (channel.read(inbound.buffer) < 0) {
+            close(key);
+            return;
+        }
+        ByteBuffer buffer = inbound.buffer;
+        buffer.flip();
+        while (buffer.remaining() >= 4) {
+            int frameLength = buffer.getInt(buffer.position());
+            if (buffer.remaining() < 4 + frameLength) {
+                if (4 + frameLength > buffer.capacity()) {
+                    // Frames larger than the pooled buffers are received into a dedicated buffer.
+                    ByteBuffer large = ByteBuffer.allocateDirect(4 + frameLength);
+                    large.put(buffer);
+                    large.flip();
+                    dataPool.release(inbound.buffer);
+                    inbound.buffer = buffer = large;
+                }
+                break;
+            }
+            buffer.getInt();
+            localNodes.deliver(MessageCodec.readFrame(buffer, frameLength));
+        }
+        if (!buffer.hasRemaining() && buffer.capacity() != dataPool.getBufferSize()) {
+            inbound.buffer = dataPool.acquire();
+        } else {
+            buffer.compact();
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        while (true) {
+            // Let the next chunk of a large transfer through whenever the other frames have been written, and after
+            // every few of them, so that a large transfer neither stalls nor starves the other messages.
+            if (!connection.chunks.isEmpty() &&
+                    (connection.frames.isEmpty() || connection.framesSinceChunk >= CHUNK_INTERVAL)) {
+                connection.frames.add(connection.chunks.poll());
+                connection.framesSinceChunk = 0;
+            }
+
+            // Gather the buffers of the frames at the head of the queue.
+            ArrayList<ByteBuffer> gathered = new ArrayList<>();
+            long pending = 0;
+            for (OutgoingFrame frame : connection.frames) {
+                if (gathered.size() + frame.segments.length > MAX_GATHERED_BUFFERS && !gathered.isEmpty())
+                    break;
+                for (ByteBuffer segment : frame.segments) {
+                    gathered.add(segment);
+                    pending += segment.remaining();
+                }
+            }
+            if (gathered.isEmpty())
+                break;
+            long written = channel.write(gathered.toArray(new ByteBuffer[0]));
+
+            // Release the frames that have been completely written.
+            OutgoingFrame head;
+            while ((head = connection.frames.peek()) != null && head.isWritten()) {
+                connection.frames.poll();
+                head.release();
+                connection.framesSinceChunk++;
+            }
+
+            // The socket buffer is full. Resume when the channel becomes writable again.
+            if (written < pending)
+                return;
+        }
+
+        // The queue has been drained. Stop writing unless new frames raced with the drain.
+        connection.scheduled.set(false);
+        if ((connection.frames.isEmpty() && connection.chunks.isEmpty()) ||
+                !connection.scheduled.compareAndSet(false, true))
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    private void failed(SelectionKey key, IOException e) {
+        Object attachment = key.attachment();
+        close(key);
+        if (attachment instanceof Connection) {
+            System.out.println("(Network: " + networkId + ") Connection to " + ((Connection) attachment).endpoint +
+                    " failed: " + e.getMessage() + ". Reconnecting.");
+            retry((Connection) attachment);
+        }
+    }
+
+    private void retry(Connection connection) {
+        // Frames that were partially written are lost along with the connection.
+        OutgoingFrame head = connection.frames.peek();
+        if (head != null && head.isStarted()) {
+            connection.frames.poll();
+            head.release();
+        }
+        // The frames written to the socket before the connection was lost may not have been received either.
+        if (connection.established) {
+            connection.established = false;
+            resetPayloadEncodings(connection.endpoint);
+        }
+        if (connection.channel != null) {
+            try {
+                connection.channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        connection.channel = null;
+        connection.retryAt = System.currentTimeMillis() + RECONNECT_DELAY_MS;
+        pendingConnections.add(connection);
+    }
+
+    /**
+     * Has the local nodes send full arrays to the nodes of a process whose connection was lost, as the deltas sent
+     * after a lost message are based on an array the nodes of the process do not hold.
+     */
+    private void resetPayloadEncodings(InetSocketAddress endpoint) {
+        List<NodeId> peers = membership.getNodesOf(endpoint);
+        for (NodeRunner runner : localNodes.getRunners()) {
+            if (!(runner.getNode() instanceof GenericWrapper))
+                continue;
+            GenericWrapper wrapper = (GenericWrapper) runner.getNode();
+            runner.execute(() -> {
+                for (NodeId peer : peers)
+                    if (peer.isHub() != wrapper.getNodeId().isHub())
+                        wrapper.resetPayloadEncoding(peer);
+            });
+        }
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+        }
+        if (key.attachment() instanceof InboundConnection)
+            dataPool.release(((InboundConnection) key.attachment()).buffer);
+    }
+
+    /**
+     * Stops the selector loop and the runners of the nodes of this process, and closes all the connections.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            loop.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys())
+            close(key);
+        selector.close();
+        server.close();
+        localNodes.stop();
+    }
+
+    public InetSocketAddress getLocalEndpoint() {
+        return localEndpoint;
+    }
+
+    public Membership getMembership() {
+        return membership;
+    }
+
+    public LocalNodes getLocalNodes() {
+        return localNodes;
+    }
+
+    // =============================================== Connections ====================================================
+
+    /**
+     * An outgoing connection to another process of the network, along with its queue of frames.
+     */
+    private static class Connection {
+
+        final InetSocketAddress endpoint;
+        final ConcurrentLinkedQueue<OutgoingFrame> frames;
+
+        /**
+         * The chunks of large transfers, which are moved to the frames one at a time.
+         */
+        final ConcurrentLinkedQueue<OutgoingFrame> chunks;
+        final AtomicBoolean scheduled;
+        volatile SocketChannel channel;
+
+        /**
+         * True if the channel has been connected since the connection was last lost.
+         */
+        boolean established;
+        long retryAt;
+        int framesSinceChunk;
+
+        Connection(InetSocketAddress endpoint) {
+            this.endpoint = endpoint;
+            this.frames = new ConcurrentLinkedQueue<>();
+            this.chunks = new ConcurrentLinkedQueue<>();
+            this.scheduled = new AtomicBoolean(false);
+        }
+
+    }
+
+    /**
+     * An incoming connection from another process of the network, along with the buffer of its received bytes.
+     */
+    private static class InboundConnection {
+
+        ByteBuffer buffer;
+
+        InboundConnection(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+    }
+
+    /**
+     * An encoded message shared by the frames of all the targets it is sent to. The pooled buffers of the message are
+     * returned to the pool when the last frame has been written.
+     */
+    private class SharedPayload {
+
+        final List<ByteBuffer> segments;
+        final int length;
+        final AtomicInteger references;
+
+        SharedPayload(List<ByteBuffer> segments, int references) {
+            this.segments = segments;
+            this.references = new AtomicInteger(references);
+            int total = 0;
+            for (ByteBuffer segment : segments)
+                total += segment.remaining();
+            this.length = total;
+        }
+
+        byte[] toByteArray() {
+            byte[] bytes = new byte[length];
+            int offset = 0;
+            for (ByteBuffer segment : segments) {
+                int n = segment.remaining();
+                segment.duplicate().get(bytes, offset, n);
+                offset += n;
+            }
+            return bytes;
+        }
+
+        void release() {
+            if (references.decrementAndGet() <= 0)
+                for (ByteBuffer segment : segments)
+                    dataPool.release(segment);
+        }
+
+    }
+
+    /**
+     * A frame waiting to be written to a connection.
+     */
+    private class OutgoingFrame {
+
+        final ByteBuffer header;
+        final SharedPayload payload;
+        final ByteBuffer[] segments;
+
+        OutgoingFrame(ByteBuffer header, SharedPayload payload) {
+            this.header = header;
+            this.payload = payload;
+            this.segments = new ByteBuffer[1 + payload.segments.size()];
+            this.segments[0] = header;
+            for (int i = 0; i < payload.segments.size(); i++)
+                this.segments[i + 1] = payload.segments.get(i).duplicate();
+        }
+
+        boolean isStarted() {
+            return header.position() > 0;
+        }
+
+        boolean isWritten() {
+            return !segments[segments.length - 1].hasRemaining() && !header.hasRemaining();
+        }
+
+        void release() {
+            headerPool.release(header);
+            payload.release();
+        }
+
+    }
+
+}
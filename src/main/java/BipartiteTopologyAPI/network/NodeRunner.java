@@ -0,0 +1,382 @@
+package BipartiteTopologyAPI.network;
+
+import BipartiteTopologyAPI.BufferingWrapper;
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.interfaces.Node;
+import BipartiteTopologyAPI.operations.CallType;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.trace.TraceRecorder;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs a node of the Bipartite Network on a dedicated thread. The transports, the data sources and the queriers hand
+ * their inputs over to the runner, which delivers them to the node one at a time, as the wrappers are not thread safe.
+ * <p>
+ * The inputs are queued in prioritized lanes: the responses to the remote calls of the node come first, as they may
+ * unblock it, then the remote calls, queries and tasks, and then the records of the data stream. When the node is a
+ * {@link BufferingWrapper} that processes its buffered data in bounded quanta, the runner schedules the next quantum on
+ * the data lane, so that responses arriving meanwhile are delivered before it. When the node has a batched process
+ * method, the runs of consecutive tuples waiting in the data lane are delivered in a single call.
+ * <p>
+ * An input that fails stops the runner, as the state of the node may be inconsistent: the inputs waiting in its inbox
+ * and the ones delivered later are dropped. The failure is handed over to the error handler of the runner, if any, and
+ * is rethrown by {@link #stop()}.
+ */
+public class NodeRunner implements Runnable {
+
+    /**
+     * The input lanes of a runner, in descending priority.
+     */
+    public enum Lane {
+        RESPONSE,
+        CONTROL,
+        DATA
+    }
+
+    /**
+     * The default maximum number of tuples delivered in a single call to a node with a batched process method.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+
+    /**
+     * The id of the node.
+     */
+    private final NodeId nodeId;
+
+    /**
+     * The node being run.
+     */
+    private final Node node;
+
+    /**
+     * The inputs waiting to be delivered to the node, indexed by the ordinal of their lane.
+     */
+    private final ArrayDeque<Runnable>[] lanes;
+
+    /**
+     * This flag determines if a quantum of the buffered data of the node has been scheduled on the data lane.
+     */
+    private boolean drainScheduled;
+
+    /**
+     * The maximum number of tuples delivered in a single call to a node with a batched process method.
+     */
+    private volatile int maxBatchSize;
+
+    /**
+     * The thread running the node.
+     */
+    private final Thread thread;
+
+    /**
+     * A flag determining if the runner is running.
+     */
+    private volatile boolean running;
+
+    /**
+     * A flag determining if the runner has been asked to stop once its inbox is empty. It is kept apart from the lanes,
+     * so that the runner stops once all of them are empty, whatever lane the last inputs were delivered on.
+     */
+    private boolean stopping;
+
+    /**
+     * The recorder of the inputs delivered to the node, or null if they are not recorded.
+     */
+    private volatile TraceRecorder recorder;
+
+    /**
+     * The exception thrown by the input that stopped the runner, or null.
+     */
+    private volatile RuntimeException failure;
+
+    /**
+     * The consumer of the failure that stops the runner, or null.
+     */
+    private volatile BiConsumer<NodeId, RuntimeException> errorHandler;
+
+    public NodeRunner(NodeId nodeId, Node node) {
+        this.nodeId = nodeId;
+        this.node = node;
+        this.lanes = newLanes();
+        this.drainScheduled = false;
+        this.maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+        this.thread = new Thread(this, "node-runner-" + nodeId);
+        this.thread.setDaemon(true);
+        this.running = false;
+        this.stopping = false;
+        if (node instanceof GenericWrapper)
+            ((GenericWrapper) node).setProcessingExecutor(this::execute);
+    }
+
+    public NodeRunner start() {
+        running = true;
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Stops the runner after the inputs already in its inbox have been delivered.
+     *
+     * @throws RuntimeException If an input has failed, with the failure as its cause.
+     */
+    public void stop() {
+        synchronized (lanes) {
+            stopping = true;
+            lanes.notify();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null)
+            throw new RuntimeException("The runner of " + nodeId + " was stopped by a failed input", failure);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Runnable input = take();
+                if (input == null) {
+                    running = false;
+                    return;
+                }
+                if (input instanceof TupleDelivery && isBatched()) {
+                    ArrayList<Serializable> run = takeRun((TupleDelivery) input);
+                    TraceRecorder recorder = this.recorder;
+                    if (recorder != null)
+                        recorder.recordTuples(nodeId, run);
+                    ((GenericWrapper) node).receiveTuples(run);
+                } else {
+                    input.run();
+                }
+                scheduleDrain();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                fail(e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops the runner on a failed input, dropping the inputs left in its inbox.
+     */
+    private void fail(RuntimeException e) {
+        synchronized (lanes) {
+            failure = e;
+            running = false;
+            for (ArrayDeque<Runnable> lane : lanes)
+                lane.clear();
+        }
+        BiConsumer<NodeId, RuntimeException> errorHandler = this.errorHandler;
+        if (errorHandler != null)
+            errorHandler.accept(nodeId, e);
+    }
+
+    /**
+     * Delivers a message received from the network to the node. Responses are delivered on the response lane and all
+     * the other messages on the control lane.
+     */
+    public void deliverMessage(Envelope envelope) {
+        Lane lane = envelope.getRpc() != null && CallType.RESPONSE.equals(envelope.getRpc().getCallType()) ?
+                Lane.RESPONSE : Lane.CONTROL;
+        enqueue(lane, () -> {
+            TraceRecorder recorder = this.recorder;
+            if (recorder != null)
+                recorder.recordMessage(nodeId, envelope.getSource(), envelope.getRpc(), envelope.toPayload());
+            node.receiveMsg(envelope.getSource(), envelope.getRpc(), envelope.getMessage());
+        });
+    }
+
+    /**
+     * Delivers a record of the data stream to the node.
+     */
+    public void deliverTuple(Serializable tuple) {
+        enqueue(Lane.DATA, new TupleDelivery(tuple));
+    }
+
+    /**
+     * Delivers a query to the node.
+     */
+    public void deliverQuery(long queryId, Serializable query) {
+        enqueue(Lane.CONTROL, () -> {
+            TraceRecorder recorder = this.recorder;
+            if (recorder != null)
+                recorder.recordQuery(nodeId, queryId, query);
+            node.receiveQuery(queryId, query);
+        });
+    }
+
+    /**
+     * Runs an arbitrary task on the thread of the node.
+     */
+    public void execute(Runnable task) {
+        enqueue(Lane.CONTROL, task);
+    }
+
+    private void enqueue(Lane lane, Runnable input) {
+        synchronized (lanes) {
+            if (failure != null)
+                return;
+            lanes[lane.ordinal()].add(input);
+            lanes.notify();
+        }
+    }
+
+    /**
+     * Waits for an input and returns the oldest input of the highest priority non empty lane, or null if the runner has
+     * been stopped and its inbox is empty.
+     */
+    private Runnable take() throws InterruptedException {
+        synchronized (lanes) {
+            while (true) {
+                for (ArrayDeque<Runnable> lane : lanes)
+                    if (!lane.isEmpty())
+                        return lane.poll();
+                if (stopping)
+                    return null;
+                lanes.wait();
+            }
+        }
+    }
+
+    /**
+     * Collects the run of tuples starting with the given one from the head of the data lane.
+     */
+    private ArrayList<Serializable> takeRun(TupleDelivery first) {
+        ArrayList<Serializable> run = new ArrayList<>();
+        run.add(first.tuple);
+        synchronized (lanes) {
+            ArrayDeque<Runnable> data = lanes[Lane.DATA.ordinal()];
+            while (run.size() < maxBatchSize && data.peek() instanceof TupleDelivery)
+                run.add(((TupleDelivery) data.poll()).tuple);
+        }
+        return run;
+    }
+
+    private boolean isBatched() {
+        return node instanceof GenericWrapper && ((GenericWrapper) node).nonEmpty() &&
+                ((GenericWrapper) node).getNodeClass().isBatchedProcess();
+    }
+
+    /**
+     * Schedules the processing of the next quantum of the data buffered by the node, if any.
+     */
+    private void scheduleDrain() {
+        if (drainScheduled || !(node instanceof BufferingWrapper) || !((BufferingWrapper<?>) node).hasPendingData())
+            return;
+        drainScheduled = true;
+        enqueue(Lane.DATA, () -> {
+            drainScheduled = false;
+            TraceRecorder recorder = this.recorder;
+            if (recorder != null)
+                recorder.recordDrain(nodeId);
+            ((BufferingWrapper<?>) node).drain();
+        });
+    }
+
+    private static ArrayDeque<Runnable>[] newLanes() {
+        // Arrays of a generic type cannot be created, and every lane is created as an ArrayDeque<Runnable> below.
+        @SuppressWarnings("unchecked")
+        ArrayDeque<Runnable>[] lanes = (ArrayDeque<Runnable>[]) new ArrayDeque<?>[Lane.values().length];
+        for (int i = 0; i < lanes.length; i++)
+            lanes[i] = new ArrayDeque<>();
+        return lanes;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public NodeRunner setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize <= 0)
+            throw new RuntimeException("The maximum batch size must be positive.");
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * Records the inputs delivered to the node from now on, or stops recording them if the recorder is null. The tasks
+     * run through {@link #execute(Runnable)} are not recorded.
+     */
+    public NodeRunner setTraceRecorder(TraceRecorder recorder) {
+        this.recorder = recorder;
+        return this;
+    }
+
+    public TraceRecorder getTraceRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Sets the consumer of the failure that stops the runner, which is called on the thread of the runner.
+     */
+    public NodeRunner setErrorHandler(BiConsumer<NodeId, RuntimeException> errorHandler) {
+        this.errorHandler = errorHandler;
+        return this;
+    }
+
+    /**
+     * Returns the exception thrown by the input that stopped the runner, or null if no input has failed.
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public NodeId getNodeId() {
+        return nodeId;
+    }
+
+    public Node getNode() {
+        return node;
+    }
+
+    public int getInboxSize() {
+        synchronized (lanes) {
+            int size = 0;
+            for (ArrayDeque<Runnable> lane : lanes)
+                size += lane.size();
+            return size;
+        }
+    }
+
+    public int getInboxSize(Lane lane) {
+        synchronized (lanes) {
+            return lanes[lane.ordinal()].size();
+        }
+    }
+
+    /**
+     * The delivery of a record of the data stream, which can be merged with the deliveries that follow it.
+     */
+    private class TupleDelivery implements Runnable {
+
+        private final Serializable tuple;
+
+        TupleDelivery(Serializable tuple) {
+            this.tuple = tuple;
+        }
+
+        @Override
+        public void run() {
+            TraceRecorder recorder = NodeRunner.this.recorder;
+            if (recorder != null)
+                recorder.recordTuple(nodeId, tuple);
+            node.receiveTuple(tuple);
+        }
+
+    }
+
+}
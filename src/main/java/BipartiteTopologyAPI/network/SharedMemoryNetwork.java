@@ -0,0 +1,397 @@
+package BipartiteTopologyAPI.network;
+
+import BipartiteTopologyAPI.interfaces.Network;
+import BipartiteTopologyAPI.interfaces.Node;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.NetworkDescriptor;
+import BipartiteTopologyAPI.sites.NodeId;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link Network} connecting the nodes of a Bipartite Network that run in different processes of the same host
+ * through shared memory. Every (source, destination) pair of co-located nodes communicates through its own
+ * {@link MappedRingBuffer}, stored in a directory shared by the processes. The consumer side of every ring is created
+ * by the process of the destination node, which polls the rings of each one of its nodes with a dedicated thread
+ * backing off according to an {@link IdleStrategy}.
+ * <p>
+ * The directory should be private to a single run of the network (e.g. a fresh directory under /dev/shm), as the rings
+ * are replaced when the processes start.
+ */
+public class SharedMemoryNetwork implements Network, Closeable {
+
+    /**
+     * The default size of the record area of the rings.
+     */
+    public static final int DEFAULT_RING_CAPACITY = 4 * 1024 * 1024;
+
+    /**
+     * The default time a write waits for the consumer of a full ring to make room, in milliseconds.
+     */
+    public static final long DEFAULT_WRITE_TIMEOUT_MS = 10_000;
+
+    /**
+     * The id of the Bipartite Network.
+     */
+    private final int networkId;
+
+    /**
+     * The static membership of the network.
+     */
+    private final Membership membership;
+
+    /**
+     * The endpoint identifying this process in the membership.
+     */
+    private final InetSocketAddress localEndpoint;
+
+    /**
+     * The directory holding the rings.
+     */
+    private final Path directory;
+
+    /**
+     * The size of the record area of the rings.
+     */
+    private final int ringCapacity;
+
+    /**
+     * The nodes hosted by this process.
+     */
+    private final transient LocalNodes localNodes;
+
+    /**
+     * The rings this process produces to, indexed by their file names.
+     */
+    private final transient Map<String, MappedRingBuffer> outgoing;
+
+    /**
+     * The threads polling the incoming rings of the nodes of this process.
+     */
+    private final transient List<Thread> pollers;
+
+    /**
+     * The time a write waits for the consumer of a full ring to make room, in milliseconds.
+     */
+    private volatile long writeTimeoutMillis;
+
+    /**
+     * A flag determining if the network is running.
+     */
+    private volatile boolean running;
+
+    public SharedMemoryNetwork(int networkId, Membership membership, InetSocketAddress localEndpoint, Path directory)
+            throws IOException {
+        this(networkId, membership, localEndpoint, directory, DEFAULT_RING_CAPACITY, new LocalNodes());
+    }
+
+    /**
+     * Creates a network delivering the messages it receives to the given nodes, which may be shared with other
+     * transports of this process.
+     */
+    public SharedMemoryNetwork(int networkId,
+                               Membership membership,
+                               InetSocketAddress localEndpoint,
+                               Path directory,
+                               int ringCapacity,
+                               LocalNodes localNodes) throws IOException {
+        this.networkId = networkId;
+        this.membership = membership;
+        this.localEndpoint = localEndpoint;
+        this.directory = directory;
+        this.ringCapacity = ringCapacity;
+        this.localNodes = localNodes;
+        this.outgoing = new ConcurrentHashMap<>();
+        this.pollers = new ArrayList<>();
+        this.writeTimeoutMillis = DEFAULT_WRITE_TIMEOUT_MS;
+        this.running = true;
+        Files.createDirectories(directory);
+
+        // Create the incoming rings of every node of this process, from every co-located node of another process.
+        for (NodeId destination : membership.getNodesOf(localEndpoint)) {
+            List<MappedRingBuffer> incoming = new ArrayList<>();
+            for (NodeId source : coLocatedPeers())
+                incoming.add(MappedRingBuffer.create(ringOf(source, destination), ringCapacity));
+            if (incoming.isEmpty())
+                continue;
+            Thread poller = new Thread(() -> poll(incoming), "shm-network-" + destination);
+            poller.setDaemon(true);
+            pollers.add(poller);
+            poller.start();
+        }
+    }
+
+    // =============================================== Node hosting ===================================================
+
+    /**
+     * Registers a node of this process to the network and starts running it.
+     *
+     * @param nodeId The id of the node. It must be mapped to the endpoint of this process by the membership.
+     * @param node   The (wrapped) node.
+     * @return The runner of the node.
+     */
+    public NodeRunner register(NodeId nodeId, Node node) {
+        if (!localEndpoint.equals(membership.getEndpoint(nodeId)))
+            throw new RuntimeException(nodeId + " is not a member of the process listening on " + localEndpoint);
+        return localNodes.register(nodeId, node);
+    }
+
+    /**
+     * Feeds a record of the data stream to a node of this process.
+     */
+    public void submitTuple(NodeId nodeId, Serializable tuple) {
+        localNodes.submitTuple(nodeId, tuple);
+    }
+
+    /**
+     * Poses a query to a node of this process.
+     */
+    public void submitQuery(NodeId nodeId, long queryId, Serializable query) {
+        localNodes.submitQuery(nodeId, queryId, query);
+    }
+
+    /**
+     * Sets the consumer of the messages sent to the querier by the nodes of this process.
+     */
+    public void setQuerierSink(BiConsumer<NodeId, Serializable> querierSink) {
+        localNodes.setQuerierSink(querierSink);
+    }
+
+    /**
+     * Sets the time a write waits for the consumer of a full ring to make room, after which the consumer is deemed
+     * stalled and the write fails.
+     */
+    public SharedMemoryNetwork setWriteTimeout(long writeTimeoutMillis) {
+        if (writeTimeoutMillis <= 0)
+            throw new RuntimeException("The write timeout of the shared memory network must be positive.");
+        this.writeTimeoutMillis = writeTimeoutMillis;
+        return this;
+    }
+
+    public long getWriteTimeout() {
+        return writeTimeoutMillis;
+    }
+
+    /**
+     * Returns true if the given node runs in another process of this host.
+     */
+    public boolean isCoLocated(NodeId nodeId) {
+        InetSocketAddress endpoint = membership.getEndpoint(nodeId);
+        return endpoint != null && !endpoint.equals(localEndpoint) && sameHost(endpoint, localEndpoint);
+    }
+
+    /**
+     * Returns true if a message of the given encoded size can be sent through the rings.
+     */
+    public boolean fits(int frameSize) {
+        return frameSize <= Integer.highestOneBit(Math.max(ringCapacity, 1024) - 1);
+    }
+
+    // ============================================== Network contract ================================================
+
+    @Override
+    public void send(NodeId source, NodeId destination, RemoteCallIdentifier rpc, Serializable message) {
+        if (destination == null) {
+            localNodes.deliverToQuerier(source, message);
+            return;
+        }
+        if (localNodes.isLocal(destination)) {
+            // Hand over the buffers of the message by reference.
+            List<ByteBuffer> attachments = new ArrayList<>();
+            byte[] payload = MessageCodec.encodePayload(message, attachments);
+            localNodes.deliver(new Envelope(source, destination, rpc, payload, attachments));
+        } else
+            write(source, destination, rpc, ByteBuffer.wrap(MessageCodec.encodePayload(message)));
+    }
+
+    @Override
+    public void broadcast(NodeId source, Map<NodeId, RemoteCallIdentifier> rpcMap, Serializable message) {
+        byte[] payload = MessageCodec.encodePayload(message);
+        for (Map.Entry<NodeId, RemoteCallIdentifier> target : rpcMap.entrySet()) {
+            if (localNodes.isLocal(target.getKey()))
+                localNodes.deliver(new Envelope(source, target.getKey(), target.getValue(), payload));
+            else
+                write(source, target.getKey(), target.getValue(), ByteBuffer.wrap(payload));
+        }
+    }
+
+    @Override
+    public void sendEncoded(NodeId source, NodeId destination, RemoteCallIdentifier rpc, EncodedPayload payload) {
+        try {
+            if (destination == null)
+                localNodes.deliverToQuerier(source, payload.decode());
+            else if (localNodes.isLocal(destination))
+                localNodes.deliver(new Envelope(source, destination, rpc, payload.retain()));
+            else
+                write(source, destination, rpc, ByteBuffer.wrap(payload.bytes()));
+        } finally {
+            payload.release();
+        }
+    }
+
+    @Override
+    public void broadcastEncoded(NodeId source,
+                                 Iterable<NodeId> targets,
+                                 RemoteCallIdentifier rpc,
+                                 EncodedPayload payload) {
+        try {
+            for (NodeId destination : targets) {
+                if (localNodes.isLocal(destination))
+                    localNodes.deliver(new Envelope(source, destination, rpc, payload.retain()));
+                else
+                    write(source, destination, rpc, ByteBuffer.wrap(payload.bytes()));
+            }
+        } finally {
+            payload.release();
+        }
+    }
+
+    @Override
+    public NetworkDescriptor describe() {
+        return membership.describe(networkId);
+    }
+
+    /**
+     * Writes a frame to the ring of a (source, destination) pair, waiting for the consumer to make room if the ring is
+     * full. The write fails if the ring stays full for longer than the write timeout, as the consumer has stalled. This
+     * must only be called by the thread running the source node.
+     */
+    void write(NodeId source, NodeId destination, RemoteCallIdentifier rpc, ByteBuffer payload) {
+        if (!isCoLocated(destination))
+            throw new RuntimeException(destination + " does not run in another process of this host.");
+        ByteBuffer header = ByteBuffer.allocate(MessageCodec.headerSize(rpc));
+        MessageCodec.writeHeader(header, source, destination, rpc, payload.remaining());
+        header.flip();
+
+        MappedRingBuffer ring = outgoingRing(source, destination);
+        IdleStrategy idle = new IdleStrategy();
+        long deadline = 0;
+        while (!ring.offer(header, payload)) {
+            if (!running)
+                throw new RuntimeException("The shared memory network has been closed.");
+            long now = System.nanoTime();
+            if (deadline == 0)
+                deadline = now + writeTimeoutMillis * 1_000_000L;
+            else if (now - deadline > 0)
+                throw new RuntimeException("Ring " + ring.getFile() + " from " + source + " to " + destination +
+                        " has been full for " + writeTimeoutMillis + " ms, as its consumer has stalled.");
+            idle.idle(0);
+        }
+    }
+
+    /**
+     * Waits for the consumer of the ring of a (source, destination) pair to consume the frames written to it, so that
+     * the frames sent to the destination through another transport from now on are delivered after them. The wait
+     * fails after the write timeout, as the consumer has stalled. This must only be called by the thread running the
+     * source node.
+     */
+    void awaitConsumed(NodeId source, NodeId destination) {
+        MappedRingBuffer ring = outgoing.get(ringOf(source, destination).toString());
+        if (ring == null)
+            return;
+        IdleStrategy idle = new IdleStrategy();
+        long deadline = System.nanoTime() + writeTimeoutMillis * 1_000_000L;
+        while (!ring.isEmpty()) {
+            if (!running)
+                throw new RuntimeException("The shared memory network has been closed.");
+            if (System.nanoTime() - deadline > 0)
+                throw new RuntimeException("Ring " + ring.getFile() + " from " + source + " to " + destination +
+                        " has not been consumed for " + writeTimeoutMillis + " ms, as its consumer has stalled.");
+            idle.idle(0);
+        }
+    }
+
+    private MappedRingBuffer outgoingRing(NodeId source, NodeId destination) {
+        Path file = ringOf(source, destination);
+        MappedRingBuffer ring = outgoing.get(file.toString());
+        IdleStrategy idle = new IdleStrategy();
+        while (ring == null) {
+            // Wait for the process of the destination to create the ring.
+            try {
+                ring = MappedRingBuffer.open(file);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open ring " + file, e);
+            }
+            if (ring != null)
+                outgoing.put(file.toString(), ring);
+            else if (!running)
+                throw new RuntimeException("The shared memory network has been closed.");
+            else
+                idle.idle(0);
+        }
+        return ring;
+    }
+
+    // ================================================== Polling =====================================================
+
+    private void poll(List<MappedRingBuffer> incoming) {
+        IdleStrategy idle = new IdleStrategy();
+        while (running) {
+            int work = 0;
+            for (MappedRingBuffer ring : incoming)
+                work += ring.poll(record -> {
+                    try {
+                        int frameLength = record.getInt();
+                        localNodes.deliver(MessageCodec.readFrame(record, frameLength));
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                });
+            idle.idle(work);
+        }
+    }
+
+    /**
+     * Stops polling the rings and the runners of the nodes of this process.
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Thread poller : pollers) {
+            try {
+                poller.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (MappedRingBuffer ring : outgoing.values())
+            ring.close();
+        localNodes.stop();
+    }
+
+    public LocalNodes getLocalNodes() {
+        return localNodes;
+    }
+
+    private List<NodeId> coLocatedPeers() {
+        List<NodeId> peers = new ArrayList<>();
+        for (NodeId member : membership.getNodes())
+            if (isCoLocated(member))
+                peers.add(member);
+        return peers;
+    }
+
+    private Path ringOf(NodeId source, NodeId destination) {
+        return directory.resolve(networkId + "-" + source.getNodeType() + "-" + source.getNodeId() + "-to-" +
+                destination.getNodeType() + "-" + destination.getNodeId() + ".ring");
+    }
+
+    static boolean sameHost(InetSocketAddress a, InetSocketAddress b) {
+        if (a.getAddress() != null && b.getAddress() != null)
+            return a.getAddress().equals(b.getAddress()) ||
+                    (a.getAddress().isLoopbackAddress() && b.getAddress().isLoopbackAddress());
+        return a.getHostString().equals(b.getHostString());
+    }
+
+}
@@ -6,5 +6,7 @@ package BipartiteTopologyAPI.operations;
 public enum CallType {
     ONE_WAY,
     TWO_WAY,
-    RESPONSE
+    RESPONSE,
+    CONTROL,
+    CHUNK
 }
@@ -0,0 +1,119 @@
+package BipartiteTopologyAPI.routing;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A consistent-hash ring assigning keys to the nodes of one side of the Bipartite Network. Every node is placed on the
+ * ring at a number of virtual positions, which depend only on its id, so that adding or removing a node only moves the
+ * keys that it gains or loses.
+ * <p>
+ * Keys are hashed by value if they are numbers or strings, and by their hashCode otherwise. Keys of other types should
+ * therefore implement a hashCode that is stable across processes.
+ */
+public class ConsistentHashRing implements Serializable {
+
+    /**
+     * The default number of virtual positions of every node on the ring.
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    /**
+     * The number of nodes on the ring.
+     */
+    private final int numberOfNodes;
+
+    /**
+     * The number of virtual positions of every node on the ring.
+     */
+    private final int virtualNodes;
+
+    /**
+     * The positions of the ring, mapped to the ids of the nodes holding them.
+     */
+    private final TreeMap<Long, Integer> ring;
+
+    public ConsistentHashRing(int numberOfNodes, int virtualNodes) {
+        if (numberOfNodes <= 0)
+            throw new RuntimeException("A consistent-hash ring needs at least one node.");
+        if (virtualNodes <= 0)
+            throw new RuntimeException("The number of virtual nodes of a consistent-hash ring must be positive.");
+        this.numberOfNodes = numberOfNodes;
+        this.virtualNodes = virtualNodes;
+        this.ring = new TreeMap<>();
+        for (int node = 0; node < numberOfNodes; node++)
+            for (int v = 0; v < virtualNodes; v++)
+                ring.put(mix(((long) node << 32 | v) ^ 0x5bd1e9955bd1e995L), node);
+    }
+
+    public ConsistentHashRing(int numberOfNodes) {
+        this(numberOfNodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Returns the id of the node owning a key.
+     */
+    public int nodeOf(Object key) {
+        return nodeOfHash(hash(key));
+    }
+
+    /**
+     * Returns the id of the node owning the first position of the ring at or after the given hash.
+     */
+    public int nodeOfHash(long hash) {
+        Map.Entry<Long, Integer> position = ring.ceilingEntry(hash);
+        return (position == null) ? ring.firstEntry().getValue() : position.getValue();
+    }
+
+    /**
+     * Returns true if the given node owns all the hashes from the first to the last one, inclusive.
+     */
+    public boolean isOwnedBy(long from, long to, int node) {
+        for (int owner : ring.subMap(from, true, to, false).values())
+            if (owner != node)
+                return false;
+        return nodeOfHash(to) == node;
+    }
+
+    /**
+     * Hashes a key onto the ring.
+     */
+    public static long hash(Object key) {
+        if (key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte)
+            return mix(((Number) key).longValue());
+        if (key instanceof CharSequence) {
+            CharSequence chars = (CharSequence) key;
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < chars.length(); i++) {
+                h ^= chars.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return mix(h);
+        }
+        if (key == null)
+            throw new RuntimeException("A routing key cannot be null.");
+        return mix(key.hashCode());
+    }
+
+    /**
+     * The finalization step of the 64-bit MurmurHash3, spreading the bits of a value over the whole ring.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public int getNumberOfNodes() {
+        return numberOfNodes;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+}
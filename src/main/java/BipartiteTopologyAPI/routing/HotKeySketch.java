@@ -0,0 +1,166 @@
+package BipartiteTopologyAPI.routing;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * A sampled Space-Saving sketch estimating the request rates of the most frequent keys received by a node. One in every
+ * sampleInterval keys is sampled on average, and at most capacity keys are counted at any time: an uncounted key
+ * replaces the key with the lowest count, inheriting that count as an overestimation error. The counts are halved every
+ * window samples, so that the estimates follow the recent traffic.
+ */
+public class HotKeySketch implements Serializable {
+
+    /**
+     * The maximum number of counted keys.
+     */
+    private final int capacity;
+
+    /**
+     * The average number of received keys per sampled key.
+     */
+    private final int sampleInterval;
+
+    /**
+     * The number of samples after which the counts are halved. Zero disables the decay.
+     */
+    private final long window;
+
+    /**
+     * The counters of the counted keys.
+     */
+    private final HashMap<Object, Counter> counters;
+
+    /**
+     * The source of the sampling decisions.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * The (decayed) number of sampled keys.
+     */
+    private long samples;
+
+    /**
+     * The number of samples since the last decay.
+     */
+    private long samplesInWindow;
+
+    public HotKeySketch(int capacity, int sampleInterval, long window) {
+        if (capacity <= 0)
+            throw new RuntimeException("The capacity of a hot key sketch must be positive.");
+        if (sampleInterval <= 0)
+            throw new RuntimeException("The sample interval of a hot key sketch must be positive.");
+        if (window < 0)
+            throw new RuntimeException("The decay window of a hot key sketch cannot be negative.");
+        this.capacity = capacity;
+        this.sampleInterval = sampleInterval;
+        this.window = window;
+        this.counters = new HashMap<>();
+        this.random = new SplittableRandom(0x9e3779b97f4a7c15L);
+        this.samples = 0;
+        this.samplesInWindow = 0;
+    }
+
+    /**
+     * Counts a received key, if it is sampled.
+     */
+    public void offer(Object key) {
+        if (sampleInterval > 1 && random.nextInt(sampleInterval) != 0)
+            return;
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            if (counters.size() < capacity) {
+                counter = new Counter(0);
+            } else {
+                Map.Entry<Object, Counter> min = null;
+                for (Map.Entry<Object, Counter> entry : counters.entrySet())
+                    if (min == null || entry.getValue().count < min.getValue().count)
+                        min = entry;
+                counters.remove(min.getKey());
+                counter = new Counter(min.getValue().count);
+            }
+            counters.put(key, counter);
+        }
+        counter.count++;
+        samples++;
+        if (window > 0 && ++samplesInWindow >= window)
+            decay();
+    }
+
+    /**
+     * Halves all the counts.
+     */
+    public void decay() {
+        for (Counter counter : counters.values()) {
+            counter.count >>= 1;
+            counter.error >>= 1;
+        }
+        samples >>= 1;
+        samplesInWindow = 0;
+    }
+
+    /**
+     * Returns the estimated number of requests for a key, or zero if it is not counted.
+     */
+    public long estimate(Object key) {
+        Counter counter = counters.get(key);
+        return (counter == null) ? 0 : counter.count * sampleInterval;
+    }
+
+    /**
+     * Returns the estimated fraction of the recent requests made for a key.
+     */
+    public double share(Object key) {
+        Counter counter = counters.get(key);
+        return (counter == null || samples == 0) ? 0 : (double) counter.count / samples;
+    }
+
+    /**
+     * Returns the counted keys whose guaranteed share of the recent requests exceeds the given fraction, hottest first.
+     */
+    public List<Object> hotKeys(double minShare) {
+        ArrayList<Object> hot = new ArrayList<>();
+        for (Map.Entry<Object, Counter> entry : counters.entrySet())
+            if (samples > 0 && (double) (entry.getValue().count - entry.getValue().error) / samples > minShare)
+                hot.add(entry.getKey());
+        hot.sort((a, b) -> Long.compare(counters.get(b).count, counters.get(a).count));
+        return hot;
+    }
+
+    /**
+     * Returns the estimated total number of recent requests.
+     */
+    public long getTotal() {
+        return samples * sampleInterval;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * The count of a key along with the maximum overestimation of the count.
+     */
+    private static final class Counter implements Serializable {
+
+        private long count;
+
+        private long error;
+
+        private Counter(long error) {
+            this.count = error;
+            this.error = error;
+        }
+
+    }
+
+}
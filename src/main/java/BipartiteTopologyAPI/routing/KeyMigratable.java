@@ -0,0 +1,28 @@
+package BipartiteTopologyAPI.routing;
+
+import java.io.Serializable;
+
+/**
+ * An interface implemented by the nodes whose keyed state can be migrated to other nodes of their side of the
+ * Bipartite Network. While a node is KeyMigratable, its wrapper defers the remote calls for the keys migrating to the
+ * node until their state arrives, and relays the calls for the keys owned by other nodes to their owner.
+ */
+public interface KeyMigratable {
+
+    /**
+     * Removes the state of the keys hashing into the given range from this node and returns it.
+     *
+     * @param range The migrated range of keys.
+     * @return The Serializable state of the keys.
+     */
+    Serializable exportKeys(KeyRange range);
+
+    /**
+     * Adds the state of the keys hashing into the given range, exported by another node, to this node.
+     *
+     * @param range The migrated range of keys.
+     * @param state The Serializable state of the keys.
+     */
+    void importKeys(KeyRange range, Serializable state);
+
+}
@@ -0,0 +1,97 @@
+package BipartiteTopologyAPI.routing;
+
+import java.io.Serializable;
+
+/**
+ * A control message of the migration of a range of keys between two nodes of the same side of the Bipartite Network.
+ */
+public final class KeyMigration implements Serializable {
+
+    /**
+     * The steps of a migration.
+     */
+    public enum Kind {
+        /** Announces the new owner of the range to the nodes of the network. */
+        ROUTE,
+        /** Acknowledges to the old owner that a disjoint node routes the range to the new owner. */
+        ACK,
+        /** Hands the state of the range over to the new owner. */
+        TRANSFER
+    }
+
+    /**
+     * The step of the migration.
+     */
+    private final Kind kind;
+
+    /**
+     * The migrated range of keys.
+     */
+    private final KeyRange range;
+
+    /**
+     * The id of the old owner of the range.
+     */
+    private final int origin;
+
+    /**
+     * The id of the new owner of the range.
+     */
+    private final int owner;
+
+    /**
+     * The epoch of the new ownership of the range, ordering the migrations of overlapping ranges.
+     */
+    private final long epoch;
+
+    /**
+     * The state of the range, sent along with the TRANSFER step.
+     */
+    private final Serializable state;
+
+    public KeyMigration(Kind kind, KeyRange range, int origin, int owner, long epoch, Serializable state) {
+        this.kind = kind;
+        this.range = range;
+        this.origin = origin;
+        this.owner = owner;
+        this.epoch = epoch;
+        this.state = state;
+    }
+
+    /**
+     * Returns the given step of this migration.
+     */
+    public KeyMigration step(Kind kind, Serializable state) {
+        return new KeyMigration(kind, range, origin, owner, epoch, state);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public KeyRange getRange() {
+        return range;
+    }
+
+    public int getOrigin() {
+        return origin;
+    }
+
+    public int getOwner() {
+        return owner;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public Serializable getState() {
+        return state;
+    }
+
+    @Override
+    public String toString() {
+        return "KeyMigration(" + kind + ", " + range + ", " + origin + " -> " + owner + ", epoch " + epoch + ")";
+    }
+
+}
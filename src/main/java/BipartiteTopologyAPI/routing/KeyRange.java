@@ -0,0 +1,84 @@
+package BipartiteTopologyAPI.routing;
+
+import java.io.Serializable;
+
+/**
+ * An inclusive range of hashes on the routing ring, covering all the keys that hash into it. A single key is covered by
+ * the range holding only its hash.
+ */
+public final class KeyRange implements Serializable {
+
+    /**
+     * The first hash of the range.
+     */
+    private final long from;
+
+    /**
+     * The last hash of the range.
+     */
+    private final long to;
+
+    private KeyRange(long from, long to) {
+        if (from > to)
+            throw new RuntimeException("Empty key range [" + from + ", " + to + "].");
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Returns the range of the hashes from the first to the last one, inclusive.
+     */
+    public static KeyRange of(long from, long to) {
+        return new KeyRange(from, to);
+    }
+
+    /**
+     * Returns the range covering a single key.
+     */
+    public static KeyRange ofKey(Object key) {
+        long hash = ConsistentHashRing.hash(key);
+        return new KeyRange(hash, hash);
+    }
+
+    /**
+     * Returns true if the given key hashes into this range.
+     */
+    public boolean contains(Object key) {
+        return containsHash(ConsistentHashRing.hash(key));
+    }
+
+    public boolean containsHash(long hash) {
+        return from <= hash && hash <= to;
+    }
+
+    public boolean overlaps(long from, long to) {
+        return this.from <= to && from <= this.to;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof KeyRange))
+            return false;
+        KeyRange range = (KeyRange) o;
+        return from == range.from && to == range.to;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(from) * 31 + Long.hashCode(to);
+    }
+
+    @Override
+    public String toString() {
+        return "KeyRange[" + from + ", " + to + "]";
+    }
+
+}
@@ -0,0 +1,439 @@
+package BipartiteTopologyAPI.routing;
+
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.NodeClass;
+import BipartiteTopologyAPI.annotations.RoutingKey;
+import BipartiteTopologyAPI.operations.CallType;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.NetworkDescriptor;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * The keyed routing state of a wrapped node. A router holds two {@link RoutingTable}s: one assigning keys to the
+ * disjoint nodes, used by the routing proxy, and one assigning keys to the nodes of the same side as the wrapped node,
+ * used to tell which keys the wrapped node owns. It can also sample the keys of the remote calls received by the node
+ * into a {@link HotKeySketch}.
+ * <p>
+ * A {@link KeyMigratable} node can migrate a range of keys it owns to another node of its side in three steps:
+ * <ol>
+ *     <li>ROUTE: The new owner of the range is announced to all the other nodes of the network, starting with the new
+ *     owner itself. The disjoint nodes swap in a routing table sending the range to its new owner and acknowledge the
+ *     swap to the old owner.</li>
+ *     <li>ACK: Once all the disjoint nodes have acknowledged the swap, no more calls for the range can reach the old
+ *     owner, as the calls of every disjoint node precede its acknowledgement.</li>
+ *     <li>TRANSFER: The old owner exports the state of the range and hands it over to the new owner. Until it arrives,
+ *     the new owner defers the calls for the keys of the range, and replays them after importing the state.</li>
+ * </ol>
+ * A call for keys that a node does not own, outside of an incoming migration, is relayed to their owner, e.g. when the
+ * routing table of the caller is stale.
+ * Migrations rely on the network delivering the messages between every pair of nodes in order.
+ */
+public class KeyRouter implements Serializable {
+
+    /**
+     * The default number of sampled keys counted by the hot key sketch.
+     */
+    public static final int DEFAULT_SKETCH_CAPACITY = 64;
+
+    /**
+     * The wrapper of the routing node.
+     */
+    private final GenericWrapper wrapper;
+
+    /**
+     * The number of virtual positions of every node on the rings of the routing tables.
+     */
+    private int virtualNodes;
+
+    /**
+     * The table assigning keys to the disjoint nodes.
+     */
+    private volatile RoutingTable routingTable;
+
+    /**
+     * The table assigning keys to the nodes of the side of the wrapped node.
+     */
+    private volatile RoutingTable ownershipTable;
+
+    /**
+     * The sketch of the keys received by the wrapped node, or null if the keys are not tracked.
+     */
+    private HotKeySketch hotKeys;
+
+    /**
+     * The index of the routing key parameter of the remote methods of the wrapped node, or -1 if they have none.
+     */
+    private final HashMap<Method, Integer> keyIndices;
+
+    /**
+     * The migration of the wrapped node waiting for the acknowledgements of the disjoint nodes, if any.
+     */
+    private KeyMigration pendingMigration;
+
+    /**
+     * The number of acknowledgements that the pending migration waits for.
+     */
+    private int pendingAcks;
+
+    /**
+     * The migrations to the wrapped node whose state has not arrived yet.
+     */
+    private final ArrayList<KeyMigration> incomingMigrations;
+
+    /**
+     * The calls for keys that the wrapped node does not own yet.
+     */
+    private final ArrayList<DeferredCall> deferredCalls;
+
+    public KeyRouter(GenericWrapper wrapper, int virtualNodes) {
+        this.wrapper = wrapper;
+        this.virtualNodes = virtualNodes;
+        this.keyIndices = new HashMap<>();
+        this.incomingMigrations = new ArrayList<>();
+        this.deferredCalls = new ArrayList<>();
+        NetworkDescriptor descriptor = wrapper.getNetwork().describe();
+        this.routingTable = new RoutingTable(new ConsistentHashRing(numberOfDisjointNodes(descriptor), virtualNodes));
+        this.ownershipTable = new RoutingTable(new ConsistentHashRing(numberOfOwnSideNodes(descriptor), virtualNodes));
+    }
+
+    // ================================================== Routing =====================================================
+
+    /**
+     * Returns the id of the disjoint node owning a key.
+     */
+    public int nodeOf(Object key) {
+        return routingTable.nodeOf(key);
+    }
+
+    /**
+     * Returns true if the wrapped node owns a key.
+     */
+    public boolean owns(Object key) {
+        return ownershipTable.nodeOf(key) == wrapper.getNodeId().getNodeId();
+    }
+
+    /**
+     * Rebuilds the rings of the routing tables over the current size of the network. The migrated ranges of the nodes
+     * that are still in the network keep their owners.
+     */
+    public void rescale() {
+        NetworkDescriptor descriptor = wrapper.getNetwork().describe();
+        routingTable = routingTable.withRing(new ConsistentHashRing(numberOfDisjointNodes(descriptor), virtualNodes));
+        ownershipTable = ownershipTable.withRing(new ConsistentHashRing(numberOfOwnSideNodes(descriptor), virtualNodes));
+    }
+
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+        routingTable = routingTable.withRing(
+                new ConsistentHashRing(routingTable.getRing().getNumberOfNodes(), virtualNodes));
+        ownershipTable = ownershipTable.withRing(
+                new ConsistentHashRing(ownershipTable.getRing().getNumberOfNodes(), virtualNodes));
+    }
+
+    /**
+     * Samples the keys of a remote call received by the wrapped node and decides if the call can be invoked. A
+     * {@link KeyMigratable} node defers the calls for the keys of a range migrating to it until their state arrives,
+     * and relays the calls for the keys owned by another node of its side to their owner.
+     *
+     * @return True if the call can be invoked, or false if it has been deferred or relayed.
+     */
+    public boolean admit(NodeId source, RemoteCallIdentifier rpc, Method method, Object[] args) {
+        boolean migratable = wrapper.getNode() instanceof KeyMigratable;
+        if (method == null || (hotKeys == null && !migratable))
+            return true;
+        int keyIndex = keyIndexOf(method);
+        if (keyIndex < 0)
+            return true;
+        if (hotKeys != null) {
+            Object key = args[keyIndex];
+            if (key != null && key.getClass().isArray()) {
+                for (int i = 0; i < Array.getLength(key); i++)
+                    if (Array.get(key, i) != null)
+                        hotKeys.offer(Array.get(key, i));
+            } else if (key != null) {
+                hotKeys.offer(key);
+            }
+        }
+        return !migratable || route(source, rpc, method, args);
+    }
+
+    /**
+     * Decides where a call of a {@link KeyMigratable} node is served. Calls without a routing key are served locally.
+     *
+     * @return True if the wrapped node owns the keys of the call, or false if the call has been deferred or relayed.
+     */
+    public boolean route(NodeId source, RemoteCallIdentifier rpc, Method method, Object[] args) {
+        Object key = args[keyIndexOf(method)];
+        if (key == null)
+            return true;
+        int self = wrapper.getNodeId().getNodeId();
+        int owner = -1;
+        boolean incoming = false;
+        int length = (key.getClass().isArray()) ? Array.getLength(key) : 1;
+        for (int i = 0; i < length; i++) {
+            Object element = (key.getClass().isArray()) ? Array.get(key, i) : key;
+            if (element == null)
+                continue;
+            int elementOwner = ownershipTable.nodeOf(element);
+            if (elementOwner != self && isIncoming(element)) {
+                incoming = true;
+                elementOwner = self;
+            }
+            if (owner >= 0 && owner != elementOwner)
+                throw new RuntimeException("The keys of a call of " + method.getName() + " received by " +
+                        wrapper.getNodeId() + " are owned by several nodes");
+            owner = elementOwner;
+        }
+        if (incoming) {
+            deferredCalls.add(new DeferredCall(source, rpc, method, args));
+            return false;
+        }
+        if (owner < 0 || owner == self)
+            return true;
+        wrapper.relay(NodeId.of(wrapper.getNodeId().getNodeType(), owner), source, rpc, method, args);
+        return false;
+    }
+
+    private boolean isIncoming(Object key) {
+        for (KeyMigration migration : incomingMigrations)
+            if (migration.getRange().contains(key))
+                return true;
+        return false;
+    }
+
+    // ================================================= Migration ====================================================
+
+    /**
+     * Starts migrating a range of keys owned by the wrapped node, along with their state, to another node of its side.
+     *
+     * @param range       The migrated range of keys.
+     * @param destination The id of the new owner of the range.
+     */
+    public void migrate(KeyRange range, int destination) {
+        NetworkDescriptor descriptor = wrapper.getNetwork().describe();
+        int self = wrapper.getNodeId().getNodeId();
+        NodeClass.check(wrapper.getNode() instanceof KeyMigratable,
+                "Wrapped class %s does not implement KeyMigratable", wrapper.getNodeClass().getWrappedClass());
+        NodeClass.check(pendingMigration == null,
+                "%s is already migrating %s", wrapper.getNodeId(), pendingMigration);
+        NodeClass.check(destination != self && destination >= 0 && destination < numberOfOwnSideNodes(descriptor),
+                "%s cannot migrate keys to node %s", wrapper.getNodeId(), destination);
+        NodeClass.check(ownershipTable.isOwnedBy(range, self),
+                "%s does not own all the keys of %s", wrapper.getNodeId(), range);
+
+        pendingMigration = new KeyMigration(KeyMigration.Kind.ROUTE,
+                range,
+                self,
+                destination,
+                ownershipTable.epochOf(range) + 1,
+                null);
+        pendingAcks = numberOfDisjointNodes(descriptor);
+        NodeType ownSide = wrapper.getNodeId().getNodeType();
+        // The new owner learns first that the calls for the range may reach it before their state.
+        send(NodeId.of(ownSide, destination), pendingMigration);
+        for (int i = 0; i < pendingAcks; i++)
+            send(NodeId.of(disjointSide(), i), pendingMigration);
+        for (int i = 0; i < numberOfOwnSideNodes(descriptor); i++)
+            if (i != self && i != destination)
+                send(NodeId.of(ownSide, i), pendingMigration);
+        if (pendingAcks == 0)
+            transfer();
+    }
+
+    /**
+     * Handles a control message of a migration.
+     *
+     * @return The deferred calls that can be invoked after the message, in their arrival order.
+     */
+    public ArrayList<DeferredCall> receive(NodeId source, KeyMigration migration) {
+        ArrayList<DeferredCall> ready = new ArrayList<>();
+        switch (migration.getKind()) {
+            case ROUTE:
+                if (source.getNodeType() == wrapper.getNodeId().getNodeType() &&
+                        migration.getOwner() == wrapper.getNodeId().getNodeId()) {
+                    incomingMigrations.add(migration);
+                } else if (source.getNodeType() == wrapper.getNodeId().getNodeType()) {
+                    ownershipTable = ownershipTable.withOwner(
+                            migration.getRange(), migration.getOwner(), migration.getEpoch());
+                } else {
+                    routingTable = routingTable.withOwner(
+                            migration.getRange(), migration.getOwner(), migration.getEpoch());
+                    send(source, migration.step(KeyMigration.Kind.ACK, null));
+                }
+                break;
+            case ACK:
+                if (pendingMigration != null &&
+                        pendingMigration.getEpoch() == migration.getEpoch() &&
+                        pendingMigration.getRange().equals(migration.getRange()) &&
+                        --pendingAcks == 0)
+                    transfer();
+                break;
+            case TRANSFER:
+                ((KeyMigratable) wrapper.getNode()).importKeys(migration.getRange(), migration.getState());
+                wrapper.advanceStateVersion();
+                ownershipTable = ownershipTable.withOwner(
+                        migration.getRange(), migration.getOwner(), migration.getEpoch());
+                incomingMigrations.removeIf(incoming -> incoming.getEpoch() == migration.getEpoch() &&
+                        incoming.getRange().equals(migration.getRange()));
+                Iterator<DeferredCall> deferred = deferredCalls.iterator();
+                while (deferred.hasNext()) {
+                    DeferredCall call = deferred.next();
+                    if (!isIncoming(call)) {
+                        ready.add(call);
+                        deferred.remove();
+                    }
+                }
+                break;
+            default:
+                throw new RuntimeException("Unknown key migration step " + migration.getKind());
+        }
+        return ready;
+    }
+
+    private void transfer() {
+        KeyMigration migration = pendingMigration;
+        pendingMigration = null;
+        Serializable state = ((KeyMigratable) wrapper.getNode()).exportKeys(migration.getRange());
+        wrapper.advanceStateVersion();
+        ownershipTable = ownershipTable.withOwner(migration.getRange(), migration.getOwner(), migration.getEpoch());
+        send(NodeId.of(wrapper.getNodeId().getNodeType(), migration.getOwner()),
+                migration.step(KeyMigration.Kind.TRANSFER, state));
+    }
+
+    private boolean isIncoming(DeferredCall call) {
+        Object key = call.args[keyIndexOf(call.method)];
+        if (!key.getClass().isArray())
+            return isIncoming(key);
+        for (int i = 0; i < Array.getLength(key); i++)
+            if (Array.get(key, i) != null && isIncoming(Array.get(key, i)))
+                return true;
+        return false;
+    }
+
+    private void send(NodeId destination, KeyMigration migration) {
+        wrapper.flushCombinedCalls(destination);
+        wrapper.getNetwork().send(wrapper.getNodeId(),
+                destination,
+                new RemoteCallIdentifier(CallType.CONTROL, null, migration.getEpoch()),
+                migration);
+    }
+
+    // ================================================= Hot keys =====================================================
+
+    /**
+     * Starts sampling the keys of the remote calls received by the wrapped node.
+     *
+     * @param capacity       The maximum number of counted keys.
+     * @param sampleInterval The average number of received keys per sampled key.
+     * @param window         The number of samples after which the counts are halved. Zero disables the decay.
+     */
+    public void enableHotKeyTracking(int capacity, int sampleInterval, long window) {
+        hotKeys = new HotKeySketch(capacity, sampleInterval, window);
+    }
+
+    public void disableHotKeyTracking() {
+        hotKeys = null;
+    }
+
+    public HotKeySketch getHotKeySketch() {
+        return hotKeys;
+    }
+
+    // ============================================== Public Getters ==================================================
+
+    public RoutingTable getRoutingTable() {
+        return routingTable;
+    }
+
+    public RoutingTable getOwnershipTable() {
+        return ownershipTable;
+    }
+
+    public boolean isMigrating() {
+        return pendingMigration != null;
+    }
+
+    /**
+     * Returns true if a range of keys is migrating to the wrapped node, whose state has not arrived yet.
+     */
+    public boolean hasIncomingMigrations() {
+        return !incomingMigrations.isEmpty();
+    }
+
+    public int getNumberOfDeferredCalls() {
+        return deferredCalls.size();
+    }
+
+    private int keyIndexOf(Method method) {
+        Integer index = keyIndices.get(method);
+        if (index == null) {
+            index = -1;
+            Parameter[] params = method.getParameters();
+            for (int i = 0; i < params.length; i++)
+                if (params[i].isAnnotationPresent(RoutingKey.class))
+                    index = i;
+            keyIndices.put(method, index);
+        }
+        return index;
+    }
+
+    private NodeType disjointSide() {
+        return (wrapper.getNodeId().isHub()) ? NodeType.SPOKE : NodeType.HUB;
+    }
+
+    private int numberOfDisjointNodes(NetworkDescriptor descriptor) {
+        return (wrapper.getNodeId().isHub()) ? descriptor.getNumberOfSpokes() : descriptor.getNumberOfHubs();
+    }
+
+    private int numberOfOwnSideNodes(NetworkDescriptor descriptor) {
+        return (wrapper.getNodeId().isHub()) ? descriptor.getNumberOfHubs() : descriptor.getNumberOfSpokes();
+    }
+
+    /**
+     * A remote call deferred until the wrapped node owns its keys.
+     */
+    public static final class DeferredCall implements Serializable {
+
+        private final NodeId source;
+
+        private final RemoteCallIdentifier rpc;
+
+        private final transient Method method;
+
+        private final Object[] args;
+
+        private DeferredCall(NodeId source, RemoteCallIdentifier rpc, Method method, Object[] args) {
+            this.source = source;
+            this.rpc = rpc;
+            this.method = method;
+            this.args = args;
+        }
+
+        public NodeId getSource() {
+            return source;
+        }
+
+        public RemoteCallIdentifier getRpc() {
+            return rpc;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        public Object[] getArgs() {
+            return args;
+        }
+
+    }
+
+}
@@ -0,0 +1,139 @@
+package BipartiteTopologyAPI.routing;
+
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.NodeClass;
+import BipartiteTopologyAPI.annotations.KeyAligned;
+import BipartiteTopologyAPI.annotations.RoutingKey;
+import BipartiteTopologyAPI.futures.FuturePool;
+import BipartiteTopologyAPI.futures.FutureResponse;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A proxy routing every remote call to the disjoint node that owns its @{@link RoutingKey} parameter in the
+ * {@link RoutingTable} of the wrapped node. A call with an array of keys is split into one sub-call per owning node,
+ * carrying the keys of that node along with the matching elements of the @{@link KeyAligned} parameters, while all the
+ * other parameters are passed to every sub-call as they are. The sub-calls are made through the proxies of the owning
+ * nodes, and the responses of a split call are returned as a {@link FuturePool}, whose consumer runs once per owning node.
+ */
+public class RoutingProxy implements InvocationHandler, Serializable {
+
+    /**
+     * The wrapped node object that possesses this proxy.
+     */
+    private final GenericWrapper nodeWrapper;
+
+    /**
+     * The index of the routing key parameter of the proxied methods.
+     */
+    private final Map<Method, Integer> keyIndices;
+
+    /**
+     * The key aligned parameters of the proxied methods.
+     */
+    private final Map<Method, boolean[]> alignedParameters;
+
+    public RoutingProxy(Class<?> rmtIf, GenericWrapper nodeWrapper) {
+        this.nodeWrapper = nodeWrapper;
+        this.keyIndices = new HashMap<>();
+        this.alignedParameters = new HashMap<>();
+        for (Method method : rmtIf.getDeclaredMethods()) {
+            NodeClass.checkRouting(method, rmtIf);
+            Parameter[] params = method.getParameters();
+            boolean[] aligned = new boolean[params.length];
+            for (int i = 0; i < params.length; i++) {
+                if (params[i].isAnnotationPresent(RoutingKey.class))
+                    keyIndices.put(method, i);
+                aligned[i] = params[i].isAnnotationPresent(KeyAligned.class);
+            }
+            alignedParameters.put(method, aligned);
+        }
+    }
+
+    @Override
+    public Object invoke(Object o, Method method, Object[] args) {
+        Integer keyIndex = keyIndices.get(method);
+        if (keyIndex == null)
+            throw new RuntimeException("Method " + method + " cannot be routed, as it has no @RoutingKey parameter.");
+        RoutingTable table = nodeWrapper.getKeyRouter().getRoutingTable();
+        Object key = args[keyIndex];
+
+        // A single key routes the whole call.
+        if (!key.getClass().isArray())
+            return call(table.nodeOf(key), method, args);
+
+        // Group the positions of the keys by their owning node.
+        int numberOfKeys = Array.getLength(key);
+        boolean[] aligned = alignedParameters.get(method);
+        for (int i = 0; i < args.length; i++)
+            if (aligned[i] && Array.getLength(args[i]) != numberOfKeys)
+                throw new RuntimeException("Key aligned parameter " + i + " of method " + method + " has " +
+                        Array.getLength(args[i]) + " elements for " + numberOfKeys + " keys.");
+        TreeMap<Integer, ArrayList<Integer>> groups = new TreeMap<>();
+        for (int i = 0; i < numberOfKeys; i++)
+            groups.computeIfAbsent(table.nodeOf(Array.get(key, i)), x -> new ArrayList<>()).add(i);
+
+        // Make one sub-call per owning node.
+        ArrayList<FutureResponse<Serializable>> responses = new ArrayList<>();
+        for (Map.Entry<Integer, ArrayList<Integer>> group : groups.entrySet()) {
+            Object[] subArgs = args.clone();
+            for (int i = 0; i < args.length; i++)
+                if (i == keyIndex || aligned[i])
+                    subArgs[i] = slice(args[i], group.getValue());
+            Object response = call(group.getKey(), method, subArgs);
+            if (response != null)
+                responses.add(futureOf(response));
+        }
+        if (method.getReturnType() == void.class)
+            return null;
+        return (responses.size() == 1) ? responses.get(0) : new FuturePool<>(responses);
+    }
+
+    private Object call(int destination, Method method, Object[] args) {
+        Object proxy = nodeWrapper.getProxyMap().get(destination);
+        if (proxy == null)
+            throw new RuntimeException("No proxy for node " + destination + " of the routing ring of " +
+                    nodeWrapper.getNodeId());
+        try {
+            return method.invoke(proxy, args);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new RuntimeException("Failed to route " + method + " to node " + destination, e);
+        }
+    }
+
+    /**
+     * Returns the response of a sub-call as a future. The sub-calls of a two-way operation are made through the
+     * proxies of the disjoint nodes, which return futures of the Serializable response values, so the cast is safe.
+     */
+    @SuppressWarnings("unchecked")
+    private static FutureResponse<Serializable> futureOf(Object response) {
+        return (FutureResponse<Serializable>) response;
+    }
+
+    private static Object slice(Object array, ArrayList<Integer> positions) {
+        Object slice = Array.newInstance(array.getClass().getComponentType(), positions.size());
+        for (int i = 0; i < positions.size(); i++)
+            Array.set(slice, i, Array.get(array, positions.get(i)));
+        return slice;
+    }
+
+    static public <RmtIf> RmtIf forNode(Class<RmtIf> cls, GenericWrapper nodeWrapper) {
+        RoutingProxy proxy = new RoutingProxy(cls, nodeWrapper);
+        return cls.cast(Proxy.newProxyInstance(RoutingProxy.class.getClassLoader(), new Class<?>[]{cls}, proxy));
+    }
+
+    public GenericWrapper getNodeWrapper() {
+        return nodeWrapper;
+    }
+
+}
@@ -0,0 +1,182 @@
+package BipartiteTopologyAPI.routing;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable, versioned table assigning keys to the nodes of one side of the Bipartite Network. Keys are assigned by a
+ * {@link ConsistentHashRing}, unless their hashes fall into a range that has been migrated to another node. Every
+ * migrated range carries the epoch of its migration, so that the migrations of overlapping ranges are applied in order
+ * even if they arrive out of order. Updates return new tables, so a table can be swapped atomically and read by any
+ * thread.
+ */
+public final class RoutingTable implements Serializable {
+
+    /**
+     * The ring assigning the keys outside the migrated ranges.
+     */
+    private final ConsistentHashRing ring;
+
+    /**
+     * The disjoint migrated ranges, indexed by their first hash.
+     */
+    private final TreeMap<Long, Segment> segments;
+
+    /**
+     * The version of the table, incremented by every update.
+     */
+    private final long version;
+
+    public RoutingTable(ConsistentHashRing ring) {
+        this(ring, new TreeMap<>(), 0);
+    }
+
+    private RoutingTable(ConsistentHashRing ring, TreeMap<Long, Segment> segments, long version) {
+        this.ring = ring;
+        this.segments = segments;
+        this.version = version;
+    }
+
+    /**
+     * Returns the id of the node owning a key.
+     */
+    public int nodeOf(Object key) {
+        return nodeOfHash(ConsistentHashRing.hash(key));
+    }
+
+    /**
+     * Returns the id of the node owning a hash.
+     */
+    public int nodeOfHash(long hash) {
+        Map.Entry<Long, Segment> segment = segments.floorEntry(hash);
+        if (segment != null && segment.getValue().to >= hash)
+            return segment.getValue().owner;
+        return ring.nodeOfHash(hash);
+    }
+
+    /**
+     * Returns the latest epoch of the migrations overlapping a range, or zero if no part of it has been migrated.
+     */
+    public long epochOf(KeyRange range) {
+        long epoch = 0;
+        for (Segment segment : overlapping(range))
+            epoch = Math.max(epoch, segment.epoch);
+        return epoch;
+    }
+
+    /**
+     * Returns true if the given node owns all the keys of a range.
+     */
+    public boolean isOwnedBy(KeyRange range, int node) {
+        long cursor = range.getFrom();
+        for (Segment segment : overlapping(range)) {
+            if (segment.owner != node)
+                return false;
+            if (segment.from > cursor && !ring.isOwnedBy(cursor, segment.from - 1, node))
+                return false;
+            if (segment.to >= range.getTo())
+                return true;
+            cursor = Math.max(cursor, segment.to + 1);
+        }
+        return ring.isOwnedBy(cursor, range.getTo(), node);
+    }
+
+    /**
+     * Returns a table assigning a range to a new owner. The parts of the range that have already been migrated in a
+     * later epoch keep their owners.
+     *
+     * @param range The migrated range.
+     * @param owner The id of the new owner of the range.
+     * @param epoch The epoch of the migration.
+     */
+    public RoutingTable withOwner(KeyRange range, int owner, long epoch) {
+        TreeMap<Long, Segment> updated = new TreeMap<>(segments);
+        ArrayList<Segment> later = new ArrayList<>();
+        for (Segment segment : overlapping(range)) {
+            if (segment.epoch > epoch) {
+                later.add(segment);
+                continue;
+            }
+            // Keep the parts of an earlier migration outside the range.
+            updated.remove(segment.from);
+            if (segment.from < range.getFrom())
+                put(updated, new Segment(segment.from, range.getFrom() - 1, segment.owner, segment.epoch));
+            if (segment.to > range.getTo())
+                put(updated, new Segment(range.getTo() + 1, segment.to, segment.owner, segment.epoch));
+        }
+
+        // Assign the parts of the range not migrated in a later epoch.
+        long cursor = range.getFrom();
+        for (Segment segment : later) {
+            if (segment.from > cursor)
+                put(updated, new Segment(cursor, segment.from - 1, owner, epoch));
+            if (segment.to >= range.getTo())
+                return new RoutingTable(ring, updated, version + 1);
+            cursor = Math.max(cursor, segment.to + 1);
+        }
+        put(updated, new Segment(cursor, range.getTo(), owner, epoch));
+        return new RoutingTable(ring, updated, version + 1);
+    }
+
+    /**
+     * Returns a table assigning the keys through a new ring, keeping the migrated ranges whose owners are still on it.
+     */
+    public RoutingTable withRing(ConsistentHashRing ring) {
+        TreeMap<Long, Segment> kept = new TreeMap<>();
+        for (Segment segment : segments.values())
+            if (segment.owner < ring.getNumberOfNodes())
+                put(kept, segment);
+        return new RoutingTable(ring, kept, version + 1);
+    }
+
+    private ArrayList<Segment> overlapping(KeyRange range) {
+        ArrayList<Segment> overlapping = new ArrayList<>();
+        Map.Entry<Long, Segment> first = segments.floorEntry(range.getFrom());
+        if (first != null && first.getValue().to >= range.getFrom())
+            overlapping.add(first.getValue());
+        for (Segment segment : segments.subMap(range.getFrom(), false, range.getTo(), true).values())
+            overlapping.add(segment);
+        return overlapping;
+    }
+
+    private static void put(TreeMap<Long, Segment> segments, Segment segment) {
+        segments.put(segment.from, segment);
+    }
+
+    public ConsistentHashRing getRing() {
+        return ring;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getNumberOfMigratedRanges() {
+        return segments.size();
+    }
+
+    /**
+     * A migrated range of hashes, along with its owner and the epoch of its migration.
+     */
+    private static final class Segment implements Serializable {
+
+        private final long from;
+
+        private final long to;
+
+        private final int owner;
+
+        private final long epoch;
+
+        private Segment(long from, long to, int owner, long epoch) {
+            this.from = from;
+            this.to = to;
+            this.owner = owner;
+            this.epoch = epoch;
+        }
+
+    }
+
+}
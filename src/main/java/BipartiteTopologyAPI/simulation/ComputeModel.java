@@ -0,0 +1,54 @@
+package BipartiteTopologyAPI.simulation;
+
+import BipartiteTopologyAPI.sites.NodeId;
+
+import java.io.Serializable;
+
+/**
+ * The model of the processing cost of the inputs of the nodes of a {@link SimulatedNetwork}. A node serves its inputs
+ * one at a time, and the messages it sends while serving an input leave once the input has been served.
+ * <p>
+ * The tuples are charged when the wrapped node processes them, not when they arrive. A blocked {@code BufferingWrapper}
+ * only buffers the tuples it receives, and processes them while serving the message that unblocks it, which is then
+ * charged the cost of the message plus the cost of every tuple processed.
+ */
+public interface ComputeModel extends Serializable {
+
+    /**
+     * The kinds of the inputs of a node.
+     */
+    enum Input {
+        TUPLE,
+        MESSAGE,
+        QUERY
+    }
+
+    /**
+     * Returns the time a node takes to serve an input, in nanoseconds.
+     *
+     * @param node  The node serving the input.
+     * @param kind  The kind of the input.
+     * @param input The tuple, the message or the query. It is null for a tuple processed from the buffer of a node.
+     * @param size  The encoded size of a message, or 0 for tuples and queries.
+     */
+    long cost(NodeId node, Input kind, Serializable input, int size);
+
+    /**
+     * Returns a model in which every input costs a fixed time per kind, plus a time per byte of the messages.
+     */
+    static ComputeModel linear(long tupleCost, long messageCost, double costPerByte) {
+        if (tupleCost < 0 || messageCost < 0 || costPerByte < 0)
+            throw new RuntimeException("The processing costs of a compute model cannot be negative.");
+        return (node, kind, input, size) -> {
+            switch (kind) {
+                case TUPLE:
+                    return tupleCost;
+                case MESSAGE:
+                    return messageCost + (long) Math.ceil(costPerByte * size);
+                default:
+                    return messageCost;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,45 @@
+package BipartiteTopologyAPI.simulation;
+
+import BipartiteTopologyAPI.sites.NodeId;
+
+import java.io.Serializable;
+
+/**
+ * The model of the links of a {@link SimulatedNetwork}. A message occupies its link for its size over the bandwidth of
+ * the link, after the messages sent before it on the same link, and arrives after the latency of the link.
+ */
+public interface LinkModel extends Serializable {
+
+    /**
+     * Returns the one-way latency of the link from a source to a destination, in nanoseconds. A null source stands for
+     * the data stream and the querier.
+     */
+    long latency(NodeId source, NodeId destination);
+
+    /**
+     * Returns the bandwidth of the link from a source to a destination, in bytes per second.
+     */
+    double bandwidth(NodeId source, NodeId destination);
+
+    /**
+     * Returns a model in which all the links have the same latency and bandwidth.
+     */
+    static LinkModel uniform(long latency, double bandwidth) {
+        if (latency < 0 || bandwidth <= 0)
+            throw new RuntimeException("The latency of a link cannot be negative and its bandwidth must be positive.");
+        return new LinkModel() {
+
+            @Override
+            public long latency(NodeId source, NodeId destination) {
+                return latency;
+            }
+
+            @Override
+            public double bandwidth(NodeId source, NodeId destination) {
+                return bandwidth;
+            }
+
+        };
+    }
+
+}
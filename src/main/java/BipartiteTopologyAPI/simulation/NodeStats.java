@@ -0,0 +1,141 @@
+package BipartiteTopologyAPI.simulation;
+
+import BipartiteTopologyAPI.sites.NodeId;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The statistics of a node of a {@link SimulatedNetwork}, in virtual time.
+ */
+public class NodeStats implements Serializable {
+
+    private final NodeId nodeId;
+
+    /**
+     * The number of inputs served, per kind of input.
+     */
+    private final long[] served;
+
+    /**
+     * The total time spent serving inputs, in nanoseconds.
+     */
+    private long busyTime;
+
+    /**
+     * The number of messages and bytes sent by the node.
+     */
+    private long messagesSent;
+    private long bytesSent;
+
+    /**
+     * The largest number of inputs waiting to be served by the node.
+     */
+    private int maxInboxDepth;
+
+    /**
+     * The largest and the mean number of tuples buffered by a BufferingWrapper, sampled after every input.
+     */
+    private int maxBufferDepth;
+    private double meanBufferDepth;
+    private long bufferSamples;
+
+    /**
+     * The number of synchronous rounds completed by the node, and the times they completed at.
+     */
+    private long roundsCompleted;
+    private final ArrayList<Long> roundCompletions;
+
+    NodeStats(NodeId nodeId) {
+        this.nodeId = nodeId;
+        this.served = new long[ComputeModel.Input.values().length];
+        this.roundCompletions = new ArrayList<>();
+    }
+
+    void served(ComputeModel.Input kind, long cost) {
+        served[kind.ordinal()] += 1;
+        busyTime += cost;
+    }
+
+    void sent(int bytes) {
+        messagesSent += 1;
+        bytesSent += bytes;
+    }
+
+    void observeInbox(int depth) {
+        maxInboxDepth = Math.max(maxInboxDepth, depth);
+    }
+
+    void observeBuffer(int depth) {
+        maxBufferDepth = Math.max(maxBufferDepth, depth);
+        bufferSamples += 1;
+        meanBufferDepth += (depth - meanBufferDepth) / bufferSamples;
+    }
+
+    void observeRounds(long completed, long time) {
+        for (; roundsCompleted < completed; roundsCompleted++)
+            roundCompletions.add(time);
+    }
+
+    public NodeId getNodeId() {
+        return nodeId;
+    }
+
+    public long getServed(ComputeModel.Input kind) {
+        return served[kind.ordinal()];
+    }
+
+    public long getBusyTime() {
+        return busyTime;
+    }
+
+    /**
+     * Returns the fraction of the given time the node spent serving inputs.
+     */
+    public double getUtilization(long elapsed) {
+        return (elapsed <= 0) ? 0 : Math.min(1.0, busyTime / (double) elapsed);
+    }
+
+    public long getMessagesSent() {
+        return messagesSent;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public int getMaxInboxDepth() {
+        return maxInboxDepth;
+    }
+
+    public int getMaxBufferDepth() {
+        return maxBufferDepth;
+    }
+
+    public double getMeanBufferDepth() {
+        return meanBufferDepth;
+    }
+
+    public long getRoundsCompleted() {
+        return roundsCompleted;
+    }
+
+    /**
+     * Returns the times the synchronous rounds of the node completed at, in nanoseconds.
+     */
+    public List<Long> getRoundCompletions() {
+        return roundCompletions;
+    }
+
+    /**
+     * Returns the mean time between the completions of consecutive rounds, or 0 if fewer than two rounds completed.
+     */
+    public double getMeanRoundTime() {
+        if (roundCompletions.size() < 2)
+            return 0;
+        return (roundCompletions.get(roundCompletions.size() - 1) - roundCompletions.get(0)) /
+                (double) (roundCompletions.size() - 1);
+    }
+
+}
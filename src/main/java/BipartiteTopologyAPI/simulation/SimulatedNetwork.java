@@ -0,0 +1,540 @@
+package BipartiteTopologyAPI.simulation;
+
+import BipartiteTopologyAPI.BufferingWrapper;
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.interfaces.Network;
+import BipartiteTopologyAPI.interfaces.Node;
+import BipartiteTopologyAPI.network.EncodedPayload;
+import BipartiteTopologyAPI.network.Envelope;
+import BipartiteTopologyAPI.network.MessageCodec;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.BroadcastTargets;
+import BipartiteTopologyAPI.sites.NetworkDescriptor;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link Network} running the (wrapped) nodes of a Bipartite Network in a single thread, under a virtual clock. The
+ * messages are encoded as by the real transports, travel through links modelled by a {@link LinkModel}, and are served
+ * by their destinations one at a time, at the cost given by a {@link ComputeModel}. The simulation is deterministic:
+ * the events are ordered by their virtual time and, for equal times, by the order they were scheduled in.
+ * <p>
+ * The statistics of every node, i.e. its utilization, the depth of its inbox and of the buffer of a
+ * {@link BufferingWrapper}, and the completion times of its synchronous rounds, are kept in a {@link NodeStats}.
+ */
+public class SimulatedNetwork implements Network {
+
+    /**
+     * The id of the Bipartite Network.
+     */
+    private final int networkId;
+
+    /**
+     * The number of hubs and spokes of the network.
+     */
+    private final int numberOfHubs;
+    private final int numberOfSpokes;
+
+    /**
+     * The model of the links.
+     */
+    private LinkModel linkModel;
+
+    /**
+     * The model of the processing costs.
+     */
+    private ComputeModel computeModel;
+
+    /**
+     * The simulated nodes.
+     */
+    private final transient HashMap<NodeId, SimulatedNode> nodes;
+
+    /**
+     * The scheduled events, ordered by time and sequence.
+     */
+    private final transient PriorityQueue<Event> events;
+
+    /**
+     * The time every link is free to transmit its next message at, indexed by (source, destination).
+     */
+    private final transient HashMap<Pair<NodeId, NodeId>, Long> linkFree;
+
+    /**
+     * The consumer of the messages sent to the querier.
+     */
+    private transient BiConsumer<NodeId, Serializable> querierSink;
+
+    /**
+     * The virtual time, in nanoseconds.
+     */
+    private long now;
+
+    /**
+     * The sequence of the next scheduled event.
+     */
+    private long sequence;
+
+    /**
+     * The node serving an input, or null, and the messages it has sent while serving it. The messages leave once the
+     * input has been served, as its cost is only known then.
+     */
+    private transient SimulatedNode serving;
+    private final transient ArrayList<Transmission> outgoing;
+
+    /**
+     * The number of events processed.
+     */
+    private long processed;
+
+    public SimulatedNetwork(int networkId, int numberOfHubs, int numberOfSpokes) {
+        this.networkId = networkId;
+        this.numberOfHubs = numberOfHubs;
+        this.numberOfSpokes = numberOfSpokes;
+        this.linkModel = LinkModel.uniform(0, Double.POSITIVE_INFINITY);
+        this.computeModel = ComputeModel.linear(0, 0, 0);
+        this.nodes = new HashMap<>();
+        this.events = new PriorityQueue<>();
+        this.linkFree = new HashMap<>();
+        this.querierSink = (source, message) -> {
+        };
+        this.now = 0;
+        this.sequence = 0;
+        this.outgoing = new ArrayList<>();
+        this.processed = 0;
+    }
+
+    // ================================================ Set up ========================================================
+
+    /**
+     * Adds a (wrapped) node to the simulation.
+     */
+    public SimulatedNetwork register(NodeId nodeId, Node node) {
+        int size = nodeId.isHub() ? numberOfHubs : numberOfSpokes;
+        if (nodeId.getNodeId() >= size)
+            throw new RuntimeException(nodeId + " is out of the " + size + " nodes of its side.");
+        if (nodes.containsKey(nodeId))
+            throw new RuntimeException(nodeId + " is already registered to the simulation.");
+        nodes.put(nodeId, new SimulatedNode(nodeId, node));
+        return this;
+    }
+
+    public SimulatedNetwork setLinkModel(LinkModel linkModel) {
+        this.linkModel = linkModel;
+        return this;
+    }
+
+    public SimulatedNetwork setComputeModel(ComputeModel computeModel) {
+        this.computeModel = computeModel;
+        return this;
+    }
+
+    public SimulatedNetwork setQuerierSink(BiConsumer<NodeId, Serializable> querierSink) {
+        this.querierSink = querierSink;
+        return this;
+    }
+
+    /**
+     * Feeds a record of the data stream to a node at the given virtual time.
+     */
+    public void submitTuple(NodeId nodeId, Serializable tuple, long time) {
+        schedule(new Event(Math.max(time, now), nodeId, new Input(ComputeModel.Input.TUPLE, null, null, tuple, 0)));
+    }
+
+    /**
+     * Poses a query to a node at the given virtual time.
+     */
+    public void submitQuery(NodeId nodeId, long queryId, Serializable query, long time) {
+        schedule(new Event(Math.max(time, now),
+                nodeId,
+                new Input(ComputeModel.Input.QUERY, null, null, new Object[]{queryId, query}, 0)));
+    }
+
+    // ================================================= Running ======================================================
+
+    /**
+     * Processes the events until there are none left.
+     */
+    public void run() {
+        runUntil(Long.MAX_VALUE);
+    }
+
+    /**
+     * Processes the events scheduled up to the given virtual time, and advances the clock to it.
+     */
+    public void runUntil(long time) {
+        Event event;
+        while ((event = events.peek()) != null && event.time <= time) {
+            events.poll();
+            now = event.time;
+            processed += 1;
+            if (event.input != null)
+                arrive(event.destination, event.input);
+            else
+                serve(event.destination);
+        }
+        if (time != Long.MAX_VALUE)
+            now = Math.max(now, time);
+    }
+
+    private void arrive(NodeId destination, Input input) {
+        SimulatedNode node = nodeOf(destination);
+        node.inbox.add(input);
+        node.stats.observeInbox(node.inbox.size());
+        if (!node.scheduled) {
+            node.scheduled = true;
+            schedule(new Event(Math.max(now, node.busyUntil), destination, null));
+        }
+    }
+
+    private void serve(NodeId nodeId) {
+        SimulatedNode node = nodeOf(nodeId);
+        node.scheduled = false;
+        Input input = node.inbox.poll();
+        if (input == null)
+            return;
+        long processedBefore = processedTuples(node);
+        serving = node;
+        try {
+            switch (input.kind) {
+                case TUPLE:
+                    node.node.receiveTuple(input.message());
+                    break;
+                case QUERY:
+                    Object[] query = (Object[]) input.message();
+                    node.node.receiveQuery((Long) query[0], (Serializable) query[1]);
+                    break;
+                default:
+                    node.node.receiveMsg(input.source, input.rpc, input.message());
+            }
+        } finally {
+            serving = null;
+        }
+
+        // A tuple is charged when it is processed rather than when it arrives, as a blocked node only buffers it, and
+        // processes it later while serving the message that unblocks it.
+        long cost = 0;
+        long tuples = (node.node instanceof GenericWrapper) ? processedTuples(node) - processedBefore : 1;
+        if (input.kind != ComputeModel.Input.TUPLE) {
+            cost = computeModel.cost(nodeId, input.kind, input.message(), input.size);
+            node.stats.served(input.kind, cost);
+        }
+        for (long i = 0; i < tuples; i++) {
+            Serializable tuple = (input.kind == ComputeModel.Input.TUPLE) ? input.message() : null;
+            long tupleCost = computeModel.cost(nodeId, ComputeModel.Input.TUPLE, tuple, 0);
+            node.stats.served(ComputeModel.Input.TUPLE, tupleCost);
+            cost += tupleCost;
+        }
+        node.busyUntil = now + cost;
+        for (Transmission transmission : outgoing)
+            dispatch(node.busyUntil, transmission);
+        outgoing.clear();
+
+        if (node.node instanceof BufferingWrapper)
+            node.stats.observeBuffer(((BufferingWrapper<?>) node.node).getDataBuffer().size());
+        if (node.node instanceof GenericWrapper) {
+            GenericWrapper wrapper = (GenericWrapper) node.node;
+            node.stats.observeRounds(wrapper.getClock() - wrapper.getUnfinishedRounds(), node.busyUntil);
+        }
+        if (!node.inbox.isEmpty()) {
+            node.scheduled = true;
+            schedule(new Event(node.busyUntil, nodeId, null));
+        }
+    }
+
+    // ============================================== Network contract ================================================
+
+    @Override
+    public void send(NodeId source, NodeId destination, RemoteCallIdentifier rpc, Serializable message) {
+        if (destination == null) {
+            querierSink.accept(source, message);
+            return;
+        }
+        transmit(source, destination, rpc, MessageCodec.encodePayload(message));
+    }
+
+    @Override
+    public void broadcast(NodeId source, Map<NodeId, RemoteCallIdentifier> rpcMap, Serializable message) {
+        byte[] payload = MessageCodec.encodePayload(message);
+        for (Map.Entry<NodeId, RemoteCallIdentifier> target : rpcMap.entrySet())
+            transmit(source, target.getKey(), target.getValue(), payload);
+    }
+
+    @Override
+    public void broadcast(NodeId source, BroadcastTargets targets, RemoteCallIdentifier rpc, Serializable message) {
+        byte[] payload = MessageCodec.encodePayload(message);
+        for (NodeId target : targets)
+            transmit(source, target, rpc, payload);
+    }
+
+    @Override
+    public void sendEncoded(NodeId source, NodeId destination, RemoteCallIdentifier rpc, EncodedPayload payload) {
+        try {
+            if (destination == null)
+                querierSink.accept(source, payload.decode());
+            else
+                transmit(source, destination, rpc, toArray(payload));
+        } finally {
+            payload.release();
+        }
+    }
+
+    @Override
+    public void broadcastEncoded(NodeId source,
+                                 Iterable<NodeId> targets,
+                                 RemoteCallIdentifier rpc,
+                                 EncodedPayload payload) {
+        try {
+            byte[] bytes = toArray(payload);
+            for (NodeId target : targets)
+                transmit(source, target, rpc, bytes);
+        } finally {
+            payload.release();
+        }
+    }
+
+    @Override
+    public NetworkDescriptor describe() {
+        return new NetworkDescriptor(networkId, numberOfSpokes, numberOfHubs);
+    }
+
+    /**
+     * Sends an encoded message. A message sent while serving an input leaves once the input has been served.
+     */
+    private void transmit(NodeId source, NodeId destination, RemoteCallIdentifier rpc, byte[] payload) {
+        Transmission transmission = new Transmission(source, destination, rpc, payload);
+        if (serving != null)
+            outgoing.add(transmission);
+        else
+            dispatch(now, transmission);
+    }
+
+    /**
+     * Sends a message through the link from its source to its destination, after the messages sent before it on the
+     * link.
+     */
+    private void dispatch(long leave, Transmission message) {
+        NodeId source = message.source;
+        NodeId destination = message.destination;
+        RemoteCallIdentifier rpc = message.rpc;
+        byte[] payload = message.payload;
+        Pair<NodeId, NodeId> link = Pair.of(source, destination);
+        long start = Math.max(leave, linkFree.getOrDefault(link, 0L));
+        double bandwidth = linkModel.bandwidth(source, destination);
+        long transmission = Double.isInfinite(bandwidth) ? 0 : (long) Math.ceil(1e9 * payload.length / bandwidth);
+        linkFree.put(link, start + transmission);
+        if (source != null && nodes.containsKey(source))
+            nodes.get(source).stats.sent(payload.length);
+        schedule(new Event(start + transmission + linkModel.latency(source, destination),
+                destination,
+                new Input(ComputeModel.Input.MESSAGE,
+                        source,
+                        rpc,
+                        new Envelope(source, destination, rpc, payload),
+                        payload.length)));
+    }
+
+    private static byte[] toArray(EncodedPayload payload) {
+        ByteBuffer buffer = payload.asReadOnlyBuffer();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private void schedule(Event event) {
+        event.sequence = sequence++;
+        events.add(event);
+    }
+
+    /**
+     * Returns the number of tuples processed by a node, or 0 if it does not wrap a node instance.
+     */
+    private static long processedTuples(SimulatedNode node) {
+        return (node.node instanceof GenericWrapper) ? ((GenericWrapper) node.node).getProcessedTuples() : 0;
+    }
+
+    private SimulatedNode nodeOf(NodeId nodeId) {
+        SimulatedNode node = nodes.get(nodeId);
+        if (node == null)
+            throw new RuntimeException(nodeId + " is not registered to the simulation.");
+        return node;
+    }
+
+    // ================================================ Reporting =====================================================
+
+    /**
+     * Returns the virtual time, in nanoseconds.
+     */
+    public long getTime() {
+        return now;
+    }
+
+    public long getProcessedEvents() {
+        return processed;
+    }
+
+    public boolean isIdle() {
+        return events.isEmpty();
+    }
+
+    public NodeStats getStats(NodeId nodeId) {
+        return nodeOf(nodeId).stats;
+    }
+
+    /**
+     * Returns the statistics of the nodes of a side of the network, ordered by id.
+     */
+    public List<NodeStats> getStats(NodeType side) {
+        List<NodeStats> stats = new ArrayList<>();
+        int size = (side == NodeType.HUB) ? numberOfHubs : numberOfSpokes;
+        for (int i = 0; i < size; i++) {
+            SimulatedNode node = nodes.get(NodeId.of(side, i));
+            if (node != null)
+                stats.add(node.stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Summarizes the statistics of both sides of the network.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Simulated %.6f s, %d events%n", now / 1e9, processed));
+        for (NodeType side : NodeType.values()) {
+            List<NodeStats> stats = getStats(side);
+            if (stats.isEmpty())
+                continue;
+            double utilization = 0;
+            double maxUtilization = 0;
+            double roundTime = 0;
+            int maxInbox = 0;
+            int maxBuffer = 0;
+            long bytes = 0;
+            for (NodeStats s : stats) {
+                utilization += s.getUtilization(now) / stats.size();
+                maxUtilization = Math.max(maxUtilization, s.getUtilization(now));
+                roundTime += s.getMeanRoundTime() / stats.size();
+                maxInbox = Math.max(maxInbox, s.getMaxInboxDepth());
+                maxBuffer = Math.max(maxBuffer, s.getMaxBufferDepth());
+                bytes += s.getBytesSent();
+            }
+            report.append(String.format(
+                    "%s x%d: utilization mean %.3f max %.3f, round time %.6f s, max inbox %d, max buffer %d, " +
+                            "sent %d bytes%n",
+                    side, stats.size(), utilization, maxUtilization, roundTime / 1e9, maxInbox, maxBuffer, bytes));
+        }
+        return report.toString();
+    }
+
+    // ================================================== Events ======================================================
+
+    /**
+     * A simulated node, along with its inbox.
+     */
+    private static class SimulatedNode {
+
+        final Node node;
+        final ArrayDeque<Input> inbox;
+        final NodeStats stats;
+
+        /**
+         * The time the node finishes serving its current input at.
+         */
+        long busyUntil;
+
+        /**
+         * True if serving the next input of the node has been scheduled.
+         */
+        boolean scheduled;
+
+        SimulatedNode(NodeId nodeId, Node node) {
+            this.node = node;
+            this.inbox = new ArrayDeque<>();
+            this.stats = new NodeStats(nodeId);
+            this.busyUntil = 0;
+            this.scheduled = false;
+        }
+
+    }
+
+    /**
+     * A message sent while a node serves an input, waiting for the input to be served.
+     */
+    private static class Transmission {
+
+        final NodeId source;
+        final NodeId destination;
+        final RemoteCallIdentifier rpc;
+        final byte[] payload;
+
+        Transmission(NodeId source, NodeId destination, RemoteCallIdentifier rpc, byte[] payload) {
+            this.source = source;
+            this.destination = destination;
+            this.rpc = rpc;
+            this.payload = payload;
+        }
+
+    }
+
+    /**
+     * An input waiting to be served by a node.
+     */
+    private static class Input {
+
+        final ComputeModel.Input kind;
+        final NodeId source;
+        final RemoteCallIdentifier rpc;
+        final Object content;
+        final int size;
+
+        Input(ComputeModel.Input kind, NodeId source, RemoteCallIdentifier rpc, Object content, int size) {
+            this.kind = kind;
+            this.source = source;
+            this.rpc = rpc;
+            this.content = content;
+            this.size = size;
+        }
+
+        Serializable message() {
+            return (content instanceof Envelope) ? ((Envelope) content).getMessage() : (Serializable) content;
+        }
+
+    }
+
+    /**
+     * The arrival of an input to a node, or the start of serving the next input of a node if the input is null.
+     */
+    private static class Event implements Comparable<Event> {
+
+        final long time;
+        final NodeId destination;
+        final Input input;
+        long sequence;
+
+        Event(long time, NodeId destination, Input input) {
+            this.time = time;
+            this.destination = destination;
+            this.input = input;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Long.compare(time, other.time);
+            return (byTime != 0) ? byTime : Long.compare(sequence, other.sequence);
+        }
+
+    }
+
+}
@@ -0,0 +1,166 @@
+package BipartiteTopologyAPI.sites;
+
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * The targets of a broadcast, described by their side of the Bipartite Network and either a range of ids or a set of
+ * ids, instead of a map holding an id per target. Iterating over the targets yields the canonical instances of their
+ * ids, so describing and iterating over a broadcast does not allocate per target.
+ */
+public class BroadcastTargets implements Iterable<NodeId>, Serializable {
+
+    /**
+     * The side of the Bipartite Network of the targets.
+     */
+    private final NodeType nodeType;
+
+    /**
+     * The first id of the range of targets.
+     */
+    private final int from;
+
+    /**
+     * The end (exclusive) of the range of targets.
+     */
+    private final int to;
+
+    /**
+     * The ids of the targets, or null if the targets are the whole range.
+     */
+    private final BitSet ids;
+
+    private BroadcastTargets(NodeType nodeType, int from, int to, BitSet ids) {
+        if (nodeType == null)
+            throw new RuntimeException("The side of the targets of a broadcast must be given.");
+        if (from < 0 || from > to)
+            throw new RuntimeException("Invalid range of broadcast targets [" + from + ", " + to + ").");
+        this.nodeType = nodeType;
+        this.from = from;
+        this.to = to;
+        this.ids = ids;
+    }
+
+    /**
+     * Targets the nodes of a side of the Bipartite Network.
+     *
+     * @param nodeType The side of the targets.
+     * @param count    The number of nodes of the side.
+     */
+    public static BroadcastTargets allOf(NodeType nodeType, int count) {
+        return new BroadcastTargets(nodeType, 0, count, null);
+    }
+
+    /**
+     * Targets the nodes of a side with ids in [from, to).
+     */
+    public static BroadcastTargets range(NodeType nodeType, int from, int to) {
+        return new BroadcastTargets(nodeType, from, to, null);
+    }
+
+    /**
+     * Targets the nodes of a side whose ids are set. The set is copied.
+     */
+    public static BroadcastTargets of(NodeType nodeType, BitSet ids) {
+        return new BroadcastTargets(nodeType, 0, ids.length(), (BitSet) ids.clone());
+    }
+
+    public boolean contains(NodeId nodeId) {
+        if (nodeId == null || nodeId.getNodeType() != nodeType)
+            return false;
+        int id = nodeId.getNodeId();
+        return id >= from && id < to && (ids == null || ids.get(id));
+    }
+
+    public int size() {
+        return (ids == null) ? to - from : ids.cardinality();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public NodeType getNodeType() {
+        return nodeType;
+    }
+
+    /**
+     * Expands the targets into a map assigning the same Remote Procedure Call to every target, as expected by
+     * {@link BipartiteTopologyAPI.interfaces.Network#broadcast(NodeId, Map, Serializable)}.
+     */
+    public Map<NodeId, RemoteCallIdentifier> toRpcMap(RemoteCallIdentifier rpc) {
+        Map<NodeId, RemoteCallIdentifier> rpcMap = new HashMap<>();
+        for (NodeId target : this)
+            rpcMap.put(target, rpc);
+        return rpcMap;
+    }
+
+    @Override
+    public Iterator<NodeId> iterator() {
+        return new Iterator<NodeId>() {
+
+            private int next = nextId(from);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public NodeId next() {
+                if (next < 0)
+                    throw new NoSuchElementException();
+                int id = next;
+                next = nextId(id + 1);
+                return NodeId.of(nodeType, id);
+            }
+
+        };
+    }
+
+    /**
+     * Returns the first target id not below the given one, or -1 if there is none.
+     */
+    private int nextId(int id) {
+        if (ids != null)
+            id = ids.nextSetBit(id);
+        return (id >= 0 && id < to) ? id : -1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof BroadcastTargets))
+            return false;
+        BroadcastTargets other = (BroadcastTargets) o;
+        if (nodeType != other.nodeType || size() != other.size())
+            return false;
+        for (NodeId target : this)
+            if (!other.contains(target))
+                return false;
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = nodeType.ordinal();
+        for (NodeId target : this)
+            hash = 31 * hash + target.getNodeId();
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        if (ids != null)
+            return nodeType + " " + ids;
+        return nodeType + " [" + from + ", " + to + ")";
+    }
+
+}
@@ -28,6 +28,15 @@ public class NetworkDescriptor {
         this.numberOfHubs = numberOfHubs;
     }
 
+    /**
+     * Describes the same Bipartite Network with a different number of spokes and hubs. Networks that change size
+     * describe themselves with the rescaled descriptor, so that their nodes can be re-wired through
+     * {@link BipartiteTopologyAPI.GenericWrapper#rescale()}.
+     */
+    public NetworkDescriptor rescale(int numberOfSpokes, int numberOfHubs) {
+        return new NetworkDescriptor(networkId, numberOfSpokes, numberOfHubs);
+    }
+
     public int getNetworkId() {
         return networkId;
     }
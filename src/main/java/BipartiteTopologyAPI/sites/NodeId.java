@@ -1,6 +1,7 @@
 package BipartiteTopologyAPI.sites;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * This is a basic immutable Java class that implements a unique identifier
@@ -10,6 +11,9 @@ import java.io.Serializable;
  * <p>
  * nodeType: This is the type of node in the Bipartite Network.
  * nodeId: This should always be a non-negative value.
+ * <p>
+ * Two ids are equal if they have the same type and id. The canonical instances returned by {@link #of(NodeType, int)}
+ * are shared by the whole process, so they cannot be changed.
  */
 public class NodeId implements Serializable {
 
@@ -23,6 +27,21 @@ public class NodeId implements Serializable {
      */
     protected int nodeId;
 
+    /**
+     * The ids below this bound are interned by {@link #of(NodeType, int)}.
+     */
+    public static final int INTERNED_LIMIT = 1 << 16;
+
+    /**
+     * The canonical instances of the ids of every node type, indexed by the ordinal of the type and the id.
+     */
+    private static volatile NodeId[][] interned = new NodeId[NodeType.values().length][0];
+
+    /**
+     * A flag determining if this is a canonical instance, which cannot be changed.
+     */
+    private transient boolean canonical;
+
     public NodeId() {
 
     }
@@ -33,11 +52,41 @@ public class NodeId implements Serializable {
         this.nodeId = nodeId;
     }
 
+    /**
+     * Returns the canonical instance of an id, or a new instance if the id is not interned.
+     */
+    public static NodeId of(NodeType nodeType, int nodeId) {
+        if (nodeId < 0 || nodeId >= INTERNED_LIMIT)
+            return new NodeId(nodeType, nodeId);
+        NodeId[] ids = interned[nodeType.ordinal()];
+        return (nodeId < ids.length) ? ids[nodeId] : intern(nodeType, nodeId);
+    }
+
+    /**
+     * Grows the canonical instances of a node type to cover the given id, creating all the missing ones at once.
+     */
+    private static synchronized NodeId intern(NodeType nodeType, int nodeId) {
+        NodeId[][] all = interned.clone();
+        NodeId[] ids = all[nodeType.ordinal()];
+        if (nodeId < ids.length)
+            return ids[nodeId];
+        int length = ids.length;
+        ids = Arrays.copyOf(ids, Math.min(INTERNED_LIMIT, Math.max(Math.max(nodeId + 1, 2 * length), 16)));
+        for (int i = length; i < ids.length; i++) {
+            ids[i] = new NodeId(nodeType, i);
+            ids[i].canonical = true;
+        }
+        all[nodeType.ordinal()] = ids;
+        interned = all;
+        return ids[nodeId];
+    }
+
     public NodeType getNodeType() {
         return nodeType;
     }
 
     public void setNodeType(NodeType nodeType) {
+        checkMutable();
         this.nodeType = nodeType;
     }
 
@@ -46,6 +95,7 @@ public class NodeId implements Serializable {
     }
 
     public void setNodeId(int nodeId) {
+        checkMutable();
         checkNodeId(nodeId);
         this.nodeId = nodeId;
     }
@@ -55,6 +105,11 @@ public class NodeId implements Serializable {
             throw new RuntimeException("The id of a Node cannot be negative.");
     }
 
+    private void checkMutable() {
+        if (canonical)
+            throw new RuntimeException("The canonical instance of " + this + " cannot be changed.");
+    }
+
     public boolean isSpoke() {
         return nodeType.equals(NodeType.SPOKE);
     }
@@ -67,6 +122,28 @@ public class NodeId implements Serializable {
         return 8;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof NodeId))
+            return false;
+        NodeId other = (NodeId) o;
+        return nodeId == other.nodeId && nodeType == other.nodeType;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * ((nodeType == null) ? 0 : nodeType.ordinal() + 1) + nodeId;
+    }
+
+    /**
+     * Replaces a deserialized id with its canonical instance.
+     */
+    protected Object readResolve() {
+        return (nodeType == null || getClass() != NodeId.class) ? this : of(nodeType, nodeId);
+    }
+
     @Override
     public String toString() {
         return (isSpoke() ? "SPOKE: " : "HUB: ") + nodeId;
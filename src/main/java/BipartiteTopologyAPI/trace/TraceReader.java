@@ -0,0 +1,165 @@
+package BipartiteTopologyAPI.trace;
+
+import BipartiteTopologyAPI.operations.CallType;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the records of a trace written by a {@link TraceRecorder}, in the order they were recorded in.
+ */
+public class TraceReader implements Iterator<TraceRecord>, Closeable {
+
+    private final DataInputStream in;
+
+    /**
+     * The time of the last record read, in nanoseconds since the start of the recording.
+     */
+    private long time;
+
+    /**
+     * The operation names read so far, by index.
+     */
+    private final ArrayList<String> operations;
+
+    /**
+     * The next record, or null if it has not been read yet or the trace is over.
+     */
+    private TraceRecord next;
+    private boolean over;
+
+    public TraceReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        this.time = 0;
+        this.operations = new ArrayList<>();
+        this.next = null;
+        this.over = false;
+        int magic = this.in.readInt();
+        int version = this.in.readInt();
+        if (magic != TraceRecorder.MAGIC)
+            throw new IOException("Not a trace of a Bipartite Network.");
+        if (version != TraceRecorder.VERSION)
+            throw new IOException("Unsupported version " + version + " of a trace.");
+    }
+
+    /**
+     * Creates a reader of the trace in the given file.
+     */
+    public static TraceReader fromFile(String path) throws IOException {
+        return new TraceReader(new FileInputStream(path));
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !over) {
+            try {
+                next = readRecord();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read a trace record", e);
+            }
+            over = (next == null);
+        }
+        return next != null;
+    }
+
+    @Override
+    public TraceRecord next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        TraceRecord record = next;
+        next = null;
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // ================================================= Decoding =====================================================
+
+    /**
+     * Reads the next record, or returns null at the end of the trace. A trace cut short while being written ends at
+     * its last complete record.
+     */
+    private TraceRecord readRecord() throws IOException {
+        int kind = in.read();
+        if (kind < 0)
+            return null;
+        try {
+            time += readVarLong();
+            NodeId nodeId = readNodeId();
+            switch (TraceRecord.Kind.values()[kind]) {
+                case TUPLE:
+                    return new TraceRecord(TraceRecord.Kind.TUPLE, time, nodeId, null, null, 0, readBytes());
+                case TUPLES:
+                    return new TraceRecord(TraceRecord.Kind.TUPLES, time, nodeId, null, null, 0, readBytes());
+                case MESSAGE:
+                    NodeId source = readNodeId();
+                    RemoteCallIdentifier rpc = readRpc();
+                    return new TraceRecord(TraceRecord.Kind.MESSAGE, time, nodeId, source, rpc, 0, readBytes());
+                case QUERY:
+                    long queryId = unZigZag(readVarLong());
+                    return new TraceRecord(TraceRecord.Kind.QUERY, time, nodeId, null, null, queryId, readBytes());
+                default:
+                    return new TraceRecord(TraceRecord.Kind.DRAIN, time, nodeId, null, null, 0, null);
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private NodeId readNodeId() throws IOException {
+        byte type = in.readByte();
+        return (type < 0) ? null : NodeId.of(NodeType.values()[type], (int) readVarLong());
+    }
+
+    private RemoteCallIdentifier readRpc() throws IOException {
+        byte callType = in.readByte();
+        long callNumber = unZigZag(readVarLong());
+        int index = (int) readVarLong() - 1;
+        String operation = null;
+        if (index == operations.size()) {
+            byte[] name = new byte[(int) readVarLong()];
+            in.readFully(name);
+            operations.add(new String(name, StandardCharsets.UTF_8));
+        }
+        if (index >= 0)
+            operation = operations.get(index);
+        return new RemoteCallIdentifier((callType < 0) ? null : CallType.values()[callType], operation, callNumber);
+    }
+
+    private byte[] readBytes() throws IOException {
+        byte[] bytes = new byte[(int) readVarLong()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed variable length integer in a trace.");
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
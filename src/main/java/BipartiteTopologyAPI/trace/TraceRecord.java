@@ -0,0 +1,130 @@
+package BipartiteTopologyAPI.trace;
+
+import BipartiteTopologyAPI.network.MessageCodec;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.NodeId;
+
+import java.io.Serializable;
+
+/**
+ * An input delivered to a node, as read from a trace. The content of the input is kept encoded until it is decoded by
+ * {@link #decode()}.
+ */
+public class TraceRecord {
+
+    /**
+     * The kinds of the inputs of a node.
+     */
+    public enum Kind {
+        /**
+         * A record of the data stream.
+         */
+        TUPLE,
+        /**
+         * A run of records of the data stream, delivered to a batched process method in a single call.
+         */
+        TUPLES,
+        /**
+         * A message from another node.
+         */
+        MESSAGE,
+        /**
+         * A query.
+         */
+        QUERY,
+        /**
+         * A quantum of the data buffered by a {@code BufferingWrapper}, which has no content.
+         */
+        DRAIN
+    }
+
+    private final Kind kind;
+
+    /**
+     * The time of the delivery, in nanoseconds since the start of the recording.
+     */
+    private final long time;
+
+    /**
+     * The node the input was delivered to.
+     */
+    private final NodeId nodeId;
+
+    /**
+     * The source and the Remote Procedure Call of a message, or null.
+     */
+    private final NodeId source;
+    private final RemoteCallIdentifier rpc;
+
+    /**
+     * The id of a query.
+     */
+    private final long queryId;
+
+    /**
+     * The encoded content of the input, or null if it has none.
+     */
+    private final byte[] payload;
+
+    TraceRecord(Kind kind,
+                long time,
+                NodeId nodeId,
+                NodeId source,
+                RemoteCallIdentifier rpc,
+                long queryId,
+                byte[] payload) {
+        this.kind = kind;
+        this.time = time;
+        this.nodeId = nodeId;
+        this.source = source;
+        this.rpc = rpc;
+        this.queryId = queryId;
+        this.payload = payload;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public NodeId getNodeId() {
+        return nodeId;
+    }
+
+    public NodeId getSource() {
+        return source;
+    }
+
+    public RemoteCallIdentifier getRpc() {
+        return rpc;
+    }
+
+    public long getQueryId() {
+        return queryId;
+    }
+
+    /**
+     * Returns the length of the encoded content of the input.
+     */
+    public int getPayloadLength() {
+        return (payload == null) ? 0 : payload.length;
+    }
+
+    /**
+     * Decodes the content of the input, i.e. the tuple, the list of tuples, the message or the query. Every call
+     * returns a fresh instance.
+     */
+    public Serializable decode() {
+        return (payload == null) ? null : MessageCodec.decodePayload(payload);
+    }
+
+    @Override
+    public String toString() {
+        return "TraceRecord(" + kind + ", " + time + ", " + nodeId +
+                ((rpc == null) ? "" : ", " + source + ", " + rpc) + ", " + getPayloadLength() + " bytes)";
+    }
+
+}
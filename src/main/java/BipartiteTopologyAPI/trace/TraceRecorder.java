@@ -0,0 +1,244 @@
+package BipartiteTopologyAPI.trace;
+
+import BipartiteTopologyAPI.network.MessageCodec;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.NodeId;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Writes a compact binary trace of the inputs delivered to the nodes of a process, in the order they were delivered
+ * in, across all the nodes. A recorder is shared by the runners of the nodes, see
+ * {@code LocalNodes.setTraceRecorder(TraceRecorder)}, and every input is recorded on the thread of its node, right
+ * before it is delivered. A {@link TraceReader} reads the trace back, and a {@link TraceReplayer} feeds it to fresh
+ * nodes.
+ * <p>
+ * The trace starts with a header holding {@link #MAGIC} and {@link #VERSION}. Every record holds its kind, the time
+ * since the previous record and the id of its node, followed by the fields of its kind: the source, the Remote
+ * Procedure Call and the payload of a message, the id and the payload of a query, and the payload of one or more
+ * tuples. The integers are written as variable length quantities, and every operation name is written once and then
+ * referred to by its index.
+ */
+public class TraceRecorder implements Closeable {
+
+    /**
+     * The first bytes of a trace.
+     */
+    public static final int MAGIC = 0x42545243;
+
+    /**
+     * The version of the format of the traces.
+     */
+    public static final int VERSION = 1;
+
+    private final DataOutputStream out;
+
+    /**
+     * The time the recording started at, as given by {@link System#nanoTime()}.
+     */
+    private final long start;
+
+    /**
+     * The time of the last record, in nanoseconds since the start.
+     */
+    private long last;
+
+    /**
+     * The indexes of the operation names written so far.
+     */
+    private final HashMap<String, Integer> operations;
+
+    /**
+     * The number of records written.
+     */
+    private long records;
+
+    private boolean closed;
+
+    public TraceRecorder(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        this.start = System.nanoTime();
+        this.last = 0;
+        this.operations = new HashMap<>();
+        this.records = 0;
+        this.closed = false;
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+    }
+
+    /**
+     * Creates a recorder writing to the given file.
+     */
+    public static TraceRecorder toFile(String path) throws IOException {
+        return new TraceRecorder(new FileOutputStream(path));
+    }
+
+    // ================================================ Recording =====================================================
+
+    public void recordTuple(NodeId nodeId, Serializable tuple) {
+        byte[] payload = MessageCodec.encodePayload(tuple);
+        synchronized (this) {
+            try {
+                if (!writeRecord(TraceRecord.Kind.TUPLE, nodeId))
+                    return;
+                writeBytes(payload);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to record a tuple of " + nodeId, e);
+            }
+        }
+    }
+
+    /**
+     * Records a run of tuples delivered to a batched process method in a single call.
+     */
+    public void recordTuples(NodeId nodeId, List<? extends Serializable> tuples) {
+        byte[] payload = MessageCodec.encodePayload(new ArrayList<>(tuples));
+        synchronized (this) {
+            try {
+                if (!writeRecord(TraceRecord.Kind.TUPLES, nodeId))
+                    return;
+                writeBytes(payload);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to record the tuples of " + nodeId, e);
+            }
+        }
+    }
+
+    /**
+     * Records a message.
+     *
+     * @param payload The encoded message, as it is decoded by {@link MessageCodec#decodePayload(byte[])}.
+     */
+    public void recordMessage(NodeId nodeId, NodeId source, RemoteCallIdentifier rpc, byte[] payload) {
+        synchronized (this) {
+            try {
+                if (!writeRecord(TraceRecord.Kind.MESSAGE, nodeId))
+                    return;
+                writeNodeId(source);
+                writeRpc(rpc);
+                writeBytes(payload);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to record a message to " + nodeId, e);
+            }
+        }
+    }
+
+    public void recordQuery(NodeId nodeId, long queryId, Serializable query) {
+        byte[] payload = MessageCodec.encodePayload(query);
+        synchronized (this) {
+            try {
+                if (!writeRecord(TraceRecord.Kind.QUERY, nodeId))
+                    return;
+                writeVarLong(zigZag(queryId));
+                writeBytes(payload);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to record a query to " + nodeId, e);
+            }
+        }
+    }
+
+    /**
+     * Records the processing of a quantum of the data buffered by a node.
+     */
+    public void recordDrain(NodeId nodeId) {
+        synchronized (this) {
+            try {
+                writeRecord(TraceRecord.Kind.DRAIN, nodeId);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to record a drain of " + nodeId, e);
+            }
+        }
+    }
+
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    /**
+     * Flushes the trace and closes the underlying stream. The inputs delivered afterwards are not recorded.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        out.close();
+    }
+
+    // ================================================= Encoding =====================================================
+
+    /**
+     * Writes the common fields of a record, or returns false if the trace has been closed.
+     */
+    private boolean writeRecord(TraceRecord.Kind kind, NodeId nodeId) throws IOException {
+        if (closed)
+            return false;
+        // The time is taken under the lock, so that the records are in the order of their times.
+        long time = System.nanoTime() - start;
+        out.writeByte(kind.ordinal());
+        writeVarLong(Math.max(0, time - last));
+        last = Math.max(last, time);
+        writeNodeId(nodeId);
+        records += 1;
+        return true;
+    }
+
+    private void writeNodeId(NodeId nodeId) throws IOException {
+        if (nodeId == null) {
+            out.writeByte(-1);
+        } else {
+            out.writeByte(nodeId.getNodeType().ordinal());
+            writeVarLong(nodeId.getNodeId());
+        }
+    }
+
+    private void writeRpc(RemoteCallIdentifier rpc) throws IOException {
+        out.writeByte((rpc.getCallType() == null) ? -1 : rpc.getCallType().ordinal());
+        writeVarLong(zigZag(rpc.getCallNumber()));
+        String operation = rpc.getOperation();
+        if (operation == null) {
+            writeVarLong(0);
+            return;
+        }
+        Integer index = operations.get(operation);
+        if (index != null) {
+            writeVarLong(index + 1);
+            return;
+        }
+        // A new operation is written as the next index, followed by its name.
+        index = operations.size();
+        operations.put(operation, index);
+        writeVarLong(index + 1);
+        byte[] name = operation.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(name.length);
+        out.write(name);
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        writeVarLong(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+}
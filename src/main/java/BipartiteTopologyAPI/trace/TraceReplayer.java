@@ -0,0 +1,201 @@
+package BipartiteTopologyAPI.trace;
+
+import BipartiteTopologyAPI.BufferingWrapper;
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.interfaces.Network;
+import BipartiteTopologyAPI.interfaces.Node;
+import BipartiteTopologyAPI.network.EncodedPayload;
+import BipartiteTopologyAPI.network.MessageCodec;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.BroadcastTargets;
+import BipartiteTopologyAPI.sites.NetworkDescriptor;
+import BipartiteTopologyAPI.sites.NodeId;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds a recorded trace to fresh nodes, in a single thread and in the order the inputs were recorded in, so every node
+ * receives its inputs exactly as the recorded node did. The inputs are delivered either as fast as possible or at the
+ * pace they were recorded at. The records of the nodes that are not registered to the replayer are skipped, so a trace
+ * of a whole network can be replayed to a single node.
+ * <p>
+ * The replayed nodes still send their messages through their own network. As the inputs they caused have been recorded
+ * along with the rest, the messages should be dropped, e.g. by a {@link DiscardingNetwork}.
+ */
+public class TraceReplayer {
+
+    /**
+     * The nodes the trace is replayed to.
+     */
+    private final HashMap<NodeId, Node> nodes;
+
+    /**
+     * The number of records replayed and skipped by the last replay.
+     */
+    private long replayed;
+    private long skipped;
+
+    /**
+     * The wall clock time of the last replay, in nanoseconds.
+     */
+    private long elapsed;
+
+    public TraceReplayer() {
+        this.nodes = new HashMap<>();
+    }
+
+    public TraceReplayer register(NodeId nodeId, Node node) {
+        if (nodes.containsKey(nodeId))
+            throw new RuntimeException(nodeId + " is already registered to the replayer.");
+        nodes.put(nodeId, node);
+        return this;
+    }
+
+    /**
+     * Replays the records of a trace.
+     *
+     * @param trace The records, e.g. a {@link TraceReader}.
+     * @param paced True for delivering every input at the time it was recorded at, relative to the start of the
+     *              replay, false for delivering the inputs as fast as possible.
+     * @return The number of records replayed.
+     */
+    @SuppressWarnings("unchecked")
+    public long replay(Iterator<TraceRecord> trace, boolean paced) {
+        replayed = 0;
+        skipped = 0;
+        long start = System.nanoTime();
+        while (trace.hasNext()) {
+            TraceRecord record = trace.next();
+            Node node = nodes.get(record.getNodeId());
+            if (node == null) {
+                skipped += 1;
+                continue;
+            }
+            if (paced)
+                awaitTime(start + record.getTime());
+            switch (record.getKind()) {
+                case TUPLE:
+                    node.receiveTuple(record.decode());
+                    break;
+                case TUPLES:
+                    ((GenericWrapper) node).receiveTuples((List<? extends Serializable>) record.decode());
+                    break;
+                case MESSAGE:
+                    node.receiveMsg(record.getSource(), record.getRpc(), record.decode());
+                    break;
+                case QUERY:
+                    node.receiveQuery(record.getQueryId(), record.decode());
+                    break;
+                case DRAIN:
+                    ((BufferingWrapper<?>) node).drain();
+                    break;
+            }
+            replayed += 1;
+        }
+        elapsed = System.nanoTime() - start;
+        return replayed;
+    }
+
+    private static void awaitTime(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0)
+            LockSupport.parkNanos(remaining);
+    }
+
+    public long getReplayed() {
+        return replayed;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Returns the wall clock time of the last replay, in nanoseconds.
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    // ============================================ Discarding network ================================================
+
+    /**
+     * A {@link Network} dropping the messages of the replayed nodes. The messages are still encoded, so a replay costs
+     * what sending them costs, and they are counted.
+     */
+    public static class DiscardingNetwork implements Network {
+
+        private final int networkId;
+        private final int numberOfHubs;
+        private final int numberOfSpokes;
+
+        /**
+         * The number of messages and of encoded bytes dropped.
+         */
+        private long messages;
+        private long bytes;
+
+        public DiscardingNetwork(int networkId, int numberOfHubs, int numberOfSpokes) {
+            this.networkId = networkId;
+            this.numberOfHubs = numberOfHubs;
+            this.numberOfSpokes = numberOfSpokes;
+        }
+
+        @Override
+        public void send(NodeId source, NodeId destination, RemoteCallIdentifier rpc, Serializable message) {
+            messages += 1;
+            bytes += MessageCodec.encodePayload(message).length;
+        }
+
+        @Override
+        public void broadcast(NodeId source, Map<NodeId, RemoteCallIdentifier> rpcMap, Serializable message) {
+            messages += rpcMap.size();
+            bytes += (long) MessageCodec.encodePayload(message).length * rpcMap.size();
+        }
+
+        @Override
+        public void broadcast(NodeId source, BroadcastTargets targets, RemoteCallIdentifier rpc, Serializable message) {
+            messages += targets.size();
+            bytes += (long) MessageCodec.encodePayload(message).length * targets.size();
+        }
+
+        @Override
+        public void sendEncoded(NodeId source, NodeId destination, RemoteCallIdentifier rpc, EncodedPayload payload) {
+            messages += 1;
+            bytes += payload.length();
+            payload.release();
+        }
+
+        @Override
+        public void broadcastEncoded(NodeId source,
+                                     Iterable<NodeId> targets,
+                                     RemoteCallIdentifier rpc,
+                                     EncodedPayload payload) {
+            for (NodeId target : targets) {
+                messages += 1;
+                bytes += payload.length();
+            }
+            payload.release();
+        }
+
+        @Override
+        public NetworkDescriptor describe() {
+            return new NetworkDescriptor(networkId, numberOfSpokes, numberOfHubs);
+        }
+
+        public long getMessages() {
+            return messages;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+    }
+
+}
@@ -0,0 +1,159 @@
+package BipartiteTopologyAPI;
+
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.futures.Response;
+import BipartiteTopologyAPI.network.NodeRunner;
+import BipartiteTopologyAPI.simulation.LinkModel;
+import BipartiteTopologyAPI.simulation.SimulatedNetwork;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks that runs of tuples are handed over to batched process methods in one call, and that the synchronous calls of
+ * a run form a single round.
+ */
+public class BatchedProcessTest {
+
+    private static final long MILLISECOND = 1_000_000L;
+
+    private static final int TUPLES = 6;
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        Response<Integer> pull(Integer index);
+    }
+
+    @RemoteProxy
+    public interface SpokeOps {
+        @RemoteOp
+        void update(Long version);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId);
+    }
+
+    public static class Hub extends NodeInstance<SpokeOps, QuerierOps> implements HubOps {
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Serializable tuple) {
+        }
+
+        @MergeOp
+        public void merge(Hub[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public Response<Integer> pull(Integer index) {
+            return Response.respond(index);
+        }
+
+    }
+
+    public static class Spoke extends NodeInstance<HubOps, QuerierOps> implements SpokeOps {
+
+        final List<List<Object>> batches = new ArrayList<>();
+
+        final List<Integer> pulled = new ArrayList<>();
+
+        @InitOp
+        public void init() {
+        }
+
+        /**
+         * Pulls every integer of the batch from the hub.
+         */
+        @ProcessOp(batched = true)
+        public void process(List<Object> batch) {
+            batches.add(batch);
+            for (Object tuple : batch)
+                if (tuple instanceof Integer)
+                    getProxy(0).pull((Integer) tuple).toSync(pulled::add);
+        }
+
+        @MergeOp
+        public void merge(Spoke[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(Long version) {
+        }
+
+    }
+
+    @Test
+    public void runnersHandOverRunsOfTuples() {
+        NodeId spokeId = NodeId.of(NodeType.SPOKE, 0);
+        SimulatedNetwork network = new SimulatedNetwork(0, 1, 1);
+        Spoke spoke = new Spoke();
+        GenericWrapper wrapper = new GenericWrapper(spokeId, spoke, network);
+        NodeRunner runner = new NodeRunner(spokeId, wrapper).setMaxBatchSize(3);
+        for (int i = 0; i < 4; i++)
+            runner.deliverTuple(new Object[]{"tuple " + i});
+        runner.deliverTuple(new Object[]{"first", "second"});
+        runner.start();
+        runner.stop();
+
+        assertEquals(2, spoke.batches.size());
+        assertEquals(Arrays.asList("tuple 0", "tuple 1", "tuple 2"), spoke.batches.get(0));
+        assertEquals("tuple 3", spoke.batches.get(1).get(0));
+        assertArrayEquals(new Object[]{"first", "second"}, (Object[]) spoke.batches.get(1).get(1));
+        assertEquals(5, wrapper.getProcessedTuples());
+    }
+
+    @Test
+    public void theCallsOfARunFormOneRound() {
+        NodeId hubId = NodeId.of(NodeType.HUB, 0);
+        NodeId spokeId = NodeId.of(NodeType.SPOKE, 0);
+        SimulatedNetwork network = new SimulatedNetwork(0, 1, 1)
+                .setLinkModel(LinkModel.uniform(MILLISECOND, 1e9));
+        Spoke spoke = new Spoke();
+        BufferingWrapper<Serializable> wrapper = new BufferingWrapper<>(spokeId, spoke, network);
+        network.register(hubId, new GenericWrapper(hubId, new Hub(), network));
+        network.register(spokeId, wrapper);
+        for (int i = 0; i < TUPLES; i++)
+            network.submitTuple(spokeId, new Object[]{i}, 0);
+        network.run();
+
+        // The first tuple blocks the spoke, which buffers the others and processes them in one run once unblocked.
+        assertEquals(2, spoke.batches.size());
+        assertEquals(Collections.singletonList(0), spoke.batches.get(0));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), spoke.batches.get(1));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), spoke.pulled);
+        assertEquals(2, wrapper.getClock());
+        assertEquals(TUPLES, wrapper.getProcessedTuples());
+        assertFalse(wrapper.isBlocked());
+    }
+
+}
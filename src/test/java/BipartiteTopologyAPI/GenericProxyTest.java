@@ -0,0 +1,89 @@
+package BipartiteTopologyAPI;
+
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.futures.Response;
+import BipartiteTopologyAPI.simulation.SimulatedNetwork;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a call that cannot be sent fails in the calling node, without leaving futures behind.
+ */
+public class GenericProxyTest {
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        Response<Double> get(ArrayList<Object> keys);
+    }
+
+    @RemoteProxy
+    public interface SpokeOps {
+        @RemoteOp
+        void update(Long version);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId);
+    }
+
+    public static class Spoke extends NodeInstance<HubOps, QuerierOps> implements SpokeOps {
+
+        @InitOp
+        public void init() {
+        }
+
+        /**
+         * Calls the hub with a key that cannot be serialized.
+         */
+        @ProcessOp
+        public void process(Integer hub) {
+            ArrayList<Object> keys = new ArrayList<>();
+            keys.add(new Object());
+            getProxy(hub).get(keys).toSync(value -> {
+            });
+        }
+
+        @MergeOp
+        public void merge(Spoke[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(Long version) {
+        }
+
+    }
+
+    @Test
+    public void failedSendsRollBackTheirFutures() {
+        NodeId spokeId = new NodeId(NodeType.SPOKE, 0);
+        SimulatedNetwork network = new SimulatedNetwork(0, 1, 1);
+        GenericWrapper spoke = new GenericWrapper(spokeId, new Spoke(), network);
+        network.register(spokeId, spoke);
+
+        assertThrows(RuntimeException.class, () -> spoke.receiveTuple(new Object[]{0}));
+        assertTrue(spoke.getFutures().isEmpty());
+        assertTrue(spoke.getNewFutures().isEmpty());
+        assertFalse(spoke.isBlocked());
+    }
+
+}
@@ -0,0 +1,158 @@
+package BipartiteTopologyAPI;
+
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.futures.Response;
+import BipartiteTopologyAPI.interfaces.Network;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.NetworkDescriptor;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a wrapped node is re-wired to a rescaled network without being rebuilt.
+ */
+public class RescaleTest {
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        Response<Integer> pull(Integer index);
+
+        @RemoteOp
+        void push(Integer value);
+    }
+
+    @RemoteProxy
+    public interface SpokeOps {
+        @RemoteOp
+        void update(Long version);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId);
+    }
+
+    public static class Spoke extends NodeInstance<HubOps, QuerierOps> implements SpokeOps {
+
+        final List<Integer> pulled = new ArrayList<>();
+
+        @InitOp
+        public void init() {
+        }
+
+        /**
+         * Pulls from the given hub, or pushes to all the hubs if the given hub is negative.
+         */
+        @ProcessOp
+        public void process(Integer hub) {
+            if (hub < 0)
+                getBroadcastProxy().push(hub);
+            else
+                getProxy(hub).pull(hub).toSync(pulled::add);
+        }
+
+        @MergeOp
+        public void merge(Spoke[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(Long version) {
+        }
+
+    }
+
+    /**
+     * A network whose size can be changed, recording the destinations of the messages sent to it.
+     */
+    private static class ResizableNetwork implements Network {
+
+        final List<NodeId> destinations = new ArrayList<>();
+
+        int numberOfHubs;
+
+        int numberOfSpokes;
+
+        ResizableNetwork(int numberOfHubs, int numberOfSpokes) {
+            this.numberOfHubs = numberOfHubs;
+            this.numberOfSpokes = numberOfSpokes;
+        }
+
+        @Override
+        public void send(NodeId source, NodeId destination, RemoteCallIdentifier rpc, Serializable message) {
+            destinations.add(destination);
+        }
+
+        @Override
+        public void broadcast(NodeId source, Map<NodeId, RemoteCallIdentifier> rpcMap, Serializable message) {
+            destinations.addAll(rpcMap.keySet());
+        }
+
+        @Override
+        public NetworkDescriptor describe() {
+            return new NetworkDescriptor(0, numberOfSpokes, numberOfHubs);
+        }
+
+    }
+
+    @Test
+    public void nodesAreRewiredToTheRescaledNetwork() {
+        NodeId spokeId = NodeId.of(NodeType.SPOKE, 0);
+        ResizableNetwork network = new ResizableNetwork(2, 1);
+        Spoke spoke = new Spoke();
+        GenericWrapper wrapper = new GenericWrapper(spokeId, spoke, network);
+        wrapper.init();
+
+        // The spoke waits for the hub that is about to leave.
+        wrapper.receiveTuple(new Object[]{1});
+        assertEquals(Arrays.asList(NodeId.of(NodeType.HUB, 1)), network.destinations);
+        assertTrue(wrapper.isBlocked());
+        assertEquals(1, wrapper.getFutures().size());
+
+        network.numberOfHubs = 1;
+        wrapper.rescale();
+        assertFalse(wrapper.isBlocked());
+        assertTrue(wrapper.getFutures().isEmpty());
+        assertTrue(spoke.pulled.isEmpty());
+        assertEquals(new HashSet<>(Arrays.asList(0)), wrapper.getProxyMap().keySet());
+        assertEquals(1, spoke.getNumberOfHubs());
+
+        // The joined hubs receive the broadcasts of the spoke.
+        network.numberOfHubs = 3;
+        wrapper.rescale();
+        assertEquals(3, wrapper.getProxyMap().size());
+        assertEquals(3, spoke.getNumberOfHubs());
+        network.destinations.clear();
+        wrapper.receiveTuple(new Object[]{-1});
+        assertEquals(new HashSet<>(Arrays.asList(NodeId.of(NodeType.HUB, 0), NodeId.of(NodeType.HUB, 1),
+                NodeId.of(NodeType.HUB, 2))), new HashSet<>(network.destinations));
+
+        // A node that left the network cannot be re-wired.
+        network.numberOfSpokes = 0;
+        assertThrows(RuntimeException.class, wrapper::rescale);
+    }
+
+}
@@ -0,0 +1,103 @@
+package BipartiteTopologyAPI;
+
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.annotations.SnapshotOp;
+import BipartiteTopologyAPI.network.InProcessNetwork;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the queries served from snapshots reach the querier in the same envelope, whether they fail or not.
+ */
+public class SnapshotQueryServerTest {
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        void push(double[] gradient);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId, double[] model);
+    }
+
+    public static class Hub extends NodeInstance<HubOps, QuerierOps> implements HubOps {
+
+        final double[] model = {1.0, 2.0};
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Serializable tuple) {
+        }
+
+        @MergeOp
+        public void merge(Hub[] instances) {
+        }
+
+        @SnapshotOp
+        public double[] snapshot() {
+            return model.clone();
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query, double[] snapshot) {
+            if ("fail".equals(query))
+                throw new IllegalStateException("Failed query");
+            getQuerier().answer(queryId, snapshot);
+        }
+
+        @Override
+        public void push(double[] gradient) {
+        }
+
+    }
+
+    @Test
+    public void failuresAreAnsweredLikeQueries() throws Exception {
+        NodeId hubId = new NodeId(NodeType.HUB, 0);
+        LinkedBlockingQueue<Serializable> answers = new LinkedBlockingQueue<>();
+        try (InProcessNetwork network = new InProcessNetwork(0, 1, 1)) {
+            network.setQuerierSink((source, message) -> answers.add(message));
+            GenericWrapper wrapper = new GenericWrapper(hubId, new Hub(), network);
+            wrapper.enableSnapshotServing(1, 1);
+            network.register(hubId, wrapper);
+
+            network.submitQuery(hubId, 1, "succeed");
+            Serializable answer = answers.poll(10, TimeUnit.SECONDS);
+            assertTrue(answer instanceof Object[]);
+            assertNull(QueryFailure.of(answer));
+            assertEquals(1L, ((Object[]) answer)[0]);
+            assertArrayEquals(new double[]{1.0, 2.0}, (double[]) ((Object[]) answer)[1]);
+
+            network.submitQuery(hubId, 2, "fail");
+            Serializable failure = answers.poll(10, TimeUnit.SECONDS);
+            assertTrue(failure instanceof Object[]);
+            assertEquals(2L, ((Object[]) failure)[0]);
+            assertNotNull(QueryFailure.of(failure));
+            assertEquals(2L, QueryFailure.of(failure).getQueryId());
+            assertTrue(QueryFailure.of(failure).getCause() instanceof IllegalStateException);
+        }
+    }
+
+}
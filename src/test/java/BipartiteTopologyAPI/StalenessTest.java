@@ -0,0 +1,146 @@
+package BipartiteTopologyAPI;
+
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.futures.Response;
+import BipartiteTopologyAPI.simulation.LinkModel;
+import BipartiteTopologyAPI.simulation.SimulatedNetwork;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a spoke under stale synchronous parallel processing runs at most a given number of rounds ahead of the
+ * responses of the hubs.
+ */
+public class StalenessTest {
+
+    private static final long MILLISECOND = 1_000_000L;
+
+    private static final int TUPLES = 6;
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        Response<Integer> pull(Integer index);
+    }
+
+    @RemoteProxy
+    public interface SpokeOps {
+        @RemoteOp
+        void update(Long version);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId);
+    }
+
+    public static class Hub extends NodeInstance<SpokeOps, QuerierOps> implements HubOps {
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Serializable tuple) {
+        }
+
+        @MergeOp
+        public void merge(Hub[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public Response<Integer> pull(Integer index) {
+            return Response.respond(index);
+        }
+
+    }
+
+    public static class Spoke extends NodeInstance<HubOps, QuerierOps> implements SpokeOps {
+
+        final List<Integer> processed = new ArrayList<>();
+
+        final List<Integer> pulled = new ArrayList<>();
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Integer index) {
+            processed.add(index);
+            getProxy(0).pull(index).toSync(pulled::add);
+        }
+
+        @MergeOp
+        public void merge(Spoke[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(Long version) {
+        }
+
+    }
+
+    @Test
+    public void bulkSynchronous() {
+        checkStaleness(0);
+    }
+
+    @Test
+    public void staleSynchronous() {
+        checkStaleness(2);
+    }
+
+    private void checkStaleness(int staleness) {
+        NodeId hubId = new NodeId(NodeType.HUB, 0);
+        NodeId spokeId = new NodeId(NodeType.SPOKE, 0);
+        SimulatedNetwork network = new SimulatedNetwork(0, 1, 1)
+                .setLinkModel(LinkModel.uniform(MILLISECOND, 1e9));
+        Spoke spoke = new Spoke();
+        BufferingWrapper<Serializable> wrapper = new BufferingWrapper<>(spokeId, spoke, network);
+        wrapper.setStaleness(staleness);
+        network.register(hubId, new GenericWrapper(hubId, new Hub(), network));
+        network.register(spokeId, wrapper);
+        for (int i = 0; i < TUPLES; i++)
+            network.submitTuple(spokeId, new Object[]{i}, 0);
+
+        // No response has arrived yet, so the spoke stops after running the allowed number of rounds ahead.
+        network.runUntil(MILLISECOND / 2);
+        assertEquals(staleness + 1, spoke.processed.size());
+        assertTrue(wrapper.isBlocked());
+        assertEquals(staleness + 1, wrapper.getUnfinishedRounds());
+        assertEquals(TUPLES - staleness - 1, wrapper.getDataBuffer().size());
+
+        network.run();
+        assertFalse(wrapper.isBlocked());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), spoke.processed);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), spoke.pulled);
+        assertEquals(0, wrapper.getUnfinishedRounds());
+        assertEquals(TUPLES, wrapper.getClock());
+    }
+
+}
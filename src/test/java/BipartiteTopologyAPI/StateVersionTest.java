@@ -0,0 +1,190 @@
+package BipartiteTopologyAPI;
+
+import BipartiteTopologyAPI.annotations.Coalesced;
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.annotations.VersionedPull;
+import BipartiteTopologyAPI.futures.Response;
+import BipartiteTopologyAPI.simulation.LinkModel;
+import BipartiteTopologyAPI.simulation.SimulatedNetwork;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the values kept for a state version of a hub are not reused once a merge has changed its state.
+ */
+public class StateVersionTest {
+
+    private static final long MILLISECOND = 1_000_000L;
+
+    private static final int SUM = 0;
+
+    private static final int PULL = 1;
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        @Coalesced
+        Response<Double> sum();
+
+        @RemoteOp
+        @VersionedPull
+        Response<double[]> pull(Integer slice);
+    }
+
+    @RemoteProxy
+    public interface SpokeOps {
+        @RemoteOp
+        void update(Long version);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId);
+    }
+
+    public static class Hub extends NodeInstance<SpokeOps, QuerierOps> implements HubOps {
+
+        final double[] model = new double[64];
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Serializable tuple) {
+        }
+
+        @MergeOp
+        public void merge(Hub[] instances) {
+            for (Hub instance : instances)
+                for (int i = 0; i < model.length; i++)
+                    model[i] += instance.model[i];
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public Response<Double> sum() {
+            return Response.respond(Arrays.stream(model).sum());
+        }
+
+        @Override
+        public Response<double[]> pull(Integer slice) {
+            return Response.respond(model);
+        }
+
+    }
+
+    public static class Spoke extends NodeInstance<HubOps, QuerierOps> implements SpokeOps {
+
+        final List<Double> sums = new ArrayList<>();
+
+        final List<double[]> pulls = new ArrayList<>();
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Integer operation) {
+            if (operation == SUM)
+                getProxy(0).sum().to(sums::add);
+            else
+                getProxy(0).pull(0).to(pulled -> pulls.add(pulled.clone()));
+        }
+
+        @MergeOp
+        public void merge(Spoke[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(Long version) {
+        }
+
+    }
+
+    private final NodeId hubId = new NodeId(NodeType.HUB, 0);
+
+    private final NodeId spokeId = new NodeId(NodeType.SPOKE, 0);
+
+    private SimulatedNetwork network;
+
+    private Hub hub;
+
+    private GenericWrapper hubWrapper;
+
+    private Spoke spoke;
+
+    @BeforeEach
+    public void setUp() {
+        network = new SimulatedNetwork(0, 1, 1).setLinkModel(LinkModel.uniform(MILLISECOND, 1e9));
+        hub = new Hub();
+        hubWrapper = new GenericWrapper(hubId, hub, network);
+        spoke = new Spoke();
+        network.register(hubId, hubWrapper);
+        network.register(spokeId, new GenericWrapper(spokeId, spoke, network));
+    }
+
+    private void call(int operation) {
+        network.submitTuple(spokeId, new Object[]{operation}, network.getTime());
+        network.run();
+    }
+
+    /**
+     * Merges the hub with an instance holding ones.
+     */
+    private void mergeOnes() {
+        Hub other = new Hub();
+        Arrays.fill(other.model, 1.0);
+        long version = hubWrapper.getStateVersion();
+        hubWrapper.merge(new GenericWrapper[]{new GenericWrapper(hubId, other, new SimulatedNetwork(0, 1, 1))});
+        assertTrue(hubWrapper.getStateVersion() > version);
+    }
+
+    @Test
+    public void coalescedResponsesAreFreshAfterMerge() {
+        call(SUM);
+        call(SUM);
+        mergeOnes();
+        call(SUM);
+        assertEquals(Arrays.asList(0.0, 0.0, 64.0), spoke.sums);
+    }
+
+    @Test
+    public void pulledArraysAreFreshAfterMerge() {
+        call(PULL);
+        assertArrayEquals(hub.model, spoke.pulls.get(0));
+        mergeOnes();
+        call(PULL);
+        assertArrayEquals(hub.model, spoke.pulls.get(1));
+        mergeOnes();
+        call(PULL);
+        call(PULL);
+        assertArrayEquals(hub.model, spoke.pulls.get(2));
+        assertArrayEquals(hub.model, spoke.pulls.get(3));
+    }
+
+}
@@ -0,0 +1,90 @@
+package BipartiteTopologyAPI.caching;
+
+import BipartiteTopologyAPI.annotations.Cached;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.futures.Response;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ResponseCacheTest {
+
+    @RemoteProxy
+    public interface Pulling {
+        @RemoteOp
+        @Cached(maxVersionLag = 2, maxAgeMillis = 60_000)
+        Response<Double> pull(Integer index);
+
+        @RemoteOp
+        @Cached(maxAgeMillis = 1)
+        Response<Double> pullRecent(Integer index);
+    }
+
+    private static final NodeId HUB = new NodeId(NodeType.HUB, 0);
+
+    private ResponseCache cache;
+
+    private Cached lagged;
+
+    private Cached recent;
+
+    @BeforeEach
+    public void setUp() throws NoSuchMethodException {
+        cache = new ResponseCache();
+        lagged = Pulling.class.getMethod("pull", Integer.class).getAnnotation(Cached.class);
+        recent = Pulling.class.getMethod("pullRecent", Integer.class).getAnnotation(Cached.class);
+    }
+
+    private ResponseCache.Key store(Cached policy, String operation, double value, long version) {
+        ResponseCache.Key key = ResponseCache.keyOf(operation, HUB, new Object[]{7});
+        assertNull(cache.lookup(policy, key));
+        cache.put(key, value, version);
+        cache.observe(HUB.getNodeId(), version);
+        return key;
+    }
+
+    @Test
+    public void freshResponseIsAHit() {
+        ResponseCache.Key key = store(lagged, "pull", 1.5, 3);
+        assertEquals(1.5, cache.lookup(lagged, key));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void versionLagIsBounded() {
+        ResponseCache.Key key = store(lagged, "pull", 1.5, 3);
+        cache.observe(HUB.getNodeId(), 5);
+        assertEquals(1.5, cache.lookup(lagged, key));
+        cache.observe(HUB.getNodeId(), 6);
+        assertNull(cache.lookup(lagged, key));
+    }
+
+    @Test
+    public void versionsOfOtherNodesDoNotAge() {
+        ResponseCache.Key key = store(lagged, "pull", 1.5, 3);
+        cache.observe(HUB.getNodeId() + 1, 100);
+        assertEquals(1.5, cache.lookup(lagged, key));
+    }
+
+    @Test
+    public void ageIsBoundedWithoutNewVersions() throws InterruptedException {
+        ResponseCache.Key key = store(recent, "pullRecent", 1.5, 3);
+        Thread.sleep(10);
+        assertNull(cache.lookup(recent, key));
+    }
+
+    @Test
+    public void writesInvalidateTheResponses() {
+        ResponseCache.Key key = store(lagged, "pull", 1.5, 3);
+        cache.invalidate(HUB.getNodeId());
+        assertNull(cache.lookup(lagged, key));
+        assertEquals(3, cache.knownVersion(HUB.getNodeId()));
+    }
+
+}
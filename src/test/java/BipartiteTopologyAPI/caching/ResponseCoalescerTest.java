@@ -0,0 +1,202 @@
+package BipartiteTopologyAPI.caching;
+
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.NodeInstance;
+import BipartiteTopologyAPI.annotations.Coalesced;
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.futures.Response;
+import BipartiteTopologyAPI.network.EncodedPayload;
+import BipartiteTopologyAPI.simulation.LinkModel;
+import BipartiteTopologyAPI.simulation.SimulatedNetwork;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks that identical calls of a coalesced operation are answered by a single invocation per state version.
+ */
+public class ResponseCoalescerTest {
+
+    private static final long MILLISECOND = 1_000_000L;
+
+    private static final int SPOKES = 3;
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        @Coalesced(capacity = 2)
+        Response<Double> get(Integer index);
+
+        @RemoteOp
+        void add(Integer index, Double value);
+    }
+
+    @RemoteProxy
+    public interface SpokeOps {
+        @RemoteOp
+        void update(Long version);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId);
+    }
+
+    public static class Hub extends NodeInstance<SpokeOps, QuerierOps> implements HubOps {
+
+        final double[] model = new double[8];
+
+        int invocations = 0;
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Serializable tuple) {
+        }
+
+        @MergeOp
+        public void merge(Hub[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public Response<Double> get(Integer index) {
+            invocations++;
+            return Response.respond(model[index]);
+        }
+
+        @Override
+        public void add(Integer index, Double value) {
+            model[index] += value;
+        }
+
+    }
+
+    public static class Spoke extends NodeInstance<HubOps, QuerierOps> implements SpokeOps {
+
+        final List<Double> received = new ArrayList<>();
+
+        @InitOp
+        public void init() {
+        }
+
+        /**
+         * Reads the given index of the model of the hub, or adds one to the index -index - 1 if the index is negative.
+         */
+        @ProcessOp
+        public void process(Integer index) {
+            if (index < 0)
+                getProxy(0).add(-index - 1, 1.0);
+            else
+                getProxy(0).get(index).toSync(received::add);
+        }
+
+        @MergeOp
+        public void merge(Spoke[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(Long version) {
+        }
+
+    }
+
+    private static ResponseCache.Key key(int index) {
+        return ResponseCache.keyOf("get", new Object[]{index});
+    }
+
+    @Test
+    public void identicalCallsAreInvokedOncePerVersion() {
+        NodeId hubId = NodeId.of(NodeType.HUB, 0);
+        SimulatedNetwork network = new SimulatedNetwork(0, 1, SPOKES)
+                .setLinkModel(LinkModel.uniform(MILLISECOND, 1e9));
+        Hub hub = new Hub();
+        GenericWrapper hubWrapper = new GenericWrapper(hubId, hub, network);
+        network.register(hubId, hubWrapper);
+        Spoke[] spokes = new Spoke[SPOKES];
+        for (int i = 0; i < SPOKES; i++) {
+            NodeId spokeId = NodeId.of(NodeType.SPOKE, i);
+            spokes[i] = new Spoke();
+            network.register(spokeId, new GenericWrapper(spokeId, spokes[i], network));
+        }
+
+        for (int i = 0; i < SPOKES; i++)
+            network.submitTuple(NodeId.of(NodeType.SPOKE, i), new Object[]{3}, 0);
+        network.run();
+        assertEquals(1, hub.invocations);
+        assertEquals(SPOKES - 1, hubWrapper.getResponseCoalescer().getHits());
+
+        // A write changes the state version of the hub, so the next reads invoke the operation again.
+        network.submitTuple(NodeId.of(NodeType.SPOKE, 0), new Object[]{-4}, network.getTime());
+        network.run();
+        for (int i = 0; i < SPOKES; i++)
+            network.submitTuple(NodeId.of(NodeType.SPOKE, i), new Object[]{3}, network.getTime());
+        network.run();
+        assertEquals(2, hub.invocations);
+        for (Spoke spoke : spokes)
+            assertEquals(Arrays.asList(0.0, 1.0), spoke.received);
+    }
+
+    @Test
+    public void keptValuesAreEvictedInLeastRecentlyUsedOrder() throws NoSuchMethodException {
+        Coalesced policy = HubOps.class.getMethod("get", Integer.class).getAnnotation(Coalesced.class);
+        ResponseCoalescer coalescer = new ResponseCoalescer();
+        for (int index = 0; index < 2; index++) {
+            assertNull(coalescer.lookup(key(index), 5));
+            coalescer.put(policy, key(index), 5, (double) index);
+        }
+        assertEquals(0.0, coalescer.lookup(key(0), 5));
+        assertNull(coalescer.lookup(key(2), 5));
+        coalescer.put(policy, key(2), 5, 2.0);
+        assertNull(coalescer.lookup(key(1), 5));
+        assertEquals(0.0, coalescer.lookup(key(0), 5));
+
+        // Values returned at an older version are not kept.
+        coalescer.put(policy, key(1), 4, 1.0);
+        assertNull(coalescer.lookup(key(1), 5));
+    }
+
+    @Test
+    public void encodedValuesAreReleasedWithTheirVersion() throws NoSuchMethodException {
+        Coalesced policy = HubOps.class.getMethod("get", Integer.class).getAnnotation(Coalesced.class);
+        ResponseCoalescer coalescer = new ResponseCoalescer();
+        assertNull(coalescer.lookup(key(0), 1));
+        coalescer.put(policy, key(0), 1, 1.0);
+        EncodedPayload payload = EncodedPayload.encode(1.0);
+        coalescer.putEncoded(key(0), payload);
+        EncodedPayload shared = coalescer.encodedOf(key(0));
+        assertSame(payload, shared);
+        assertEquals(3, payload.getReferences());
+        shared.release();
+
+        coalescer.lookup(key(0), 2);
+        assertNull(coalescer.encodedOf(key(0)));
+        assertEquals(1, payload.getReferences());
+        payload.release();
+    }
+
+}
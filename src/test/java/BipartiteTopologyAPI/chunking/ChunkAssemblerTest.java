@@ -0,0 +1,92 @@
+package BipartiteTopologyAPI.chunking;
+
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ChunkAssemblerTest {
+
+    private static final NodeId SPOKE = new NodeId(NodeType.SPOKE, 0);
+
+    private static final NodeId OTHER_SPOKE = new NodeId(NodeType.SPOKE, 1);
+
+    private static byte[] payloadOf(int length) {
+        byte[] payload = new byte[length];
+        for (int i = 0; i < length; i++)
+            payload[i] = (byte) i;
+        return payload;
+    }
+
+    @Test
+    public void assemblesOutOfOrderChunks() {
+        byte[] payload = payloadOf(10);
+        List<PayloadChunk> chunks = PayloadChunk.split(7, null, false, ByteBuffer.wrap(payload), 3);
+        assertEquals(4, chunks.size());
+
+        ChunkAssembler assembler = new ChunkAssembler();
+        assertNull(assembler.assemble(SPOKE, chunks.get(2)));
+        assertNull(assembler.assemble(SPOKE, chunks.get(0)));
+        assertNull(assembler.assemble(SPOKE, chunks.get(3)));
+        assertEquals(1, assembler.getPending());
+        assertArrayEquals(payload, assembler.assemble(SPOKE, chunks.get(1)));
+        assertEquals(0, assembler.getPending());
+        assertEquals(1, assembler.getCompleted());
+    }
+
+    @Test
+    public void keepsTheTransfersOfEverySourceApart() {
+        byte[] first = payloadOf(10);
+        byte[] second = new byte[10];
+        Arrays.fill(second, (byte) -1);
+        List<PayloadChunk> firstChunks = PayloadChunk.split(0, null, false, ByteBuffer.wrap(first), 4);
+        List<PayloadChunk> secondChunks = PayloadChunk.split(0, null, false, ByteBuffer.wrap(second), 4);
+
+        ChunkAssembler assembler = new ChunkAssembler();
+        for (int i = 0; i < 2; i++) {
+            assertNull(assembler.assemble(SPOKE, firstChunks.get(i)));
+            assertNull(assembler.assemble(OTHER_SPOKE, secondChunks.get(i)));
+        }
+        assertEquals(2, assembler.getPending());
+        assertArrayEquals(second, assembler.assemble(OTHER_SPOKE, secondChunks.get(2)));
+        assertArrayEquals(first, assembler.assemble(SPOKE, firstChunks.get(2)));
+        assertEquals(0, assembler.getPending());
+    }
+
+    @Test
+    public void sequencesOutOfOrderStreamedChunks() {
+        List<PayloadChunk> chunks = PayloadChunk.split(7, null, true, ByteBuffer.wrap(payloadOf(10)), 3);
+        ChunkAssembler assembler = new ChunkAssembler();
+        List<Integer> order = new ArrayList<>();
+        List<Integer> released = new ArrayList<>();
+        for (int i : new int[]{2, 0, 3, 1}) {
+            List<PayloadChunk> ready = assembler.sequence(SPOKE, chunks.get(i));
+            released.add(ready.size());
+            for (PayloadChunk chunk : ready)
+                order.add(chunk.getSequence());
+        }
+        assertEquals(Arrays.asList(0, 1, 0, 3), released);
+        assertEquals(Arrays.asList(0, 1, 2, 3), order);
+        assertEquals(0, assembler.getPending());
+        assertEquals(1, assembler.getCompleted());
+    }
+
+    @Test
+    public void resetDropsTheTransfersOfASource() {
+        List<PayloadChunk> chunks = PayloadChunk.split(3, null, false, ByteBuffer.wrap(payloadOf(10)), 4);
+        ChunkAssembler assembler = new ChunkAssembler();
+        assembler.assemble(SPOKE, chunks.get(0));
+        assembler.assemble(OTHER_SPOKE, chunks.get(0));
+        assembler.reset(SPOKE.getNodeId());
+        assertEquals(1, assembler.getPending());
+    }
+
+}
@@ -0,0 +1,185 @@
+package BipartiteTopologyAPI.chunking;
+
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.NodeInstance;
+import BipartiteTopologyAPI.annotations.Chunked;
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.futures.Response;
+import BipartiteTopologyAPI.simulation.LinkModel;
+import BipartiteTopologyAPI.simulation.SimulatedNetwork;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the calls of the @Chunked operations of two spokes, whose chunks interleave at the hub, are reassembled.
+ */
+public class ChunkedTransferTest {
+
+    private static final long MILLISECOND = 1_000_000L;
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private static final int MODEL_SIZE = 10_000;
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        @Chunked(chunkSize = CHUNK_SIZE)
+        Response<Double> load(double[] model);
+
+        @RemoteOp
+        @Chunked(chunkSize = CHUNK_SIZE, streamed = true)
+        void stream(ByteBuffer bytes);
+    }
+
+    @RemoteProxy
+    public interface SpokeOps {
+        @RemoteOp
+        void update(Long version);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId);
+    }
+
+    public static class Hub extends NodeInstance<SpokeOps, QuerierOps> implements HubOps {
+
+        final List<Integer> loaded = new ArrayList<>();
+
+        final List<Integer> sequences = new ArrayList<>();
+
+        long streamed;
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Serializable tuple) {
+        }
+
+        @MergeOp
+        public void merge(Hub[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public Response<Double> load(double[] model) {
+            loaded.add(model.length);
+            double sum = 0;
+            for (double value : model)
+                sum += value;
+            return Response.respond(sum);
+        }
+
+        @Override
+        public void stream(ByteBuffer bytes) {
+            sequences.add(getCurrentChunk().getSequence());
+            while (bytes.hasRemaining())
+                streamed += bytes.get();
+        }
+
+    }
+
+    public static class Spoke extends NodeInstance<HubOps, QuerierOps> implements SpokeOps {
+
+        final double value;
+
+        final List<Double> sums = new ArrayList<>();
+
+        public Spoke(double value) {
+            this.value = value;
+        }
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Integer bytes) {
+            if (bytes > 0) {
+                ByteBuffer buffer = ByteBuffer.allocate(bytes);
+                while (buffer.hasRemaining())
+                    buffer.put((byte) 1);
+                buffer.flip();
+                getProxy(0).stream(buffer);
+            } else {
+                double[] model = new double[MODEL_SIZE];
+                Arrays.fill(model, value);
+                getProxy(0).load(model).to(sums::add);
+            }
+        }
+
+        @MergeOp
+        public void merge(Spoke[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(Long version) {
+        }
+
+    }
+
+    @Test
+    public void reassemblesInterleavedTransfers() {
+        NodeId hubId = new NodeId(NodeType.HUB, 0);
+        SimulatedNetwork network = new SimulatedNetwork(0, 1, 2).setLinkModel(LinkModel.uniform(MILLISECOND, 1e9));
+        Hub hub = new Hub();
+        GenericWrapper hubWrapper = new GenericWrapper(hubId, hub, network);
+        network.register(hubId, hubWrapper);
+        Spoke[] spokes = new Spoke[]{new Spoke(0.5), new Spoke(2.0)};
+        for (int i = 0; i < spokes.length; i++) {
+            NodeId spokeId = new NodeId(NodeType.SPOKE, i);
+            network.register(spokeId, new GenericWrapper(spokeId, spokes[i], network));
+            network.submitTuple(spokeId, new Object[]{0}, 0);
+        }
+        network.run();
+
+        assertEquals(Arrays.asList(MODEL_SIZE, MODEL_SIZE), hub.loaded);
+        assertEquals(Arrays.asList(0.5 * MODEL_SIZE), spokes[0].sums);
+        assertEquals(Arrays.asList(2.0 * MODEL_SIZE), spokes[1].sums);
+        assertEquals(0, hubWrapper.getChunkAssembler().getPending());
+        assertEquals(2, hubWrapper.getChunkAssembler().getCompleted());
+    }
+
+    @Test
+    public void streamsChunksInOrder() {
+        NodeId hubId = new NodeId(NodeType.HUB, 0);
+        NodeId spokeId = new NodeId(NodeType.SPOKE, 0);
+        SimulatedNetwork network = new SimulatedNetwork(0, 1, 1).setLinkModel(LinkModel.uniform(MILLISECOND, 1e9));
+        Hub hub = new Hub();
+        GenericWrapper hubWrapper = new GenericWrapper(hubId, hub, network);
+        network.register(hubId, hubWrapper);
+        network.register(spokeId, new GenericWrapper(spokeId, new Spoke(0), network));
+        network.submitTuple(spokeId, new Object[]{5 * CHUNK_SIZE + 1}, 0);
+        network.run();
+
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), hub.sequences);
+        assertEquals(5 * CHUNK_SIZE + 1, hub.streamed);
+        assertEquals(0, hubWrapper.getChunkAssembler().getPending());
+    }
+
+}
@@ -0,0 +1,170 @@
+package BipartiteTopologyAPI.combining;
+
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.NodeInstance;
+import BipartiteTopologyAPI.annotations.Combiner;
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.annotations.RoutingKey;
+import BipartiteTopologyAPI.interfaces.Network;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.NetworkDescriptor;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the one-way calls of a node to the same destination are folded by their combiner, and that the folded
+ * calls are sent at the end of the step or before any other call to the destination.
+ */
+public class CombinerTest {
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        @Combiner(SumCombiner.class)
+        void add(@RoutingKey Integer key, Double delta);
+
+        @RemoteOp
+        @Combiner(SumCombiner.class)
+        void addAll(double[] deltas);
+
+        @RemoteOp
+        void mark(Integer step);
+    }
+
+    @RemoteProxy
+    public interface SpokeOps {
+        @RemoteOp
+        void update(Long version);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId);
+    }
+
+    public static class Spoke extends NodeInstance<HubOps, QuerierOps> implements SpokeOps {
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Integer step) {
+            if (step == 0) {
+                getProxy(0).add(1, 1.0);
+                getProxy(0).add(2, 5.0);
+                getProxy(0).add(1, 2.0);
+                getProxy(0).addAll(new double[]{1.0, 2.0});
+                getProxy(0).addAll(new double[]{3.0, 4.0});
+                getProxy(1).add(1, 7.0);
+            } else {
+                getProxy(0).add(1, 1.0);
+                getProxy(1).add(1, 1.0);
+                getProxy(0).mark(step);
+                getProxy(0).add(1, 1.0);
+            }
+        }
+
+        @MergeOp
+        public void merge(Spoke[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(Long version) {
+        }
+
+    }
+
+    /**
+     * A network logging the destinations and the arguments of the calls sent to it.
+     */
+    private static class LoggingNetwork implements Network {
+
+        final List<String> calls = new ArrayList<>();
+
+        @Override
+        public void send(NodeId source, NodeId destination, RemoteCallIdentifier rpc, Serializable message) {
+            StringBuilder call = new StringBuilder(String.valueOf(destination.getNodeId()));
+            for (Object arg : (Object[]) message)
+                call.append(" ").append((arg instanceof double[]) ? Arrays.toString((double[]) arg) : arg);
+            calls.add(call.toString());
+        }
+
+        @Override
+        public void broadcast(NodeId source, Map<NodeId, RemoteCallIdentifier> rpcMap, Serializable message) {
+            throw new RuntimeException("Unexpected broadcast");
+        }
+
+        @Override
+        public NetworkDescriptor describe() {
+            return new NetworkDescriptor(0, 1, 2);
+        }
+
+    }
+
+    @Test
+    public void callsAreFoldedUntilTheEndOfTheStep() {
+        LoggingNetwork network = new LoggingNetwork();
+        GenericWrapper wrapper = new GenericWrapper(NodeId.of(NodeType.SPOKE, 0), new Spoke(), network);
+        wrapper.init();
+        wrapper.receiveTuple(new Object[]{0});
+
+        assertEquals(4, network.calls.size());
+        assertTrue(network.calls.containsAll(Arrays.asList("0 1 3.0", "0 2 5.0", "0 [4.0, 6.0]", "1 1 7.0")));
+        assertEquals(6, wrapper.getCombinedCalls().getCalls());
+        assertEquals(4, wrapper.getCombinedCalls().getFlushed());
+        assertTrue(wrapper.getCombinedCalls().isEmpty());
+    }
+
+    @Test
+    public void otherCallsFlushTheFoldedCallsToTheirDestination() {
+        LoggingNetwork network = new LoggingNetwork();
+        GenericWrapper wrapper = new GenericWrapper(NodeId.of(NodeType.SPOKE, 0), new Spoke(), network);
+        wrapper.init();
+        wrapper.receiveTuple(new Object[]{1});
+
+        // The folded call to the other hub is kept until the end of the step, when the pending calls are sent in the
+        // order of their first call.
+        assertEquals(Arrays.asList("0 1 1.0", "0 1", "1 1 1.0", "0 1 1.0"), network.calls);
+    }
+
+    @Test
+    public void onlyEqualKeysAreSummed() throws NoSuchMethodException {
+        SumCombiner combiner = new SumCombiner();
+        Method add = HubOps.class.getMethod("add", Integer.class, Double.class);
+        Object[] combined = combiner.init(add, new Object[]{1, 1.0});
+        assertEquals(Arrays.asList(1, 3.0), Arrays.asList(combiner.combine(add, combined, new Object[]{1, 2.0})));
+        assertNull(combiner.combine(add, combined, new Object[]{2, 2.0}));
+
+        // The arrays of the first call are not updated in place.
+        Method addAll = HubOps.class.getMethod("addAll", double[].class);
+        double[] first = {1.0};
+        Object[] sums = combiner.init(addAll, new Object[]{first});
+        combiner.combine(addAll, sums, new Object[]{new double[]{2.0}});
+        assertEquals(1.0, first[0]);
+        assertEquals(3.0, ((double[]) sums[0])[0]);
+    }
+
+}
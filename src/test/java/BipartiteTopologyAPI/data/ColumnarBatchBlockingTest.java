@@ -0,0 +1,171 @@
+package BipartiteTopologyAPI.data;
+
+import BipartiteTopologyAPI.BufferingWrapper;
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.NodeInstance;
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.futures.Response;
+import BipartiteTopologyAPI.simulation.LinkModel;
+import BipartiteTopologyAPI.simulation.SimulatedNetwork;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the records of a ColumnarBatch that follow a record blocking the node are processed, in order, once the
+ * node is unblocked.
+ */
+public class ColumnarBatchBlockingTest {
+
+    private static final long MILLISECOND = 1_000_000L;
+
+    /**
+     * The value of the record that makes a synchronous call.
+     */
+    private static final int BLOCKING = 1;
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        Response<Integer> pull(Integer value);
+    }
+
+    @RemoteProxy
+    public interface SpokeOps {
+        @RemoteOp
+        void update(Long version);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId);
+    }
+
+    public static class Hub extends NodeInstance<SpokeOps, QuerierOps> implements HubOps {
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Serializable tuple) {
+        }
+
+        @MergeOp
+        public void merge(Hub[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public Response<Integer> pull(Integer value) {
+            return Response.respond(value);
+        }
+
+    }
+
+    public static class Spoke extends NodeInstance<HubOps, QuerierOps> implements SpokeOps {
+
+        final List<Integer> processed = new ArrayList<>();
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(ColumnarBatch.Row row) {
+            int value = row.getInt(0, 0);
+            processed.add(value);
+            if (value == BLOCKING)
+                getProxy(0).pull(value).toSync(pulled -> {
+                });
+        }
+
+        @MergeOp
+        public void merge(Spoke[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(Long version) {
+        }
+
+    }
+
+    private static ColumnarBatch batchOf(int... values) {
+        ColumnarBatch batch = new ColumnarBatch(values.length);
+        int column = batch.addIntColumn(1);
+        for (int value : values)
+            batch.setInt(column, batch.appendRow(), 0, value);
+        return batch;
+    }
+
+    private static void register(SimulatedNetwork network, NodeId spokeId, GenericWrapper spoke) {
+        NodeId hubId = new NodeId(NodeType.HUB, 0);
+        network.register(hubId, new GenericWrapper(hubId, new Hub(), network));
+        network.register(spokeId, spoke);
+    }
+
+    @Test
+    public void bufferingWrapperDefersTheRemainingRecords() {
+        NodeId spokeId = new NodeId(NodeType.SPOKE, 0);
+        SimulatedNetwork network = new SimulatedNetwork(0, 1, 1).setLinkModel(LinkModel.uniform(MILLISECOND, 1e9));
+        Spoke spoke = new Spoke();
+        BufferingWrapper<Serializable> wrapper = new BufferingWrapper<>(spokeId, spoke, network);
+        register(network, spokeId, wrapper);
+        network.submitTuple(spokeId, batchOf(0, 1, 2, 3, 4), 0);
+        network.submitTuple(spokeId, batchOf(10, 11), 0);
+
+        network.runUntil(MILLISECOND / 2);
+        assertTrue(wrapper.isBlocked());
+        assertEquals(Arrays.asList(0, 1), spoke.processed);
+        // The three deferred records and the second batch.
+        assertEquals(4, wrapper.getDataBuffer().size());
+
+        network.run();
+        assertFalse(wrapper.isBlocked());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 10, 11), spoke.processed);
+        assertTrue(wrapper.getDataBuffer().isEmpty());
+        assertEquals(7, wrapper.getProcessedTuples());
+    }
+
+    @Test
+    public void genericWrapperDefersTheRemainingRecords() {
+        NodeId spokeId = new NodeId(NodeType.SPOKE, 0);
+        SimulatedNetwork network = new SimulatedNetwork(0, 1, 1).setLinkModel(LinkModel.uniform(MILLISECOND, 1e9));
+        Spoke spoke = new Spoke();
+        GenericWrapper wrapper = new GenericWrapper(spokeId, spoke, network);
+        register(network, spokeId, wrapper);
+        network.submitTuple(spokeId, batchOf(0, 1, 2, 3, 4), 0);
+
+        network.runUntil(MILLISECOND / 2);
+        assertTrue(wrapper.isBlocked());
+        assertEquals(Arrays.asList(0, 1), spoke.processed);
+
+        network.run();
+        assertFalse(wrapper.isBlocked());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), spoke.processed);
+        assertEquals(5, wrapper.getProcessedTuples());
+    }
+
+}
@@ -0,0 +1,142 @@
+package BipartiteTopologyAPI.encoding;
+
+import BipartiteTopologyAPI.annotations.Compressed;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the error bounds of the lossy compression codecs, and the error feedback of the top-k compression.
+ */
+public class CompressionTest {
+
+    @RemoteProxy
+    public interface Pushing {
+        @RemoteOp
+        @Compressed(CompressionCodec.FP16)
+        void pushHalves(double[] gradient);
+
+        @RemoteOp
+        @Compressed(CompressionCodec.INT8)
+        void pushBytes(float[] gradient);
+
+        @RemoteOp
+        @Compressed(value = CompressionCodec.TOP_K, ratio = 0.1)
+        void pushTopK(double[] gradient);
+    }
+
+    private final NodeId spoke = new NodeId(NodeType.SPOKE, 0);
+
+    private final NodeId hub = new NodeId(NodeType.HUB, 0);
+
+    private PayloadEncoder encoder;
+
+    private PayloadDecoder decoder;
+
+    @BeforeEach
+    public void setUp() {
+        encoder = new PayloadEncoder();
+        decoder = new PayloadDecoder();
+    }
+
+    private Object send(String operation, Class<?> type, Object array) throws NoSuchMethodException {
+        Object[] encoded = encoder.encode(Pushing.class.getMethod(operation, type), operation, hub, false,
+                new Object[]{array});
+        assertTrue(encoded[0] instanceof CompressedArray);
+        return decoder.decode(spoke, operation, encoded)[0];
+    }
+
+    private static double[] gaussian(int length, long seed) {
+        Random random = new Random(seed);
+        double[] array = new double[length];
+        for (int i = 0; i < length; i++)
+            array[i] = random.nextGaussian() * 10;
+        return array;
+    }
+
+    @Test
+    public void halvesKeepElevenSignificantBits() throws NoSuchMethodException {
+        double[] gradient = gaussian(1000, 1);
+        double[] decoded = (double[]) send("pushHalves", double[].class, gradient);
+        for (int i = 0; i < gradient.length; i++)
+            assertEquals(gradient[i], decoded[i], Math.abs(gradient[i]) * Math.pow(2, -11) + 1e-7);
+    }
+
+    @Test
+    public void halvesKeepSpecialValues() {
+        float[] values = {0f, -0f, 1f, 65504f, 6.1035156e-5f, 5.9604645e-8f, Float.POSITIVE_INFINITY,
+                Float.NEGATIVE_INFINITY};
+        for (float value : values)
+            assertEquals(value, QuantizedArray.toFloat(QuantizedArray.toHalf(value)));
+        assertEquals(Float.POSITIVE_INFINITY, QuantizedArray.toFloat(QuantizedArray.toHalf(1e6f)));
+        assertEquals(0f, QuantizedArray.toFloat(QuantizedArray.toHalf(1e-9f)));
+        assertTrue(Float.isNaN(QuantizedArray.toFloat(QuantizedArray.toHalf(Float.NaN))));
+    }
+
+    @Test
+    public void bytesAreWithinHalfAScaleStep() throws NoSuchMethodException {
+        double[] values = gaussian(1000, 2);
+        float[] gradient = new float[values.length];
+        double max = 0;
+        for (int i = 0; i < values.length; i++) {
+            gradient[i] = (float) values[i];
+            max = Math.max(max, Math.abs(gradient[i]));
+        }
+        float[] decoded = (float[]) send("pushBytes", float[].class, gradient);
+        for (int i = 0; i < gradient.length; i++)
+            assertEquals(gradient[i], decoded[i], max / 127 / 2 + 1e-5);
+        assertArrayEquals(new float[3], (float[]) send("pushBytes", float[].class, new float[3]));
+    }
+
+    @Test
+    public void topKKeepsTheLargestElements() throws NoSuchMethodException {
+        double[] gradient = gaussian(100, 3);
+        double[] decoded = (double[]) send("pushTopK", double[].class, gradient);
+        double smallestKept = Double.POSITIVE_INFINITY;
+        double largestDropped = 0;
+        int kept = 0;
+        for (int i = 0; i < gradient.length; i++) {
+            if (decoded[i] != 0) {
+                assertEquals(gradient[i], decoded[i]);
+                smallestKept = Math.min(smallestKept, Math.abs(gradient[i]));
+                kept++;
+            } else {
+                largestDropped = Math.max(largestDropped, Math.abs(gradient[i]));
+            }
+        }
+        assertEquals(10, kept);
+        assertTrue(largestDropped <= smallestKept);
+    }
+
+    @Test
+    public void topKFeedsTheDroppedElementsBack() throws NoSuchMethodException {
+        double[] gradient = new double[10];
+        Arrays.fill(gradient, 1.0);
+        double[] received = new double[gradient.length];
+        for (int call = 1; call <= 100; call++) {
+            double[] decoded = (double[]) send("pushTopK", double[].class, gradient);
+            for (int i = 0; i < gradient.length; i++)
+                received[i] += decoded[i];
+        }
+        // Every element is sent in turn with the sum of the values it accumulated, so none of them lags behind the
+        // sent ones by more than the number of calls needed to send them all.
+        for (double sum : received)
+            assertTrue(sum > 100 - gradient.length && sum <= 100, "Received " + sum);
+
+        // The error feedback of a destination is dropped along with its baselines.
+        encoder.reset(hub);
+        assertArrayEquals(new double[]{1, 0, 0, 0, 0, 0, 0, 0, 0, 0},
+                (double[]) send("pushTopK", double[].class, gradient));
+    }
+
+}
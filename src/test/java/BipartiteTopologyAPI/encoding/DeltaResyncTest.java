@@ -0,0 +1,140 @@
+package BipartiteTopologyAPI.encoding;
+
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.NodeInstance;
+import BipartiteTopologyAPI.annotations.DeltaEncoded;
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.simulation.LinkModel;
+import BipartiteTopologyAPI.simulation.SimulatedNetwork;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks that a hub that lost the baselines of the deltas of a spoke gets it to send the full array again.
+ */
+public class DeltaResyncTest {
+
+    private static final long MILLISECOND = 1_000_000L;
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        @DeltaEncoded
+        void push(double[] model);
+    }
+
+    @RemoteProxy
+    public interface SpokeOps {
+        @RemoteOp
+        void update(Long version);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId);
+    }
+
+    public static class Hub extends NodeInstance<SpokeOps, QuerierOps> implements HubOps {
+
+        double[] model;
+
+        int pushes;
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Serializable tuple) {
+        }
+
+        @MergeOp
+        public void merge(Hub[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void push(double[] model) {
+            this.model = model;
+            pushes++;
+        }
+
+    }
+
+    public static class Spoke extends NodeInstance<HubOps, QuerierOps> implements SpokeOps {
+
+        final double[] model = new double[1000];
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Integer index) {
+            model[index] += 1;
+            getProxy(0).push(model);
+        }
+
+        @MergeOp
+        public void merge(Spoke[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(Long version) {
+        }
+
+    }
+
+    @Test
+    public void resynchronizesAfterLostBaseline() {
+        NodeId hubId = new NodeId(NodeType.HUB, 0);
+        NodeId spokeId = new NodeId(NodeType.SPOKE, 0);
+        SimulatedNetwork network = new SimulatedNetwork(0, 1, 1)
+                .setLinkModel(LinkModel.uniform(MILLISECOND, 1e9));
+        Hub hub = new Hub();
+        Spoke spoke = new Spoke();
+        GenericWrapper hubWrapper = new GenericWrapper(hubId, hub, network);
+        network.register(hubId, hubWrapper);
+        network.register(spokeId, new GenericWrapper(spokeId, spoke, network));
+
+        for (int i = 0; i < 20; i++)
+            network.submitTuple(spokeId, new Object[]{i * 37 % 1000}, i * 10 * MILLISECOND);
+        network.runUntil(105 * MILLISECOND);
+        assertEquals(11, hub.pushes);
+        assertArrayEquals(spoke.model, hub.model);
+        assertEquals(0, hubWrapper.getNumberOfDroppedCalls());
+
+        // The hub forgets the arrays it received, so the next delta is dropped and a full array is asked for.
+        hubWrapper.getPayloadDecoder().clear();
+        network.runUntil(115 * MILLISECOND);
+        assertEquals(11, hub.pushes);
+        assertEquals(1, hubWrapper.getNumberOfDroppedCalls());
+        assertFalse(Arrays.equals(spoke.model, hub.model));
+
+        network.run();
+        assertEquals(19, hub.pushes);
+        assertArrayEquals(spoke.model, hub.model);
+    }
+
+}
@@ -0,0 +1,198 @@
+package BipartiteTopologyAPI.encoding;
+
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.NodeInstance;
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.network.MessageCodec;
+import BipartiteTopologyAPI.simulation.LinkModel;
+import BipartiteTopologyAPI.simulation.SimulatedNetwork;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that lazy arguments are decoded on first access only, and that forwarded calls relay them byte for byte.
+ */
+public class LazyValueTest {
+
+    private static final long MILLISECOND = 1_000_000L;
+
+    /**
+     * A value counting how many times it has been encoded.
+     */
+    public static class CountedArray implements Serializable {
+
+        static int encodings = 0;
+
+        final double[] values;
+
+        CountedArray(double... values) {
+            this.values = values;
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            encodings += 1;
+            out.defaultWriteObject();
+        }
+
+    }
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        void submit(Integer key, LazyValue<CountedArray> value);
+    }
+
+    @RemoteProxy
+    public interface SpokeOps {
+        @RemoteOp
+        void update(Long version);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId);
+    }
+
+    public static class Hub extends NodeInstance<SpokeOps, QuerierOps> implements HubOps {
+
+        final List<LazyValue<CountedArray>> used = new ArrayList<>();
+
+        final List<LazyValue<CountedArray>> forwarded = new ArrayList<>();
+
+        @InitOp
+        public void init() {
+        }
+
+        /**
+         * Tries to forward a tuple, which is not a remote call.
+         */
+        @ProcessOp
+        public void process(Serializable tuple) {
+            forward(NodeId.of(NodeType.HUB, 1));
+        }
+
+        @MergeOp
+        public void merge(Hub[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        /**
+         * Uses the values of the even keys, and forwards the others from the first hub to the second one.
+         */
+        @Override
+        public void submit(Integer key, LazyValue<CountedArray> value) {
+            if (key % 2 == 1 && getNodeId() == 0) {
+                forwarded.add(value);
+                forward(NodeId.of(NodeType.HUB, 1));
+            } else {
+                value.get();
+                used.add(value);
+            }
+        }
+
+    }
+
+    public static class Spoke extends NodeInstance<HubOps, QuerierOps> implements SpokeOps {
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Integer key) {
+            getProxy(0).submit(key, LazyValue.of(new CountedArray(key, key)));
+        }
+
+        @MergeOp
+        public void merge(Spoke[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(Long version) {
+        }
+
+    }
+
+    @SuppressWarnings("unchecked")
+    private static LazyValue<CountedArray> roundTrip(LazyValue<CountedArray> value) {
+        return (LazyValue<CountedArray>) MessageCodec.decodePayload(MessageCodec.encodePayload(value));
+    }
+
+    @Test
+    public void valuesAreDecodedOnFirstAccess() {
+        CountedArray.encodings = 0;
+        LazyValue<CountedArray> value = LazyValue.of(new CountedArray(1.0, 2.0));
+        assertTrue(value.isDecoded());
+
+        LazyValue<CountedArray> received = roundTrip(value);
+        assertFalse(received.isDecoded());
+        assertEquals(value.getEncodedLength(), received.getEncodedLength());
+        assertArrayEquals(new double[]{1.0, 2.0}, received.get().values);
+        assertTrue(received.isDecoded());
+
+        // The kept bytes are sent again, even after the value has been decoded.
+        assertArrayEquals(new double[]{1.0, 2.0}, roundTrip(received).get().values);
+        assertEquals(1, CountedArray.encodings);
+    }
+
+    @Test
+    public void forwardedCallsAreRelayedByteForByte() {
+        SimulatedNetwork network = new SimulatedNetwork(0, 2, 1)
+                .setLinkModel(LinkModel.uniform(MILLISECOND, 1e9));
+        Hub[] hubs = {new Hub(), new Hub()};
+        GenericWrapper[] hubWrappers = new GenericWrapper[hubs.length];
+        for (int i = 0; i < hubs.length; i++) {
+            NodeId hubId = NodeId.of(NodeType.HUB, i);
+            hubWrappers[i] = new GenericWrapper(hubId, hubs[i], network);
+            network.register(hubId, hubWrappers[i]);
+        }
+        NodeId spokeId = NodeId.of(NodeType.SPOKE, 0);
+        network.register(spokeId, new GenericWrapper(spokeId, new Spoke(), network));
+
+        CountedArray.encodings = 0;
+        for (int key = 0; key < 4; key++)
+            network.submitTuple(spokeId, new Object[]{key}, 0);
+        network.run();
+
+        assertEquals(4, CountedArray.encodings);
+        assertEquals(2, hubs[0].used.size());
+        assertEquals(2, hubs[0].forwarded.size());
+        for (LazyValue<CountedArray> value : hubs[0].forwarded)
+            assertFalse(value.isDecoded());
+        assertEquals(2, hubs[1].used.size());
+        for (LazyValue<CountedArray> value : hubs[1].used)
+            assertEquals(value.get().values[0], value.get().values[1]);
+        assertEquals(1.0, hubs[1].used.get(0).get().values[0]);
+        assertEquals(3.0, hubs[1].used.get(1).get().values[0]);
+
+        // Only the calls being served can be forwarded.
+        assertThrows(RuntimeException.class, () -> hubWrappers[0].receiveTuple(new Object[]{"tuple"}));
+    }
+
+}
@@ -0,0 +1,105 @@
+package BipartiteTopologyAPI.encoding;
+
+import BipartiteTopologyAPI.annotations.DeltaEncoded;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PayloadEncodingTest {
+
+    @RemoteProxy
+    public interface Pushing {
+        @RemoteOp
+        @DeltaEncoded
+        void push(double[] model);
+    }
+
+    private static final String OPERATION = "push";
+
+    private final NodeId spoke = new NodeId(NodeType.SPOKE, 0);
+
+    private final NodeId hub = new NodeId(NodeType.HUB, 0);
+
+    private Method method;
+
+    private PayloadEncoder encoder;
+
+    private PayloadDecoder decoder;
+
+    @BeforeEach
+    public void setUp() throws NoSuchMethodException {
+        method = Pushing.class.getMethod("push", double[].class);
+        encoder = new PayloadEncoder();
+        decoder = new PayloadDecoder();
+    }
+
+    private Object[] encode(double[] model) {
+        return encoder.encode(method, OPERATION, hub, false, new Object[]{model});
+    }
+
+    private double[] decode(Object[] encoded) {
+        return (double[]) decoder.decode(spoke, OPERATION, encoded)[0];
+    }
+
+    @Test
+    public void roundTrip() {
+        double[] model = new double[1000];
+        for (int i = 0; i < 50; i++) {
+            model[i * 17 % model.length] += i;
+            Object[] encoded = encode(model);
+            assertTrue(encoded[0] instanceof SparseDelta);
+            assertArrayEquals(model, decode(encoded));
+        }
+    }
+
+    @Test
+    public void sparseUpdatesAreSentAsDeltas() {
+        double[] model = new double[1000];
+        decode(encode(model));
+        model[3] = 1.0;
+        SparseDelta delta = (SparseDelta) encode(model)[0];
+        assertFalse(delta.isFull());
+        assertArrayEquals(model, decode(new Object[]{delta}));
+    }
+
+    @Test
+    public void baseMismatch() {
+        double[] model = new double[1000];
+        decode(encode(model));
+
+        // The second call is lost, so the third one is based on a version the decoder does not hold.
+        model[1] = 1.0;
+        encode(model);
+        model[2] = 2.0;
+        DeltaBaseMismatchException first =
+                assertThrows(DeltaBaseMismatchException.class, () -> decode(encode(model)));
+        assertTrue(first.isResyncRequired());
+        assertTrue(spoke.equals(first.getSource()));
+
+        // The deltas sent before the resynchronization arrives fail without asking for another one.
+        model[3] = 3.0;
+        DeltaBaseMismatchException second =
+                assertThrows(DeltaBaseMismatchException.class, () -> decode(encode(model)));
+        assertFalse(second.isResyncRequired());
+
+        // Once resynchronized, the encoder sends the full array, and the deltas are decoded again.
+        encoder.reset(hub);
+        model[4] = 4.0;
+        SparseDelta full = (SparseDelta) encode(model)[0];
+        assertTrue(full.isFull());
+        assertArrayEquals(model, decode(new Object[]{full}));
+        model[5] = 5.0;
+        assertArrayEquals(model, decode(encode(model)));
+    }
+
+}
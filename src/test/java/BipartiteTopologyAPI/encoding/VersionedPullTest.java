@@ -0,0 +1,176 @@
+package BipartiteTopologyAPI.encoding;
+
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.NodeInstance;
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.annotations.VersionedPull;
+import BipartiteTopologyAPI.caching.ResponseCache;
+import BipartiteTopologyAPI.futures.Response;
+import BipartiteTopologyAPI.simulation.LinkModel;
+import BipartiteTopologyAPI.simulation.SimulatedNetwork;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the pulls of a @VersionedPull operation ship the changes of the pulled array, and fall back to full pulls
+ * when the caller does not hold the base of a delta.
+ */
+public class VersionedPullTest {
+
+    private static final long MILLISECOND = 1_000_000L;
+
+    private static final int LENGTH = 1000;
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        void bump(Integer index);
+
+        @RemoteOp
+        @VersionedPull
+        Response<double[]> pull(Integer slice);
+    }
+
+    @RemoteProxy
+    public interface SpokeOps {
+        @RemoteOp
+        void update(Long version);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId);
+    }
+
+    public static class Hub extends NodeInstance<SpokeOps, QuerierOps> implements HubOps {
+
+        final double[] model = new double[LENGTH];
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Serializable tuple) {
+        }
+
+        @MergeOp
+        public void merge(Hub[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void bump(Integer index) {
+            model[index] += 1.0;
+        }
+
+        @Override
+        public Response<double[]> pull(Integer slice) {
+            return Response.respond(model);
+        }
+
+    }
+
+    public static class Spoke extends NodeInstance<HubOps, QuerierOps> implements SpokeOps {
+
+        final List<double[]> pulls = new ArrayList<>();
+
+        @InitOp
+        public void init() {
+        }
+
+        /**
+         * Changes an element of the array of the hub, unless the index is negative, and pulls the array.
+         */
+        @ProcessOp
+        public void process(Integer index) {
+            if (index >= 0)
+                getProxy(0).bump(index);
+            getProxy(0).pull(0).to(pulled -> pulls.add(pulled.clone()));
+        }
+
+        @MergeOp
+        public void merge(Spoke[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(Long version) {
+        }
+
+    }
+
+    @Test
+    public void pullsShipTheChangesOfTheArray() {
+        NodeId hubId = new NodeId(NodeType.HUB, 0);
+        NodeId spokeId = new NodeId(NodeType.SPOKE, 0);
+        SimulatedNetwork network = new SimulatedNetwork(0, 1, 1).setLinkModel(LinkModel.uniform(MILLISECOND, 1e9));
+        Hub hub = new Hub();
+        Spoke spoke = new Spoke();
+        network.register(hubId, new GenericWrapper(hubId, hub, network));
+        network.register(spokeId, new GenericWrapper(spokeId, spoke, network));
+
+        network.submitTuple(spokeId, new Object[]{-1}, 0);
+        network.run();
+        long fullPullBytes = network.getStats(hubId).getBytesSent();
+        for (int i = 0; i < 5; i++) {
+            network.submitTuple(spokeId, new Object[]{i * 7}, network.getTime());
+            network.run();
+        }
+        long deltaBytes = network.getStats(hubId).getBytesSent() - fullPullBytes;
+
+        assertEquals(6, spoke.pulls.size());
+        assertArrayEquals(hub.model, spoke.pulls.get(5));
+        assertEquals(1.0, spoke.pulls.get(3)[14]);
+        assertEquals(0.0, spoke.pulls.get(3)[21]);
+        assertTrue(deltaBytes < fullPullBytes, deltaBytes + " bytes of deltas, " + fullPullBytes + " of a full pull");
+    }
+
+    @Test
+    public void aDeltaAgainstAnUnheldBaseIsPulledAgainInFull() {
+        PulledValues pulledValues = new PulledValues();
+        ResponseCache.Key key = ResponseCache.keyOf("pull", new Object[]{0});
+        VersionedPullFutureResponse<Serializable> future = new VersionedPullFutureResponse<>(pulledValues, key, null);
+        List<double[]> accepted = new ArrayList<>();
+        int[] fullPulls = new int[1];
+        future.to(value -> accepted.add((double[]) value));
+        future.onBaseMismatch(() -> fullPulls[0]++);
+
+        double[] base = new double[LENGTH];
+        double[] current = base.clone();
+        current[3] = 1.0;
+        future.accept(SparseDelta.diff(base, current, 4, 0.5, false));
+        assertEquals(1, fullPulls[0]);
+        assertTrue(future.isAwaitingFullPull());
+        assertTrue(accepted.isEmpty());
+
+        future.accept(SparseDelta.diff(null, current, -1, 5, 0.5, false));
+        assertFalse(future.isAwaitingFullPull());
+        assertEquals(1, fullPulls[0]);
+        assertEquals(1, accepted.size());
+        assertArrayEquals(current, accepted.get(0));
+    }
+
+}
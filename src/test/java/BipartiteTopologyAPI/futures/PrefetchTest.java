@@ -0,0 +1,218 @@
+package BipartiteTopologyAPI.futures;
+
+import BipartiteTopologyAPI.BufferingWrapper;
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.NodeInstance;
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.simulation.LinkModel;
+import BipartiteTopologyAPI.simulation.SimulatedNetwork;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a prefetch keeps a single pull in flight, and holds the data stream only while the node waits for a value.
+ */
+public class PrefetchTest {
+
+    private static final long MILLISECOND = 1_000_000L;
+
+    private static final int TUPLES = 5;
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        Response<Long> pull();
+    }
+
+    @RemoteProxy
+    public interface SpokeOps {
+        @RemoteOp
+        void update(Long version);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId);
+    }
+
+    public static class Hub extends NodeInstance<SpokeOps, QuerierOps> implements HubOps {
+
+        long pulls = 0;
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Serializable tuple) {
+        }
+
+        @MergeOp
+        public void merge(Hub[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public Response<Long> pull() {
+            return Response.respond(++pulls);
+        }
+
+    }
+
+    public static class Spoke extends NodeInstance<HubOps, QuerierOps> implements SpokeOps {
+
+        final List<Long> used = new ArrayList<>();
+
+        Prefetch<Long> model;
+
+        @InitOp
+        public void init() {
+            model = prefetch(() -> getProxy(0).pull());
+        }
+
+        @ProcessOp
+        public void process(Integer tuple) {
+            used.add(model.get());
+            model.advance();
+        }
+
+        @MergeOp
+        public void merge(Spoke[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(Long version) {
+        }
+
+    }
+
+    /**
+     * Pulls answered by hand, counting the holds of the data stream.
+     */
+    private static class ManualPulls {
+
+        final ArrayDeque<FutureResponse<Long>> pending = new ArrayDeque<>();
+
+        int holds = 0;
+
+        Prefetch<Long> prefetch() {
+            return new Prefetch<>(() -> {
+                FutureResponse<Long> future = new FutureResponse<>();
+                pending.add(future);
+                return future;
+            }, () -> holds++, () -> holds--);
+        }
+
+        void answer(long value) {
+            pending.poll().accept(value);
+        }
+
+    }
+
+    @Test
+    public void buffersAreSwappedWhenTheNextValueHasArrived() {
+        ManualPulls pulls = new ManualPulls();
+        Prefetch<Long> prefetch = pulls.prefetch();
+        assertNull(prefetch.get());
+        assertEquals(1, pulls.holds);
+        assertEquals(1, pulls.pending.size());
+
+        // The first value releases the stream and the next one is pulled at once.
+        pulls.answer(1);
+        assertEquals(1L, prefetch.get());
+        assertEquals(0, pulls.holds);
+        assertEquals(1, pulls.pending.size());
+
+        pulls.answer(2);
+        assertTrue(prefetch.isReady());
+        assertEquals(1L, prefetch.get());
+        prefetch.advance();
+        assertEquals(2L, prefetch.get());
+        assertEquals(0, pulls.holds);
+        assertEquals(1, pulls.pending.size());
+
+        // Processing outruns the prefetch, so the stream is held until the value arrives.
+        prefetch.advance();
+        prefetch.advance();
+        assertEquals(1, pulls.holds);
+        assertEquals(1, pulls.pending.size());
+        assertEquals(1, prefetch.getStalls());
+        pulls.answer(3);
+        assertEquals(3L, prefetch.get());
+        assertEquals(0, pulls.holds);
+        assertEquals(3, prefetch.getSwaps());
+    }
+
+    @Test
+    public void cancelledPullsReleaseTheStream() {
+        ManualPulls pulls = new ManualPulls();
+        Prefetch<Long> prefetch = pulls.prefetch();
+        pulls.answer(1);
+        prefetch.advance();
+        assertEquals(1, pulls.holds);
+
+        pulls.pending.poll().cancel();
+        assertEquals(0, pulls.holds);
+        assertEquals(1L, prefetch.get());
+        assertTrue(pulls.pending.isEmpty());
+
+        // The next pull is issued when the node advances again.
+        prefetch.advance();
+        assertEquals(1, pulls.holds);
+        assertEquals(1, pulls.pending.size());
+    }
+
+    @Test
+    public void tuplesAreBufferedOnlyWhileTheNodeWaits() {
+        NodeId hubId = NodeId.of(NodeType.HUB, 0);
+        NodeId spokeId = NodeId.of(NodeType.SPOKE, 0);
+        SimulatedNetwork network = new SimulatedNetwork(0, 1, 1)
+                .setLinkModel(LinkModel.uniform(MILLISECOND, 1e9));
+        Hub hub = new Hub();
+        Spoke spoke = new Spoke();
+        network.register(hubId, new GenericWrapper(hubId, hub, network));
+        BufferingWrapper<Serializable> wrapper = new BufferingWrapper<>(spokeId, spoke, network);
+        network.register(spokeId, wrapper);
+        for (int i = 0; i < TUPLES; i++)
+            network.submitTuple(spokeId, new Object[]{i}, 0);
+
+        // The first value has not arrived, so the tuples are buffered.
+        network.runUntil(MILLISECOND / 2);
+        assertTrue(wrapper.isBlocked());
+        assertTrue(spoke.used.isEmpty());
+
+        network.run();
+        assertFalse(wrapper.isBlocked());
+        assertEquals(TUPLES, spoke.used.size());
+        for (int i = 1; i < TUPLES; i++)
+            assertTrue(spoke.used.get(i) > spoke.used.get(i - 1));
+        // Every swap issues the following pull, so the value after the last tuple has been prefetched as well.
+        assertEquals(TUPLES + 2, hub.pulls);
+        assertEquals(TUPLES + 1, spoke.model.getSwaps());
+    }
+
+}
@@ -0,0 +1,106 @@
+package BipartiteTopologyAPI.network;
+
+import BipartiteTopologyAPI.interfaces.Network;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.BroadcastTargets;
+import BipartiteTopologyAPI.sites.NetworkDescriptor;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks that a broadcast is encoded once for all its targets, and that its encoded payload is shared by reference.
+ */
+public class BroadcastEncodingTest {
+
+    /**
+     * A message counting how many times it has been encoded.
+     */
+    public static class CountedMessage implements Serializable {
+
+        static int encodings = 0;
+
+        final double[] values = new double[16];
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            encodings += 1;
+            out.defaultWriteObject();
+        }
+
+    }
+
+    /**
+     * A transport keeping the encoded broadcasts, relying on the default implementation of the other broadcasts.
+     */
+    private static class EncodedOnlyNetwork implements Network {
+
+        final List<NodeId> targets = new ArrayList<>();
+
+        EncodedPayload payload;
+
+        @Override
+        public void send(NodeId source, NodeId destination, RemoteCallIdentifier rpc, Serializable message) {
+            throw new RuntimeException("Unexpected send");
+        }
+
+        @Override
+        public void broadcast(NodeId source, Map<NodeId, RemoteCallIdentifier> rpcMap, Serializable message) {
+            throw new RuntimeException("Unexpected broadcast of a map of targets");
+        }
+
+        @Override
+        public NetworkDescriptor describe() {
+            return null;
+        }
+
+        @Override
+        public void broadcastEncoded(NodeId source,
+                                     Iterable<NodeId> targets,
+                                     RemoteCallIdentifier rpc,
+                                     EncodedPayload payload) {
+            for (NodeId target : targets)
+                this.targets.add(target);
+            this.payload = payload;
+        }
+
+    }
+
+    @Test
+    public void broadcastsAreEncodedOnce() {
+        EncodedOnlyNetwork network = new EncodedOnlyNetwork();
+        CountedMessage.encodings = 0;
+        network.broadcast(NodeId.of(NodeType.HUB, 0),
+                BroadcastTargets.allOf(NodeType.SPOKE, 5),
+                new RemoteCallIdentifier(),
+                new CountedMessage());
+        assertEquals(1, CountedMessage.encodings);
+        assertEquals(5, network.targets.size());
+        assertSame(NodeId.of(NodeType.SPOKE, 4), network.targets.get(4));
+        assertEquals(16, ((CountedMessage) network.payload.decode()).values.length);
+    }
+
+    @Test
+    public void decodedPayloadsAreSharedUntilReleased() {
+        EncodedPayload payload = EncodedPayload.encode(new CountedMessage());
+        payload.retain();
+        assertEquals(2, payload.getReferences());
+        assertSame(payload.decode(), payload.decode());
+        payload.release();
+        payload.release();
+        assertEquals(0, payload.getReferences());
+        assertThrows(RuntimeException.class, payload::decode);
+        assertThrows(RuntimeException.class, payload::retain);
+    }
+
+}
@@ -0,0 +1,115 @@
+package BipartiteTopologyAPI.network;
+
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.encoding.PayloadDecoder;
+import BipartiteTopologyAPI.encoding.PayloadEncoder;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the ByteBuffer arguments of remote operations are sent inline or as out of band attachments, without
+ * copying them when delivered in-process.
+ */
+public class ByteBufferValueTest {
+
+    @RemoteProxy
+    public interface Storing {
+        @RemoteOp
+        void store(Integer id, ByteBuffer contents);
+    }
+
+    private static ByteBuffer contents(int length, boolean direct) {
+        ByteBuffer buffer = (direct) ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+        for (int i = 0; i < length; i++)
+            buffer.put((byte) i);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void assertContents(int from, int length, ByteBuffer buffer) {
+        assertEquals(length, buffer.remaining());
+        for (int i = 0; i < length; i++)
+            assertEquals((byte) (from + i), buffer.get(buffer.position() + i));
+    }
+
+    @Test
+    public void contentsAreWrittenInline() {
+        for (boolean direct : new boolean[]{false, true}) {
+            ByteBuffer buffer = contents(20_000, direct);
+            buffer.position(100);
+            ByteBufferValue value = ByteBufferValue.of(buffer);
+            assertEquals(100, buffer.position());
+
+            ByteBufferValue decoded =
+                    (ByteBufferValue) MessageCodec.decodePayload(MessageCodec.encodePayload(value));
+            assertEquals(19_900, decoded.length());
+            assertContents(100, 19_900, decoded.getBuffer());
+        }
+    }
+
+    @Test
+    public void inProcessTargetsGetViewsOfTheBuffer() {
+        ByteBuffer buffer = contents(1000, true);
+        List<ByteBuffer> attachments = new ArrayList<>();
+        byte[] payload = MessageCodec.encodePayload(new Object[]{ByteBufferValue.of(buffer)}, attachments);
+        assertEquals(1, attachments.size());
+        assertTrue(payload.length < 1000);
+
+        ByteBuffer view = ((ByteBufferValue) ((Object[]) MessageCodec.decodePayload(payload, attachments))[0])
+                .getBuffer();
+        assertTrue(view.isDirect());
+        buffer.put(0, (byte) 42);
+        assertEquals(42, view.get(0));
+    }
+
+    @Test
+    public void pooledEncodingsAttachTheBuffersAfterTheMessage() {
+        // The buffer has the size of the pooled buffers, but it is not taken from the pool.
+        ByteBuffer buffer = contents(4096, true);
+        BufferPool pool = new BufferPool(4096, 16);
+        List<ByteBuffer> segments = MessageCodec.encodePayload(new Object[]{ByteBufferValue.of(buffer)}, pool);
+        ByteBuffer attachment = segments.get(segments.size() - 1);
+        assertTrue(attachment.isReadOnly());
+        assertEquals(4096, attachment.remaining());
+
+        // The receiver gets the frame as a single array, and the buffer as a slice of it.
+        int length = 0;
+        for (ByteBuffer segment : segments)
+            length += segment.remaining();
+        ByteBuffer frame = ByteBuffer.allocate(length);
+        for (ByteBuffer segment : segments)
+            frame.put(segment.duplicate());
+        Object[] decoded = (Object[]) MessageCodec.decodePayload(frame.array());
+        assertContents(0, 4096, ((ByteBufferValue) decoded[0]).getBuffer());
+
+        // Only the buffers of the serialized message return to the pool.
+        for (ByteBuffer segment : segments)
+            pool.release(segment);
+        assertEquals(segments.size() - 2, pool.getPooled());
+    }
+
+    @Test
+    public void operationsReceiveBuffers() throws NoSuchMethodException {
+        PayloadEncoder encoder = new PayloadEncoder();
+        PayloadDecoder decoder = new PayloadDecoder();
+        ByteBuffer buffer = contents(64, false);
+        Object[] encoded = encoder.encode(Storing.class.getMethod("store", Integer.class, ByteBuffer.class), "store",
+                NodeId.of(NodeType.HUB, 0), false, new Object[]{7, buffer});
+        assertEquals(7, encoded[0]);
+        assertTrue(encoded[1] instanceof ByteBufferValue);
+
+        Object[] decoded = decoder.decode(NodeId.of(NodeType.SPOKE, 0), "store", encoded);
+        assertEquals(7, decoded[0]);
+        assertContents(0, 64, (ByteBuffer) decoded[1]);
+    }
+
+}
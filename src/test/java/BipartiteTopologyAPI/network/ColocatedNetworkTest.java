@@ -0,0 +1,145 @@
+package BipartiteTopologyAPI.network;
+
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.NodeInstance;
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the messages of a pair of co-located nodes are delivered in order when some of them are too large for
+ * the shared memory rings. The two networks of the test stand for two processes of the same host.
+ */
+public class ColocatedNetworkTest {
+
+    private static final int MESSAGES = 200;
+
+    /**
+     * The message too large for the rings.
+     */
+    private static final int LARGE = 50;
+
+    @TempDir
+    Path directory;
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        void record(Integer sequence, double[] payload);
+    }
+
+    @RemoteProxy
+    public interface SpokeOps {
+        @RemoteOp
+        void update(Long version);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId);
+    }
+
+    public static class Hub extends NodeInstance<SpokeOps, QuerierOps> implements HubOps {
+
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Serializable tuple) {
+        }
+
+        @MergeOp
+        public void merge(Hub[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void record(Integer sequence, double[] payload) {
+            received.add(sequence);
+        }
+
+    }
+
+    public static class Spoke extends NodeInstance<HubOps, QuerierOps> implements SpokeOps {
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Integer messages) {
+            for (int i = 0; i < messages; i++)
+                getProxy(0).record(i, new double[(i == LARGE) ? 400_000 : 8]);
+        }
+
+        @MergeOp
+        public void merge(Spoke[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(Long version) {
+        }
+
+    }
+
+    @Test
+    public void deliversThePairInOrderAcrossTransports() throws Exception {
+        Membership membership = Membership.parse("HUB 0 127.0.0.1:18400\nSPOKE 0 127.0.0.1:18401\n");
+        NodeId hubId = new NodeId(NodeType.HUB, 0);
+        NodeId spokeId = new NodeId(NodeType.SPOKE, 0);
+        ColocatedNetwork hubProcess =
+                new ColocatedNetwork(0, membership, new InetSocketAddress("127.0.0.1", 18400), directory);
+        ColocatedNetwork spokeProcess =
+                new ColocatedNetwork(0, membership, new InetSocketAddress("127.0.0.1", 18401), directory);
+        try {
+            Hub hub = new Hub();
+            hubProcess.register(hubId, new GenericWrapper(hubId, hub, hubProcess));
+            spokeProcess.register(spokeId, new GenericWrapper(spokeId, new Spoke(), spokeProcess));
+            assertFalse(spokeProcess.isPinnedToTcp(spokeId, hubId));
+
+            spokeProcess.submitTuple(spokeId, new Object[]{MESSAGES});
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (hub.received.size() < MESSAGES && System.currentTimeMillis() < deadline)
+                Thread.sleep(5);
+
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < MESSAGES; i++)
+                expected.add(i);
+            assertEquals(expected, new ArrayList<>(hub.received));
+            assertTrue(spokeProcess.isPinnedToTcp(spokeId, hubId));
+        } finally {
+            spokeProcess.close();
+            hubProcess.close();
+        }
+    }
+
+}
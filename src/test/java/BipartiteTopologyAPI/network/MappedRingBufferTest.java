@@ -0,0 +1,120 @@
+package BipartiteTopologyAPI.network;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MappedRingBufferTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Makes a record holding its sequence number, followed by a payload of a length varying with the sequence number
+     * and filled with a byte derived from it.
+     */
+    private static ByteBuffer recordOf(long sequence) {
+        int payload = (int) (sequence * 31 % 200);
+        ByteBuffer record = ByteBuffer.allocate(4 + 8 + payload);
+        record.putInt(8 + payload);
+        record.putLong(sequence);
+        for (int i = 0; i < payload; i++)
+            record.put((byte) (sequence + i));
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Returns a description of what is wrong with a consumed record, or null if it is the expected one.
+     */
+    private static String checkRecord(ByteBuffer record, long expected) {
+        int length = record.getInt();
+        long sequence = record.getLong();
+        if (sequence != expected)
+            return "Expected record " + expected + " but consumed record " + sequence;
+        int payload = (int) (sequence * 31 % 200);
+        if (length != 8 + payload || record.remaining() != payload)
+            return "Record " + sequence + " has length " + length;
+        for (int i = 0; i < payload; i++)
+            if (record.get() != (byte) (sequence + i))
+                return "Record " + sequence + " is corrupted at byte " + i;
+        return null;
+    }
+
+    @Test
+    public void wrapsAround() throws IOException {
+        MappedRingBuffer ring = MappedRingBuffer.create(directory.resolve("wrap.ring"), 1024);
+        assertEquals(1024, ring.getCapacity());
+        long[] next = new long[1];
+        String[] error = new String[1];
+        // Many times the capacity of the ring, in records that rarely end at its end.
+        for (long sequence = 0; sequence < 2000; sequence++) {
+            assertTrue(ring.offer(recordOf(sequence)));
+            assertEquals(1, ring.poll(record -> {
+                if (error[0] == null)
+                    error[0] = checkRecord(record, next[0]++);
+            }));
+        }
+        assertNull(error[0]);
+        assertEquals(2000, next[0]);
+        ring.close();
+    }
+
+    @Test
+    public void rejectsRecordsWhenFull() throws IOException {
+        MappedRingBuffer ring = MappedRingBuffer.create(directory.resolve("full.ring"), 1024);
+        int offered = 0;
+        while (ring.offer(recordOf(199)))
+            offered++;
+        assertTrue(offered > 0);
+        assertFalse(ring.offer(recordOf(199)));
+        assertEquals(offered, ring.poll(record -> {
+        }));
+        assertTrue(ring.offer(recordOf(199)));
+        ring.close();
+    }
+
+    @Test
+    public void transfersRecordsBetweenThreads() throws Exception {
+        final long records = 1_000_000;
+        Path file = directory.resolve("stress.ring");
+        MappedRingBuffer consumerSide = MappedRingBuffer.create(file, 4096);
+        MappedRingBuffer producerSide = MappedRingBuffer.open(file);
+        AtomicReference<String> error = new AtomicReference<>();
+
+        Thread producer = new Thread(() -> {
+            for (long sequence = 0; sequence < records && error.get() == null; sequence++) {
+                ByteBuffer record = recordOf(sequence);
+                while (!producerSide.offer(record))
+                    Thread.yield();
+            }
+        }, "ring-producer");
+        producer.start();
+
+        long[] next = new long[1];
+        long deadline = System.nanoTime() + 60_000_000_000L;
+        while (next[0] < records && error.get() == null && System.nanoTime() < deadline) {
+            if (consumerSide.poll(record -> {
+                String problem = checkRecord(record, next[0]++);
+                if (problem != null)
+                    error.compareAndSet(null, problem);
+            }) == 0)
+                Thread.yield();
+        }
+        producer.join();
+        assertNull(error.get());
+        assertEquals(records, next[0]);
+        consumerSide.close();
+        producerSide.close();
+    }
+
+}
@@ -0,0 +1,164 @@
+package BipartiteTopologyAPI.network;
+
+import BipartiteTopologyAPI.interfaces.Mergeable;
+import BipartiteTopologyAPI.interfaces.Node;
+import BipartiteTopologyAPI.operations.CallType;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks the framing of the messages sent over TCP, and that the connections between processes are re-established.
+ */
+public class NioNetworkTest {
+
+    private static final NodeId HUB = NodeId.of(NodeType.HUB, 0);
+
+    private static final NodeId SPOKE = NodeId.of(NodeType.SPOKE, 0);
+
+    /**
+     * A node queueing the messages it receives.
+     */
+    private static class ReceivingNode implements Node {
+
+        final LinkedBlockingQueue<Serializable> messages = new LinkedBlockingQueue<>();
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public void receiveQuery(long queryId, Serializable query) {
+        }
+
+        @Override
+        public void receiveMsg(NodeId source, RemoteCallIdentifier rpc, Serializable message) {
+            messages.add(message);
+        }
+
+        @Override
+        public void receiveTuple(Serializable tuple) {
+        }
+
+        @Override
+        public void merge(Mergeable[] nodes) {
+        }
+
+    }
+
+    private static InetSocketAddress freeEndpoint() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), socket.getLocalPort());
+        }
+    }
+
+    /**
+     * Starts the process of the spoke, with the spoke registered before any connection is accepted.
+     */
+    private static NioNetwork spokeProcess(Membership membership, InetSocketAddress endpoint, ReceivingNode spoke)
+            throws IOException {
+        LocalNodes localNodes = new LocalNodes();
+        localNodes.register(SPOKE, spoke);
+        return new NioNetwork(0, membership, endpoint, localNodes);
+    }
+
+    private static RemoteCallIdentifier rpc(long callNumber) {
+        return new RemoteCallIdentifier(CallType.ONE_WAY, "update", callNumber);
+    }
+
+    @Test
+    public void framesRoundTrip() {
+        byte[] payload = MessageCodec.encodePayload(new double[]{1.0, 2.0});
+        RemoteCallIdentifier rpc = rpc(42);
+        ByteBuffer buffer = ByteBuffer.allocate(MessageCodec.headerSize(rpc) + payload.length + 64);
+        MessageCodec.writeHeader(buffer, HUB, SPOKE, rpc, payload.length);
+        buffer.put(payload);
+        MessageCodec.writeHeader(buffer, SPOKE, null, new RemoteCallIdentifier(null, null, 7), 0);
+        buffer.flip();
+
+        Envelope envelope = MessageCodec.readFrame(buffer, buffer.getInt());
+        assertEquals(HUB, envelope.getSource());
+        assertEquals(SPOKE, envelope.getDestination());
+        assertEquals(CallType.ONE_WAY, envelope.getRpc().getCallType());
+        assertEquals("update", envelope.getRpc().getOperation());
+        assertEquals(42, envelope.getRpc().getCallNumber());
+        assertArrayEquals(new double[]{1.0, 2.0}, (double[]) envelope.getMessage());
+
+        Envelope empty = MessageCodec.readFrame(buffer, buffer.getInt());
+        assertEquals(SPOKE, empty.getSource());
+        assertNull(empty.getDestination());
+        assertNull(empty.getRpc().getCallType());
+        assertNull(empty.getRpc().getOperation());
+        assertEquals(7, empty.getRpc().getCallNumber());
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void largeAndSmallFramesArriveInOrder() throws Exception {
+        InetSocketAddress hubEndpoint = freeEndpoint();
+        InetSocketAddress spokeEndpoint = freeEndpoint();
+        Membership membership = new Membership().add(HUB, hubEndpoint).add(SPOKE, spokeEndpoint);
+        ReceivingNode spoke = new ReceivingNode();
+        try (NioNetwork hubProcess = new NioNetwork(0, membership, hubEndpoint);
+             NioNetwork spokeProcess = spokeProcess(membership, spokeEndpoint, spoke)) {
+
+            double[] large = new double[100_000];
+            for (int i = 0; i < large.length; i++)
+                large[i] = i;
+            for (int i = 0; i < 50; i++)
+                hubProcess.send(HUB, SPOKE, rpc(i), (i % 10 == 5) ? large : i);
+
+            for (int i = 0; i < 50; i++) {
+                Serializable message = spoke.messages.poll(10, TimeUnit.SECONDS);
+                assertNotNull(message);
+                if (i % 10 == 5)
+                    assertArrayEquals(large, (double[]) message);
+                else
+                    assertEquals(i, message);
+            }
+        }
+    }
+
+    @Test
+    public void connectionsAreReestablished() throws Exception {
+        InetSocketAddress hubEndpoint = freeEndpoint();
+        InetSocketAddress spokeEndpoint = freeEndpoint();
+        Membership membership = new Membership().add(HUB, hubEndpoint).add(SPOKE, spokeEndpoint);
+        try (NioNetwork hubProcess = new NioNetwork(0, membership, hubEndpoint)) {
+            // The frames sent before the spoke process starts are held until it accepts the connection.
+            hubProcess.send(HUB, SPOKE, rpc(0), 0);
+            Thread.sleep(250);
+            ReceivingNode first = new ReceivingNode();
+            try (NioNetwork spokeProcess = spokeProcess(membership, spokeEndpoint, first)) {
+                assertEquals(0, first.messages.poll(10, TimeUnit.SECONDS));
+            }
+
+            // The frames written to the lost connection may be lost, but the hub reconnects to the restarted process.
+            ReceivingNode second = new ReceivingNode();
+            try (NioNetwork spokeProcess = spokeProcess(membership, spokeEndpoint, second)) {
+                Serializable received = null;
+                for (int i = 1; i <= 100 && received == null; i++) {
+                    hubProcess.send(HUB, SPOKE, rpc(i), i);
+                    received = second.messages.poll(100, TimeUnit.MILLISECONDS);
+                }
+                assertNotNull(received);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package BipartiteTopologyAPI.network;
+
+import BipartiteTopologyAPI.interfaces.Mergeable;
+import BipartiteTopologyAPI.interfaces.Node;
+import BipartiteTopologyAPI.operations.CallType;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks the order in which a runner delivers the inputs of its lanes, and how it stops on a failed input.
+ */
+public class NodeRunnerTest {
+
+    private static final NodeId HUB = NodeId.of(NodeType.HUB, 0);
+
+    private static final NodeId SPOKE = NodeId.of(NodeType.SPOKE, 0);
+
+    /**
+     * A node logging its inputs, which fails on the tuple "fail".
+     */
+    private static class LoggingNode implements Node {
+
+        final List<String> inputs = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public void receiveQuery(long queryId, Serializable query) {
+            inputs.add("query " + queryId);
+        }
+
+        @Override
+        public void receiveMsg(NodeId source, RemoteCallIdentifier rpc, Serializable message) {
+            inputs.add(rpc.getCallType() + " " + rpc.getCallNumber());
+        }
+
+        @Override
+        public void receiveTuple(Serializable tuple) {
+            if ("fail".equals(tuple))
+                throw new IllegalStateException("Failed tuple");
+            inputs.add("tuple " + tuple);
+        }
+
+        @Override
+        public void merge(Mergeable[] nodes) {
+        }
+
+    }
+
+    private static Envelope message(CallType callType, long callNumber) {
+        return new Envelope(HUB, SPOKE, new RemoteCallIdentifier(callType, "op", callNumber), new Object[0]);
+    }
+
+    @Test
+    public void lanesAreDeliveredInPriorityOrder() {
+        LoggingNode node = new LoggingNode();
+        NodeRunner runner = new NodeRunner(SPOKE, node);
+        runner.deliverTuple(1);
+        runner.deliverTuple(2);
+        runner.deliverMessage(message(CallType.ONE_WAY, 1));
+        runner.deliverQuery(7, "query");
+        runner.deliverMessage(message(CallType.RESPONSE, 2));
+        runner.execute(() -> node.inputs.add("task"));
+        assertEquals(1, runner.getInboxSize(NodeRunner.Lane.RESPONSE));
+        assertEquals(3, runner.getInboxSize(NodeRunner.Lane.CONTROL));
+        assertEquals(2, runner.getInboxSize(NodeRunner.Lane.DATA));
+
+        runner.start();
+        runner.stop();
+        assertEquals(Arrays.asList("RESPONSE 2", "ONE_WAY 1", "query 7", "task", "tuple 1", "tuple 2"), node.inputs);
+        assertEquals(0, runner.getInboxSize());
+    }
+
+    @Test
+    public void aFailedInputStopsTheRunner() throws InterruptedException {
+        LoggingNode node = new LoggingNode();
+        AtomicReference<RuntimeException> handled = new AtomicReference<>();
+        NodeRunner runner = new NodeRunner(SPOKE, node).setErrorHandler((nodeId, e) -> handled.set(e));
+        runner.deliverTuple(1);
+        runner.deliverTuple("fail");
+        runner.deliverTuple(2);
+        runner.start();
+        while (runner.isRunning())
+            Thread.sleep(1);
+        runner.deliverTuple(3);
+
+        RuntimeException stopped = assertThrows(RuntimeException.class, runner::stop);
+        assertSame(runner.getFailure(), stopped.getCause());
+        assertSame(runner.getFailure(), handled.get());
+        assertEquals(IllegalStateException.class, runner.getFailure().getClass());
+        assertEquals(Collections.singletonList("tuple 1"), node.inputs);
+        assertEquals(0, runner.getInboxSize());
+        assertFalse(runner.isRunning());
+    }
+
+}
@@ -0,0 +1,170 @@
+package BipartiteTopologyAPI.routing;
+
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.NodeInstance;
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.KeyAligned;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.annotations.RoutingKey;
+import BipartiteTopologyAPI.interfaces.Network;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.NetworkDescriptor;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the assignment of keys to the nodes of a consistent-hash ring, and the calls split by the routing proxy.
+ */
+public class ConsistentHashRoutingTest {
+
+    private static final int KEYS = 20_000;
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        void push(@RoutingKey long[] keys, @KeyAligned double[] values, Integer step);
+    }
+
+    @RemoteProxy
+    public interface SpokeOps {
+        @RemoteOp
+        void update(Long version);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId);
+    }
+
+    public static class Spoke extends NodeInstance<HubOps, QuerierOps> implements SpokeOps {
+
+        @InitOp
+        public void init() {
+        }
+
+        /**
+         * Pushes the value i to the key i, for the given number of keys.
+         */
+        @ProcessOp
+        public void process(Integer numberOfKeys) {
+            long[] keys = new long[numberOfKeys];
+            double[] values = new double[numberOfKeys];
+            for (int i = 0; i < numberOfKeys; i++) {
+                keys[i] = i;
+                values[i] = i;
+            }
+            getRoutingProxy().push(keys, values, 7);
+        }
+
+        @MergeOp
+        public void merge(Spoke[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(Long version) {
+        }
+
+    }
+
+    /**
+     * A network keeping the last message sent to every node.
+     */
+    private static class RecordingNetwork implements Network {
+
+        final Map<NodeId, Object[]> messages = new HashMap<>();
+
+        @Override
+        public void send(NodeId source, NodeId destination, RemoteCallIdentifier rpc, Serializable message) {
+            messages.put(destination, (Object[]) message);
+        }
+
+        @Override
+        public void broadcast(NodeId source, Map<NodeId, RemoteCallIdentifier> rpcMap, Serializable message) {
+            throw new RuntimeException("Unexpected broadcast");
+        }
+
+        @Override
+        public NetworkDescriptor describe() {
+            return new NetworkDescriptor(0, 1, 4);
+        }
+
+    }
+
+    @Test
+    public void keysAreSpreadEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(4);
+        int[] owned = new int[4];
+        for (long key = 0; key < KEYS; key++)
+            owned[ring.nodeOf(key)]++;
+        for (int keys : owned)
+            assertTrue(keys > KEYS / 4 * 0.75 && keys < KEYS / 4 * 1.25, "A node owns " + keys + " keys");
+    }
+
+    @Test
+    public void onlyTheKeysOfChangedNodesMove() {
+        ConsistentHashRing before = new ConsistentHashRing(4);
+        ConsistentHashRing after = new ConsistentHashRing(5);
+        int moved = 0;
+        for (long key = 0; key < KEYS; key++) {
+            if (before.nodeOf(key) != after.nodeOf(key)) {
+                assertEquals(4, after.nodeOf(key));
+                moved++;
+            }
+        }
+        assertTrue(moved > KEYS / 5 * 0.75 && moved < KEYS / 5 * 1.25, moved + " keys moved");
+    }
+
+    @Test
+    public void keysAreHashedByValue() {
+        ConsistentHashRing ring = new ConsistentHashRing(8);
+        assertEquals(ConsistentHashRing.hash(42L), ConsistentHashRing.hash(42));
+        assertEquals(ring.nodeOf("key"), ring.nodeOf(new StringBuilder("key")));
+        assertEquals(new ConsistentHashRing(8).nodeOf("key"), ring.nodeOf("key"));
+        assertThrows(RuntimeException.class, () -> ring.nodeOf(null));
+        assertThrows(RuntimeException.class, () -> new ConsistentHashRing(0));
+    }
+
+    @Test
+    public void callsAreSplitAcrossTheOwners() {
+        NodeId spokeId = NodeId.of(NodeType.SPOKE, 0);
+        RecordingNetwork network = new RecordingNetwork();
+        GenericWrapper wrapper = new GenericWrapper(spokeId, new Spoke(), network);
+        wrapper.init();
+        wrapper.receiveTuple(new Object[]{100});
+
+        ConsistentHashRing ring = new ConsistentHashRing(4);
+        int routed = 0;
+        for (Map.Entry<NodeId, Object[]> message : network.messages.entrySet()) {
+            long[] keys = (long[]) message.getValue()[0];
+            double[] values = (double[]) message.getValue()[1];
+            assertEquals(keys.length, values.length);
+            for (int i = 0; i < keys.length; i++) {
+                assertEquals(message.getKey().getNodeId(), ring.nodeOf(keys[i]));
+                assertEquals(keys[i], (long) values[i]);
+            }
+            assertEquals(7, message.getValue()[2]);
+            routed += keys.length;
+        }
+        assertEquals(100, routed);
+        assertEquals(4, network.messages.size());
+    }
+
+}
@@ -0,0 +1,224 @@
+package BipartiteTopologyAPI.routing;
+
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.NodeInstance;
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.annotations.RoutingKey;
+import BipartiteTopologyAPI.futures.Response;
+import BipartiteTopologyAPI.simulation.LinkModel;
+import BipartiteTopologyAPI.simulation.SimulatedNetwork;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the calls for a migrated range of keys reach the state of the range, wherever they are received.
+ */
+public class KeyMigrationTest {
+
+    private static final long MILLISECOND = 1_000_000L;
+
+    private static final int HUBS = 2;
+
+    private static final int SPOKES = 2;
+
+    private static final Long KEY = 42L;
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        void push(@RoutingKey Long key, Double value);
+
+        @RemoteOp
+        Response<Double> get(@RoutingKey Long key);
+    }
+
+    @RemoteProxy
+    public interface SpokeOps {
+        @RemoteOp
+        void update(Long version);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId);
+    }
+
+    public static class Hub extends NodeInstance<SpokeOps, QuerierOps> implements HubOps, KeyMigratable {
+
+        final HashMap<Long, Double> state = new HashMap<>();
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Serializable tuple) {
+        }
+
+        @MergeOp
+        public void merge(Hub[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void push(Long key, Double value) {
+            state.merge(key, value, Double::sum);
+        }
+
+        @Override
+        public Response<Double> get(Long key) {
+            return Response.respond(state.getOrDefault(key, 0.0));
+        }
+
+        @Override
+        public Serializable exportKeys(KeyRange range) {
+            HashMap<Long, Double> exported = new HashMap<>();
+            state.entrySet().removeIf(entry -> {
+                if (entry.getKey() != null && range.contains(entry.getKey()))
+                    exported.put(entry.getKey(), entry.getValue());
+                return exported.containsKey(entry.getKey());
+            });
+            return exported;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void importKeys(KeyRange range, Serializable state) {
+            ((HashMap<Long, Double>) state).forEach((key, value) -> this.state.merge(key, value, Double::sum));
+        }
+
+    }
+
+    public static class Spoke extends NodeInstance<HubOps, QuerierOps> implements SpokeOps {
+
+        final List<Double> values = new ArrayList<>();
+
+        @InitOp
+        public void init() {
+        }
+
+        /**
+         * Pushes a one to a key through the routing proxy, or pushes it to a given hub and gets the key back.
+         */
+        @ProcessOp
+        public void process(Long key, Integer hub) {
+            if (hub < 0) {
+                getRoutingProxy().push(key, 1.0);
+            } else {
+                getProxy(hub).push(key, 1.0);
+                getProxy(hub).get(key).to(values::add);
+            }
+        }
+
+        @MergeOp
+        public void merge(Spoke[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(Long version) {
+        }
+
+    }
+
+    private SimulatedNetwork network;
+
+    private final GenericWrapper[] hubs = new GenericWrapper[HUBS];
+
+    private final Spoke[] spokes = new Spoke[SPOKES];
+
+    @BeforeEach
+    public void setUp() {
+        network = new SimulatedNetwork(0, HUBS, SPOKES).setLinkModel(LinkModel.uniform(MILLISECOND, 1e9));
+        for (int i = 0; i < HUBS; i++) {
+            NodeId hubId = new NodeId(NodeType.HUB, i);
+            hubs[i] = new GenericWrapper(hubId, new Hub(), network);
+            network.register(hubId, hubs[i]);
+        }
+        for (int i = 0; i < SPOKES; i++) {
+            NodeId spokeId = new NodeId(NodeType.SPOKE, i);
+            spokes[i] = new Spoke();
+            network.register(spokeId, new GenericWrapper(spokeId, spokes[i], network));
+        }
+    }
+
+    private void submit(int spoke, Long key, int hub, long time) {
+        network.submitTuple(new NodeId(NodeType.SPOKE, spoke), new Object[]{key, hub}, time);
+    }
+
+    private HashMap<Long, Double> stateOf(int hub) {
+        return ((Hub) hubs[hub].getNode()).state;
+    }
+
+    @Test
+    public void callsDuringAMigrationAreDeferredUntilTheStateArrives() {
+        int owner = hubs[0].getKeyRouter().getOwnershipTable().nodeOf(KEY);
+        int newOwner = 1 - owner;
+        for (int i = 0; i < 10; i++)
+            submit(i % SPOKES, KEY, -1, i * MILLISECOND);
+        network.run();
+        assertEquals(10.0, stateOf(owner).get(KEY));
+
+        long start = network.getTime();
+        hubs[owner].getKeyRouter().migrate(KeyRange.ofKey(KEY), newOwner);
+        for (int i = 0; i < 10; i++)
+            submit(i % SPOKES, KEY, -1, start + MILLISECOND + i * MILLISECOND / 10);
+        network.runUntil(start + 2 * MILLISECOND + MILLISECOND / 2);
+        assertTrue(hubs[newOwner].getKeyRouter().hasIncomingMigrations());
+        assertTrue(hubs[newOwner].getKeyRouter().getNumberOfDeferredCalls() > 0);
+
+        network.run();
+        assertEquals(20.0, stateOf(newOwner).get(KEY));
+        assertFalse(stateOf(owner).containsKey(KEY));
+        assertFalse(hubs[newOwner].getKeyRouter().hasIncomingMigrations());
+        assertEquals(0, hubs[newOwner].getKeyRouter().getNumberOfDeferredCalls());
+        for (GenericWrapper hub : hubs)
+            assertEquals(newOwner, hub.getKeyRouter().getOwnershipTable().nodeOf(KEY));
+    }
+
+    @Test
+    public void callsToANodeNotOwningTheirKeyAreRelayedToTheOwner() {
+        int owner = hubs[0].getKeyRouter().getOwnershipTable().nodeOf(KEY);
+        submit(0, KEY, 1 - owner, 0);
+        network.run();
+        assertEquals(1.0, stateOf(owner).get(KEY));
+        assertFalse(stateOf(1 - owner).containsKey(KEY));
+        assertEquals(Collections.singletonList(1.0), spokes[0].values);
+        assertEquals(0, hubs[1 - owner].getKeyRouter().getNumberOfDeferredCalls());
+    }
+
+    @Test
+    public void callsWithoutAKeyAreServedLocally() {
+        submit(0, null, 0, 0);
+        network.run();
+        assertEquals(1.0, stateOf(0).get(null));
+        assertNull(stateOf(1).get(null));
+        assertEquals(Collections.singletonList(1.0), spokes[0].values);
+    }
+
+}
@@ -0,0 +1,84 @@
+package BipartiteTopologyAPI.sites;
+
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the compact descriptions of the targets of broadcasts, and the canonical node ids they yield.
+ */
+public class BroadcastTargetsTest {
+
+    @Test
+    public void canonicalIdsAreSharedAndImmutable() {
+        NodeId id = NodeId.of(NodeType.SPOKE, 3);
+        assertSame(id, NodeId.of(NodeType.SPOKE, 3));
+        assertNotSame(id, NodeId.of(NodeType.HUB, 3));
+        assertEquals(new NodeId(NodeType.SPOKE, 3), id);
+        assertThrows(RuntimeException.class, () -> id.setNodeId(4));
+        assertEquals(3, id.getNodeId());
+
+        NodeId large = NodeId.of(NodeType.HUB, NodeId.INTERNED_LIMIT);
+        assertEquals(NodeId.INTERNED_LIMIT, large.getNodeId());
+        assertNotSame(large, NodeId.of(NodeType.HUB, NodeId.INTERNED_LIMIT));
+    }
+
+    @Test
+    public void rangesYieldTheirCanonicalIds() {
+        BroadcastTargets targets = BroadcastTargets.range(NodeType.HUB, 2, 5);
+        List<NodeId> ids = new ArrayList<>();
+        for (NodeId target : targets)
+            ids.add(target);
+        assertEquals(Arrays.asList(NodeId.of(NodeType.HUB, 2), NodeId.of(NodeType.HUB, 3), NodeId.of(NodeType.HUB, 4)),
+                ids);
+        assertSame(NodeId.of(NodeType.HUB, 2), ids.get(0));
+        assertEquals(3, targets.size());
+        assertTrue(targets.contains(new NodeId(NodeType.HUB, 4)));
+        assertFalse(targets.contains(NodeId.of(NodeType.HUB, 5)));
+        assertFalse(targets.contains(NodeId.of(NodeType.SPOKE, 3)));
+        assertTrue(BroadcastTargets.allOf(NodeType.SPOKE, 0).isEmpty());
+    }
+
+    @Test
+    public void setsMatchTheRangesTheyCover() {
+        BitSet ids = new BitSet();
+        ids.set(1);
+        ids.set(3);
+        BroadcastTargets sparse = BroadcastTargets.of(NodeType.SPOKE, ids);
+        ids.set(2);
+        assertEquals(2, sparse.size());
+        assertFalse(sparse.contains(NodeId.of(NodeType.SPOKE, 2)));
+        assertTrue(sparse.contains(NodeId.of(NodeType.SPOKE, 3)));
+
+        BroadcastTargets dense = BroadcastTargets.of(NodeType.SPOKE, ids);
+        assertEquals(BroadcastTargets.range(NodeType.SPOKE, 1, 4), dense);
+        assertEquals(BroadcastTargets.range(NodeType.SPOKE, 1, 4).hashCode(), dense.hashCode());
+        assertFalse(BroadcastTargets.range(NodeType.HUB, 1, 4).equals(dense));
+
+        RemoteCallIdentifier rpc = new RemoteCallIdentifier();
+        Map<NodeId, RemoteCallIdentifier> rpcMap = sparse.toRpcMap(rpc);
+        assertEquals(2, rpcMap.size());
+        assertSame(rpc, rpcMap.get(NodeId.of(NodeType.SPOKE, 1)));
+        assertSame(rpc, rpcMap.get(new NodeId(NodeType.SPOKE, 3)));
+    }
+
+    @Test
+    public void invalidRangesAreRejected() {
+        assertThrows(RuntimeException.class, () -> BroadcastTargets.range(NodeType.HUB, 3, 2));
+        assertThrows(RuntimeException.class, () -> BroadcastTargets.range(NodeType.HUB, -1, 2));
+        assertThrows(RuntimeException.class, () -> BroadcastTargets.allOf(null, 2));
+    }
+
+}
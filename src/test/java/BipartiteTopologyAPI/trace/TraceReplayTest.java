@@ -0,0 +1,221 @@
+package BipartiteTopologyAPI.trace;
+
+import BipartiteTopologyAPI.BufferingWrapper;
+import BipartiteTopologyAPI.GenericWrapper;
+import BipartiteTopologyAPI.NodeInstance;
+import BipartiteTopologyAPI.annotations.InitOp;
+import BipartiteTopologyAPI.annotations.MergeOp;
+import BipartiteTopologyAPI.annotations.ProcessOp;
+import BipartiteTopologyAPI.annotations.QueryOp;
+import BipartiteTopologyAPI.annotations.RemoteOp;
+import BipartiteTopologyAPI.annotations.RemoteProxy;
+import BipartiteTopologyAPI.futures.Response;
+import BipartiteTopologyAPI.network.InProcessNetwork;
+import BipartiteTopologyAPI.operations.RemoteCallIdentifier;
+import BipartiteTopologyAPI.sites.NodeId;
+import BipartiteTopologyAPI.sites.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that replaying the trace of a run on fresh nodes brings them to the state the recorded nodes ended in.
+ */
+public class TraceReplayTest {
+
+    private static final int HUBS = 2;
+
+    private static final int SPOKES = 3;
+
+    private static final int TUPLES = 50;
+
+    @RemoteProxy
+    public interface HubOps {
+        @RemoteOp
+        void push(Double gradient);
+
+        @RemoteOp
+        Response<Double> pull();
+    }
+
+    @RemoteProxy
+    public interface SpokeOps {
+        @RemoteOp
+        void update(Double model);
+    }
+
+    @RemoteProxy
+    public interface QuerierOps {
+        @RemoteOp
+        void answer(Long queryId, Double model);
+    }
+
+    public static class Hub extends NodeInstance<SpokeOps, QuerierOps> implements HubOps {
+
+        /**
+         * A digest of the pushed gradients that depends on the order they were pushed in.
+         */
+        double model;
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Serializable tuple) {
+        }
+
+        @MergeOp
+        public void merge(Hub[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+            getQuerier().answer(queryId, model);
+        }
+
+        @Override
+        public void push(Double gradient) {
+            model = model * 0.5 + gradient;
+        }
+
+        @Override
+        public Response<Double> pull() {
+            return Response.respond(model);
+        }
+
+    }
+
+    public static class Spoke extends NodeInstance<HubOps, QuerierOps> implements SpokeOps {
+
+        final List<Double> pulled = new ArrayList<>();
+
+        final transient CountDownLatch completed;
+
+        public Spoke(CountDownLatch completed) {
+            this.completed = completed;
+        }
+
+        @InitOp
+        public void init() {
+        }
+
+        @ProcessOp
+        public void process(Integer sequence) {
+            getBroadcastProxy().push(1.0 / (sequence + getNodeId() + 1));
+            getBroadcastProxy().pull().toSync(model -> {
+                pulled.add(model);
+                completed.countDown();
+            });
+        }
+
+        @MergeOp
+        public void merge(Spoke[] instances) {
+        }
+
+        @QueryOp
+        public void query(long queryId, int networkId, Serializable query) {
+        }
+
+        @Override
+        public void update(Double model) {
+        }
+
+    }
+
+    @Test
+    public void replayReproducesTheRecordedRun() throws Exception {
+        // Record a run, in which the messages of the spokes reach the hubs in an arbitrary order.
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TraceRecorder recorder = new TraceRecorder(bytes);
+        InProcessNetwork network = new InProcessNetwork(0, HUBS, SPOKES);
+        network.getLocalNodes().setTraceRecorder(recorder);
+        List<Serializable> answers = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch answered = new CountDownLatch(1);
+        network.setQuerierSink((source, message) -> {
+            answers.add(message);
+            answered.countDown();
+        });
+        CountDownLatch pulls = new CountDownLatch(HUBS * SPOKES * TUPLES);
+        List<GenericWrapper> recorded = register(network, pulls);
+        for (int t = 0; t < TUPLES; t++)
+            for (int i = 0; i < SPOKES; i++)
+                network.submitTuple(NodeId.of(NodeType.SPOKE, i), new Object[]{t});
+        assertTrue(pulls.await(30, TimeUnit.SECONDS));
+        network.submitQuery(NodeId.of(NodeType.HUB, 1), 9, "model");
+        assertTrue(answered.await(30, TimeUnit.SECONDS));
+        network.close();
+        recorder.close();
+
+        // Replay it on fresh nodes.
+        List<Serializable> replayedAnswers = new ArrayList<>();
+        TraceReplayer.DiscardingNetwork discarding = new TraceReplayer.DiscardingNetwork(0, HUBS, SPOKES) {
+            @Override
+            public void send(NodeId source, NodeId destination, RemoteCallIdentifier rpc, Serializable message) {
+                if (destination == null)
+                    replayedAnswers.add(message);
+                super.send(source, destination, rpc, message);
+            }
+        };
+        TraceReplayer replayer = new TraceReplayer();
+        CountDownLatch replayedPulls = new CountDownLatch(HUBS * SPOKES * TUPLES);
+        List<GenericWrapper> replayed = new ArrayList<>();
+        for (GenericWrapper wrapper : recorded) {
+            NodeId nodeId = wrapper.getNodeId();
+            GenericWrapper fresh = nodeId.isHub() ?
+                    new GenericWrapper(nodeId, new Hub(), discarding) :
+                    new BufferingWrapper<>(nodeId, new Spoke(replayedPulls), discarding);
+            replayer.register(nodeId, fresh);
+            replayed.add(fresh);
+        }
+        try (TraceReader reader = new TraceReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(recorder.getRecords(), replayer.replay(reader, false));
+        }
+        assertEquals(0, replayer.getSkipped());
+
+        for (int i = 0; i < recorded.size(); i++) {
+            GenericWrapper original = recorded.get(i);
+            GenericWrapper fresh = replayed.get(i);
+            assertEquals(original.getClock(), fresh.getClock());
+            assertEquals(original.getStateVersion(), fresh.getStateVersion());
+            assertEquals(original.getProcessedTuples(), fresh.getProcessedTuples());
+            if (original.getNodeId().isHub())
+                assertEquals(((Hub) original.getNode()).model, ((Hub) fresh.getNode()).model);
+            else
+                assertEquals(((Spoke) original.getNode()).pulled, ((Spoke) fresh.getNode()).pulled);
+        }
+        assertEquals(1, answers.size());
+        assertEquals(1, replayedAnswers.size());
+        assertEquals(Arrays.asList((Object[]) answers.get(0)), Arrays.asList((Object[]) replayedAnswers.get(0)));
+    }
+
+    private static List<GenericWrapper> register(InProcessNetwork network, CountDownLatch pulls) {
+        List<GenericWrapper> wrappers = new ArrayList<>();
+        for (int i = 0; i < HUBS; i++) {
+            NodeId nodeId = NodeId.of(NodeType.HUB, i);
+            GenericWrapper wrapper = new GenericWrapper(nodeId, new Hub(), network);
+            network.register(nodeId, wrapper);
+            wrappers.add(wrapper);
+        }
+        for (int i = 0; i < SPOKES; i++) {
+            NodeId nodeId = NodeId.of(NodeType.SPOKE, i);
+            GenericWrapper wrapper = new BufferingWrapper<>(nodeId, new Spoke(pulls), network);
+            network.register(nodeId, wrapper);
+            wrappers.add(wrapper);
+        }
+        return wrappers;
+    }
+
+}